@@ -56,6 +56,12 @@ public class GenerateJavaCode32 extends GenerateCode32 {
         prefix32.add("FBinary");
         prefix64.add("DScalar");
         prefix32.add("FScalar");
+        prefix64.add("DMonoid");
+        prefix32.add("FMonoid");
+        prefix64.add("DSemiRing");
+        prefix32.add("FSemiRing");
+        prefix64.add("DMask");
+        prefix32.add("FMask");
         prefix64.add("DMatrix");
         prefix32.add("FMatrix");
         prefix64.add("ZMatrix");
@@ -93,6 +99,9 @@ public class GenerateJavaCode32 extends GenerateCode32 {
         converter.replacePattern("DScalar", "FScalar");
         converter.replacePattern("DUnary", "FUnary");
         converter.replacePattern("DBinary", "FBinary");
+        converter.replacePattern("DMonoid", "FMonoid");
+        converter.replacePattern("DSemiRing", "FSemiRing");
+        converter.replacePattern("DMask", "FMask");
         converter.replacePattern("ConvertD", "ConvertF");
         converter.replacePattern("DGrowArray", "FGrowArray");
         converter.replacePattern("DMatrix", "FMatrix");
@@ -133,6 +142,7 @@ public class GenerateJavaCode32 extends GenerateCode32 {
                 "main/ejml-core/test/org/ejml/data",
                 "main/ejml-core/src/org/ejml/ops",
                 "main/ejml-core/test/org/ejml/ops",
+                "main/ejml-core/src/org/ejml/masks",
                 "main/ejml-experimental/src/org/ejml/dense/row/decomposition/bidiagonal/"
         };
 
@@ -116,6 +116,21 @@ public class UtilEjml {
         return a;
     }
 
+    /**
+     * If the input matrix is null a new matrix is created and returned. If it exists it will be reshaped and returned.
+     * @param a (Input/Output) matrix which is to be checked. Can be null.
+     * @param rows Desired number of rows
+     * @param cols Desired number of cols
+     * @return modified matrix or new matrix
+     */
+    public static BMatrixPacked reshapeOrDeclare(@Nullable BMatrixPacked a , int rows, int cols ) {
+        if( a == null )
+            return new BMatrixPacked(rows,cols);
+        else if( a.numRows != rows || a.numCols != cols )
+            a.reshape(rows,cols);
+        return a;
+    }
+
     /**
      * If the input matrix is null a new matrix is created and returned. If it exists it will be reshaped and returned.
      * @param target (Input/Output) matrix which is to be checked. Can be null.
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.concurrency;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ * Central location for settings related to concurrent (multi-threaded) algorithms. All threads are run inside
+ * of a single {@link ForkJoinPool} which can be resized with {@link #setMaxThreads(int)}.
+ * </p>
+ *
+ * <p>
+ * Loops are split into contiguous blocks. The blocks are always the same for the same input so results
+ * of reductions are deterministic.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class EjmlConcurrency {
+    /**
+     * If the number of elements is less than this then it's not worth the overhead of launching threads
+     */
+    public static int ELEMENT_THRESHOLD = 50_000;
+
+    // If false then all loops are run in the calling thread
+    private static boolean concurrent = true;
+
+    private static ForkJoinPool pool = new ForkJoinPool();
+
+    /**
+     * Turns concurrent algorithms on or off globally
+     */
+    public static void setConcurrent( boolean concurrent ) {
+        EjmlConcurrency.concurrent = concurrent;
+    }
+
+    /**
+     * Returns true if concurrent algorithms can use more than one thread
+     */
+    public static boolean isConcurrent() {
+        return concurrent && pool.getParallelism() > 1;
+    }
+
+    /**
+     * Returns true if an operation with the specified number of elements should use threads
+     */
+    public static boolean useConcurrent( int numElements ) {
+        return isConcurrent() && numElements >= ELEMENT_THRESHOLD;
+    }
+
+    /**
+     * Changes the maximum number of threads which can be used
+     */
+    public static void setMaxThreads( int maxThreads ) {
+        if( maxThreads <= 0 )
+            throw new IllegalArgumentException("Must be at least one thread");
+        if( maxThreads == pool.getParallelism() )
+            return;
+        ForkJoinPool old = pool;
+        pool = new ForkJoinPool(maxThreads);
+        old.shutdown();
+    }
+
+    public static int getMaxThreads() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Number of blocks a loop with this many elements will be split into. Each block will have at least
+     * minBlock elements.
+     */
+    public static int computeNumberOfBlocks( int start , int endExclusive , int minBlock ) {
+        int length = endExclusive-start;
+        if( length <= 0 )
+            return 0;
+        if( !isConcurrent() )
+            return 1;
+        int blocks = Math.min(pool.getParallelism(), length/Math.max(1,minBlock));
+        return Math.max(1,blocks);
+    }
+
+    /**
+     * Concurrent for loop where each index is processed independently.
+     */
+    public static void loopFor( int start , int endExclusive , IntConsumer consumer ) {
+        if( !isConcurrent() || endExclusive-start <= 1 ) {
+            for (int i = start; i < endExclusive; i++) {
+                consumer.accept(i);
+            }
+            return;
+        }
+        run(() -> IntStream.range(start,endExclusive).parallel().forEach(consumer));
+    }
+
+    /**
+     * Splits the loop into contiguous blocks with one block per thread. Each block has at least minBlock elements.
+     */
+    public static void loopBlocks( int start , int endExclusive , int minBlock , IntRangeConsumer consumer ) {
+        final int blocks = computeNumberOfBlocks(start,endExclusive,minBlock);
+        if( blocks <= 1 ) {
+            if( endExclusive > start )
+                consumer.accept(start,endExclusive);
+            return;
+        }
+        run(() -> IntStream.range(0,blocks).parallel().forEach(block ->
+                consumer.accept(blockStart(start,endExclusive,blocks,block),
+                        blockStart(start,endExclusive,blocks,block+1))));
+    }
+
+    /**
+     * Splits the loop into contiguous blocks with one block per thread. Each block is given its own workspace.
+     * The workspace list is grown as needed using the factory and element 'i' is always used by block 'i'.
+     * After the loop the partial results in the first {@link #computeNumberOfBlocks} elements can be combined.
+     *
+     * @return Number of blocks which were processed
+     */
+    public static <T> int loopBlocks( int start , int endExclusive , int minBlock ,
+                                      List<T> workspace , Supplier<T> factory ,
+                                      IntRangeObjectConsumer<T> consumer ) {
+        final int blocks = computeNumberOfBlocks(start,endExclusive,minBlock);
+        while( workspace.size() < blocks ) {
+            workspace.add(factory.get());
+        }
+        if( blocks <= 1 ) {
+            if( blocks == 1 )
+                consumer.accept(workspace.get(0),start,endExclusive);
+            return blocks;
+        }
+        run(() -> IntStream.range(0,blocks).parallel().forEach(block ->
+                consumer.accept(workspace.get(block),
+                        blockStart(start,endExclusive,blocks,block),
+                        blockStart(start,endExclusive,blocks,block+1))));
+        return blocks;
+    }
+
+    private static int blockStart( int start , int endExclusive , int blocks , int block ) {
+        return start + (int)((long)(endExclusive-start)*block/blocks);
+    }
+
+    /**
+     * Runs the task inside the pool and waits for it to finish. Any tasks forked by it will also run inside the pool.
+     */
+    public static void run( Runnable task ) {
+        if( ForkJoinTask.getPool() == pool ) {
+            // already inside of the pool, avoid waiting on ourselves
+            task.run();
+        } else {
+            pool.submit(task).join();
+        }
+    }
+}
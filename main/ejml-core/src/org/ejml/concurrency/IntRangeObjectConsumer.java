@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.concurrency;
+
+/**
+ * Processes a range of indexes with a workspace that's only used by the thread processing the range.
+ *
+ * @author Peter Abeles
+ */
+@FunctionalInterface
+public interface IntRangeObjectConsumer<T> {
+    /**
+     * @param workspace Workspace which belongs to this block
+     * @param idx0 First index, inclusive
+     * @param idx1 Last index, exclusive
+     */
+    void accept( T workspace , int idx0 , int idx1 );
+}
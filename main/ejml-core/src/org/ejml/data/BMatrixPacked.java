@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.data;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Dense matrix of boolean values where each element is stored as a single bit, 64 elements to a long.
+ * Compared to {@link BMatrixRMaj} it uses 1/8 the memory and logical operations are applied to 64 elements at once.
+ * </p>
+ *
+ * <p>
+ * Each row starts at the beginning of a word and takes up {@link #wordsPerRow} words. Column j of a row is bit
+ * (j % 64) of word (j / 64), counting from the least significant bit. Bits past the last column in a row are
+ * always zero, which allows whole words to be counted and compared.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class BMatrixPacked implements ReshapeMatrix {
+    /**
+     * Bits for each row packed into words
+     */
+    public long[] data;
+    /**
+     * Number of rows in the matrix.
+     */
+    public int numRows;
+    /**
+     * Number of columns in the matrix.
+     */
+    public int numCols;
+    /**
+     * Number of words used to store each row
+     */
+    public int wordsPerRow;
+
+    public BMatrixPacked( int numRows , int numCols ) {
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.wordsPerRow = wordsPerRow(numCols);
+        this.data = new long[numRows*wordsPerRow];
+    }
+
+    /**
+     * Creates a packed copy of the matrix
+     */
+    public BMatrixPacked( BMatrixRMaj original ) {
+        this(original.numRows, original.numCols);
+        set(original);
+    }
+
+    /**
+     * Number of words needed to store a row with this many columns
+     */
+    public static int wordsPerRow( int numCols ) {
+        return (numCols + 63) >>> 6;
+    }
+
+    /**
+     * Mask for the bits in the last word of a row which are inside the matrix
+     */
+    public long lastWordMask() {
+        int remainder = numCols & 63;
+        return remainder == 0 ? -1L : (1L << remainder) - 1;
+    }
+
+    /**
+     * Number of words which are in use
+     */
+    public int getNumWords() {
+        return numRows*wordsPerRow;
+    }
+
+    public int getNumElements() {
+        return numRows*numCols;
+    }
+
+    /**
+     * Sets every element in the matrix to the specified value
+     * @param value new value of every element
+     */
+    public void fill( boolean value ) {
+        if( !value || wordsPerRow == 0 ) {
+            zero();
+            return;
+        }
+        long mask = lastWordMask();
+        for (int row = 0; row < numRows; row++) {
+            int index = row*wordsPerRow;
+            Arrays.fill(data, index, index+wordsPerRow, -1L);
+            data[index+wordsPerRow-1] = mask;
+        }
+    }
+
+    public boolean get( int row , int col ) {
+        if( !isInBounds(row,col))
+            throw new IllegalArgumentException("Out of matrix bounds. "+row+" "+col);
+        return unsafe_get(row, col);
+    }
+
+    public void set( int row , int col , boolean value ) {
+        if( !isInBounds(row,col))
+            throw new IllegalArgumentException("Out of matrix bounds. "+row+" "+col);
+        unsafe_set(row, col, value);
+    }
+
+    public boolean unsafe_get( int row , int col ) {
+        return (data[row*wordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+    }
+
+    public void unsafe_set( int row , int col , boolean value ) {
+        int index = row*wordsPerRow + (col >>> 6);
+        if( value )
+            data[index] |= 1L << col;
+        else
+            data[index] &= ~(1L << col);
+    }
+
+    /**
+     * Determines if the specified element is inside the bounds of the Matrix.
+     *
+     * @param row The element's row.
+     * @param col The element's column.
+     * @return True if it is inside the matrices bound, false otherwise.
+     */
+    public boolean isInBounds( int row , int col ) {
+        return( col >= 0 && col < numCols && row >= 0 && row < numRows );
+    }
+
+    /**
+     * Returns the total number of elements which are true.
+     * @return number of elements which are set to true
+     */
+    public int sum() {
+        int total = 0;
+        int N = getNumWords();
+        for (int i = 0; i < N; i++) {
+            total += Long.bitCount(data[i]);
+        }
+        return total;
+    }
+
+    /**
+     * Changes the shape of the matrix. After being reshaped every element is false.
+     */
+    @Override
+    public void reshape( int numRows , int numCols ) {
+        int wordsPerRow = wordsPerRow(numCols);
+        int N = numRows*wordsPerRow;
+        if( data.length < N ) {
+            data = new long[N];
+        } else {
+            Arrays.fill(data, 0, N, 0);
+        }
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.wordsPerRow = wordsPerRow;
+    }
+
+    @Override
+    public int getNumRows() {
+        return numRows;
+    }
+
+    @Override
+    public int getNumCols() {
+        return numCols;
+    }
+
+    @Override
+    public void zero() {
+        Arrays.fill(data, 0, getNumWords(), 0);
+    }
+
+    @Override
+    public <T extends Matrix> T copy() {
+        BMatrixPacked ret = new BMatrixPacked(numRows,numCols);
+        ret.set(this);
+        return (T)ret;
+    }
+
+    /**
+     * Copies a {@link BMatrixPacked} or {@link BMatrixRMaj}
+     */
+    @Override
+    public void set( Matrix original ) {
+        if( original instanceof BMatrixRMaj ) {
+            BMatrixRMaj orig = (BMatrixRMaj)original;
+            reshape(orig.numRows, orig.numCols);
+            for (int row = 0; row < numRows; row++) {
+                int indexSrc = row*numCols;
+                int indexDst = row*wordsPerRow;
+                for (int col = 0; col < numCols; col++) {
+                    if( orig.data[indexSrc+col] )
+                        data[indexDst + (col >>> 6)] |= 1L << col;
+                }
+            }
+        } else {
+            BMatrixPacked orig = (BMatrixPacked)original;
+            if( orig == this )
+                return;
+            reshape(orig.numRows, orig.numCols);
+            System.arraycopy(orig.data, 0, data, 0, orig.getNumWords());
+        }
+    }
+
+    /**
+     * Copies the elements into a {@link BMatrixRMaj}, which is reshaped
+     */
+    public void get( BMatrixRMaj output ) {
+        output.reshape(numRows, numCols);
+        for (int row = 0; row < numRows; row++) {
+            int indexDst = row*numCols;
+            for (int col = 0; col < numCols; col++) {
+                output.data[indexDst+col] = unsafe_get(row, col);
+            }
+        }
+    }
+
+    @Override
+    public void print() {
+        System.out.println("Type = binary packed , numRows = "+numRows+" , numCols = "+numCols);
+        for (int row = 0; row < numRows; row++) {
+            for (int col = 0; col < numCols; col++) {
+                if ( unsafe_get(row, col)) {
+                    System.out.print("+");
+                } else {
+                    System.out.print("-");
+                }
+            }
+            System.out.println();
+        }
+    }
+
+    @Override
+    public void print( String format ) {
+        print();
+    }
+
+    @Override
+    public BMatrixPacked createLike() {
+        return new BMatrixPacked(numRows,numCols);
+    }
+
+    @Override
+    public BMatrixPacked create( int numRows , int numCols ) {
+        return new BMatrixPacked(numRows,numCols);
+    }
+
+    @Override
+    public MatrixType getType() {
+        return MatrixType.UNSPECIFIED;
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.data;
+
+import org.ejml.MatrixDimensionException;
+import org.ejml.ops.MatrixIO;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * <p>
+ * Base class for dense row-major matrices which are stored outside of a Java array. The elements are split
+ * across several {@link DoubleBuffer} chunks, each containing 2<sup>shift</sup> elements, and are addressed
+ * with a long index. This removes the 2<sup>31</sup> element limit imposed by {@link DMatrixD1}.
+ * </p>
+ *
+ * <p>
+ * Element access through get/set is slow compared to an array. Algorithms should copy blocks onto the heap
+ * using {@link #getRows} or {@link #getBlock} and work on them there.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+@SuppressWarnings("unchecked")
+public abstract class DMatrixChunked implements DMatrix {
+    protected int numRows;
+    protected int numCols;
+
+    // the elements are split into chunks with 2^shift elements each
+    protected int shift;
+    protected long mask;
+    protected DoubleBuffer[] chunks = new DoubleBuffer[0];
+
+    protected DMatrixChunked( int chunkShift ) {
+        if( chunkShift < 0 || (1L << chunkShift)*Double.BYTES > Integer.MAX_VALUE )
+            throw new IllegalArgumentException("Invalid chunk shift "+chunkShift);
+        this.shift = chunkShift;
+        this.mask = (1L << chunkShift)-1;
+    }
+
+    /**
+     * Returns the value of the element at the specified row-major index
+     */
+    public double get( long index ) {
+        return chunks[(int)(index >> shift)].get((int)(index & mask));
+    }
+
+    /**
+     * Sets the value of the element at the specified row-major index
+     */
+    public void set( long index , double value ) {
+        chunks[(int)(index >> shift)].put((int)(index & mask), value);
+    }
+
+    @Override
+    public double get( int row , int col ) {
+        if( row < 0 || row >= numRows || col < 0 || col >= numCols )
+            throw new IllegalArgumentException("Specified element is out of bounds: "+row+" "+col);
+        return get((long)row*numCols + col);
+    }
+
+    @Override
+    public double unsafe_get( int row , int col ) {
+        return get((long)row*numCols + col);
+    }
+
+    @Override
+    public void set( int row , int col , double val ) {
+        if( row < 0 || row >= numRows || col < 0 || col >= numCols )
+            throw new IllegalArgumentException("Specified element is out of bounds: "+row+" "+col);
+        set((long)row*numCols + col, val);
+    }
+
+    @Override
+    public void unsafe_set( int row , int col , double val ) {
+        set((long)row*numCols + col, val);
+    }
+
+    /**
+     * Copies elements, in row-major order, into an array using bulk transfers.
+     *
+     * @param index Row-major index of the first element
+     * @param dst Array the elements are written into
+     * @param offset Location in dst of the first element
+     * @param length Number of elements to copy
+     */
+    public void get( long index , double[] dst , int offset , int length ) {
+        while( length > 0 ) {
+            DoubleBuffer chunk = chunks[(int)(index >> shift)].duplicate();
+            int start = (int)(index & mask);
+            int n = Math.min(length, chunk.limit()-start);
+            chunk.position(start);
+            chunk.get(dst, offset, n);
+            index += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Copies elements, in row-major order, from an array into the matrix using bulk transfers.
+     *
+     * @param index Row-major index of the first element
+     * @param src Array the elements are read from
+     * @param offset Location in src of the first element
+     * @param length Number of elements to copy
+     */
+    public void set( long index , double[] src , int offset , int length ) {
+        while( length > 0 ) {
+            DoubleBuffer chunk = chunks[(int)(index >> shift)].duplicate();
+            int start = (int)(index & mask);
+            int n = Math.min(length, chunk.limit()-start);
+            chunk.position(start);
+            chunk.put(src, offset, n);
+            index += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Copies rows row0 to row1-1 into a heap matrix.
+     *
+     * @param row0 First row, inclusive
+     * @param row1 Last row, exclusive
+     * @param output Storage for the rows. Is reshaped.
+     * @return The rows
+     */
+    public DMatrixRMaj getRows( int row0 , int row1 , DMatrixRMaj output ) {
+        if( row0 < 0 || row1 > numRows || row0 > row1 )
+            throw new IllegalArgumentException("Invalid row range: "+row0+" "+row1);
+        output.reshape(row1-row0, numCols);
+        get((long)row0*numCols, output.data, 0, output.getNumElements());
+        return output;
+    }
+
+    /**
+     * Copies a rectangular block into a heap matrix. One bulk transfer is done for each row.
+     *
+     * @param row0 First row, inclusive
+     * @param row1 Last row, exclusive
+     * @param col0 First column, inclusive
+     * @param col1 Last column, exclusive
+     * @param output Storage for the block. Is reshaped.
+     * @return The block
+     */
+    public DMatrixRMaj getBlock( int row0 , int row1 , int col0 , int col1 , DMatrixRMaj output ) {
+        if( row0 < 0 || row1 > numRows || row0 > row1 || col0 < 0 || col1 > numCols || col0 > col1 )
+            throw new IllegalArgumentException("Invalid block: "+row0+" "+row1+" "+col0+" "+col1);
+        int width = col1-col0;
+        output.reshape(row1-row0, width);
+        for (int row = row0; row < row1; row++) {
+            get((long)row*numCols + col0, output.data, (row-row0)*width, width);
+        }
+        return output;
+    }
+
+    /**
+     * Copies a heap matrix into this matrix with its top-left corner at (row0, col0)
+     */
+    public void setBlock( int row0 , int col0 , DMatrixRMaj src ) {
+        if( row0 < 0 || col0 < 0 || row0 + src.numRows > numRows || col0 + src.numCols > numCols )
+            throw new IllegalArgumentException("Block doesn't fit inside this matrix");
+        for (int row = 0; row < src.numRows; row++) {
+            set((long)(row0+row)*numCols + col0, src.data, row*src.numCols, src.numCols);
+        }
+    }
+
+    /**
+     * Copies a heap matrix into the rows starting at row0
+     */
+    public void setRows( int row0 , DMatrixRMaj src ) {
+        if( src.numCols != numCols || row0 < 0 || row0 + src.numRows > numRows )
+            throw new IllegalArgumentException("Rows don't fit inside this matrix");
+        set((long)row0*numCols, src.data, 0, src.getNumElements());
+    }
+
+    @Override
+    public int getNumRows() {
+        return numRows;
+    }
+
+    @Override
+    public int getNumCols() {
+        return numCols;
+    }
+
+    /**
+     * Returns the number of elements as a long, since it can exceed the size of an integer
+     */
+    public long getNumElementsLong() {
+        return (long)numRows*numCols;
+    }
+
+    /**
+     * Number of elements in the matrix.
+     *
+     * @throws IllegalArgumentException if the number of elements can't be stored in an integer.
+     * @see #getNumElementsLong()
+     */
+    @Override
+    public int getNumElements() {
+        long N = getNumElementsLong();
+        if( N > Integer.MAX_VALUE )
+            throw new IllegalArgumentException("Number of elements exceeds the size of an integer");
+        return (int)N;
+    }
+
+    @Override
+    public void zero() {
+        for( DoubleBuffer chunk : chunks ) {
+            for (int i = 0; i < chunk.limit(); i++) {
+                chunk.put(i, 0);
+            }
+        }
+    }
+
+    /**
+     * Copies the matrix into a {@link DMatrixRMaj} on the heap. Only possible if it has fewer than
+     * 2<sup>31</sup> elements.
+     */
+    public DMatrixRMaj toRMaj() {
+        return getRows(0, numRows, new DMatrixRMaj(numRows, numCols));
+    }
+
+    @Override
+    public void set( Matrix original ) {
+        if( original.getNumRows() != numRows || original.getNumCols() != numCols )
+            throw new MatrixDimensionException("Shapes must match");
+
+        if( original instanceof DMatrixRMaj ) {
+            setRows(0, (DMatrixRMaj)original);
+        } else if( original instanceof DMatrixChunked ) {
+            DMatrixChunked src = (DMatrixChunked)original;
+            long N = getNumElementsLong();
+            double[] work = new double[(int)Math.min(N, 1 << 16)];
+            for (long index = 0; index < N; index += work.length) {
+                int length = (int)Math.min(work.length, N-index);
+                src.get(index, work, 0, length);
+                set(index, work, 0, length);
+            }
+        } else {
+            DMatrix m = (DMatrix)original;
+            for (int row = 0; row < numRows; row++) {
+                for (int col = 0; col < numCols; col++) {
+                    unsafe_set(row, col, m.get(row, col));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void print() {
+        MatrixIO.print(System.out, this);
+    }
+
+    @Override
+    public void print( String format ) {
+        MatrixIO.print(System.out, this, format);
+    }
+
+    @Override
+    public MatrixType getType() {
+        return MatrixType.UNSPECIFIED;
+    }
+}
@@ -21,6 +21,10 @@ package org.ejml.data;
 import org.ejml.UtilEjml;
 import org.ejml.ops.MatrixIO;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 /**
  * A generic abstract class for matrices whose data is stored in a single 1D array of doubles.  The
  * format of the elements in this array is not specified.  For example row major, column major,
@@ -284,4 +288,25 @@ public abstract class DMatrixD1 implements ReshapeMatrix, DMatrix {
     public void setNumCols(int numCols) {
         this.numCols = numCols;
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes the shape and only the elements which are in use. The data array field is written as null so that
+     * older versions, which used the default serialization, can be recognized when reading.
+     */
+    private void writeObject( ObjectOutputStream out ) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("numRows", numRows);
+        fields.put("numCols", numCols);
+        fields.put("data", null);
+        out.writeFields();
+        MatrixSerialization.writeDoubles(out, data, numRows*numCols);
+    }
+
+    private void readObject( ObjectInputStream in ) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        numRows = fields.get("numRows", 0);
+        numCols = fields.get("numCols", 0);
+        double[] data = (double[])fields.get("data", null);
+        this.data = data != null ? data : MatrixSerialization.readDoubles(in);
+    }
+}
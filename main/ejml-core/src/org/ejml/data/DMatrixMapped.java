@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.data;
+
+import org.ejml.ops.BinaryMatrixIO;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>
+ * Dense row-major matrix which is stored in a memory-mapped file instead of on the Java heap. The operating
+ * system pages the data in and out as needed, so the matrix can be much larger than the available memory.
+ * Elements are addressed with a long index, see {@link DMatrixChunked}. Each chunk is a separate mapping
+ * since a single mapping is limited to 2 GB.
+ * </p>
+ *
+ * <p>
+ * The file uses the same format as {@link BinaryMatrixIO} for a row-major real matrix without a checksum.
+ * Kernels which stream through the matrix, such as matrix-vector products and Gram matrix accumulation, are
+ * provided by ChunkedOps_DDRM in the dense module.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+@SuppressWarnings("unchecked")
+public class DMatrixMapped extends DMatrixChunked implements Closeable {
+    /**
+     * Default number of elements in each mapping is 2<sup>shift</sup>
+     */
+    public static final int DEFAULT_CHUNK_SHIFT = 26;
+
+    private boolean writable;
+    private MappedByteBuffer[] mappings;
+
+    /**
+     * Opens an existing file in read-only mode
+     */
+    public static DMatrixMapped open( Path path ) throws IOException {
+        return open(path, false, DEFAULT_CHUNK_SHIFT);
+    }
+
+    /**
+     * Opens an existing file.
+     *
+     * @param path Path to the file
+     * @param writable If true the file is mapped read-write and changes are written back to the file
+     * @param chunkShift Each mapping will contain 2<sup>chunkShift</sup> elements
+     */
+    public static DMatrixMapped open( Path path , boolean writable , int chunkShift ) throws IOException {
+        try (FileChannel channel = writable ?
+                FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE) :
+                FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer bytes = ByteBuffer.allocate(BinaryMatrixIO.HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+            while( bytes.hasRemaining() ) {
+                if( channel.read(bytes) < 0 )
+                    throw new IOException("File is too short to contain a header");
+            }
+            bytes.flip();
+            BinaryMatrixIO.Header header = BinaryMatrixIO.Header.decode(bytes);
+            if( header.storage != BinaryMatrixIO.STORAGE_ROW_MAJOR || header.isComplex() || header.isCompressed() )
+                throw new IOException("Must be an uncompressed real row-major matrix");
+            if( header.precision != Double.BYTES )
+                throw new IOException("Unexpected precision "+header.precision);
+            if( channel.size() < BinaryMatrixIO.HEADER_LENGTH + header.payloadLength )
+                throw new IOException("File is truncated");
+
+            return new DMatrixMapped(channel, header.numRows, header.numCols, writable, chunkShift);
+        }
+    }
+
+    /**
+     * Creates a new file, filled with zeros, and maps it in read-write mode. If the file already exists it's
+     * overwritten.
+     */
+    public static DMatrixMapped create( Path path , int numRows , int numCols ) throws IOException {
+        return create(path, numRows, numCols, DEFAULT_CHUNK_SHIFT);
+    }
+
+    /**
+     * Creates a new file, filled with zeros, and maps it in read-write mode.
+     *
+     * @param chunkShift Each mapping will contain 2<sup>chunkShift</sup> elements
+     */
+    public static DMatrixMapped create( Path path , int numRows , int numCols , int chunkShift )
+            throws IOException {
+        if( numRows < 0 || numCols < 0 )
+            throw new IllegalArgumentException("Negative shape");
+
+        BinaryMatrixIO.Header header = new BinaryMatrixIO.Header();
+        header.storage = BinaryMatrixIO.STORAGE_ROW_MAJOR;
+        header.precision = Double.BYTES;
+        header.numRows = numRows;
+        header.numCols = numCols;
+        header.payloadLength = (long)numRows*numCols*Double.BYTES;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bytes = ByteBuffer.allocate(BinaryMatrixIO.HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+            header.encode(bytes);
+            bytes.flip();
+            while( bytes.hasRemaining() )
+                channel.write(bytes);
+
+            return new DMatrixMapped(channel, numRows, numCols, true, chunkShift);
+        }
+    }
+
+    private DMatrixMapped( FileChannel channel , int numRows , int numCols , boolean writable , int chunkShift )
+            throws IOException {
+        super(chunkShift);
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.writable = writable;
+
+        long total = getNumElementsLong();
+        int numChunks = (int)((total + mask) >> shift);
+        chunks = new DoubleBuffer[numChunks];
+        mappings = new MappedByteBuffer[numChunks];
+
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        for (int i = 0; i < numChunks; i++) {
+            long first = (long)i << shift;
+            long length = Math.min(mask+1, total-first);
+            mappings[i] = channel.map(mode, BinaryMatrixIO.HEADER_LENGTH + first*Double.BYTES,
+                    length*Double.BYTES);
+            mappings[i].order(ByteOrder.LITTLE_ENDIAN);
+            chunks[i] = mappings[i].asDoubleBuffer();
+        }
+    }
+
+    /**
+     * Writes any changes back to the file
+     */
+    public void flush() {
+        if( writable ) {
+            for( MappedByteBuffer m : mappings ) {
+                m.force();
+            }
+        }
+    }
+
+    /**
+     * Flushes changes and releases references to the mappings. The memory is returned to the operating system
+     * once the mappings are garbage collected. The matrix can't be used after this is called.
+     */
+    @Override
+    public void close() {
+        flush();
+        chunks = new DoubleBuffer[0];
+        mappings = new MappedByteBuffer[0];
+        numRows = numCols = 0;
+    }
+
+    public boolean isWritable() {
+        return writable;
+    }
+
+    /**
+     * Creates a writable copy of this matrix which is mapped to a new temporary file. The file is deleted
+     * when the JVM exits. Use {@link #toRMaj()} to copy it onto the heap instead.
+     */
+    @Override
+    public <T extends Matrix> T copy() {
+        try {
+            Path path = Files.createTempFile("ejml", ".bin");
+            path.toFile().deleteOnExit();
+            DMatrixMapped out = create(path, numRows, numCols, shift);
+            out.set(this);
+            return (T)out;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns a {@link DMatrixRMaj} on the heap with the same shape
+     */
+    @Override
+    public <T extends Matrix> T createLike() {
+        return (T)new DMatrixRMaj(numRows, numCols);
+    }
+
+    /**
+     * Returns a {@link DMatrixRMaj} on the heap with the specified shape
+     */
+    @Override
+    public <T extends Matrix> T create( int numRows , int numCols ) {
+        return (T)new DMatrixRMaj(numRows, numCols);
+    }
+}
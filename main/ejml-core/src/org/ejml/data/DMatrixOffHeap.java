@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.data;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+/**
+ * <p>
+ * Dense row-major matrix which is stored in direct buffers outside of the Java heap. This avoids placing
+ * multi-gigabyte arrays under the control of the garbage collector and, since elements are addressed with a
+ * long index, allows for more than 2<sup>31</sup> elements. See {@link DMatrixChunked}.
+ * </p>
+ *
+ * <p>
+ * Memory is allocated when the matrix is created or grown by {@link #reshape}. Call {@link #release()} once
+ * the matrix is no longer needed so that the buffers can be reclaimed as soon as possible.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+@SuppressWarnings("unchecked")
+public class DMatrixOffHeap extends DMatrixChunked implements ReshapeMatrix, Closeable {
+    /**
+     * Default number of elements in each chunk is 2<sup>shift</sup>
+     */
+    public static final int DEFAULT_CHUNK_SHIFT = 24;
+
+    // number of elements which can be stored without allocating more memory
+    private long capacity;
+
+    public DMatrixOffHeap( int numRows , int numCols ) {
+        this(numRows, numCols, DEFAULT_CHUNK_SHIFT);
+    }
+
+    /**
+     * Creates a new matrix with every element set to zero
+     *
+     * @param chunkShift Each chunk will contain 2<sup>chunkShift</sup> elements
+     */
+    public DMatrixOffHeap( int numRows , int numCols , int chunkShift ) {
+        super(chunkShift);
+        reshape(numRows, numCols);
+    }
+
+    /**
+     * Changes the shape of the matrix. If more memory is needed, additional chunks are allocated. The
+     * value of existing elements is undefined after this call.
+     */
+    @Override
+    public void reshape( int numRows , int numCols ) {
+        if( numRows < 0 || numCols < 0 )
+            throw new IllegalArgumentException("Negative shape");
+        long total = (long)numRows*numCols;
+        if( total > capacity ) {
+            int numChunks = (int)((total + mask) >> shift);
+            DoubleBuffer[] larger = new DoubleBuffer[numChunks];
+            System.arraycopy(chunks, 0, larger, 0, chunks.length);
+
+            // the last existing chunk might be partial. Replace it with a full chunk
+            int first = chunks.length;
+            if( first > 0 && chunks[first-1].capacity() != mask+1 )
+                first--;
+            for (int i = first; i < numChunks; i++) {
+                long length = Math.min(mask+1, total-((long)i << shift));
+                larger[i] = ByteBuffer.allocateDirect((int)length*Double.BYTES).
+                        order(ByteOrder.nativeOrder()).asDoubleBuffer();
+            }
+            chunks = larger;
+            capacity = total;
+        }
+        this.numRows = numRows;
+        this.numCols = numCols;
+    }
+
+    /**
+     * Releases all the memory and reshapes the matrix to 0 by 0. Direct buffers are freed by the JVM once
+     * they are no longer referenced, so no other references to this matrix's buffers should be kept.
+     */
+    public void release() {
+        chunks = new DoubleBuffer[0];
+        capacity = 0;
+        numRows = numCols = 0;
+    }
+
+    /**
+     * Same as {@link #release()}
+     */
+    @Override
+    public void close() {
+        release();
+    }
+
+    /**
+     * Number of elements which can be stored without allocating more memory
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public <T extends Matrix> T createLike() {
+        return (T)new DMatrixOffHeap(numRows, numCols, shift);
+    }
+
+    @Override
+    public <T extends Matrix> T create( int numRows , int numCols ) {
+        return (T)new DMatrixOffHeap(numRows, numCols, shift);
+    }
+
+    /**
+     * Reshapes this matrix to match the original then copies its values
+     */
+    @Override
+    public void set( Matrix original ) {
+        reshape(original.getNumRows(), original.getNumCols());
+        super.set(original);
+    }
+
+    /**
+     * Creates a copy of this matrix which is also stored off the heap
+     */
+    @Override
+    public <T extends Matrix> T copy() {
+        DMatrixOffHeap out = new DMatrixOffHeap(numRows, numCols, shift);
+        out.set(this);
+        return (T)out;
+    }
+}
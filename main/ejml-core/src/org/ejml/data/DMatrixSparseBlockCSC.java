@@ -0,0 +1,657 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.data;
+
+import org.ejml.UtilEjml;
+import org.ejml.ops.MatrixIO;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * <p>Block Compressed Column (BSC) sparse matrix format. Instead of storing individual non-zero elements the
+ * matrix is broken up into a grid of blocks and only blocks which contain non-zero elements are stored.
+ * Each block is stored as a small dense row-major matrix. This is intended for problems where the non-zero
+ * elements come in dense sub-matrices, e.g. the Hessian in bundle adjustment, and avoids storing a row index
+ * for every element.</p>
+ *
+ * <p>
+ * Format:<br>
+ * The grid is defined by {@link #row_blocks} and {@link #col_blocks}. Block row 'i' contains matrix rows
+ * row_blocks[i] to row_blocks[i+1]-1, block columns are defined the same way. Blocks don't need to be the same size.
+ * Block rows for block column j are stored in nz_blockRows[col_idx[j]] to nz_blockRows[col_idx[j+1]-1] and
+ * are always sorted in ascending order. The values for non-zero block 'b' are stored in row-major
+ * format starting at nz_values[nz_offsets[b]].
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class DMatrixSparseBlockCSC implements DMatrixSparse {
+    /**
+     * Storage for the values inside of the non-zero blocks. Only valid up to nz_length-1.
+     */
+    public double[] nz_values = UtilEjml.ZERO_LENGTH_F64;
+    /**
+     * Number of elements in nz_values which are in use.
+     */
+    public int nz_length;
+    /**
+     * Block row that each non-zero block belongs to.
+     */
+    public int[] nz_blockRows = UtilEjml.ZERO_LENGTH_I32;
+    /**
+     * Index of the first value in nz_values for each non-zero block. Has a length of at least nz_blocks+1 and
+     * nz_offsets[nz_blocks] == nz_length.
+     */
+    public int[] nz_offsets = new int[1];
+    /**
+     * Number of non-zero blocks
+     */
+    public int nz_blocks;
+    /**
+     * Stores the range of indexes in the block lists that belong to each block column. Block column 'j'
+     * corresponds to indexes col_idx[j] to col_idx[j+1]-1, inclusive.
+     */
+    public int[] col_idx;
+
+    /**
+     * First row in each block row. Length is numBlockRows+1 with the last element being numRows.
+     */
+    public int[] row_blocks;
+    /**
+     * First column in each block column. Length is numBlockCols+1 with the last element being numCols.
+     */
+    public int[] col_blocks;
+
+    /**
+     * Number of rows in the matrix
+     */
+    public int numRows;
+    /**
+     * Number of columns in the matrix
+     */
+    public int numCols;
+    /**
+     * Number of block rows in the matrix
+     */
+    public int numBlockRows;
+    /**
+     * Number of block columns in the matrix
+     */
+    public int numBlockCols;
+
+    /**
+     * Creates a matrix where all the blocks have the same size, except the last row and column of blocks
+     * which can be smaller.
+     *
+     * @param numRows Number of rows
+     * @param numCols Number of columns
+     * @param blockRows Number of rows in a block
+     * @param blockCols Number of columns in a block
+     */
+    public DMatrixSparseBlockCSC(int numRows , int numCols , int blockRows , int blockCols ) {
+        this(uniformSizes(numRows,blockRows),uniformSizes(numCols,blockCols),0);
+    }
+
+    /**
+     * Creates a matrix with the specified block sizes
+     *
+     * @param rowSizes Number of rows in each block row
+     * @param colSizes Number of columns in each block column
+     * @param arrayLength Initial maximum number of values that can be stored
+     */
+    public DMatrixSparseBlockCSC(int[] rowSizes , int[] colSizes , int arrayLength ) {
+        col_idx = new int[colSizes.length+1];
+        row_blocks = new int[0];
+        col_blocks = new int[0];
+        reshapeBlocks(rowSizes,colSizes,arrayLength);
+    }
+
+    public DMatrixSparseBlockCSC(DMatrixSparseBlockCSC original ) {
+        this(original.getBlockRowSizes(), original.getBlockColSizes(), original.nz_length);
+        set(original);
+    }
+
+    /**
+     * Splits a length into blocks of the same size with the last block being smaller if needed
+     */
+    public static int[] uniformSizes( int length , int blockLength ) {
+        if( blockLength <= 0 )
+            throw new IllegalArgumentException("Block length must be positive");
+        int N = length/blockLength + (length%blockLength != 0 ? 1 : 0);
+        int[] sizes = new int[N];
+        Arrays.fill(sizes,blockLength);
+        if( length%blockLength != 0 )
+            sizes[N-1] = length%blockLength;
+        return sizes;
+    }
+
+    /**
+     * Changes the block structure of the matrix and removes all non-zero blocks.
+     *
+     * @param rowSizes Number of rows in each block row
+     * @param colSizes Number of columns in each block column
+     * @param arrayLength Desired minimum number of values that can be stored.
+     */
+    public void reshapeBlocks( int[] rowSizes , int[] colSizes , int arrayLength ) {
+        this.numBlockRows = rowSizes.length;
+        this.numBlockCols = colSizes.length;
+        if( row_blocks.length < numBlockRows+1 )
+            row_blocks = new int[numBlockRows+1];
+        if( col_blocks.length < numBlockCols+1 )
+            col_blocks = new int[numBlockCols+1];
+        this.numRows = sizesToIndexes(rowSizes,row_blocks);
+        this.numCols = sizesToIndexes(colSizes,col_blocks);
+
+        if( col_idx.length < numBlockCols+1 )
+            col_idx = new int[numBlockCols+1];
+        else
+            Arrays.fill(col_idx,0,numBlockCols+1,0);
+
+        growMaxLength(arrayLength,false);
+        nz_length = 0;
+        nz_blocks = 0;
+        nz_offsets[0] = 0;
+    }
+
+    private static int sizesToIndexes( int[] sizes , int[] indexes ) {
+        indexes[0] = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            if( sizes[i] <= 0 )
+                throw new IllegalArgumentException("Block sizes must be positive");
+            indexes[i+1] = indexes[i] + sizes[i];
+        }
+        return indexes[sizes.length];
+    }
+
+    /**
+     * Returns the number of rows in each block row
+     */
+    public int[] getBlockRowSizes() {
+        int[] sizes = new int[numBlockRows];
+        for (int i = 0; i < numBlockRows; i++) {
+            sizes[i] = row_blocks[i+1]-row_blocks[i];
+        }
+        return sizes;
+    }
+
+    /**
+     * Returns the number of columns in each block column
+     */
+    public int[] getBlockColSizes() {
+        int[] sizes = new int[numBlockCols];
+        for (int i = 0; i < numBlockCols; i++) {
+            sizes[i] = col_blocks[i+1]-col_blocks[i];
+        }
+        return sizes;
+    }
+
+    /**
+     * Number of rows in the specified block row
+     */
+    public int blockHeight( int blockRow ) {
+        return row_blocks[blockRow+1]-row_blocks[blockRow];
+    }
+
+    /**
+     * Number of columns in the specified block column
+     */
+    public int blockWidth( int blockCol ) {
+        return col_blocks[blockCol+1]-col_blocks[blockCol];
+    }
+
+    /**
+     * Returns true if the row and column blocks are identical. Required for operations such as
+     * a Cholesky decomposition.
+     */
+    public boolean isBlockSymmetric() {
+        if( numBlockRows != numBlockCols )
+            return false;
+        for (int i = 0; i <= numBlockRows; i++) {
+            if( row_blocks[i] != col_blocks[i] )
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the block row that the specified row belongs to
+     */
+    public int findBlockRow( int row ) {
+        return findBlock(row_blocks,numBlockRows,row);
+    }
+
+    /**
+     * Returns the block column that the specified column belongs to
+     */
+    public int findBlockCol( int col ) {
+        return findBlock(col_blocks,numBlockCols,col);
+    }
+
+    private static int findBlock( int[] indexes , int numBlocks , int value ) {
+        int lo = 0, hi = numBlocks-1;
+        while( lo < hi ) {
+            int mid = (lo+hi+1)>>>1;
+            if( indexes[mid] <= value )
+                lo = mid;
+            else
+                hi = mid-1;
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the index of the non-zero block at the specified block coordinate or -1 if the block isn't
+     * part of the structure.
+     *
+     * @param blockRow block row coordinate
+     * @param blockCol block column coordinate
+     * @return index of the block or -1
+     */
+    public int nz_block_index( int blockRow , int blockCol ) {
+        int lo = col_idx[blockCol];
+        int hi = col_idx[blockCol+1]-1;
+        while( lo <= hi ) {
+            int mid = (lo+hi)>>>1;
+            int r = nz_blockRows[mid];
+            if( r < blockRow )
+                lo = mid+1;
+            else if( r > blockRow )
+                hi = mid-1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a block to the structure with all of its values set to zero. If the block already exists then
+     * nothing is modified.
+     *
+     * @param blockRow block row coordinate
+     * @param blockCol block column coordinate
+     * @return index of the block
+     */
+    public int addBlock( int blockRow , int blockCol ) {
+        int index = nz_block_index(blockRow,blockCol);
+        if( index >= 0 )
+            return index;
+
+        int idx1 = col_idx[blockCol+1];
+        for( index = col_idx[blockCol]; index < idx1; index++ ) {
+            if( blockRow < nz_blockRows[index] )
+                break;
+        }
+
+        // if it's already at the maximum array length grow the arrays
+        int blockSize = blockHeight(blockRow)*blockWidth(blockCol);
+        if( nz_blocks >= nz_blockRows.length )
+            growMaxBlocks(nz_blocks*2+1, true);
+        if( nz_length+blockSize > nz_values.length )
+            growMaxLength(Math.max(nz_length*2,nz_length+blockSize), true);
+
+        // shift everything after the insertion point
+        int offset = nz_offsets[index];
+        System.arraycopy(nz_values,offset,nz_values,offset+blockSize,nz_length-offset);
+        Arrays.fill(nz_values,offset,offset+blockSize,0);
+        for (int i = nz_blocks; i > index; i--) {
+            nz_blockRows[i] = nz_blockRows[i-1];
+            nz_offsets[i+1] = nz_offsets[i]+blockSize;
+        }
+        nz_blockRows[index] = blockRow;
+        nz_offsets[index+1] = offset+blockSize;
+
+        for (int i = blockCol+1; i <= numBlockCols; i++) {
+            col_idx[i]++;
+        }
+        nz_blocks++;
+        nz_length += blockSize;
+
+        return index;
+    }
+
+    @Override
+    public int getNumRows() {
+        return numRows;
+    }
+
+    @Override
+    public int getNumCols() {
+        return numCols;
+    }
+
+    @Override
+    public DMatrixSparseBlockCSC copy() {
+        return new DMatrixSparseBlockCSC(this);
+    }
+
+    @Override
+    public DMatrixSparseBlockCSC createLike() {
+        return new DMatrixSparseBlockCSC(getBlockRowSizes(),getBlockColSizes(),0);
+    }
+
+    /**
+     * Creates a matrix with blocks that are the same size as the first block in this matrix.
+     */
+    @Override
+    public DMatrixSparseBlockCSC create(int numRows, int numCols) {
+        return new DMatrixSparseBlockCSC(numRows,numCols,nominalBlockHeight(),nominalBlockWidth());
+    }
+
+    @Override
+    public void set(Matrix original) {
+        DMatrixSparseBlockCSC o = (DMatrixSparseBlockCSC)original;
+        reshapeBlocks(o.getBlockRowSizes(), o.getBlockColSizes(), o.nz_length);
+        growMaxBlocks(o.nz_blocks,false);
+        this.nz_length = o.nz_length;
+        this.nz_blocks = o.nz_blocks;
+
+        System.arraycopy(o.nz_values, 0, nz_values, 0, nz_length);
+        System.arraycopy(o.nz_blockRows, 0, nz_blockRows, 0, nz_blocks);
+        System.arraycopy(o.nz_offsets, 0, nz_offsets, 0, nz_blocks+1);
+        System.arraycopy(o.col_idx, 0, col_idx, 0, numBlockCols+1);
+    }
+
+    /**
+     * Copies the block structure of orig into "this". Values are not copied.
+     *
+     * @param orig Matrix who's structure is to be copied
+     */
+    public void copyStructure( DMatrixSparseBlockCSC orig ) {
+        reshapeBlocks(orig.getBlockRowSizes(), orig.getBlockColSizes(), orig.nz_length);
+        growMaxBlocks(orig.nz_blocks,false);
+        this.nz_length = orig.nz_length;
+        this.nz_blocks = orig.nz_blocks;
+        System.arraycopy(orig.nz_blockRows, 0, nz_blockRows, 0, nz_blocks);
+        System.arraycopy(orig.nz_offsets, 0, nz_offsets, 0, nz_blocks+1);
+        System.arraycopy(orig.col_idx, 0, col_idx, 0, numBlockCols+1);
+    }
+
+    @Override
+    public void print() {
+        MatrixIO.printFancy(System.out,this,MatrixIO.DEFAULT_LENGTH);
+    }
+
+    @Override
+    public void print( String format ) {
+        MatrixIO.print(System.out,this,format);
+    }
+
+    @Override
+    public void printNonZero() {
+        String format = "%d %d "+ MatrixIO.DEFAULT_FLOAT_FORMAT+"\n";
+        System.out.println("Type = "+getClass().getSimpleName()+" , rows = "+numRows+" , cols = "+numCols
+                +" , nz_blocks = "+ nz_blocks+" , nz_length = "+ nz_length);
+
+        Iterator<CoordinateRealValue> iter = createCoordinateIterator();
+        while( iter.hasNext() ) {
+            CoordinateRealValue c = iter.next();
+            System.out.printf(format,c.row,c.col,c.value);
+        }
+    }
+
+    /**
+     * Returns true if the element is inside of a non-zero block.
+     */
+    @Override
+    public boolean isAssigned(int row, int col) {
+        return nz_index(row,col) >= 0;
+    }
+
+    /**
+     * Returns the index of the element in nz_values or -1 if it's not inside of a non-zero block.
+     */
+    public int nz_index( int row , int col ) {
+        int blockRow = findBlockRow(row);
+        int blockCol = findBlockCol(col);
+        int block = nz_block_index(blockRow,blockCol);
+        if( block < 0 )
+            return -1;
+        int width = blockWidth(blockCol);
+        return nz_offsets[block] + (row-row_blocks[blockRow])*width + col-col_blocks[blockCol];
+    }
+
+    @Override
+    public double get(int row, int col) {
+        if( row < 0 || row >= numRows || col < 0 || col >= numCols )
+            throw new IllegalArgumentException("Outside of matrix bounds");
+
+        return unsafe_get(row,col);
+    }
+
+    @Override
+    public double get(int row, int col, double fallBackValue) {
+        if( row < 0 || row >= numRows || col < 0 || col >= numCols )
+            throw new IllegalArgumentException("Outside of matrix bounds");
+
+        return unsafe_get(row,col, fallBackValue);
+    }
+
+    @Override
+    public double unsafe_get(int row, int col) {
+        return unsafe_get(row,col,0);
+    }
+
+    @Override
+    public double unsafe_get(int row, int col, double fallBackValue) {
+        int index = nz_index(row,col);
+        if( index >= 0 )
+            return nz_values[index];
+        return fallBackValue;
+    }
+
+    @Override
+    public void set(int row, int col, double val) {
+        if( row < 0 || row >= numRows || col < 0 || col >= numCols )
+            throw new IllegalArgumentException("Outside of matrix bounds");
+
+        unsafe_set(row,col,val);
+    }
+
+    /**
+     * Sets the element's value. If the element isn't inside a non-zero block a new block is added.
+     */
+    @Override
+    public void unsafe_set(int row, int col, double val) {
+        int index = nz_index(row,col);
+        if( index < 0 ) {
+            int blockRow = findBlockRow(row);
+            int blockCol = findBlockCol(col);
+            int block = addBlock(blockRow,blockCol);
+            index = nz_offsets[block] + (row-row_blocks[blockRow])*blockWidth(blockCol) + col-col_blocks[blockCol];
+        }
+        nz_values[index] = val;
+    }
+
+    /**
+     * Sets the element to zero. Blocks are never removed from the structure since other elements in the block
+     * might be non-zero.
+     */
+    @Override
+    public void remove( int row , int col ) {
+        int index = nz_index(row,col);
+        if( index >= 0 )
+            nz_values[index] = 0;
+    }
+
+    @Override
+    public void zero() {
+        Arrays.fill(col_idx,0,numBlockCols+1,0);
+        nz_length = 0;
+        nz_blocks = 0;
+    }
+
+    @Override
+    public int getNonZeroLength() {
+        return nz_length;
+    }
+
+    @Override
+    public int getNumElements() {
+        return nz_length;
+    }
+
+    /**
+     * Reshapes the matrix using blocks which are the same size as the first block in the matrix
+     */
+    @Override
+    public void reshape( int numRows , int numCols , int arrayLength ) {
+        reshapeBlocks(uniformSizes(numRows,nominalBlockHeight()),uniformSizes(numCols,nominalBlockWidth()),arrayLength);
+    }
+
+    @Override
+    public void reshape(int numRows, int numCols) {
+        reshape(numRows, numCols,0);
+    }
+
+    private int nominalBlockHeight() {
+        return numBlockRows > 0 ? blockHeight(0) : 1;
+    }
+
+    private int nominalBlockWidth() {
+        return numBlockCols > 0 ? blockWidth(0) : 1;
+    }
+
+    @Override
+    public void shrinkArrays() {
+        if( nz_length < nz_values.length ) {
+            nz_values = Arrays.copyOf(nz_values,nz_length);
+        }
+        if( nz_blocks < nz_blockRows.length ) {
+            nz_blockRows = Arrays.copyOf(nz_blockRows,nz_blocks);
+            nz_offsets = Arrays.copyOf(nz_offsets,nz_blocks+1);
+        }
+    }
+
+    /**
+     * Increases the maximum size of the values array. nz_length is not modified.
+     *
+     * @param arrayLength Desired maximum length of value data
+     * @param preserveValue If true the old values will be copied into the new array.
+     */
+    public void growMaxLength( int arrayLength , boolean preserveValue ) {
+        if( arrayLength < 0 )
+            throw new IllegalArgumentException("Negative array length. Overflow?");
+        if( arrayLength > nz_values.length ) {
+            double[] data = new double[ arrayLength ];
+            if( preserveValue )
+                System.arraycopy(nz_values, 0, data, 0, nz_length);
+            nz_values = data;
+        }
+    }
+
+    /**
+     * Increases the maximum number of non-zero blocks. nz_blocks is not modified.
+     *
+     * @param blocks Desired maximum number of blocks
+     * @param preserveValue If true the old values will be copied into the new arrays.
+     */
+    public void growMaxBlocks( int blocks , boolean preserveValue ) {
+        if( blocks > nz_blockRows.length ) {
+            int[] rows = new int[blocks];
+            int[] offsets = new int[blocks+1];
+            if( preserveValue ) {
+                System.arraycopy(nz_blockRows, 0, rows, 0, nz_blocks);
+                System.arraycopy(nz_offsets, 0, offsets, 0, nz_blocks+1);
+            }
+            nz_blockRows = rows;
+            nz_offsets = offsets;
+        }
+    }
+
+    /**
+     * Given the number of non-zero blocks in each block column and their block rows, computes col_idx, nz_blockRows
+     * and nz_offsets. nz_blocks and nz_length are set and arrays will grow if needed. Values are not initialized.
+     *
+     * @param histogram Number of blocks in each block column.
+     * @param blockRows The block row of every block, sorted and in block column order.
+     */
+    public void histogramToStructure( int[] histogram , int[] blockRows ) {
+        col_idx[0] = 0;
+        int index = 0;
+        for (int i = 1; i <= numBlockCols; i++) {
+            col_idx[i] = index += histogram[i-1];
+        }
+        nz_blocks = index;
+        growMaxBlocks(nz_blocks,false);
+
+        nz_offsets[0] = 0;
+        for (int col = 0; col < numBlockCols; col++) {
+            int width = blockWidth(col);
+            for (int i = col_idx[col]; i < col_idx[col+1]; i++) {
+                int row = blockRows[i];
+                nz_blockRows[i] = row;
+                nz_offsets[i+1] = nz_offsets[i] + blockHeight(row)*width;
+            }
+        }
+        nz_length = nz_offsets[nz_blocks];
+        growMaxLength(nz_length,false);
+    }
+
+    @Override
+    public MatrixType getType() {
+        return MatrixType.UNSPECIFIED;
+    }
+
+    @Override
+    public Iterator<CoordinateRealValue> createCoordinateIterator() {
+        return new Iterator<CoordinateRealValue>() {
+            final CoordinateRealValue coordinate = new CoordinateRealValue();
+            int blockCol = 0; // which block column it's in
+            int block = 0; // index of the block
+            int index = 0; // index inside of the block
+
+            {
+                incrementColumn();
+            }
+
+            @Override
+            public boolean hasNext() {
+                return block < nz_blocks;
+            }
+
+            @Override
+            public CoordinateRealValue next() {
+                int blockRow = nz_blockRows[block];
+                int width = blockWidth(blockCol);
+                coordinate.row = row_blocks[blockRow] + index/width;
+                coordinate.col = col_blocks[blockCol] + index%width;
+                coordinate.value = nz_values[nz_offsets[block]+index];
+                index++;
+                if( nz_offsets[block]+index >= nz_offsets[block+1] ) {
+                    index = 0;
+                    block++;
+                    incrementColumn();
+                }
+                return coordinate;
+            }
+
+            private void incrementColumn() {
+                while( blockCol+1 <= numBlockCols && block >= col_idx[blockCol+1]) {
+                    blockCol++;
+                }
+            }
+        };
+    }
+
+    @Override
+    public int getNonZeroCount() {
+        return nz_length;
+    }
+}
@@ -23,6 +23,10 @@ import org.ejml.ops.MatrixIO;
 import org.ejml.ops.SortCoupledArray_F64;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Arrays;
 import java.util.Iterator;
 
@@ -489,4 +493,44 @@ public class DMatrixSparseCSC implements DMatrixSparse {
     public int getNonZeroCount() {
         return nz_length;
     }
+
+    /**
+     * Writes the shape and only the elements which are in use. The array fields are written as null so that
+     * older versions, which used the default serialization, can be recognized when reading.
+     */
+    private void writeObject( ObjectOutputStream out ) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("numRows", numRows);
+        fields.put("numCols", numCols);
+        fields.put("nz_length", nz_length);
+        fields.put("indicesSorted", indicesSorted);
+        fields.put("nz_values", null);
+        fields.put("nz_rows", null);
+        fields.put("col_idx", null);
+        out.writeFields();
+        MatrixSerialization.writeInts(out, col_idx, numCols+1);
+        MatrixSerialization.writeInts(out, nz_rows, nz_length);
+        MatrixSerialization.writeDoubles(out, nz_values, nz_length);
+    }
+
+    private void readObject( ObjectInputStream in ) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        numRows = fields.get("numRows", 0);
+        numCols = fields.get("numCols", 0);
+        nz_length = fields.get("nz_length", 0);
+        indicesSorted = fields.get("indicesSorted", false);
+        int[] col_idx = (int[])fields.get("col_idx", null);
+        if( col_idx != null ) {
+            this.col_idx = col_idx;
+            this.nz_rows = (int[])fields.get("nz_rows", null);
+            this.nz_values = (double[])fields.get("nz_values", null);
+        } else {
+            this.col_idx = MatrixSerialization.readInts(in);
+            this.nz_rows = MatrixSerialization.readInts(in);
+            this.nz_values = MatrixSerialization.readDoubles(in);
+            if( this.col_idx.length != numCols+1 || nz_rows.length != nz_length || nz_values.length != nz_length )
+                throw new InvalidObjectException("Array lengths don't match the shape");
+        }
+    }
 }
+
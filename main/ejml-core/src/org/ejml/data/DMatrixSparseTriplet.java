@@ -20,6 +20,10 @@ package org.ejml.data;
 
 import org.ejml.ops.MatrixIO;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Iterator;
 
 /**
@@ -397,4 +401,36 @@ public class DMatrixSparseTriplet implements DMatrixSparse
     public int getNonZeroCount() {
         return nz_length;
     }
+
+    /**
+     * Writes the shape and only the elements which are in use. The storage arrays are written in bulk after
+     * the fields.
+     */
+    private void writeObject( ObjectOutputStream out ) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("numRows", numRows);
+        fields.put("numCols", numCols);
+        fields.put("nz_length", nz_length);
+        fields.put("nz_rowcol", null);
+        fields.put("nz_value", null);
+        out.writeFields();
+        MatrixSerialization.writeInts(out, nz_rowcol.data, nz_length*2);
+        MatrixSerialization.writeDoubles(out, nz_value.data, nz_length);
+    }
+
+    private void readObject( ObjectInputStream in ) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        numRows = fields.get("numRows", 0);
+        numCols = fields.get("numCols", 0);
+        nz_length = fields.get("nz_length", 0);
+        nz_rowcol = new IGrowArray();
+        nz_rowcol.data = MatrixSerialization.readInts(in);
+        nz_rowcol.length = nz_rowcol.data.length;
+        nz_value = new DGrowArray();
+        nz_value.data = MatrixSerialization.readDoubles(in);
+        nz_value.length = nz_value.data.length;
+        if( nz_rowcol.length != nz_length*2 || nz_value.length != nz_length )
+            throw new InvalidObjectException("Array lengths don't match the number of elements");
+    }
 }
+
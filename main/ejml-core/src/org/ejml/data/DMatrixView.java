@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.data;
+
+import org.ejml.MatrixDimensionException;
+import org.ejml.UtilEjml;
+import org.ejml.ops.MatrixIO;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Dense row-major matrix which is a view into an array that it doesn't own. Element (i,j) is stored at
+ * data[offset + i*stride + j], where the stride is the distance between the start of two rows, often called
+ * the leading dimension. This allows a matrix which is stored inside a larger array, such as a batch of
+ * measurements or a block of another matrix, to be used without copying it. Modifying the view modifies
+ * the array and the other way around.
+ * </p>
+ *
+ * <p>
+ * {@link #read(DoubleBuffer)} and {@link #write(DoubleBuffer)} copy the elements in bulk to and from NIO
+ * buffers. A buffer which is backed by an array can be wrapped directly with
+ * {@link #wrap(DoubleBuffer, int, int, int)}.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+@SuppressWarnings("unchecked")
+public class DMatrixView implements DMatrix {
+    /**
+     * Array the view references
+     */
+    public double[] data = UtilEjml.ZERO_LENGTH_F64;
+    /**
+     * Index of element (0,0) in data
+     */
+    public int offset;
+    /**
+     * Number of elements between the start of two consecutive rows
+     */
+    public int stride;
+
+    public int numRows;
+    public int numCols;
+
+    /**
+     * Creates a view of the array
+     *
+     * @param data Array the view references
+     * @param offset Index of element (0,0)
+     * @param numRows Number of rows in the view
+     * @param numCols Number of columns in the view
+     * @param stride Number of elements between the start of two rows. Must be at least numCols.
+     */
+    public DMatrixView( double[] data , int offset , int numRows , int numCols , int stride ) {
+        setView(data, offset, numRows, numCols, stride);
+    }
+
+    /**
+     * Creates a view of the entire matrix
+     */
+    public DMatrixView( DMatrixRMaj A ) {
+        setView(A.data, 0, A.numRows, A.numCols, A.numCols);
+    }
+
+    public DMatrixView() {}
+
+    /**
+     * Creates a view of the array. See {@link #DMatrixView(double[], int, int, int, int)}
+     */
+    public static DMatrixView wrap( double[] data , int offset , int numRows , int numCols , int stride ) {
+        return new DMatrixView(data, offset, numRows, numCols, stride);
+    }
+
+    /**
+     * Creates a view of the rows row0 &le; i &lt; row1 and columns col0 &le; j &lt; col1 inside of A
+     */
+    public static DMatrixView wrap( DMatrixRMaj A , int row0 , int row1 , int col0 , int col1 ) {
+        return new DMatrixView(A).subview(row0, row1, col0, col1);
+    }
+
+    /**
+     * Creates a view of the elements in a buffer starting at its current position. The buffer must be backed
+     * by an accessible array, e.g. created with {@link DoubleBuffer#wrap} or {@link DoubleBuffer#allocate}, and
+     * the array is referenced directly. For direct buffers use {@link #read(DoubleBuffer)} instead.
+     *
+     * @throws IllegalArgumentException If the buffer isn't backed by an array
+     */
+    public static DMatrixView wrap( DoubleBuffer buffer , int numRows , int numCols , int stride ) {
+        if( !buffer.hasArray() )
+            throw new IllegalArgumentException("The buffer is not backed by an accessible array");
+        if( numRows > 0 && (long)(numRows-1)*stride + numCols > buffer.remaining() )
+            throw new IllegalArgumentException("The buffer has too few elements remaining");
+        return new DMatrixView(buffer.array(), buffer.arrayOffset()+buffer.position(), numRows, numCols, stride);
+    }
+
+    /**
+     * Changes the array and region which is referenced by this view
+     *
+     * @see #DMatrixView(double[], int, int, int, int)
+     */
+    public void setView( double[] data , int offset , int numRows , int numCols , int stride ) {
+        if( numRows < 0 || numCols < 0 )
+            throw new IllegalArgumentException("Negative shape");
+        if( stride < numCols )
+            throw new IllegalArgumentException("Stride must be at least the number of columns");
+        if( offset < 0 || (numRows > 0 && numCols > 0 && (long)offset+(long)(numRows-1)*stride+numCols > data.length) )
+            throw new IllegalArgumentException("View extends outside of the array");
+        this.data = data;
+        this.offset = offset;
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.stride = stride;
+    }
+
+    /**
+     * Returns a view of the rows row0 &le; i &lt; row1 and columns col0 &le; j &lt; col1 inside of this view.
+     * The same array is referenced.
+     */
+    public DMatrixView subview( int row0 , int row1 , int col0 , int col1 ) {
+        if( row0 < 0 || row1 < row0 || row1 > numRows || col0 < 0 || col1 < col0 || col1 > numCols )
+            throw new IllegalArgumentException("Invalid region "+row0+" "+row1+" "+col0+" "+col1);
+        return new DMatrixView(data, offset+row0*stride+col0, row1-row0, col1-col0, stride);
+    }
+
+    /**
+     * Index of the element in the data array
+     */
+    public int getIndex( int row , int col ) {
+        return offset + row*stride + col;
+    }
+
+    /**
+     * Returns true if the rows are next to each other in the array, i.e. the elements form a single block
+     */
+    public boolean isContiguous() {
+        return stride == numCols || numRows <= 1;
+    }
+
+    /**
+     * Copies numRows*numCols elements from the buffer's current position, in row-major order, into this view.
+     * The position is advanced past the elements.
+     */
+    public void read( DoubleBuffer src ) {
+        if( src.remaining() < getNumElements() )
+            throw new IllegalArgumentException("The buffer has too few elements remaining");
+        if( isContiguous() ) {
+            src.get(data, offset, getNumElements());
+        } else {
+            for (int row = 0; row < numRows; row++) {
+                src.get(data, offset+row*stride, numCols);
+            }
+        }
+    }
+
+    /**
+     * Copies numRows*numCols elements from the buffer's current position, in row-major order, into this view.
+     * The buffer's byte order is used and its position is advanced past the elements.
+     */
+    public void read( ByteBuffer src ) {
+        read(src.asDoubleBuffer());
+        src.position(src.position()+getNumElements()*Double.BYTES);
+    }
+
+    /**
+     * Copies the elements in row-major order into the buffer starting at its current position. The position is
+     * advanced past the elements.
+     */
+    public void write( DoubleBuffer dst ) {
+        if( dst.remaining() < getNumElements() )
+            throw new IllegalArgumentException("The buffer has too little space remaining");
+        if( isContiguous() ) {
+            dst.put(data, offset, getNumElements());
+        } else {
+            for (int row = 0; row < numRows; row++) {
+                dst.put(data, offset+row*stride, numCols);
+            }
+        }
+    }
+
+    /**
+     * Copies the elements in row-major order into the buffer starting at its current position. The buffer's byte
+     * order is used and its position is advanced past the elements.
+     */
+    public void write( ByteBuffer dst ) {
+        write(dst.asDoubleBuffer());
+        dst.position(dst.position()+getNumElements()*Double.BYTES);
+    }
+
+    @Override
+    public double get( int row , int col ) {
+        if( row < 0 || row >= numRows || col < 0 || col >= numCols )
+            throw new IllegalArgumentException("Specified element is out of bounds: "+row+" "+col);
+        return data[offset + row*stride + col];
+    }
+
+    @Override
+    public double unsafe_get( int row , int col ) {
+        return data[offset + row*stride + col];
+    }
+
+    @Override
+    public void set( int row , int col , double val ) {
+        if( row < 0 || row >= numRows || col < 0 || col >= numCols )
+            throw new IllegalArgumentException("Specified element is out of bounds: "+row+" "+col);
+        data[offset + row*stride + col] = val;
+    }
+
+    @Override
+    public void unsafe_set( int row , int col , double val ) {
+        data[offset + row*stride + col] = val;
+    }
+
+    @Override
+    public int getNumElements() {
+        return numRows*numCols;
+    }
+
+    @Override
+    public int getNumRows() {
+        return numRows;
+    }
+
+    @Override
+    public int getNumCols() {
+        return numCols;
+    }
+
+    /**
+     * Sets every element inside the view to zero. Elements outside the view are not modified.
+     */
+    @Override
+    public void zero() {
+        for (int row = 0; row < numRows; row++) {
+            int index = offset + row*stride;
+            Arrays.fill(data, index, index+numCols, 0);
+        }
+    }
+
+    /**
+     * Returns a {@link DMatrixRMaj} which contains a copy of the elements
+     */
+    @Override
+    public DMatrixRMaj copy() {
+        DMatrixRMaj out = new DMatrixRMaj(numRows, numCols);
+        for (int row = 0; row < numRows; row++) {
+            System.arraycopy(data, offset+row*stride, out.data, row*numCols, numCols);
+        }
+        return out;
+    }
+
+    /**
+     * Returns a {@link DMatrixRMaj} with the same shape
+     */
+    @Override
+    public <T extends Matrix> T createLike() {
+        return (T)new DMatrixRMaj(numRows, numCols);
+    }
+
+    /**
+     * Returns a {@link DMatrixRMaj} with the specified shape
+     */
+    @Override
+    public <T extends Matrix> T create( int numRows , int numCols ) {
+        return (T)new DMatrixRMaj(numRows, numCols);
+    }
+
+    /**
+     * Copies the values of the original matrix into the view. The view can't be resized so the original must
+     * have the same shape.
+     */
+    @Override
+    public void set( Matrix original ) {
+        if( original.getNumRows() != numRows || original.getNumCols() != numCols )
+            throw new MatrixDimensionException("Views can't be reshaped. Shapes must match.");
+        if( original instanceof DMatrixRMaj ) {
+            DMatrixRMaj A = (DMatrixRMaj)original;
+            for (int row = 0; row < numRows; row++) {
+                System.arraycopy(A.data, row*numCols, data, offset+row*stride, numCols);
+            }
+        } else if( original instanceof DMatrixView ) {
+            DMatrixView A = (DMatrixView)original;
+            for (int row = 0; row < numRows; row++) {
+                System.arraycopy(A.data, A.offset+row*A.stride, data, offset+row*stride, numCols);
+            }
+        } else {
+            DMatrix A = (DMatrix)original;
+            for (int row = 0; row < numRows; row++) {
+                for (int col = 0; col < numCols; col++) {
+                    data[offset+row*stride+col] = A.get(row, col);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void print() {
+        MatrixIO.print(System.out, this);
+    }
+
+    @Override
+    public void print( String format ) {
+        MatrixIO.print(System.out, this, format);
+    }
+
+    @Override
+    public MatrixType getType() {
+        return MatrixType.UNSPECIFIED;
+    }
+}
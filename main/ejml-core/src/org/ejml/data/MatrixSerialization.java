@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.data;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * Functions used by the matrix classes' custom serialization. Arrays are written as optional data after the
+ * serializable fields, as a length followed by the elements. Only the part of an array which is in use is
+ * written, and elements are copied through a byte array in bulk instead of being written one at a time.
+ * </p>
+ *
+ * <p>
+ * Matrices set their array fields to null in the serialized fields and append the arrays with these
+ * functions. When reading, a non-null array field means the stream was written by an older version, which
+ * relied on the default serialization, and the array is used directly.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+final class MatrixSerialization {
+    // number of bytes copied at once
+    private static final int BUFFER_SIZE = 1 << 13;
+
+    private MatrixSerialization() {}
+
+    static void writeDoubles( ObjectOutputStream out , double[] array , int length ) throws IOException {
+        out.writeInt(length);
+        ByteBuffer buffer = ByteBuffer.allocate(8*Math.min(BUFFER_SIZE/8, length));
+        for (int i = 0; i < length; ) {
+            int n = Math.min(length-i, buffer.capacity()/8);
+            buffer.clear();
+            buffer.asDoubleBuffer().put(array, i, n);
+            out.write(buffer.array(), 0, n*8);
+            i += n;
+        }
+    }
+
+    static double[] readDoubles( ObjectInputStream in ) throws IOException {
+        int length = readLength(in);
+        double[] array = new double[length];
+        ByteBuffer buffer = ByteBuffer.allocate(8*Math.min(BUFFER_SIZE/8, length));
+        for (int i = 0; i < length; ) {
+            int n = Math.min(length-i, buffer.capacity()/8);
+            in.readFully(buffer.array(), 0, n*8);
+            buffer.clear();
+            buffer.asDoubleBuffer().get(array, i, n);
+            i += n;
+        }
+        return array;
+    }
+
+    static void writeFloats( ObjectOutputStream out , float[] array , int length ) throws IOException {
+        out.writeInt(length);
+        ByteBuffer buffer = ByteBuffer.allocate(4*Math.min(BUFFER_SIZE/4, length));
+        for (int i = 0; i < length; ) {
+            int n = Math.min(length-i, buffer.capacity()/4);
+            buffer.clear();
+            buffer.asFloatBuffer().put(array, i, n);
+            out.write(buffer.array(), 0, n*4);
+            i += n;
+        }
+    }
+
+    static float[] readFloats( ObjectInputStream in ) throws IOException {
+        int length = readLength(in);
+        float[] array = new float[length];
+        ByteBuffer buffer = ByteBuffer.allocate(4*Math.min(BUFFER_SIZE/4, length));
+        for (int i = 0; i < length; ) {
+            int n = Math.min(length-i, buffer.capacity()/4);
+            in.readFully(buffer.array(), 0, n*4);
+            buffer.clear();
+            buffer.asFloatBuffer().get(array, i, n);
+            i += n;
+        }
+        return array;
+    }
+
+    static void writeInts( ObjectOutputStream out , int[] array , int length ) throws IOException {
+        out.writeInt(length);
+        ByteBuffer buffer = ByteBuffer.allocate(4*Math.min(BUFFER_SIZE/4, length));
+        for (int i = 0; i < length; ) {
+            int n = Math.min(length-i, buffer.capacity()/4);
+            buffer.clear();
+            buffer.asIntBuffer().put(array, i, n);
+            out.write(buffer.array(), 0, n*4);
+            i += n;
+        }
+    }
+
+    static int[] readInts( ObjectInputStream in ) throws IOException {
+        int length = readLength(in);
+        int[] array = new int[length];
+        ByteBuffer buffer = ByteBuffer.allocate(4*Math.min(BUFFER_SIZE/4, length));
+        for (int i = 0; i < length; ) {
+            int n = Math.min(length-i, buffer.capacity()/4);
+            in.readFully(buffer.array(), 0, n*4);
+            buffer.clear();
+            buffer.asIntBuffer().get(array, i, n);
+            i += n;
+        }
+        return array;
+    }
+
+    private static int readLength( ObjectInputStream in ) throws IOException {
+        int length = in.readInt();
+        if( length < 0 )
+            throw new InvalidObjectException("Negative array length");
+        return length;
+    }
+}
@@ -21,6 +21,10 @@ package org.ejml.data;
 import org.ejml.MatrixDimensionException;
 import org.ejml.UtilEjml;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 
 /**
  * A generic abstract class for matrices whose data is stored in a single 1D array of doubles.  The
@@ -126,4 +130,25 @@ public abstract class ZMatrixD1 implements ZMatrix, ReshapeMatrix {
     public int getNumElements() {
         return numRows*numCols;
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes the shape and only the elements which are in use. The data array field is written as null so that
+     * older versions, which used the default serialization, can be recognized when reading.
+     */
+    private void writeObject( ObjectOutputStream out ) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("numRows", numRows);
+        fields.put("numCols", numCols);
+        fields.put("data", null);
+        out.writeFields();
+        MatrixSerialization.writeDoubles(out, data, numRows*numCols*2);
+    }
+
+    private void readObject( ObjectInputStream in ) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        numRows = fields.get("numRows", 0);
+        numCols = fields.get("numCols", 0);
+        double[] data = (double[])fields.get("data", null);
+        this.data = data != null ? data : MatrixSerialization.readDoubles(in);
+    }
+}
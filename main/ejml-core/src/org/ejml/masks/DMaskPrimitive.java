@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.masks;
+
+import org.ejml.data.DMatrixRMaj;
+
+/**
+ * Mask defined by the values in a dense row-major array. An element is set if its value is not zero.
+ *
+ * @author Peter Abeles
+ */
+public class DMaskPrimitive extends Mask {
+    private final double[] values;
+    private final int numRows;
+    private final int numCols;
+
+    /**
+     * @param values Row-major array. Not copied.
+     * @param numRows Number of rows
+     * @param numCols Number of columns
+     * @param negated If true then the complement of the mask is used
+     */
+    public DMaskPrimitive( double[] values, int numRows, int numCols, boolean negated ) {
+        super(negated);
+        if (values.length < numRows*numCols)
+            throw new IllegalArgumentException("Array is too small for the specified shape");
+        this.values = values;
+        this.numRows = numRows;
+        this.numCols = numCols;
+    }
+
+    /**
+     * Creates a mask for a vector
+     */
+    public DMaskPrimitive( double[] values, boolean negated ) {
+        this(values, values.length, 1, negated);
+    }
+
+    public DMaskPrimitive( DMatrixRMaj matrix, boolean negated ) {
+        this(matrix.data, matrix.numRows, matrix.numCols, negated);
+    }
+
+    @Override
+    public boolean isSet( int row, int col ) {
+        return (values[row*numCols + col] != 0) ^ negated;
+    }
+
+    @Override
+    public boolean isSet( int index ) {
+        return (values[index] != 0) ^ negated;
+    }
+
+    @Override
+    public int getNumCols() {
+        return numCols;
+    }
+
+    @Override
+    public int getNumRows() {
+        return numRows;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.masks;
+
+import org.ejml.data.DMatrixSparseCSC;
+
+import java.util.Arrays;
+
+/**
+ * Mask defined by the structure of a sparse matrix. An element is set if it's stored in the matrix, even
+ * if its value is zero. Lookups are done with a dense array of the rows in the current column. Not thread safe.
+ *
+ * @author Peter Abeles
+ */
+public class DMaskSparseStructural extends Mask {
+    private final DMatrixSparseCSC matrix;
+
+    // rows which are in the indexed column are set to the column index
+    private final int[] rowMarks;
+    private int indexedColumn = -1;
+
+    /**
+     * @param matrix Matrix whose structure defines the mask. Not copied.
+     * @param negated If true then the complement of the mask is used
+     */
+    public DMaskSparseStructural( DMatrixSparseCSC matrix, boolean negated ) {
+        super(negated);
+        this.matrix = matrix;
+        this.rowMarks = new int[matrix.numRows];
+        Arrays.fill(rowMarks, -1);
+    }
+
+    @Override
+    public boolean isSet( int row, int col ) {
+        if (col != indexedColumn)
+            setIndexColumn(col);
+        return (rowMarks[row] == col) ^ negated;
+    }
+
+    @Override
+    public boolean isSet( int index ) {
+        return isSet(index, 0);
+    }
+
+    @Override
+    public void setIndexColumn( int column ) {
+        if (column == indexedColumn)
+            return;
+        indexedColumn = column;
+        int idx1 = matrix.col_idx[column + 1];
+        for (int i = matrix.col_idx[column]; i < idx1; i++) {
+            rowMarks[matrix.nz_rows[i]] = column;
+        }
+    }
+
+    @Override
+    public int getNumCols() {
+        return matrix.numCols;
+    }
+
+    @Override
+    public int getNumRows() {
+        return matrix.numRows;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.masks;
+
+import org.ejml.MatrixDimensionException;
+import org.ejml.data.Matrix;
+
+/**
+ * <p>
+ * Specifies which elements in the output of an operation are computed. Elements which are not selected by
+ * the mask are not computed. Sparse outputs will not contain them and dense outputs keep their previous value.
+ * If the mask is negated then its complement is used.
+ * </p>
+ *
+ * <p>Vectors are treated as a single column.</p>
+ *
+ * @author Peter Abeles
+ */
+public abstract class Mask {
+    /** If true then an element is selected when it's not set in the mask */
+    public final boolean negated;
+
+    protected Mask( boolean negated ) {
+        this.negated = negated;
+    }
+
+    /**
+     * Returns true if the element at (row, col) should be computed
+     */
+    public abstract boolean isSet( int row, int col );
+
+    /**
+     * Returns true if the element at this index of a vector should be computed
+     */
+    public abstract boolean isSet( int index );
+
+    public abstract int getNumCols();
+
+    public abstract int getNumRows();
+
+    /**
+     * Hint that the following calls to {@link #isSet(int, int)} will be in this column. Used by sparse masks to
+     * speed up lookups.
+     */
+    public void setIndexColumn( int column ) {}
+
+    /**
+     * Ensures that the mask has the same shape as the matrix
+     */
+    public void compatible( Matrix matrix ) {
+        if (matrix.getNumRows() != getNumRows() || matrix.getNumCols() != getNumCols())
+            throw new MatrixDimensionException("Mask shape is ("+getNumRows()+"x"+getNumCols()+
+                    ") and matrix shape is ("+matrix.getNumRows()+"x"+matrix.getNumCols()+")");
+    }
+
+    /**
+     * Ensures that the mask has the same length as the vector
+     */
+    public void compatible( int length ) {
+        if (getNumCols() != 1 || getNumRows() != length)
+            throw new MatrixDimensionException("Mask shape is ("+getNumRows()+"x"+getNumCols()+
+                    ") and vector length is "+length);
+    }
+}
@@ -0,0 +1,573 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.ops;
+
+import org.ejml.data.*;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * <p>
+ * Reads and writes matrices in a compact little-endian binary format. Unlike {@link MatrixIO#saveBin} it does
+ * not depend on Java serialization, the file can be read by other languages, and the raw arrays are moved
+ * through NIO channels using bulk buffer transfers.
+ * </p>
+ *
+ * <p>
+ * Every file starts with a 32 byte header followed by the payload and an optional checksum:
+ * </p>
+ * <pre>
+ * offset  size  description
+ *  0      4     magic number, the ASCII characters 'E','J','M','L'
+ *  4      1     format version, currently 1
+ *  5      1     storage: 0 = row-major dense, 1 = row-major blocks, 2 = compressed sparse column
+ *  6      1     precision: number of bytes in each floating point value, 4 or 8
+ *  7      1     flags: bit 0 = complex, bit 1 = checksum present, bit 2 = sparse indices are sorted,
+ *                     bit 3 = payload is compressed
+ *  8      4     number of rows
+ * 12      4     number of columns
+ * 16      4     block length for block matrices, number of non-zero elements for sparse matrices, 0 otherwise
+ * 20      4     reserved, 0
+ * 24      8     number of bytes in the payload
+ * 32      ...   payload
+ * ...     8     CRC32 of the payload, only if the checksum flag is set
+ * </pre>
+ *
+ * <p>
+ * The payload for dense and block matrices is the internal data array. Complex matrices interleave the real and
+ * imaginary components. For compressed sparse column matrices the payload is col_idx (numCols+1 ints),
+ * nz_rows (nz_length ints), then nz_values (nz_length values). If the compressed flag is set the payload is
+ * instead encoded as described in {@link CompressedMatrixIO}. Such files can also be read by {@link #load}.
+ * </p>
+ *
+ * <p>
+ * Supported types are {@link DMatrixRMaj}, {@link FMatrixRMaj}, {@link ZMatrixRMaj}, {@link CMatrixRMaj},
+ * {@link DMatrixRBlock}, {@link FMatrixRBlock}, {@link DMatrixSparseCSC} and {@link FMatrixSparseCSC}.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+@SuppressWarnings("unchecked")
+public class BinaryMatrixIO {
+    public static final int VERSION = 1;
+    public static final int HEADER_LENGTH = 32;
+
+    public static final int STORAGE_ROW_MAJOR = 0;
+    public static final int STORAGE_BLOCK = 1;
+    public static final int STORAGE_CSC = 2;
+
+    public static final int FLAG_COMPLEX = 1;
+    public static final int FLAG_CHECKSUM = 1 << 1;
+    public static final int FLAG_SORTED = 1 << 2;
+    public static final int FLAG_COMPRESSED = 1 << 3;
+
+    private static final byte[] MAGIC = {'E','J','M','L'};
+
+    /**
+     * Size of the buffer used to move data between arrays and the channel
+     */
+    static int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Saves the matrix to a file.
+     *
+     * @param A The matrix being saved. Not modified.
+     * @param fileName Name of the file it's being saved to.
+     * @param checksum If true a CRC32 of the payload is appended and verified when loading
+     */
+    public static void save( Matrix A , String fileName , boolean checksum ) throws IOException {
+        save(A, Paths.get(fileName), checksum);
+    }
+
+    /**
+     * Saves the matrix to a file.
+     *
+     * @see #save(Matrix, String, boolean)
+     */
+    public static void save( Matrix A , Path path , boolean checksum ) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            save(A, channel, checksum);
+        }
+    }
+
+    /**
+     * Writes the matrix to a channel. The channel is not closed.
+     *
+     * @param A The matrix being saved. Not modified.
+     * @param channel Where the matrix is written to
+     * @param checksum If true a CRC32 of the payload is appended and verified when loading
+     */
+    public static void save( Matrix A , WritableByteChannel channel , boolean checksum ) throws IOException {
+        Header header = describe(A);
+        if( checksum )
+            header.flags |= FLAG_CHECKSUM;
+
+        ByteBuffer bytes = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        header.encode(bytes);
+        bytes.flip();
+        writeFully(channel, bytes);
+
+        Output out = new Output(channel, checksum);
+        if( A instanceof DMatrixSparseCSC ) {
+            DMatrixSparseCSC S = (DMatrixSparseCSC)A;
+            out.putInts(S.col_idx, S.numCols+1);
+            out.putInts(S.nz_rows, S.nz_length);
+            out.putDoubles(S.nz_values, S.nz_length);
+        } else if( A instanceof FMatrixSparseCSC ) {
+            FMatrixSparseCSC S = (FMatrixSparseCSC)A;
+            out.putInts(S.col_idx, S.numCols+1);
+            out.putInts(S.nz_rows, S.nz_length);
+            out.putFloats(S.nz_values, S.nz_length);
+        } else if( header.precision == 8 ) {
+            out.putDoubles(denseData64(A), (int)(header.payloadLength/8));
+        } else {
+            out.putFloats(denseData32(A), (int)(header.payloadLength/4));
+        }
+        out.flush();
+
+        if( checksum ) {
+            bytes.clear();
+            bytes.putLong(out.crc.getValue());
+            bytes.flip();
+            writeFully(channel, bytes);
+        }
+    }
+
+    /**
+     * Loads a matrix which was saved using {@link #save(Matrix, String, boolean)}. If a checksum is present
+     * it's verified.
+     *
+     * @param fileName Name of the file being loaded
+     * @return The matrix. Its type is determined by the file's header.
+     */
+    public static <T extends Matrix> T load( String fileName ) throws IOException {
+        return load(Paths.get(fileName));
+    }
+
+    /**
+     * Loads a matrix from a file.
+     *
+     * @see #load(String)
+     */
+    public static <T extends Matrix> T load( Path path ) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return load(channel);
+        }
+    }
+
+    /**
+     * Reads a matrix from the channel. Reading stops immediately after the matrix so that multiple
+     * matrices can be stored in the same stream. The channel is not closed.
+     *
+     * @param channel Where the matrix is read from
+     * @return The matrix. Its type is determined by the header.
+     */
+    public static <T extends Matrix> T load( ReadableByteChannel channel ) throws IOException {
+        Header header = readHeader(channel);
+        if( header.isCompressed() )
+            return CompressedMatrixIO.read(channel, header);
+
+        boolean checksum = (header.flags & FLAG_CHECKSUM) != 0;
+        Input in = new Input(channel, header.payloadLength, checksum);
+        Matrix found = header.create();
+
+        if( found instanceof DMatrixSparseCSC ) {
+            DMatrixSparseCSC S = (DMatrixSparseCSC)found;
+            in.getInts(S.col_idx, S.numCols+1);
+            in.getInts(S.nz_rows, S.nz_length);
+            in.getDoubles(S.nz_values, S.nz_length);
+        } else if( found instanceof FMatrixSparseCSC ) {
+            FMatrixSparseCSC S = (FMatrixSparseCSC)found;
+            in.getInts(S.col_idx, S.numCols+1);
+            in.getInts(S.nz_rows, S.nz_length);
+            in.getFloats(S.nz_values, S.nz_length);
+        } else if( header.precision == 8 ) {
+            in.getDoubles(denseData64(found), (int)(header.payloadLength/8));
+        } else {
+            in.getFloats(denseData32(found), (int)(header.payloadLength/4));
+        }
+
+        if( checksum )
+            in.verifyChecksum();
+
+        return (T)found;
+    }
+
+    /**
+     * Reads just the header from a file. Useful for inspecting a matrix's shape without loading it.
+     */
+    public static Header loadHeader( String fileName ) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            return readHeader(channel);
+        }
+    }
+
+    static Header readHeader( ReadableByteChannel channel ) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, bytes);
+        bytes.flip();
+        return Header.decode(bytes);
+    }
+
+    static Header describe( Matrix A ) {
+        Header h = new Header();
+        h.numRows = A.getNumRows();
+        h.numCols = A.getNumCols();
+        long N = (long)h.numRows*h.numCols;
+
+        if( A instanceof DMatrixRMaj || A instanceof FMatrixRMaj ) {
+            h.storage = STORAGE_ROW_MAJOR;
+            h.precision = A instanceof DMatrixRMaj ? 8 : 4;
+            h.payloadLength = N*h.precision;
+        } else if( A instanceof ZMatrixRMaj || A instanceof CMatrixRMaj ) {
+            h.storage = STORAGE_ROW_MAJOR;
+            h.precision = A instanceof ZMatrixRMaj ? 8 : 4;
+            h.flags |= FLAG_COMPLEX;
+            h.payloadLength = 2*N*h.precision;
+        } else if( A instanceof DMatrixRBlock ) {
+            h.storage = STORAGE_BLOCK;
+            h.precision = 8;
+            h.extra = ((DMatrixRBlock)A).blockLength;
+            h.payloadLength = N*h.precision;
+        } else if( A instanceof FMatrixRBlock ) {
+            h.storage = STORAGE_BLOCK;
+            h.precision = 4;
+            h.extra = ((FMatrixRBlock)A).blockLength;
+            h.payloadLength = N*h.precision;
+        } else if( A instanceof DMatrixSparseCSC ) {
+            DMatrixSparseCSC S = (DMatrixSparseCSC)A;
+            h.storage = STORAGE_CSC;
+            h.precision = 8;
+            h.extra = S.nz_length;
+            if( S.indicesSorted )
+                h.flags |= FLAG_SORTED;
+            h.payloadLength = h.sparsePayload();
+        } else if( A instanceof FMatrixSparseCSC ) {
+            FMatrixSparseCSC S = (FMatrixSparseCSC)A;
+            h.storage = STORAGE_CSC;
+            h.precision = 4;
+            h.extra = S.nz_length;
+            if( S.indicesSorted )
+                h.flags |= FLAG_SORTED;
+            h.payloadLength = h.sparsePayload();
+        } else {
+            throw new IllegalArgumentException("Unsupported matrix type: "+A.getClass().getSimpleName());
+        }
+        return h;
+    }
+
+    private static double[] denseData64( Matrix A ) {
+        if( A instanceof DMatrixD1 )
+            return ((DMatrixD1)A).data;
+        else
+            return ((ZMatrixD1)A).data;
+    }
+
+    private static float[] denseData32( Matrix A ) {
+        if( A instanceof FMatrixD1 )
+            return ((FMatrixD1)A).data;
+        else
+            return ((CMatrixD1)A).data;
+    }
+
+    private static void writeFully( WritableByteChannel channel , ByteBuffer bytes ) throws IOException {
+        while( bytes.hasRemaining() )
+            channel.write(bytes);
+    }
+
+    static void readFully( ReadableByteChannel channel , ByteBuffer bytes ) throws IOException {
+        while( bytes.hasRemaining() ) {
+            if( channel.read(bytes) < 0 )
+                throw new EOFException("Unexpected end of file");
+        }
+    }
+
+    /**
+     * Description of a matrix stored in the binary format.
+     */
+    public static class Header {
+        public int storage;
+        public int precision;
+        public int flags;
+        public int numRows;
+        public int numCols;
+        /** block length for block matrices or number of non-zero elements for sparse matrices */
+        public int extra;
+        public long payloadLength;
+
+        public boolean isComplex() {
+            return (flags & FLAG_COMPLEX) != 0;
+        }
+
+        public boolean hasChecksum() {
+            return (flags & FLAG_CHECKSUM) != 0;
+        }
+
+        public boolean isCompressed() {
+            return (flags & FLAG_COMPRESSED) != 0;
+        }
+
+        long sparsePayload() {
+            return 4L*(numCols+1) + 4L*extra + (long)precision*extra;
+        }
+
+        public void encode( ByteBuffer bytes ) {
+            bytes.put(MAGIC);
+            bytes.put((byte)VERSION);
+            bytes.put((byte)storage);
+            bytes.put((byte)precision);
+            bytes.put((byte)flags);
+            bytes.putInt(numRows);
+            bytes.putInt(numCols);
+            bytes.putInt(extra);
+            bytes.putInt(0);
+            bytes.putLong(payloadLength);
+        }
+
+        public static Header decode( ByteBuffer bytes ) throws IOException {
+            for (int i = 0; i < MAGIC.length; i++) {
+                if( bytes.get() != MAGIC[i] )
+                    throw new IOException("Not an EJML binary matrix");
+            }
+            int version = bytes.get();
+            if( version != VERSION )
+                throw new IOException("Unsupported format version "+version);
+
+            Header h = new Header();
+            h.storage = bytes.get();
+            h.precision = bytes.get();
+            h.flags = bytes.get();
+            h.numRows = bytes.getInt();
+            h.numCols = bytes.getInt();
+            h.extra = bytes.getInt();
+            bytes.getInt();
+            h.payloadLength = bytes.getLong();
+
+            if( h.numRows < 0 || h.numCols < 0 || h.extra < 0 )
+                throw new IOException("Invalid shape: "+h.numRows+" "+h.numCols+" "+h.extra);
+            if( h.precision != 4 && h.precision != 8 )
+                throw new IOException("Invalid precision: "+h.precision);
+
+            long expected;
+            long N = (long)h.numRows*h.numCols;
+            switch( h.storage ) {
+                case STORAGE_ROW_MAJOR: expected = N*h.precision*(h.isComplex() ? 2 : 1); break;
+                case STORAGE_BLOCK: expected = N*h.precision; break;
+                case STORAGE_CSC: expected = h.sparsePayload(); break;
+                default: throw new IOException("Unknown storage "+h.storage);
+            }
+            if( !h.isCompressed() && expected != h.payloadLength )
+                throw new IOException("Payload length doesn't match the shape. "+h.payloadLength+" vs "+expected);
+            if( h.isComplex() && h.storage != STORAGE_ROW_MAJOR )
+                throw new IOException("Complex matrices must be row-major");
+            return h;
+        }
+
+        /**
+         * Creates a matrix of the type and shape described by the header
+         */
+        public Matrix create() {
+            boolean f64 = precision == 8;
+            switch( storage ) {
+                case STORAGE_ROW_MAJOR:
+                    if( isComplex() )
+                        return f64 ? new ZMatrixRMaj(numRows,numCols) : new CMatrixRMaj(numRows,numCols);
+                    else
+                        return f64 ? new DMatrixRMaj(numRows,numCols) : new FMatrixRMaj(numRows,numCols);
+
+                case STORAGE_BLOCK:
+                    return f64 ? new DMatrixRBlock(numRows,numCols,extra) : new FMatrixRBlock(numRows,numCols,extra);
+
+                case STORAGE_CSC: {
+                    boolean sorted = (flags & FLAG_SORTED) != 0;
+                    if( f64 ) {
+                        DMatrixSparseCSC S = new DMatrixSparseCSC(numRows,numCols,extra);
+                        S.nz_length = extra;
+                        S.indicesSorted = sorted;
+                        return S;
+                    } else {
+                        FMatrixSparseCSC S = new FMatrixSparseCSC(numRows,numCols,extra);
+                        S.nz_length = extra;
+                        S.indicesSorted = sorted;
+                        return S;
+                    }
+                }
+
+                default:
+                    throw new IllegalArgumentException("Unknown storage "+storage);
+            }
+        }
+    }
+
+    /**
+     * Copies arrays into a direct buffer and writes it to the channel once full
+     */
+    private static class Output {
+        WritableByteChannel channel;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        @Nullable CRC32 crc;
+
+        Output( WritableByteChannel channel , boolean checksum ) {
+            this.channel = channel;
+            this.crc = checksum ? new CRC32() : null;
+        }
+
+        void putInts( int[] array , int length ) throws IOException {
+            int offset = 0;
+            while( offset < length ) {
+                int n = Math.min(length-offset, buffer.remaining()/4);
+                if( n == 0 ) { flush(); continue; }
+                buffer.asIntBuffer().put(array, offset, n);
+                buffer.position(buffer.position()+n*4);
+                offset += n;
+            }
+        }
+
+        void putDoubles( double[] array , int length ) throws IOException {
+            int offset = 0;
+            while( offset < length ) {
+                int n = Math.min(length-offset, buffer.remaining()/8);
+                if( n == 0 ) { flush(); continue; }
+                buffer.asDoubleBuffer().put(array, offset, n);
+                buffer.position(buffer.position()+n*8);
+                offset += n;
+            }
+        }
+
+        void putFloats( float[] array , int length ) throws IOException {
+            int offset = 0;
+            while( offset < length ) {
+                int n = Math.min(length-offset, buffer.remaining()/4);
+                if( n == 0 ) { flush(); continue; }
+                buffer.asFloatBuffer().put(array, offset, n);
+                buffer.position(buffer.position()+n*4);
+                offset += n;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            if( crc != null ) {
+                crc.update(buffer);
+                buffer.rewind();
+            }
+            writeFully(channel, buffer);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Reads the payload from the channel into a direct buffer and copies it into arrays. Never reads past
+     * the end of the payload.
+     */
+    static class Input {
+        ReadableByteChannel channel;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        @Nullable CRC32 crc;
+        long remaining;
+
+        Input( ReadableByteChannel channel , long payloadLength , boolean checksum ) {
+            this.channel = channel;
+            this.remaining = payloadLength;
+            this.crc = checksum ? new CRC32() : null;
+            buffer.limit(0);
+        }
+
+        void getInts( int[] array , int length ) throws IOException {
+            int offset = 0;
+            while( offset < length ) {
+                int n = Math.min(length-offset, buffer.remaining()/4);
+                if( n == 0 ) { fill(4); continue; }
+                buffer.asIntBuffer().get(array, offset, n);
+                buffer.position(buffer.position()+n*4);
+                offset += n;
+            }
+        }
+
+        void getDoubles( double[] array , int length ) throws IOException {
+            int offset = 0;
+            while( offset < length ) {
+                int n = Math.min(length-offset, buffer.remaining()/8);
+                if( n == 0 ) { fill(8); continue; }
+                buffer.asDoubleBuffer().get(array, offset, n);
+                buffer.position(buffer.position()+n*8);
+                offset += n;
+            }
+        }
+
+        void getFloats( float[] array , int length ) throws IOException {
+            int offset = 0;
+            while( offset < length ) {
+                int n = Math.min(length-offset, buffer.remaining()/4);
+                if( n == 0 ) { fill(4); continue; }
+                buffer.asFloatBuffer().get(array, offset, n);
+                buffer.position(buffer.position()+n*4);
+                offset += n;
+            }
+        }
+
+        /**
+         * Reads the CRC32 which follows the payload and compares it against the payload which was read
+         */
+        void verifyChecksum() throws IOException {
+            ByteBuffer bytes = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, bytes);
+            bytes.flip();
+            if( crc == null || bytes.getLong() != crc.getValue() )
+                throw new IOException("Checksum mismatch. File is corrupted.");
+        }
+
+        /**
+         * Reads more of the payload until at least 'minimum' bytes are available
+         */
+        void fill( int minimum ) throws IOException {
+            buffer.compact();
+            while( buffer.position() < minimum ) {
+                int start = buffer.position();
+                int toRead = (int)Math.min(buffer.capacity()-start, remaining);
+                if( toRead <= 0 )
+                    throw new EOFException("Payload is shorter than expected");
+                buffer.limit(start+toRead);
+                int found = channel.read(buffer);
+                if( found < 0 )
+                    throw new EOFException("Unexpected end of file");
+                remaining -= found;
+                if( crc != null ) {
+                    ByteBuffer view = buffer.duplicate();
+                    view.flip();
+                    view.position(start);
+                    crc.update(view);
+                }
+            }
+            buffer.flip();
+        }
+    }
+}
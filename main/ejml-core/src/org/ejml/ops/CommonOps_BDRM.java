@@ -18,7 +18,11 @@
 
 package org.ejml.ops;
 
+import org.ejml.MatrixDimensionException;
+import org.ejml.UtilEjml;
+import org.ejml.data.BMatrixPacked;
 import org.ejml.data.BMatrixRMaj;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * @author Peter Abeles
@@ -47,4 +51,216 @@ public class CommonOps_BDRM {
             }
         }
     }
+
+    /**
+     * <p>c = a AND b</p>
+     *
+     * @param a (Input) Matrix. Not modified.
+     * @param b (Input) Matrix with the same shape as a. Not modified.
+     * @param c (Output) Storage for the results. Can be a or b. Can be null. Is reshaped.
+     * @return The results
+     */
+    public static BMatrixPacked and( BMatrixPacked a , BMatrixPacked b , @Nullable BMatrixPacked c ) {
+        c = declareOutput(a, b, c);
+        final int N = a.getNumWords();
+        for (int i = 0; i < N; i++) {
+            c.data[i] = a.data[i] & b.data[i];
+        }
+        return c;
+    }
+
+    /**
+     * <p>c = a OR b</p>
+     *
+     * @see #and(BMatrixPacked, BMatrixPacked, BMatrixPacked)
+     */
+    public static BMatrixPacked or( BMatrixPacked a , BMatrixPacked b , @Nullable BMatrixPacked c ) {
+        c = declareOutput(a, b, c);
+        final int N = a.getNumWords();
+        for (int i = 0; i < N; i++) {
+            c.data[i] = a.data[i] | b.data[i];
+        }
+        return c;
+    }
+
+    /**
+     * <p>c = a XOR b</p>
+     *
+     * @see #and(BMatrixPacked, BMatrixPacked, BMatrixPacked)
+     */
+    public static BMatrixPacked xor( BMatrixPacked a , BMatrixPacked b , @Nullable BMatrixPacked c ) {
+        c = declareOutput(a, b, c);
+        final int N = a.getNumWords();
+        for (int i = 0; i < N; i++) {
+            c.data[i] = a.data[i] ^ b.data[i];
+        }
+        return c;
+    }
+
+    /**
+     * <p>c = a AND (NOT b)</p>
+     *
+     * @see #and(BMatrixPacked, BMatrixPacked, BMatrixPacked)
+     */
+    public static BMatrixPacked andNot( BMatrixPacked a , BMatrixPacked b , @Nullable BMatrixPacked c ) {
+        c = declareOutput(a, b, c);
+        final int N = a.getNumWords();
+        for (int i = 0; i < N; i++) {
+            c.data[i] = a.data[i] & ~b.data[i];
+        }
+        return c;
+    }
+
+    /**
+     * <p>b = NOT a</p>
+     *
+     * @param a (Input) Matrix. Not modified.
+     * @param b (Output) Storage for the results. Can be a. Can be null. Is reshaped.
+     * @return The results
+     */
+    public static BMatrixPacked not( BMatrixPacked a , @Nullable BMatrixPacked b ) {
+        if( b != a )
+            b = UtilEjml.reshapeOrDeclare(b, a.numRows, a.numCols);
+        if( a.wordsPerRow == 0 )
+            return b;
+
+        // bits past the last column must remain zero
+        final long mask = a.lastWordMask();
+        for (int row = 0; row < a.numRows; row++) {
+            int index = row*a.wordsPerRow;
+            int end = index + a.wordsPerRow - 1;
+            for (; index < end; index++) {
+                b.data[index] = ~a.data[index];
+            }
+            b.data[end] = ~a.data[end] & mask;
+        }
+        return b;
+    }
+
+    /**
+     * Counts the number of elements in A which are true using a population count on each word
+     *
+     * @param A input matrix
+     * @return number of true elements
+     */
+    public static int countTrue( BMatrixPacked A ) {
+        return A.sum();
+    }
+
+    /**
+     * <p>
+     * Boolean matrix multiplication over the (OR, AND) semiring:<br>
+     * c<sub>ij</sub> = OR<sub>k</sub> ( a<sub>ik</sub> AND b<sub>kj</sub> )
+     * </p>
+     *
+     * <p>
+     * Row i of c is the OR of the rows in b which are selected by the true elements in row i of a. Rows are
+     * combined a word at a time and words in a which are all false are skipped.
+     * </p>
+     *
+     * @param a (Input) Left matrix. Not modified.
+     * @param b (Input) Right matrix with a.numCols rows. Not modified.
+     * @param c (Output) Storage for the results. Must not be a or b. Can be null. Is reshaped.
+     * @return The results
+     */
+    public static BMatrixPacked mult( BMatrixPacked a , BMatrixPacked b , @Nullable BMatrixPacked c ) {
+        if( a.numCols != b.numRows )
+            throw new MatrixDimensionException("The 'a' and 'b' matrices do not have compatible dimensions");
+        if( c == a || c == b )
+            throw new IllegalArgumentException("The output can't be the same instance as an input");
+        c = UtilEjml.reshapeOrDeclare(c, a.numRows, b.numCols);
+        c.zero();
+
+        final int wordsB = b.wordsPerRow;
+        for (int row = 0; row < a.numRows; row++) {
+            int indexA = row*a.wordsPerRow;
+            int indexC = row*c.wordsPerRow;
+            for (int w = 0; w < a.wordsPerRow; w++) {
+                long word = a.data[indexA+w];
+                while( word != 0 ) {
+                    int k = (w << 6) + Long.numberOfTrailingZeros(word);
+                    int indexB = k*wordsB;
+                    for (int j = 0; j < wordsB; j++) {
+                        c.data[indexC+j] |= b.data[indexB+j];
+                    }
+                    word &= word - 1;
+                }
+            }
+        }
+        return c;
+    }
+
+    /**
+     * <p>
+     * Boolean matrix multiplication with b transposed over the (OR, AND) semiring:<br>
+     * c<sub>ij</sub> = OR<sub>k</sub> ( a<sub>ik</sub> AND b<sub>jk</sub> )<br>
+     * Element (i,j) is true if rows i in a and j in b have a true element in common, which is found by
+     * comparing whole words.
+     * </p>
+     *
+     * @param a (Input) Left matrix. Not modified.
+     * @param b (Input) Right matrix with a.numCols columns. Not modified.
+     * @param c (Output) Storage for the results. Must not be a or b. Can be null. Is reshaped.
+     * @return The results
+     */
+    public static BMatrixPacked multTransB( BMatrixPacked a , BMatrixPacked b , @Nullable BMatrixPacked c ) {
+        if( a.numCols != b.numCols )
+            throw new MatrixDimensionException("The 'a' and 'b' matrices do not have compatible dimensions");
+        if( c == a || c == b )
+            throw new IllegalArgumentException("The output can't be the same instance as an input");
+        c = UtilEjml.reshapeOrDeclare(c, a.numRows, b.numRows);
+        c.zero();
+
+        final int words = a.wordsPerRow;
+        for (int i = 0; i < a.numRows; i++) {
+            int indexA = i*words;
+            int indexC = i*c.wordsPerRow;
+            for (int j = 0; j < b.numRows; j++) {
+                int indexB = j*words;
+                for (int w = 0; w < words; w++) {
+                    if( (a.data[indexA+w] & b.data[indexB+w]) != 0 ) {
+                        c.data[indexC + (j >>> 6)] |= 1L << j;
+                        break;
+                    }
+                }
+            }
+        }
+        return c;
+    }
+
+    /**
+     * <p>b = a<sup>T</sup></p>
+     *
+     * @param a (Input) Matrix. Not modified.
+     * @param b (Output) Storage for the results. Must not be a. Can be null. Is reshaped.
+     * @return The results
+     */
+    public static BMatrixPacked transpose( BMatrixPacked a , @Nullable BMatrixPacked b ) {
+        if( a == b )
+            throw new IllegalArgumentException("The output can't be the same instance as the input");
+        b = UtilEjml.reshapeOrDeclare(b, a.numCols, a.numRows);
+        b.zero();
+
+        for (int row = 0; row < a.numRows; row++) {
+            int indexA = row*a.wordsPerRow;
+            int wordB = row >>> 6;
+            long bitB = 1L << row;
+            for (int w = 0; w < a.wordsPerRow; w++) {
+                long word = a.data[indexA+w];
+                while( word != 0 ) {
+                    int col = (w << 6) + Long.numberOfTrailingZeros(word);
+                    b.data[col*b.wordsPerRow + wordB] |= bitB;
+                    word &= word - 1;
+                }
+            }
+        }
+        return b;
+    }
+
+    private static BMatrixPacked declareOutput( BMatrixPacked a , BMatrixPacked b , @Nullable BMatrixPacked c ) {
+        UtilEjml.checkSameShape(a, b, true);
+        if( c == a || c == b )
+            return c;
+        return UtilEjml.reshapeOrDeclare(c, a.numRows, a.numCols);
+    }
 }
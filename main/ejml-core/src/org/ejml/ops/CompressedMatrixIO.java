@@ -0,0 +1,742 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.ops;
+
+import org.ejml.concurrency.EjmlConcurrency;
+import org.ejml.data.*;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * <p>
+ * Compressed variant of the {@link BinaryMatrixIO} format. The file has the same header, with the compressed
+ * flag set, and the payload is split into independently compressed chunks. Chunks are compressed and
+ * decompressed in parallel and a range of rows or columns can be loaded without decompressing the whole file.
+ * </p>
+ *
+ * <p>
+ * Dense row-major matrices are split into chunks of consecutive rows and sparse matrices into chunks of
+ * consecutive columns, each with approximately the same number of values. Before being compressed with
+ * {@link Deflater} each chunk is encoded as follows:
+ * </p>
+ * <ul>
+ *     <li>Sparse: the number of non-zero elements in each column as a varint, then the row indices in each
+ *     column as varints of the difference from the previous row (zigzag encoded if the indices are not
+ *     sorted), then the values.</li>
+ *     <li>Values are byte shuffled. The first byte of every value is stored, then the second byte, and so on.
+ *     This places the slowly changing sign and exponent bytes next to each other, which compresses much
+ *     better than the raw values.</li>
+ * </ul>
+ *
+ * <p>Layout of the payload, all numbers are little-endian:</p>
+ * <pre>
+ * size  description
+ * 4     number of chunks
+ * 32*N  chunk table. For each chunk: first row or column, number of rows or columns, index of the first
+ *       non-zero element (sparse only), encoded length, offset of the compressed data from the start of the
+ *       payload (8 bytes), compressed length, CRC32 of the compressed data
+ * ...   compressed chunks
+ * </pre>
+ *
+ * <p>
+ * Supported types are {@link DMatrixRMaj}, {@link FMatrixRMaj}, {@link ZMatrixRMaj}, {@link CMatrixRMaj},
+ * {@link DMatrixSparseCSC} and {@link FMatrixSparseCSC}.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+@SuppressWarnings("unchecked")
+public class CompressedMatrixIO {
+    /**
+     * Approximate number of values in each chunk
+     */
+    static int CHUNK_VALUES = 1 << 16;
+
+    static final int ENTRY_LENGTH = 32;
+
+    /**
+     * Saves the matrix to a file using the fastest compression level.
+     *
+     * @param A The matrix being saved. Not modified.
+     * @param fileName Name of the file it's being saved to.
+     */
+    public static void save( Matrix A , String fileName ) throws IOException {
+        save(A, Paths.get(fileName), Deflater.BEST_SPEED);
+    }
+
+    /**
+     * Saves the matrix to a file.
+     *
+     * @param level Compression level from 1 to 9. See {@link Deflater}.
+     * @see #save(Matrix, String)
+     */
+    public static void save( Matrix A , Path path , int level ) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            save(A, channel, level);
+        }
+    }
+
+    /**
+     * Writes the matrix to a channel. The channel is not closed.
+     *
+     * @param A The matrix being saved. Not modified.
+     * @param channel Where the matrix is written to
+     * @param level Compression level from 1 to 9. See {@link Deflater}.
+     */
+    public static void save( Matrix A , WritableByteChannel channel , int level ) throws IOException {
+        BinaryMatrixIO.Header header = BinaryMatrixIO.describe(A);
+        if( header.storage == BinaryMatrixIO.STORAGE_BLOCK )
+            throw new IllegalArgumentException("Block matrices are not supported");
+        header.flags |= BinaryMatrixIO.FLAG_COMPRESSED;
+
+        Chunk[] chunks = header.storage == BinaryMatrixIO.STORAGE_CSC ? splitColumns(A) : splitRows(header);
+
+        EjmlConcurrency.loopFor(0, chunks.length, i -> {
+            Chunk c = chunks[i];
+            byte[] raw = header.storage == BinaryMatrixIO.STORAGE_CSC ?
+                    encodeColumns(A, header, c) : encodeRows(A, header, c);
+            c.data = deflate(raw, c.rawLength, level);
+            c.length = c.data.length;
+            CRC32 crc = new CRC32();
+            crc.update(c.data);
+            c.crc = (int)crc.getValue();
+        });
+
+        long offset = 4 + (long)ENTRY_LENGTH*chunks.length;
+        for( Chunk c : chunks ) {
+            c.offset = offset;
+            offset += c.length;
+        }
+        header.payloadLength = offset;
+
+        ByteBuffer bytes = ByteBuffer.allocate(BinaryMatrixIO.HEADER_LENGTH+4+ENTRY_LENGTH*chunks.length).
+                order(ByteOrder.LITTLE_ENDIAN);
+        header.encode(bytes);
+        bytes.putInt(chunks.length);
+        for( Chunk c : chunks ) {
+            c.encode(bytes);
+        }
+        bytes.flip();
+        writeFully(channel, bytes);
+        for( Chunk c : chunks ) {
+            writeFully(channel, ByteBuffer.wrap(c.data));
+            c.data = null;
+        }
+    }
+
+    /**
+     * Loads a matrix saved by {@link #save(Matrix, String)}. Also see {@link BinaryMatrixIO#load}, which
+     * can read both compressed and uncompressed files.
+     *
+     * @return The matrix. Its type is determined by the file's header.
+     */
+    public static <T extends Matrix> T load( String fileName ) throws IOException {
+        return load(Paths.get(fileName));
+    }
+
+    /**
+     * Loads a matrix from a file. Chunks are read and decompressed in parallel.
+     *
+     * @see #load(String)
+     */
+    public static <T extends Matrix> T load( Path path ) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            BinaryMatrixIO.Header header = readCompressedHeader(channel);
+            Chunk[] chunks = readTable(channel, header);
+            readChunks(channel, chunks);
+
+            Matrix found = header.create();
+            decodeAll(header, chunks, found);
+            return (T)found;
+        }
+    }
+
+    /**
+     * Reads a matrix from the channel. Reading stops immediately after the matrix. The channel is not closed.
+     */
+    public static <T extends Matrix> T load( ReadableByteChannel channel ) throws IOException {
+        return read(channel, readCompressedHeader(channel));
+    }
+
+    /**
+     * Loads a block of rows from a dense matrix. Only the chunks which contain the rows are read.
+     *
+     * @param row0 First row, inclusive
+     * @param row1 Last row, exclusive
+     * @return Matrix with rows row1-row0 and the same number of columns and type as the saved matrix
+     */
+    public static <T extends Matrix> T loadRows( Path path , int row0 , int row1 ) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            BinaryMatrixIO.Header header = readCompressedHeader(channel);
+            if( header.storage != BinaryMatrixIO.STORAGE_ROW_MAJOR )
+                throw new IOException("Must be a dense row-major matrix");
+            if( row0 < 0 || row1 < row0 || row1 > header.numRows )
+                throw new IllegalArgumentException("Invalid row range "+row0+" to "+row1);
+
+            Chunk[] chunks = overlapping(readTable(channel, header), row0, row1);
+            readChunks(channel, chunks);
+
+            int width = valuesPerRow(header);
+            int precision = header.precision;
+            Matrix found = subHeader(header, row1-row0, header.numCols).create();
+            Object dst = denseData(found);
+            String[] errors = new String[chunks.length];
+            EjmlConcurrency.loopFor(0, chunks.length, i -> {
+                Chunk c = chunks[i];
+                try {
+                    Object values = newArray(precision, c.count*width);
+                    unshuffle(inflate(c), 0, c.count*width, values, 0);
+                    int start = Math.max(row0, c.first);
+                    int end = Math.min(row1, c.first+c.count);
+                    System.arraycopy(values, (start-c.first)*width, dst, (start-row0)*width, (end-start)*width);
+                } catch( IOException | RuntimeException e ) {
+                    errors[i] = "Chunk "+i+": "+e.getMessage();
+                }
+            });
+            checkErrors(errors);
+            return (T)found;
+        }
+    }
+
+    /**
+     * Loads a range of columns from a sparse matrix. Only the chunks which contain the columns are read.
+     *
+     * @param col0 First column, inclusive
+     * @param col1 Last column, exclusive
+     * @return Matrix with columns col1-col0 and the same number of rows and type as the saved matrix
+     */
+    public static <T extends Matrix> T loadColumns( Path path , int col0 , int col1 ) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            BinaryMatrixIO.Header header = readCompressedHeader(channel);
+            if( header.storage != BinaryMatrixIO.STORAGE_CSC )
+                throw new IOException("Must be a sparse matrix");
+            if( col0 < 0 || col1 < col0 || col1 > header.numCols )
+                throw new IllegalArgumentException("Invalid column range "+col0+" to "+col1);
+
+            Chunk[] table = readTable(channel, header);
+            Chunk[] chunks = overlapping(table, col0, col1);
+            readChunks(channel, chunks);
+
+            // decode each chunk into its own arrays then copy the requested columns
+            int[][] colIdx = new int[chunks.length][];
+            int[][] rows = new int[chunks.length][];
+            Object[] values = new Object[chunks.length];
+            String[] errors = new String[chunks.length];
+            EjmlConcurrency.loopFor(0, chunks.length, i -> {
+                Chunk c = chunks[i];
+                try {
+                    colIdx[i] = new int[c.count+1];
+                    rows[i] = new int[c.nz];
+                    values[i] = newArray(header.precision, c.nz);
+                    decodeColumns(header, c, inflate(c), colIdx[i], 0, 0, rows[i], values[i]);
+                } catch( IOException | RuntimeException e ) {
+                    errors[i] = "Chunk "+i+": "+e.getMessage();
+                }
+            });
+            checkErrors(errors);
+
+            int nz = 0;
+            for (int i = 0; i < chunks.length; i++) {
+                Chunk c = chunks[i];
+                nz += colIdx[i][Math.min(col1, c.first+c.count)-c.first]-colIdx[i][Math.max(col0, c.first)-c.first];
+            }
+            BinaryMatrixIO.Header sub = subHeader(header, header.numRows, col1-col0);
+            sub.extra = nz;
+            Matrix found = sub.create();
+            int[] dstColIdx = sparseColIdx(found);
+            int[] dstRows = sparseRows(found);
+            Object dstValues = sparseValues(found);
+
+            int used = 0;
+            for (int i = 0; i < chunks.length; i++) {
+                Chunk c = chunks[i];
+                int start = Math.max(col0, c.first);
+                int end = Math.min(col1, c.first+c.count);
+                int idx0 = colIdx[i][start-c.first];
+                int length = colIdx[i][end-c.first]-idx0;
+                System.arraycopy(rows[i], idx0, dstRows, used, length);
+                System.arraycopy(values[i], idx0, dstValues, used, length);
+                for (int col = start; col < end; col++) {
+                    dstColIdx[col-col0+1] = used + colIdx[i][col-c.first+1] - idx0;
+                }
+                used += length;
+            }
+            return (T)found;
+        }
+    }
+
+    /**
+     * Reads the rest of a compressed matrix after the header has already been read
+     */
+    static <T extends Matrix> T read( ReadableByteChannel channel , BinaryMatrixIO.Header header )
+            throws IOException {
+        Chunk[] chunks = readTable(channel, header);
+        long position = 4 + (long)ENTRY_LENGTH*chunks.length;
+        for( Chunk c : chunks ) {
+            if( c.offset != position )
+                throw new IOException("Chunks are not stored consecutively");
+            ByteBuffer bytes = ByteBuffer.allocate(c.length);
+            BinaryMatrixIO.readFully(channel, bytes);
+            c.data = bytes.array();
+            position += c.length;
+        }
+
+        Matrix found = header.create();
+        decodeAll(header, chunks, found);
+        return (T)found;
+    }
+
+    private static BinaryMatrixIO.Header readCompressedHeader( ReadableByteChannel channel ) throws IOException {
+        BinaryMatrixIO.Header header = BinaryMatrixIO.readHeader(channel);
+        if( !header.isCompressed() )
+            throw new IOException("Not a compressed matrix");
+        return header;
+    }
+
+    /**
+     * Reads the chunk table which immediately follows the header
+     */
+    private static Chunk[] readTable( ReadableByteChannel channel , BinaryMatrixIO.Header header )
+            throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        BinaryMatrixIO.readFully(channel, bytes);
+        bytes.flip();
+        int numChunks = bytes.getInt();
+        if( numChunks < 0 || 4 + (long)ENTRY_LENGTH*numChunks > header.payloadLength )
+            throw new IOException("Invalid number of chunks "+numChunks);
+
+        bytes = ByteBuffer.allocate(ENTRY_LENGTH*numChunks).order(ByteOrder.LITTLE_ENDIAN);
+        BinaryMatrixIO.readFully(channel, bytes);
+        bytes.flip();
+
+        boolean sparse = header.storage == BinaryMatrixIO.STORAGE_CSC;
+        int total = sparse ? header.numCols : header.numRows;
+        Chunk[] chunks = new Chunk[numChunks];
+        int expected = 0;
+        for (int i = 0; i < numChunks; i++) {
+            Chunk c = chunks[i] = Chunk.decode(bytes);
+            if( c.first != expected || c.count <= 0 || c.length < 0 || c.rawLength < 0 ||
+                    c.offset+c.length > header.payloadLength )
+                throw new IOException("Invalid chunk table");
+            expected += c.count;
+        }
+        if( expected != total )
+            throw new IOException("Chunks don't cover the matrix");
+
+        // the number of non-zero elements in a chunk is found from where the next one starts
+        if( sparse ) {
+            for (int i = 0; i < numChunks; i++) {
+                int next = i+1 < numChunks ? chunks[i+1].start : header.extra;
+                chunks[i].nz = next-chunks[i].start;
+                if( chunks[i].nz < 0 )
+                    throw new IOException("Invalid chunk table");
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Reads the compressed data for each chunk in parallel using positional reads
+     */
+    private static void readChunks( FileChannel channel , Chunk[] chunks ) throws IOException {
+        long payloadStart = BinaryMatrixIO.HEADER_LENGTH;
+        String[] errors = new String[chunks.length];
+        EjmlConcurrency.loopFor(0, chunks.length, i -> {
+            Chunk c = chunks[i];
+            ByteBuffer bytes = ByteBuffer.allocate(c.length);
+            try {
+                while( bytes.hasRemaining() ) {
+                    if( channel.read(bytes, payloadStart+c.offset+bytes.position()) < 0 )
+                        throw new IOException("Unexpected end of file");
+                }
+                c.data = bytes.array();
+            } catch( IOException e ) {
+                errors[i] = "Chunk "+i+": "+e.getMessage();
+            }
+        });
+        checkErrors(errors);
+    }
+
+    private static Chunk[] overlapping( Chunk[] chunks , int first , int last ) {
+        return Arrays.stream(chunks).filter(c -> c.first < last && c.first+c.count > first).toArray(Chunk[]::new);
+    }
+
+    /**
+     * Decompresses every chunk in parallel directly into the matrix
+     */
+    private static void decodeAll( BinaryMatrixIO.Header header , Chunk[] chunks , Matrix found ) throws IOException {
+        String[] errors = new String[chunks.length];
+        if( header.storage == BinaryMatrixIO.STORAGE_CSC ) {
+            int[] colIdx = sparseColIdx(found);
+            int[] rows = sparseRows(found);
+            Object values = sparseValues(found);
+            EjmlConcurrency.loopFor(0, chunks.length, i -> {
+                Chunk c = chunks[i];
+                try {
+                    decodeColumns(header, c, inflate(c), colIdx, c.first, c.start, rows, values);
+                } catch( IOException | RuntimeException e ) {
+                    errors[i] = "Chunk "+i+": "+e.getMessage();
+                }
+            });
+        } else {
+            int width = valuesPerRow(header);
+            Object data = denseData(found);
+            EjmlConcurrency.loopFor(0, chunks.length, i -> {
+                Chunk c = chunks[i];
+                try {
+                    unshuffle(inflate(c), 0, c.count*width, data, c.first*width);
+                } catch( IOException | RuntimeException e ) {
+                    errors[i] = "Chunk "+i+": "+e.getMessage();
+                }
+            });
+        }
+        checkErrors(errors);
+    }
+
+    private static void checkErrors( String[] errors ) throws IOException {
+        for( String e : errors ) {
+            if( e != null )
+                throw new IOException(e);
+        }
+    }
+
+    private static Chunk[] splitRows( BinaryMatrixIO.Header header ) {
+        int rowsPerChunk = Math.max(1, CHUNK_VALUES/Math.max(1, valuesPerRow(header)));
+        int numChunks = (header.numRows + rowsPerChunk - 1)/rowsPerChunk;
+        Chunk[] chunks = new Chunk[numChunks];
+        for (int i = 0; i < numChunks; i++) {
+            Chunk c = chunks[i] = new Chunk();
+            c.first = i*rowsPerChunk;
+            c.count = Math.min(rowsPerChunk, header.numRows-c.first);
+        }
+        return chunks;
+    }
+
+    private static Chunk[] splitColumns( Matrix A ) {
+        int[] colIdx = sparseColIdx(A);
+        int numCols = A.getNumCols();
+        int numChunks = 0;
+        Chunk[] chunks = new Chunk[numCols];
+        int col = 0;
+        while( col < numCols ) {
+            Chunk c = chunks[numChunks++] = new Chunk();
+            c.first = col;
+            c.start = colIdx[col];
+            do {
+                col++;
+            } while( col < numCols && colIdx[col]-c.start < CHUNK_VALUES );
+            c.count = col-c.first;
+            c.nz = colIdx[col]-c.start;
+        }
+        return Arrays.copyOf(chunks, numChunks);
+    }
+
+    private static byte[] encodeRows( Matrix A , BinaryMatrixIO.Header header , Chunk c ) {
+        int width = valuesPerRow(header);
+        int n = c.count*width;
+        byte[] raw = new byte[n*header.precision];
+        shuffle(denseData(A), c.first*width, n, raw, 0);
+        c.rawLength = raw.length;
+        return raw;
+    }
+
+    private static byte[] encodeColumns( Matrix A , BinaryMatrixIO.Header header , Chunk c ) {
+        boolean sorted = (header.flags & BinaryMatrixIO.FLAG_SORTED) != 0;
+        int[] colIdx = sparseColIdx(A);
+        int[] rows = sparseRows(A);
+        byte[] raw = new byte[5*c.count + 5*c.nz + header.precision*c.nz];
+
+        int pos = 0;
+        for (int col = c.first; col < c.first+c.count; col++) {
+            pos = putVarint(raw, pos, colIdx[col+1]-colIdx[col]);
+        }
+        for (int col = c.first; col < c.first+c.count; col++) {
+            int previous = 0;
+            for (int i = colIdx[col]; i < colIdx[col+1]; i++) {
+                int delta = rows[i]-previous;
+                pos = putVarint(raw, pos, sorted ? delta : (delta << 1) ^ (delta >> 31));
+                previous = rows[i];
+            }
+        }
+        shuffle(sparseValues(A), c.start, c.nz, raw, pos);
+        c.rawLength = pos + header.precision*c.nz;
+        return raw;
+    }
+
+    /**
+     * Decodes a sparse chunk
+     *
+     * @param colIdx col_idx array which is written to
+     * @param colOffset Index in colIdx of the chunk's first column
+     * @param nzOffset Index of the chunk's first non-zero element in rows and values
+     */
+    private static void decodeColumns( BinaryMatrixIO.Header header , Chunk c , byte[] raw ,
+                                       int[] colIdx , int colOffset , int nzOffset ,
+                                       int[] rows , Object values ) throws IOException {
+        boolean sorted = (header.flags & BinaryMatrixIO.FLAG_SORTED) != 0;
+        int[] pos = new int[1];
+
+        int index = nzOffset;
+        colIdx[colOffset] = nzOffset;
+        for (int i = 0; i < c.count; i++) {
+            index += getVarint(raw, pos);
+            colIdx[colOffset+i+1] = index;
+        }
+        if( index-nzOffset != c.nz )
+            throw new IOException("Unexpected number of non-zero elements");
+
+        for (int i = 0; i < c.count; i++) {
+            int previous = 0;
+            for (int j = colIdx[colOffset+i]; j < colIdx[colOffset+i+1]; j++) {
+                int v = getVarint(raw, pos);
+                int row = previous + (sorted ? v : (v >>> 1) ^ -(v & 1));
+                if( row < 0 || row >= header.numRows )
+                    throw new IOException("Row index out of bounds");
+                rows[j] = row;
+                previous = row;
+            }
+        }
+        if( pos[0] + c.nz*header.precision != c.rawLength )
+            throw new IOException("Unexpected chunk length");
+        unshuffle(raw, pos[0], c.nz, values, nzOffset);
+    }
+
+    private static int putVarint( byte[] raw , int pos , int value ) {
+        while( (value & ~0x7F) != 0 ) {
+            raw[pos++] = (byte)((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        raw[pos++] = (byte)value;
+        return pos;
+    }
+
+    private static int getVarint( byte[] raw , int[] pos ) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = raw[pos[0]++];
+            value |= (b & 0x7F) << shift;
+            if( b >= 0 )
+                return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Byte shuffles 'length' values from src into dst
+     */
+    static void shuffle( Object src , int srcOffset , int length , byte[] dst , int dstOffset ) {
+        if( src instanceof double[] ) {
+            double[] values = (double[])src;
+            for (int i = 0; i < length; i++) {
+                long bits = Double.doubleToRawLongBits(values[srcOffset+i]);
+                for (int k = 0; k < 8; k++) {
+                    dst[dstOffset + k*length + i] = (byte)(bits >>> (8*k));
+                }
+            }
+        } else {
+            float[] values = (float[])src;
+            for (int i = 0; i < length; i++) {
+                int bits = Float.floatToRawIntBits(values[srcOffset+i]);
+                for (int k = 0; k < 4; k++) {
+                    dst[dstOffset + k*length + i] = (byte)(bits >>> (8*k));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reverses {@link #shuffle}
+     */
+    static void unshuffle( byte[] src , int srcOffset , int length , Object dst , int dstOffset ) {
+        if( dst instanceof double[] ) {
+            double[] values = (double[])dst;
+            for (int i = 0; i < length; i++) {
+                long bits = 0;
+                for (int k = 0; k < 8; k++) {
+                    bits |= (src[srcOffset + k*length + i] & 0xFFL) << (8*k);
+                }
+                values[dstOffset+i] = Double.longBitsToDouble(bits);
+            }
+        } else {
+            float[] values = (float[])dst;
+            for (int i = 0; i < length; i++) {
+                int bits = 0;
+                for (int k = 0; k < 4; k++) {
+                    bits |= (src[srcOffset + k*length + i] & 0xFF) << (8*k);
+                }
+                values[dstOffset+i] = Float.intBitsToFloat(bits);
+            }
+        }
+    }
+
+    private static byte[] deflate( byte[] raw , int length , int level ) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(raw, 0, length);
+            deflater.finish();
+            byte[] out = new byte[Math.max(64, length/2)];
+            int size = 0;
+            while( !deflater.finished() ) {
+                if( size == out.length )
+                    out = Arrays.copyOf(out, out.length*2);
+                size += deflater.deflate(out, size, out.length-size);
+            }
+            return Arrays.copyOf(out, size);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Verifies the checksum and decompresses the chunk
+     */
+    private static byte[] inflate( Chunk c ) throws IOException {
+        byte[] data = c.data;
+        if( data == null )
+            throw new IOException("Chunk has not been read");
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        if( (int)crc.getValue() != c.crc )
+            throw new IOException("Checksum mismatch. File is corrupted.");
+
+        byte[] raw = new byte[c.rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            int size = 0;
+            while( size < raw.length ) {
+                int found = inflater.inflate(raw, size, raw.length-size);
+                if( found == 0 && (inflater.finished() || inflater.needsInput()) )
+                    throw new IOException("Compressed data is too short");
+                size += found;
+            }
+        } catch( DataFormatException e ) {
+            throw new IOException(e.getMessage());
+        } finally {
+            inflater.end();
+        }
+        c.data = null;
+        return raw;
+    }
+
+    private static int valuesPerRow( BinaryMatrixIO.Header header ) {
+        return header.numCols*(header.isComplex() ? 2 : 1);
+    }
+
+    private static BinaryMatrixIO.Header subHeader( BinaryMatrixIO.Header header , int numRows , int numCols ) {
+        BinaryMatrixIO.Header sub = new BinaryMatrixIO.Header();
+        sub.storage = header.storage;
+        sub.precision = header.precision;
+        sub.flags = header.flags;
+        sub.numRows = numRows;
+        sub.numCols = numCols;
+        return sub;
+    }
+
+    private static Object newArray( int precision , int length ) {
+        return precision == 8 ? new double[length] : new float[length];
+    }
+
+    private static Object denseData( Matrix A ) {
+        if( A instanceof DMatrixD1 )
+            return ((DMatrixD1)A).data;
+        else if( A instanceof FMatrixD1 )
+            return ((FMatrixD1)A).data;
+        else if( A instanceof ZMatrixD1 )
+            return ((ZMatrixD1)A).data;
+        else
+            return ((CMatrixD1)A).data;
+    }
+
+    private static int[] sparseColIdx( Matrix A ) {
+        return A instanceof DMatrixSparseCSC ? ((DMatrixSparseCSC)A).col_idx : ((FMatrixSparseCSC)A).col_idx;
+    }
+
+    private static int[] sparseRows( Matrix A ) {
+        return A instanceof DMatrixSparseCSC ? ((DMatrixSparseCSC)A).nz_rows : ((FMatrixSparseCSC)A).nz_rows;
+    }
+
+    private static Object sparseValues( Matrix A ) {
+        return A instanceof DMatrixSparseCSC ? ((DMatrixSparseCSC)A).nz_values : ((FMatrixSparseCSC)A).nz_values;
+    }
+
+    private static void writeFully( WritableByteChannel channel , ByteBuffer bytes ) throws IOException {
+        while( bytes.hasRemaining() )
+            channel.write(bytes);
+    }
+
+    /**
+     * A range of rows or columns which are compressed together
+     */
+    private static class Chunk {
+        // first row or column
+        int first;
+        // number of rows or columns
+        int count;
+        // index of the first non-zero element. sparse only
+        int start;
+        // number of non-zero elements. sparse only and not stored in the file
+        int nz;
+        // number of bytes after decompression
+        int rawLength;
+        // location of the compressed data relative to the start of the payload
+        long offset;
+        // number of bytes of compressed data
+        int length;
+        int crc;
+        @Nullable byte[] data;
+
+        void encode( ByteBuffer bytes ) {
+            bytes.putInt(first);
+            bytes.putInt(count);
+            bytes.putInt(start);
+            bytes.putInt(rawLength);
+            bytes.putLong(offset);
+            bytes.putInt(length);
+            bytes.putInt(crc);
+        }
+
+        static Chunk decode( ByteBuffer bytes ) {
+            Chunk c = new Chunk();
+            c.first = bytes.getInt();
+            c.count = bytes.getInt();
+            c.start = bytes.getInt();
+            c.rawLength = bytes.getInt();
+            c.offset = bytes.getLong();
+            c.length = bytes.getInt();
+            c.crc = bytes.getInt();
+            return c;
+        }
+    }
+}
@@ -911,4 +911,195 @@ public class ConvertDMatrixStruct {
 
         return dst;
     }
+
+    /**
+     * Converts {@link DMatrixSparseCSC} into {@link DMatrixSparseBlockCSC}. The block structure is specified by
+     * 'dst' and every block which contains at least one element from 'src' is added to its structure.
+     *
+     * @param src Original matrix which is to be copied.  Not modified.
+     * @param dst Destination. Block sizes must already be specified and match the shape of src. Modified.
+     * @param gw (Optional) Storage for internal workspace.  Can be null.
+     * @return The converted matrix
+     */
+    public static DMatrixSparseBlockCSC convert(DMatrixSparseCSC src , DMatrixSparseBlockCSC dst , @Nullable IGrowArray gw ) {
+        if( src.numRows != dst.numRows || src.numCols != dst.numCols )
+            throw new IllegalArgumentException("Shape of src and dst must match");
+
+        int[] work = UtilEjml.adjust(gw,src.numRows+dst.numBlockRows+dst.numBlockCols+src.nz_length);
+        int offMark = src.numRows;
+        int offHist = offMark + dst.numBlockRows;
+        int offList = offHist + dst.numBlockCols;
+        int[] blockRows = blockRowLookup(dst, work);
+        Arrays.fill(work,offMark,offHist,-1);
+
+        // find which blocks have non-zero elements inside of them
+        int total = 0;
+        for (int blockCol = 0; blockCol < dst.numBlockCols; blockCol++) {
+            int start = total;
+            int idx0 = src.col_idx[dst.col_blocks[blockCol]];
+            int idx1 = src.col_idx[dst.col_blocks[blockCol+1]];
+            for (int i = idx0; i < idx1; i++) {
+                int blockRow = blockRows[src.nz_rows[i]];
+                if( work[offMark+blockRow] != blockCol ) {
+                    work[offMark+blockRow] = blockCol;
+                    work[offList+total++] = blockRow;
+                }
+            }
+            Arrays.sort(work,offList+start,offList+total);
+            work[offHist+blockCol] = total-start;
+        }
+
+        int[] hist = Arrays.copyOfRange(work,offHist,offList);
+        int[] list = Arrays.copyOfRange(work,offList,offList+total);
+        dst.histogramToStructure(hist, list);
+        Arrays.fill(dst.nz_values,0,dst.nz_length,0);
+
+        // copy the values into the blocks
+        for (int blockCol = 0; blockCol < dst.numBlockCols; blockCol++) {
+            int col0 = dst.col_blocks[blockCol];
+            int width = dst.blockWidth(blockCol);
+            for (int i = dst.col_idx[blockCol]; i < dst.col_idx[blockCol+1]; i++) {
+                work[offMark+dst.nz_blockRows[i]] = i;
+            }
+            for (int col = col0; col < col0+width; col++) {
+                for (int i = src.col_idx[col]; i < src.col_idx[col+1]; i++) {
+                    int row = src.nz_rows[i];
+                    int blockRow = blockRows[row];
+                    int block = work[offMark+blockRow];
+                    dst.nz_values[dst.nz_offsets[block]+(row-dst.row_blocks[blockRow])*width+col-col0] = src.nz_values[i];
+                }
+            }
+        }
+
+        return dst;
+    }
+
+    /**
+     * Converts {@link DMatrixSparseTriplet} into {@link DMatrixSparseBlockCSC}. The block structure is specified by
+     * 'dst' and every block which contains at least one element from 'src' is added to its structure. If an element
+     * is specified multiple times in 'src' then the values are summed together.
+     *
+     * @param src Original matrix which is to be copied.  Not modified.
+     * @param dst Destination. Block sizes must already be specified and match the shape of src. Modified.
+     * @param gw (Optional) Storage for internal workspace.  Can be null.
+     * @return The converted matrix
+     */
+    public static DMatrixSparseBlockCSC convert(DMatrixSparseTriplet src , DMatrixSparseBlockCSC dst , @Nullable IGrowArray gw ) {
+        if( src.numRows != dst.numRows || src.numCols != dst.numCols )
+            throw new IllegalArgumentException("Shape of src and dst must match");
+
+        int N = src.nz_length;
+        int[] work = UtilEjml.adjust(gw,src.numRows+src.numCols+dst.numBlockRows+dst.numBlockCols+1+2*N);
+        int offBlockCols = src.numRows;
+        int offMark = offBlockCols + src.numCols;
+        int offHist = offMark + dst.numBlockRows;
+        int offOrder = offHist + dst.numBlockCols + 1;
+        int offList = offOrder + N;
+        int[] blockRows = blockRowLookup(dst, work);
+        for (int blockCol = 0; blockCol < dst.numBlockCols; blockCol++) {
+            Arrays.fill(work,offBlockCols+dst.col_blocks[blockCol],offBlockCols+dst.col_blocks[blockCol+1],blockCol);
+        }
+
+        // sort the elements by block column using a counting sort
+        Arrays.fill(work,offHist,offOrder,0);
+        for (int i = 0; i < N; i++) {
+            work[offHist+1+work[offBlockCols+src.nz_rowcol.data[i*2+1]]]++;
+        }
+        for (int i = 0; i < dst.numBlockCols; i++) {
+            work[offHist+i+1] += work[offHist+i];
+        }
+        int[] columnStart = Arrays.copyOfRange(work,offHist,offOrder);
+        for (int i = 0; i < N; i++) {
+            int blockCol = work[offBlockCols+src.nz_rowcol.data[i*2+1]];
+            work[offOrder+work[offHist+blockCol]++] = i;
+        }
+
+        // find which blocks have non-zero elements inside of them
+        Arrays.fill(work,offMark,offHist,-1);
+        int[] hist = new int[dst.numBlockCols];
+        int total = 0;
+        for (int blockCol = 0; blockCol < dst.numBlockCols; blockCol++) {
+            int start = total;
+            for (int k = columnStart[blockCol]; k < columnStart[blockCol+1]; k++) {
+                int blockRow = blockRows[src.nz_rowcol.data[work[offOrder+k]*2]];
+                if( work[offMark+blockRow] != blockCol ) {
+                    work[offMark+blockRow] = blockCol;
+                    work[offList+total++] = blockRow;
+                }
+            }
+            Arrays.sort(work,offList+start,offList+total);
+            hist[blockCol] = total-start;
+        }
+
+        dst.histogramToStructure(hist, Arrays.copyOfRange(work,offList,offList+total));
+        Arrays.fill(dst.nz_values,0,dst.nz_length,0);
+
+        // add the values to the blocks
+        for (int blockCol = 0; blockCol < dst.numBlockCols; blockCol++) {
+            int col0 = dst.col_blocks[blockCol];
+            int width = dst.blockWidth(blockCol);
+            for (int i = dst.col_idx[blockCol]; i < dst.col_idx[blockCol+1]; i++) {
+                work[offMark+dst.nz_blockRows[i]] = i;
+            }
+            for (int k = columnStart[blockCol]; k < columnStart[blockCol+1]; k++) {
+                int i = work[offOrder+k];
+                int row = src.nz_rowcol.data[i*2];
+                int col = src.nz_rowcol.data[i*2+1];
+                int blockRow = blockRows[row];
+                int block = work[offMark+blockRow];
+                dst.nz_values[dst.nz_offsets[block]+(row-dst.row_blocks[blockRow])*width+col-col0] += src.nz_value.data[i];
+            }
+        }
+
+        return dst;
+    }
+
+    /**
+     * Fills in the first numRows elements of 'work' with the block row each row belongs to
+     */
+    private static int[] blockRowLookup( DMatrixSparseBlockCSC dst , int[] work ) {
+        for (int blockRow = 0; blockRow < dst.numBlockRows; blockRow++) {
+            Arrays.fill(work,dst.row_blocks[blockRow],dst.row_blocks[blockRow+1],blockRow);
+        }
+        return work;
+    }
+
+    /**
+     * Converts {@link DMatrixSparseBlockCSC} into {@link DMatrixSparseCSC}. Every element inside of a non-zero
+     * block is copied, including elements which are zero. Row indices in the output will be sorted.
+     *
+     * @param src Original matrix which is to be copied.  Not modified.
+     * @param dst Destination. Will be a copy.  Modified.
+     * @return The converted matrix
+     */
+    public static DMatrixSparseCSC convert(DMatrixSparseBlockCSC src , @Nullable DMatrixSparseCSC dst ) {
+        dst = UtilEjml.reshapeOrDeclare(dst,src.numRows,src.numCols,src.nz_length);
+
+        int index = 0;
+        dst.col_idx[0] = 0;
+        for (int blockCol = 0; blockCol < src.numBlockCols; blockCol++) {
+            int col0 = src.col_blocks[blockCol];
+            int width = src.blockWidth(blockCol);
+            int idx0 = src.col_idx[blockCol];
+            int idx1 = src.col_idx[blockCol+1];
+
+            for (int localCol = 0; localCol < width; localCol++) {
+                for (int i = idx0; i < idx1; i++) {
+                    int blockRow = src.nz_blockRows[i];
+                    int row0 = src.row_blocks[blockRow];
+                    int height = src.blockHeight(blockRow);
+                    int offset = src.nz_offsets[i]+localCol;
+                    for (int localRow = 0; localRow < height; localRow++) {
+                        dst.nz_rows[index] = row0+localRow;
+                        dst.nz_values[index++] = src.nz_values[offset+localRow*width];
+                    }
+                }
+                dst.col_idx[col0+localCol+1] = index;
+            }
+        }
+        dst.nz_length = index;
+        dst.indicesSorted = true;
+
+        return dst;
+    }
 }
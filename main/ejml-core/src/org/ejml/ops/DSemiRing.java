@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.ops;
+
+/**
+ * <p>
+ * A semiring replaces the "plus" and "times" operations used in matrix multiplication. The identity of the add
+ * monoid is also the implicit value of elements which are not stored in a sparse matrix. Common semirings are
+ * defined in {@link DSemiRings} and these will use specialized code when possible.
+ * </p>
+ *
+ * @see <a href="https://graphblas.github.io/">GraphBLAS</a>
+ * @author Peter Abeles
+ */
+public final class DSemiRing {
+    /** Combines the results of mult. The identity is the value of elements which are not stored */
+    public final DMonoid add;
+    /** Replaces multiplication between two elements */
+    public final DMonoid mult;
+
+    public DSemiRing( DMonoid add, DMonoid mult ) {
+        this.add = add;
+        this.mult = mult;
+    }
+}
@@ -142,7 +142,8 @@ public class MatrixIO {
     }
 
     /**
-     * Reads a stream in Matrix Market Coordinate format
+     * Reads a stream in Matrix Market Coordinate format. For large files see
+     * {@link ParallelMatrixReader#loadMatrixMarket(String)}.
      *
      * https://math.nist.gov/MatrixMarket/formats.html
      *
@@ -269,7 +270,8 @@ public class MatrixIO {
     }
 
     /**
-     * Saves a matrix to disk using Java binary serialization.
+     * Saves a matrix to disk using Java binary serialization. {@link BinaryMatrixIO} provides a
+     * more compact and faster format which doesn't depend on serialization.
      *
      * @param A The matrix being saved.
      * @param fileName Name of the file its being saved at.
@@ -419,6 +421,7 @@ public class MatrixIO {
     /**
      * Reads a matrix in which has been encoded using a Column Space Value (CSV)
      * file format.  For a description of the format see {@link MatrixIO#loadCSV(String,boolean)}.
+     * Matrices which are too large to load all at once can be read in blocks of rows using {@link RowBlockReader}.
      *
      * @param fileName The file being loaded.
      * @param numRows number of rows in the matrix.
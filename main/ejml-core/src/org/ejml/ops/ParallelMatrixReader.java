@@ -0,0 +1,731 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.ops;
+
+import org.ejml.concurrency.EjmlConcurrency;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.data.DMatrixSparseCSC;
+import org.ejml.data.Matrix;
+import org.ejml.data.ZMatrixRMaj;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * <p>
+ * Reads large Matrix Market and CSV files quickly. The file is memory-mapped, split into chunks at line
+ * boundaries, and each chunk is parsed on its own thread using {@link EjmlConcurrency}. Numbers are parsed
+ * directly from the bytes without creating any Strings. Sparse matrices are assembled directly into
+ * {@link DMatrixSparseCSC} without creating a {@link org.ejml.data.DMatrixSparseTriplet} first.
+ * </p>
+ *
+ * <p>
+ * The Matrix Market reader supports the coordinate format and the real, double, integer, complex and pattern
+ * fields. For the symmetric, skew-symmetric and hermitian qualifiers the missing triangle is filled in. If the
+ * banner line is missing, e.g. files written by {@link MatrixIO#saveMatrixMarketD}, then "real general" is
+ * assumed. The CSV reader supports the same format as {@link MatrixIO#loadCSV(String, boolean)}.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+@SuppressWarnings("unchecked")
+public class ParallelMatrixReader {
+    /**
+     * Maximum number of bytes mapped at once. Larger files are processed one segment at a time.
+     */
+    public static int SEGMENT_SIZE = 1 << 30;
+
+    /**
+     * Minimum number of bytes in a chunk which is parsed by a single thread
+     */
+    public static int MIN_CHUNK_SIZE = 1 << 20;
+
+    // powers of 10 which can be represented exactly as a double
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /**
+     * Loads a real Matrix Market file.
+     *
+     * @see #loadMatrixMarket(Path, DMatrixSparseCSC)
+     */
+    public static DMatrixSparseCSC loadMatrixMarket( String fileName ) throws IOException {
+        return loadMatrixMarket(Paths.get(fileName), null);
+    }
+
+    /**
+     * Loads a file in the Matrix Market coordinate format.
+     *
+     * @param path Path to the file
+     * @param imaginary (Output) Storage for the imaginary component. Only used if the file is complex, in which
+     *                  case it must not be null. Its structure will be the same as the returned matrix.
+     * @return The real component of the matrix
+     */
+    public static DMatrixSparseCSC loadMatrixMarket( Path path , @Nullable DMatrixSparseCSC imaginary )
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Cursor cursor = headerCursor(channel);
+
+            Format format = new Format();
+            format.base = 1;
+
+            // banner line
+            cursor.skipSpace();
+            if( cursor.startsWith("%%MatrixMarket") ) {
+                cursor.word();
+                String object = cursor.word().toLowerCase(Locale.ENGLISH);
+                String storage = cursor.word().toLowerCase(Locale.ENGLISH);
+                String field = cursor.word().toLowerCase(Locale.ENGLISH);
+                String symmetry = cursor.word().toLowerCase(Locale.ENGLISH);
+                if( !object.equals("matrix") )
+                    throw new IOException("Unsupported object "+object);
+                if( !storage.equals("coordinate") )
+                    throw new IOException("Only the coordinate format is supported. Found "+storage);
+                switch( field ) {
+                    case "real": case "double": case "integer": break;
+                    case "complex": format.complex = true; break;
+                    case "pattern": format.pattern = true; break;
+                    default: throw new IOException("Unknown field "+field);
+                }
+                switch( symmetry ) {
+                    case "general": format.symmetry = Symmetry.GENERAL; break;
+                    case "symmetric": format.symmetry = Symmetry.SYMMETRIC; break;
+                    case "skew-symmetric": format.symmetry = Symmetry.SKEW; break;
+                    case "hermitian": format.symmetry = Symmetry.HERMITIAN; break;
+                    default: throw new IOException("Unknown symmetry "+symmetry);
+                }
+                cursor.nextLine();
+            }
+            if( format.complex && imaginary == null )
+                throw new IllegalArgumentException("File contains a complex matrix. imaginary can't be null");
+
+            // skip comments and find the size line
+            cursor.skipCommentsAndBlank();
+            format.numRows = cursor.parseInt();
+            format.numCols = cursor.parseInt();
+            int declared = cursor.parseInt();
+            cursor.nextLine();
+
+            List<CoordinateChunk> chunks = parseChunks(channel, cursor.pos, CoordinateChunk::new,
+                    (buffer, start, end, offset, out) -> parseCoordinates(buffer, start, end, offset, format, out));
+
+            long found = 0;
+            for( CoordinateChunk c : chunks ) {
+                found += c.size;
+            }
+            if( found != declared )
+                throw new IOException("Expected "+declared+" entries but found "+found);
+
+            return buildCSC(format, chunks, imaginary);
+        }
+    }
+
+    /**
+     * Loads a file in the CSV format used by {@link MatrixIO#loadCSV(String, boolean)}. Dense real matrices are
+     * returned as {@link DMatrixRMaj}, dense complex as {@link ZMatrixRMaj}, and sparse matrices as
+     * {@link DMatrixSparseCSC}.
+     *
+     * @param path Path to the file
+     * @return The matrix
+     */
+    public static <T extends Matrix> T loadCSV( Path path ) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Cursor cursor = headerCursor(channel);
+
+            List<String> words = new ArrayList<>();
+            cursor.skipSpace();
+            while( !cursor.atLineEnd() ) {
+                words.add(cursor.word());
+                cursor.skipSpace();
+            }
+            cursor.nextLine();
+
+            if( words.size() != 3 && words.size() != 4 )
+                throw new IOException("Unexpected number of words on the first line. Found "+words.size());
+            int numRows = Integer.parseInt(words.get(0));
+            int numCols = Integer.parseInt(words.get(1));
+            boolean real = words.get(words.size()-1).compareToIgnoreCase("real") == 0;
+            if( numRows < 0 || numCols < 0 )
+                throw new IOException("Invalid number of rows and/or columns: "+numRows+" "+numCols);
+
+            if( words.size() == 3 ) {
+                int valuesPerLine = real ? numCols : 2*numCols;
+                List<DenseChunk> chunks = parseChunks(channel, cursor.pos, DenseChunk::new,
+                        (buffer, start, end, offset, out) -> parseDense(buffer, start, end, offset, valuesPerLine, out));
+
+                Matrix output = real ? new DMatrixRMaj(numRows, numCols) : new ZMatrixRMaj(numRows, numCols);
+                double[] data = real ? ((DMatrixRMaj)output).data : ((ZMatrixRMaj)output).data;
+                int lines = 0;
+                int index = 0;
+                for( DenseChunk c : chunks ) {
+                    lines += c.lines;
+                    if( lines > numRows )
+                        break;
+                    System.arraycopy(c.values, 0, data, index, c.size);
+                    index += c.size;
+                }
+                if( lines != numRows )
+                    throw new IOException("Expected "+numRows+" rows but found "+lines);
+                return (T)output;
+            } else {
+                if( !real )
+                    throw new IllegalArgumentException("Sparse complex not yet supported");
+                Format format = new Format();
+                format.numRows = numRows;
+                format.numCols = numCols;
+                int declared = Integer.parseInt(words.get(2));
+
+                List<CoordinateChunk> chunks = parseChunks(channel, cursor.pos, CoordinateChunk::new,
+                        (buffer, start, end, offset, out) -> parseCoordinates(buffer, start, end, offset, format, out));
+                long found = 0;
+                for( CoordinateChunk c : chunks ) {
+                    found += c.size;
+                }
+                if( found != declared )
+                    throw new IOException("Expected "+declared+" entries but found "+found);
+                return (T)buildCSC(format, chunks, null);
+            }
+        }
+    }
+
+    /**
+     * Maps the beginning of the file so that the header can be read. Pages are only loaded when accessed,
+     * so mapping a large region is cheap.
+     */
+    private static Cursor headerCursor( FileChannel channel ) throws IOException {
+        return new Cursor(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                Math.min(channel.size(), Integer.MAX_VALUE)));
+    }
+
+    /**
+     * Maps the file one segment at a time, splits each segment into chunks at line boundaries, and parses
+     * the chunks concurrently. The chunk results are returned in the same order as they appear in the file.
+     */
+    private static <T extends Chunk> List<T> parseChunks( FileChannel channel , long start ,
+                                                          Supplier<T> factory , ChunkParser<T> parser )
+            throws IOException {
+        List<T> results = new ArrayList<>();
+        long size = channel.size();
+        long position = start;
+        while( position < size ) {
+            long length = Math.min(SEGMENT_SIZE, size-position);
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+            // the segment must end at the end of a line
+            int end = (int)length;
+            if( position + length < size ) {
+                while( end > 0 && buffer.get(end-1) != '\n' )
+                    end--;
+                if( end == 0 )
+                    throw new IOException("Line is longer than the segment size");
+            }
+
+            int[] bounds = splitAtLines(buffer, end);
+            List<T> chunks = new ArrayList<>();
+            for (int i = 0; i < bounds.length-1; i++) {
+                chunks.add(factory.get());
+            }
+            final long offset = position;
+            EjmlConcurrency.loopFor(0, chunks.size(), i -> {
+                T chunk = chunks.get(i);
+                try {
+                    parser.parse(buffer, bounds[i], bounds[i+1], offset, chunk);
+                } catch( RuntimeException e ) {
+                    chunk.error = e.getMessage();
+                }
+            });
+            for( T c : chunks ) {
+                if( c.error != null )
+                    throw new IOException(c.error);
+            }
+            results.addAll(chunks);
+            position += end;
+        }
+        return results;
+    }
+
+    /**
+     * Selects where each chunk starts. Every chunk, except possibly the last, ends just after a new line.
+     */
+    private static int[] splitAtLines( ByteBuffer buffer , int end ) {
+        int numChunks = Math.max(1, Math.min(4*EjmlConcurrency.getMaxThreads(), end/Math.max(1, MIN_CHUNK_SIZE)));
+        int[] bounds = new int[numChunks+1];
+        for (int i = 1; i < numChunks; i++) {
+            int index = Math.max(bounds[i-1], (int)((long)end*i/numChunks));
+            while( index < end && buffer.get(index) != '\n' )
+                index++;
+            bounds[i] = Math.min(end, index+1);
+        }
+        bounds[numChunks] = end;
+        return bounds;
+    }
+
+    private static void parseCoordinates( ByteBuffer buffer , int start , int end , long offset ,
+                                          Format format , CoordinateChunk out ) {
+        Cursor c = new Cursor(buffer, start, end, offset);
+        while( !c.atEnd() ) {
+            c.skipSpace();
+            if( c.atLineEnd() || c.peek() == '%' ) {
+                c.nextLine();
+                continue;
+            }
+            int row = c.parseInt() - format.base;
+            int col = c.parseInt() - format.base;
+            double real = 1.0, imaginary = 0.0;
+            if( !format.pattern ) {
+                real = c.parseDouble();
+                if( format.complex )
+                    imaginary = c.parseDouble();
+            }
+            c.endOfLine();
+
+            if( row < 0 || row >= format.numRows || col < 0 || col >= format.numCols )
+                throw c.error("Element out of bounds ("+row+","+col+")");
+            out.add(row, col, real, imaginary, format.complex);
+        }
+    }
+
+    private static void parseDense( ByteBuffer buffer , int start , int end , long offset ,
+                                    int valuesPerLine , DenseChunk out ) {
+        Cursor c = new Cursor(buffer, start, end, offset);
+        while( !c.atEnd() ) {
+            c.skipSpace();
+            if( c.atLineEnd() ) {
+                c.nextLine();
+                continue;
+            }
+            int before = out.size;
+            while( !c.atLineEnd() ) {
+                out.add(c.parseDouble());
+                c.skipSpace();
+            }
+            c.nextLine();
+            if( out.size - before != valuesPerLine )
+                throw c.error("Expected "+valuesPerLine+" values on the line but found "+(out.size-before));
+            out.lines++;
+        }
+    }
+
+    private static DMatrixSparseCSC buildCSC( Format format , List<CoordinateChunk> chunks ,
+                                              @Nullable DMatrixSparseCSC imaginary ) throws IOException {
+        boolean mirror = format.symmetry != Symmetry.GENERAL;
+
+        // count the number of elements in each column
+        long[] counts = new long[format.numCols+1];
+        for( CoordinateChunk c : chunks ) {
+            for (int i = 0; i < c.size; i++) {
+                counts[c.cols[i]+1]++;
+                if( mirror && c.rows[i] != c.cols[i] )
+                    counts[c.rows[i]+1]++;
+            }
+        }
+        for (int i = 1; i <= format.numCols; i++) {
+            counts[i] += counts[i-1];
+        }
+        if( counts[format.numCols] > Integer.MAX_VALUE )
+            throw new IOException("Too many non-zero elements");
+        int nz_length = (int)counts[format.numCols];
+
+        DMatrixSparseCSC output = new DMatrixSparseCSC(format.numRows, format.numCols, nz_length);
+        output.nz_length = nz_length;
+        for (int i = 0; i <= format.numCols; i++) {
+            output.col_idx[i] = (int)counts[i];
+        }
+        double[] valuesImag = format.complex ? new double[nz_length] : new double[0];
+
+        // place each element into its column
+        int[] next = new int[format.numCols];
+        System.arraycopy(output.col_idx, 0, next, 0, format.numCols);
+        double signReal = format.symmetry == Symmetry.SKEW ? -1 : 1;
+        double signImag = format.symmetry == Symmetry.SYMMETRIC ? 1 : -1;
+        for( CoordinateChunk c : chunks ) {
+            for (int i = 0; i < c.size; i++) {
+                int row = c.rows[i], col = c.cols[i];
+                int index = next[col]++;
+                output.nz_rows[index] = row;
+                output.nz_values[index] = c.real[i];
+                if( format.complex )
+                    valuesImag[index] = c.imag[i];
+
+                if( mirror && row != col ) {
+                    index = next[row]++;
+                    output.nz_rows[index] = col;
+                    output.nz_values[index] = signReal*c.real[i];
+                    if( format.complex )
+                        valuesImag[index] = signImag*c.imag[i];
+                }
+            }
+        }
+
+        if( !isSorted(output) ) {
+            if( format.complex ) {
+                // sort a permutation then apply it to both components
+                double[] real = output.nz_values;
+                double[] order = new double[nz_length];
+                for (int i = 0; i < nz_length; i++) {
+                    order[i] = i;
+                }
+                output.nz_values = order;
+                output.sortIndices(null);
+                output.nz_values = new double[nz_length];
+                double[] sortedImag = new double[nz_length];
+                for (int i = 0; i < nz_length; i++) {
+                    output.nz_values[i] = real[(int)order[i]];
+                    sortedImag[i] = valuesImag[(int)order[i]];
+                }
+                valuesImag = sortedImag;
+            } else {
+                output.sortIndices(null);
+            }
+        }
+        output.indicesSorted = true;
+
+        if( format.complex && imaginary != null ) {
+            imaginary.copyStructure(output);
+            System.arraycopy(valuesImag, 0, imaginary.nz_values, 0, nz_length);
+            imaginary.indicesSorted = true;
+        }
+        return output;
+    }
+
+    private static boolean isSorted( DMatrixSparseCSC A ) {
+        for (int col = 0; col < A.numCols; col++) {
+            int idx0 = A.col_idx[col];
+            int idx1 = A.col_idx[col+1];
+            for (int i = idx0+1; i < idx1; i++) {
+                if( A.nz_rows[i-1] >= A.nz_rows[i] )
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private enum Symmetry {
+        GENERAL, SYMMETRIC, SKEW, HERMITIAN
+    }
+
+    private static class Format {
+        int numRows, numCols;
+        // index of the first row and column
+        int base = 0;
+        boolean complex = false;
+        boolean pattern = false;
+        Symmetry symmetry = Symmetry.GENERAL;
+    }
+
+    private interface ChunkParser<T> {
+        void parse( ByteBuffer buffer , int start , int end , long offset , T output );
+    }
+
+    private static class Chunk {
+        @Nullable String error;
+    }
+
+    private static class CoordinateChunk extends Chunk {
+        int size;
+        int[] rows = new int[16];
+        int[] cols = new int[16];
+        double[] real = new double[16];
+        double[] imag = new double[0];
+
+        void add( int row , int col , double valueReal , double valueImag , boolean complex ) {
+            if( size == rows.length ) {
+                int length = size*2;
+                rows = Arrays.copyOf(rows, length);
+                cols = Arrays.copyOf(cols, length);
+                real = Arrays.copyOf(real, length);
+            }
+            if( complex && size >= imag.length )
+                imag = Arrays.copyOf(imag, rows.length);
+            rows[size] = row;
+            cols[size] = col;
+            real[size] = valueReal;
+            if( complex )
+                imag[size] = valueImag;
+            size++;
+        }
+    }
+
+    private static class DenseChunk extends Chunk {
+        int size;
+        int lines;
+        double[] values = new double[16];
+
+        void add( double value ) {
+            if( size == values.length )
+                values = Arrays.copyOf(values, size*2);
+            values[size++] = value;
+        }
+    }
+
+    /**
+     * Parses text directly from the bytes in a buffer. Only absolute reads are used, so several cursors can
+     * share the same buffer across threads.
+     */
+    private static class Cursor {
+        ByteBuffer buffer;
+        int pos;
+        int end;
+        // location of the buffer in the file
+        long offset;
+
+        Cursor( ByteBuffer buffer ) {
+            this(buffer, 0, buffer.limit(), 0);
+        }
+
+        Cursor( ByteBuffer buffer , int start , int end , long offset ) {
+            this.buffer = buffer;
+            this.pos = start;
+            this.end = end;
+            this.offset = offset;
+        }
+
+        boolean atEnd() {
+            return pos >= end;
+        }
+
+        byte peek() {
+            return buffer.get(pos);
+        }
+
+        boolean atLineEnd() {
+            return pos >= end || buffer.get(pos) == '\n';
+        }
+
+        void skipSpace() {
+            while( pos < end ) {
+                byte c = buffer.get(pos);
+                if( c != ' ' && c != '\t' && c != '\r' )
+                    break;
+                pos++;
+            }
+        }
+
+        /**
+         * Moves to the start of the next line
+         */
+        void nextLine() {
+            while( pos < end && buffer.get(pos++) != '\n' ) {}
+        }
+
+        /**
+         * Makes sure there is nothing except white space left on the line then moves to the next line
+         */
+        void endOfLine() {
+            skipSpace();
+            if( !atLineEnd() )
+                throw error("Unexpected text at end of line");
+            nextLine();
+        }
+
+        void skipCommentsAndBlank() {
+            while( true ) {
+                skipSpace();
+                if( atEnd() )
+                    throw error("Unexpected end of file");
+                if( atLineEnd() || peek() == '%' )
+                    nextLine();
+                else
+                    return;
+            }
+        }
+
+        boolean startsWith( String text ) {
+            if( pos + text.length() > end )
+                return false;
+            for (int i = 0; i < text.length(); i++) {
+                if( buffer.get(pos+i) != text.charAt(i) )
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * Reads the next word as a String. Only used when reading headers.
+         */
+        String word() {
+            skipSpace();
+            int start = pos;
+            while( pos < end && !isDelimiter(buffer.get(pos)) )
+                pos++;
+            return text(start, pos);
+        }
+
+        int parseInt() {
+            skipSpace();
+            boolean negative = false;
+            if( pos < end && (buffer.get(pos) == '-' || buffer.get(pos) == '+') ) {
+                negative = buffer.get(pos) == '-';
+                pos++;
+            }
+            int start = pos;
+            long value = 0;
+            while( pos < end ) {
+                int digit = buffer.get(pos) - '0';
+                if( digit < 0 || digit > 9 )
+                    break;
+                value = value*10 + digit;
+                if( value > Integer.MAX_VALUE )
+                    throw error("Integer is too large");
+                pos++;
+            }
+            if( pos == start || (pos < end && !isDelimiter(buffer.get(pos))) )
+                throw error("Expected an integer");
+            return (int)(negative ? -value : value);
+        }
+
+        /**
+         * Parses a floating point number. Numbers with up to 18 significant digits and a small exponent are
+         * converted exactly using a single multiplication or division. Anything else is passed to
+         * {@link Double#parseDouble}.
+         */
+        double parseDouble() {
+            skipSpace();
+            int start = pos;
+            boolean negative = false;
+            if( pos < end && (buffer.get(pos) == '-' || buffer.get(pos) == '+') ) {
+                negative = buffer.get(pos) == '-';
+                pos++;
+            }
+
+            long mantissa = 0;
+            int significant = 0;
+            int exponent = 0;
+            boolean digits = false;
+            boolean exact = true;
+
+            // integer part
+            while( pos < end ) {
+                int digit = buffer.get(pos) - '0';
+                if( digit < 0 || digit > 9 )
+                    break;
+                digits = true;
+                if( significant < 18 ) {
+                    mantissa = mantissa*10 + digit;
+                    if( mantissa != 0 )
+                        significant++;
+                } else {
+                    exact = false;
+                }
+                pos++;
+            }
+
+            // fractional part
+            if( pos < end && buffer.get(pos) == '.' ) {
+                pos++;
+                while( pos < end ) {
+                    int digit = buffer.get(pos) - '0';
+                    if( digit < 0 || digit > 9 )
+                        break;
+                    digits = true;
+                    if( significant < 18 ) {
+                        mantissa = mantissa*10 + digit;
+                        if( mantissa != 0 )
+                            significant++;
+                        exponent--;
+                    } else {
+                        exact = false;
+                    }
+                    pos++;
+                }
+            }
+
+            if( !digits ) {
+                // could be NaN or Infinity
+                pos = start;
+                while( pos < end && !isDelimiter(buffer.get(pos)) )
+                    pos++;
+                return fallback(start);
+            }
+
+            // exponent
+            if( pos < end && (buffer.get(pos) == 'e' || buffer.get(pos) == 'E') ) {
+                pos++;
+                boolean negativeExp = false;
+                if( pos < end && (buffer.get(pos) == '-' || buffer.get(pos) == '+') ) {
+                    negativeExp = buffer.get(pos) == '-';
+                    pos++;
+                }
+                int expStart = pos;
+                int value = 0;
+                while( pos < end ) {
+                    int digit = buffer.get(pos) - '0';
+                    if( digit < 0 || digit > 9 )
+                        break;
+                    if( value < 100_000 )
+                        value = value*10 + digit;
+                    pos++;
+                }
+                if( pos == expStart )
+                    throw error("Malformed exponent");
+                exponent += negativeExp ? -value : value;
+            }
+
+            if( pos < end && !isDelimiter(buffer.get(pos)) )
+                throw error("Malformed number");
+
+            double value;
+            if( mantissa == 0 ) {
+                value = 0.0;
+            } else if( exact && mantissa < (1L << 53) && exponent >= -22 && exponent <= 22 ) {
+                value = exponent >= 0 ? mantissa*POW10[exponent] : mantissa/POW10[-exponent];
+            } else {
+                return fallback(start);
+            }
+            return negative ? -value : value;
+        }
+
+        private double fallback( int start ) {
+            try {
+                return Double.parseDouble(text(start, pos));
+            } catch( NumberFormatException e ) {
+                throw error("Malformed number");
+            }
+        }
+
+        private String text( int start , int stop ) {
+            byte[] bytes = new byte[stop-start];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(start+i);
+            }
+            return new String(bytes, US_ASCII);
+        }
+
+        private static boolean isDelimiter( byte c ) {
+            return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+        }
+
+        RuntimeException error( String message ) {
+            return new IllegalArgumentException(message+" near byte "+(offset+pos));
+        }
+    }
+}
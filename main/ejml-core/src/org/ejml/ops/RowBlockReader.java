@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.ops;
+
+import org.ejml.data.DMatrixRMaj;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * <p>
+ * Reads a dense real matrix from a stream one block of rows at a time. Only a single block is kept in memory,
+ * which allows a computation to be applied to a matrix that is much larger than the available memory. Rows
+ * are written into a {@link DMatrixRMaj} provided by the caller, which is reshaped and reused for every
+ * block. All blocks have the same height except for the last one, which might be shorter.
+ * </p>
+ *
+ * <p>
+ * The source can be a CSV file, see {@link MatrixIO#loadCSV(String, boolean)}, or a row-major file written
+ * by {@link BinaryMatrixIO}. Calling {@link #prefetch()} wraps the reader so that the next block is read
+ * by a background thread while the current block is being processed.
+ * </p>
+ *
+ * <p>Example, accumulating the Gram matrix A<sup>T</sup>A:</p>
+ * <pre>
+ * DMatrixRMaj AtA = new DMatrixRMaj(1,1);
+ * try (RowBlockReader reader = RowBlockReader.binary(path, 1000).prefetch()) {
+ *     AtA.reshape(reader.getNumCols(), reader.getNumCols());
+ *     AtA.zero();
+ *     DMatrixRMaj block = new DMatrixRMaj(1,1);
+ *     while( reader.next(block) )
+ *         CommonOps_DDRM.multAddTransA(block, block, AtA);
+ * }
+ * </pre>
+ *
+ * @author Peter Abeles
+ */
+public abstract class RowBlockReader implements Closeable {
+    protected int numRows;
+    protected int numCols;
+    protected int blockHeight;
+
+    // number of rows which have been returned so far
+    protected int rowsRead;
+
+    protected RowBlockReader( int numRows , int numCols , int blockHeight ) {
+        if( numRows < 0 || numCols < 0 )
+            throw new IllegalArgumentException("Invalid number of rows and/or columns: "+numRows+" "+numCols);
+        if( blockHeight <= 0 )
+            throw new IllegalArgumentException("Block height must be positive");
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.blockHeight = blockHeight;
+    }
+
+    /**
+     * Reads a CSV file which starts with the same header as {@link MatrixIO#saveDenseCSV}. Only real
+     * matrices are supported.
+     *
+     * @param in Where the input comes from. Closed when the reader is closed.
+     * @param blockHeight Maximum number of rows in each block
+     */
+    public static RowBlockReader csv( InputStream in , int blockHeight ) throws IOException {
+        ReadCsv csv = new ReadCsv(in);
+        List<String> words = csv.extractWords();
+        if( words == null )
+            throw new IOException("Not enough lines in file");
+        if( words.size() != 3 )
+            throw new IOException("Unexpected number of words on the first line. Found "+words.size());
+        if( words.get(2).compareToIgnoreCase("real") != 0 )
+            throw new IOException("Only real dense matrices are supported");
+        int numRows = Integer.parseInt(words.get(0));
+        int numCols = Integer.parseInt(words.get(1));
+        return new Csv(csv, in, numRows, numCols, blockHeight);
+    }
+
+    /**
+     * Reads a CSV file which has no header and where the matrix dimensions are specified by the user. Same
+     * format as {@link MatrixIO#loadCSV(String, int, int)}.
+     *
+     * @param in Where the input comes from. Closed when the reader is closed.
+     * @param numRows Number of rows in the matrix
+     * @param numCols Number of columns in the matrix
+     * @param blockHeight Maximum number of rows in each block
+     */
+    public static RowBlockReader csv( InputStream in , int numRows , int numCols , int blockHeight ) {
+        return new Csv(new ReadCsv(in), in, numRows, numCols, blockHeight);
+    }
+
+    /**
+     * Reads a real row-major matrix written by {@link BinaryMatrixIO}. Single and double precision files are
+     * both supported. If the file has a checksum it's verified after the last block has been read.
+     *
+     * @param channel Where the input comes from. Closed when the reader is closed.
+     * @param blockHeight Maximum number of rows in each block
+     */
+    public static RowBlockReader binary( ReadableByteChannel channel , int blockHeight ) throws IOException {
+        BinaryMatrixIO.Header header = BinaryMatrixIO.readHeader(channel);
+        if( header.storage != BinaryMatrixIO.STORAGE_ROW_MAJOR || header.isComplex() || header.isCompressed() )
+            throw new IOException("Must be an uncompressed real row-major matrix");
+        return new Binary(channel, header, blockHeight);
+    }
+
+    /**
+     * Opens a file written by {@link BinaryMatrixIO}.
+     *
+     * @see #binary(ReadableByteChannel, int)
+     */
+    public static RowBlockReader binary( Path path , int blockHeight ) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return binary(channel, blockHeight);
+        } catch( IOException | RuntimeException e ) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a reader which reads blocks from this reader in a background thread, so that reading and
+     * parsing the next block overlaps with processing the current one. The returned reader takes ownership
+     * of this reader and closes it. This reader should not be used directly afterwards.
+     */
+    public RowBlockReader prefetch() {
+        return new Prefetch(this);
+    }
+
+    /**
+     * Reads the next block of rows. The block is reshaped to have the same number of columns as the matrix
+     * and up to {@link #getBlockHeight()} rows.
+     *
+     * @param block (Output) Storage for the rows. Modified.
+     * @return true if rows were read or false if all the rows have already been read
+     */
+    public boolean next( DMatrixRMaj block ) throws IOException {
+        int rows = Math.min(blockHeight, numRows-rowsRead);
+        if( rows <= 0 )
+            return false;
+        block.reshape(rows, numCols, false);
+        readRows(block.data, rows);
+        rowsRead += rows;
+        if( rowsRead == numRows )
+            finished();
+        return true;
+    }
+
+    /**
+     * Reads the specified number of rows into the array, starting at element zero
+     */
+    protected abstract void readRows( double[] data , int rows ) throws IOException;
+
+    /**
+     * Called after the last row has been read
+     */
+    protected void finished() throws IOException {}
+
+    /**
+     * Number of rows in the whole matrix
+     */
+    public int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * Number of columns in the matrix and in each block
+     */
+    public int getNumCols() {
+        return numCols;
+    }
+
+    /**
+     * Maximum number of rows in a block
+     */
+    public int getBlockHeight() {
+        return blockHeight;
+    }
+
+    /**
+     * Number of rows which have been read so far. This is also the index of the first row in the next block.
+     */
+    public int getRowsRead() {
+        return rowsRead;
+    }
+
+    private static class Csv extends RowBlockReader {
+        ReadCsv csv;
+        InputStream in;
+
+        Csv( ReadCsv csv , InputStream in , int numRows , int numCols , int blockHeight ) {
+            super(numRows, numCols, blockHeight);
+            this.csv = csv;
+            this.in = in;
+        }
+
+        @Override
+        protected void readRows( double[] data , int rows ) throws IOException {
+            int index = 0;
+            for (int i = 0; i < rows; i++) {
+                List<String> words = csv.extractWords();
+                if( words == null )
+                    throw new IOException("Too few rows found. expected "+numRows+" actual "+(rowsRead+i));
+                if( words.size() != numCols )
+                    throw new IOException("Unexpected number of words in column. Found "+words.size()+
+                            " expected "+numCols);
+                for (int j = 0; j < numCols; j++) {
+                    data[index++] = Double.parseDouble(words.get(j));
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static class Binary extends RowBlockReader {
+        ReadableByteChannel channel;
+        BinaryMatrixIO.Input input;
+        int precision;
+        float[] work = new float[0];
+
+        Binary( ReadableByteChannel channel , BinaryMatrixIO.Header header , int blockHeight ) {
+            super(header.numRows, header.numCols, blockHeight);
+            this.channel = channel;
+            this.precision = header.precision;
+            this.input = new BinaryMatrixIO.Input(channel, header.payloadLength, header.hasChecksum());
+        }
+
+        @Override
+        protected void readRows( double[] data , int rows ) throws IOException {
+            int length = rows*numCols;
+            if( precision == 8 ) {
+                input.getDoubles(data, length);
+            } else {
+                if( work.length < length )
+                    work = new float[length];
+                input.getFloats(work, length);
+                for (int i = 0; i < length; i++) {
+                    data[i] = work[i];
+                }
+            }
+        }
+
+        @Override
+        protected void finished() throws IOException {
+            if( input.crc != null )
+                input.verifyChecksum();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads blocks from another reader in a background thread. Two buffers are passed back and forth between
+     * the threads, one being filled while the other is consumed.
+     */
+    private static class Prefetch extends RowBlockReader {
+        // marks the end of the stream or that the background thread failed
+        static final DMatrixRMaj END = new DMatrixRMaj(0, 0);
+
+        RowBlockReader source;
+        BlockingQueue<DMatrixRMaj> filled = new ArrayBlockingQueue<>(3);
+        BlockingQueue<DMatrixRMaj> empty = new ArrayBlockingQueue<>(2);
+        Thread thread;
+        volatile @Nullable Exception failure;
+
+        Prefetch( RowBlockReader source ) {
+            super(source.numRows, source.numCols, source.blockHeight);
+            this.source = source;
+            this.rowsRead = source.rowsRead;
+            empty.add(new DMatrixRMaj(1, 1));
+            empty.add(new DMatrixRMaj(1, 1));
+
+            thread = new Thread(this::fillBlocks, "RowBlockReader");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void fillBlocks() {
+            try {
+                while( true ) {
+                    DMatrixRMaj block = empty.take();
+                    if( !source.next(block) )
+                        break;
+                    filled.put(block);
+                }
+            } catch( InterruptedException ignore ) {
+                return;
+            } catch( Exception e ) {
+                failure = e;
+            }
+            filled.offer(END);
+        }
+
+        @Override
+        protected void readRows( double[] data , int rows ) throws IOException {
+            DMatrixRMaj block;
+            try {
+                block = filled.take();
+            } catch( InterruptedException e ) {
+                throw new InterruptedIOException("Interrupted while waiting for the next block");
+            }
+            if( block == END ) {
+                filled.offer(END);
+                Exception e = failure;
+                if( e instanceof IOException )
+                    throw (IOException)e;
+                throw new IOException("Reading failed", e);
+            }
+            System.arraycopy(block.data, 0, data, 0, rows*numCols);
+            empty.add(block);
+        }
+
+        @Override
+        public void close() throws IOException {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+            source.close();
+        }
+    }
+}
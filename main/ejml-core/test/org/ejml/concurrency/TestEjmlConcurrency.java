@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestEjmlConcurrency {
+    @Test
+    public void loopFor() {
+        AtomicIntegerArray found = new AtomicIntegerArray(100);
+        EjmlConcurrency.loopFor(5,95,i->found.incrementAndGet(i));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i >= 5 && i < 95 ? 1 : 0, found.get(i));
+        }
+    }
+
+    @Test
+    public void loopBlocks() {
+        AtomicIntegerArray found = new AtomicIntegerArray(100);
+        EjmlConcurrency.loopBlocks(5,95,10,(idx0,idx1)->{
+            assertTrue(idx1-idx0 >= 10);
+            for (int i = idx0; i < idx1; i++) {
+                found.incrementAndGet(i);
+            }
+        });
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i >= 5 && i < 95 ? 1 : 0, found.get(i));
+        }
+
+        // empty range should do nothing
+        EjmlConcurrency.loopBlocks(5,5,1,(idx0,idx1)->fail("Should not be called"));
+    }
+
+    @Test
+    public void loopBlocks_workspace() {
+        List<long[]> workspace = new ArrayList<>();
+        int blocks = EjmlConcurrency.loopBlocks(0,1000,1,workspace,()->new long[1],(w,idx0,idx1)->{
+            for (int i = idx0; i < idx1; i++) {
+                w[0] += i;
+            }
+        });
+        assertEquals(EjmlConcurrency.computeNumberOfBlocks(0,1000,1),blocks);
+        assertTrue(workspace.size() >= blocks);
+
+        long sum = 0;
+        for (int i = 0; i < blocks; i++) {
+            sum += workspace.get(i)[0];
+        }
+        assertEquals(999*1000/2,sum);
+    }
+
+    @Test
+    public void setConcurrent() {
+        try {
+            EjmlConcurrency.setConcurrent(false);
+            assertFalse(EjmlConcurrency.isConcurrent());
+            assertEquals(1,EjmlConcurrency.computeNumberOfBlocks(0,1000,1));
+            Thread caller = Thread.currentThread();
+            EjmlConcurrency.loopFor(0,10,i->assertSame(caller,Thread.currentThread()));
+        } finally {
+            // isConcurrent() is false on a single core machine, so it can't be used to restore the flag
+            EjmlConcurrency.setConcurrent(true);
+        }
+    }
+}
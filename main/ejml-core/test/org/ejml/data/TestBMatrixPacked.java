@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestBMatrixPacked {
+    Random rand = new Random(234);
+
+    @Test
+    public void getSet() {
+        BMatrixPacked A = new BMatrixPacked(3,130);
+        assertEquals(3, A.wordsPerRow);
+        assertEquals(9, A.data.length);
+
+        A.set(0,0,true);
+        A.set(1,63,true);
+        A.set(1,64,true);
+        A.set(2,129,true);
+        assertTrue(A.get(0,0));
+        assertTrue(A.get(1,63));
+        assertTrue(A.get(1,64));
+        assertTrue(A.get(2,129));
+        assertFalse(A.get(1,65));
+        assertEquals(1L << 63, A.data[3]);
+        assertEquals(1L, A.data[4]);
+        assertEquals(4, A.sum());
+
+        A.set(1,63,false);
+        assertFalse(A.get(1,63));
+        assertEquals(3, A.sum());
+
+        assertThrows(IllegalArgumentException.class, () -> A.get(0,130));
+        assertThrows(IllegalArgumentException.class, () -> A.set(3,0,true));
+    }
+
+    /**
+     * Bits past the last column should never be set
+     */
+    @Test
+    public void fill() {
+        BMatrixPacked A = new BMatrixPacked(4,70);
+        A.fill(true);
+        assertEquals(4*70, A.sum());
+        assertEquals((1L << 6) - 1, A.data[1]);
+        A.fill(false);
+        assertEquals(0, A.sum());
+
+        A = new BMatrixPacked(2,128);
+        A.fill(true);
+        assertEquals(256, A.sum());
+
+        new BMatrixPacked(3,0).fill(true);
+    }
+
+    @Test
+    public void reshape() {
+        BMatrixPacked A = new BMatrixPacked(4,70);
+        A.fill(true);
+        A.reshape(2,40);
+        assertEquals(1, A.wordsPerRow);
+        assertEquals(0, A.sum());
+        A.reshape(10,200);
+        assertEquals(4, A.wordsPerRow);
+        assertEquals(40, A.data.length);
+    }
+
+    @Test
+    public void convert() {
+        BMatrixRMaj B = new BMatrixRMaj(5,100);
+        for (int i = 0; i < B.data.length; i++) {
+            B.data[i] = rand.nextBoolean();
+        }
+
+        BMatrixPacked A = new BMatrixPacked(B);
+        assertEquals(B.sum(), A.sum());
+        for (int row = 0; row < 5; row++) {
+            for (int col = 0; col < 100; col++) {
+                assertEquals(B.get(row,col), A.get(row,col));
+            }
+        }
+
+        BMatrixRMaj found = new BMatrixRMaj(1,1);
+        A.get(found);
+        assertArrayEquals(B.data, found.data);
+
+        BMatrixPacked C = A.copy();
+        assertArrayEquals(A.data, C.data);
+        C.set(C);
+        assertArrayEquals(A.data, C.data);
+    }
+}
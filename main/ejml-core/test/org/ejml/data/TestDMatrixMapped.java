@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.data;
+
+import org.ejml.dense.row.MatrixFeatures_DDRM;
+import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.ejml.ops.BinaryMatrixIO;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ReadOnlyBufferException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestDMatrixMapped {
+    Random rand = new Random(234);
+
+    /**
+     * Open a file written by BinaryMatrixIO using chunks which don't align with rows
+     */
+    @Test
+    public void open() throws IOException {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(7,5,rand);
+        File file = File.createTempFile("ejml", ".bin");
+        try {
+            BinaryMatrixIO.save(A, file.getPath(), false);
+
+            DMatrixMapped M = DMatrixMapped.open(file.toPath(), false, 3);
+            assertFalse(M.isWritable());
+            assertEquals(7, M.getNumRows());
+            assertEquals(5, M.getNumCols());
+            assertEquals(35L, M.getNumElementsLong());
+            for (int row = 0; row < 7; row++) {
+                for (int col = 0; col < 5; col++) {
+                    assertEquals(A.get(row,col), M.get(row,col));
+                    assertEquals(A.get(row,col), M.unsafe_get(row,col));
+                    assertEquals(A.get(row,col), M.get((long)row*5+col));
+                }
+            }
+            assertThrows(ReadOnlyBufferException.class, () -> M.set(0,0,1));
+            assertThrows(IllegalArgumentException.class, () -> M.get(7,0));
+            M.close();
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void getRows_setRows() throws IOException {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(9,4,rand);
+        File file = File.createTempFile("ejml", ".bin");
+        try {
+            DMatrixMapped M = DMatrixMapped.create(file.toPath(), 9, 4, 2);
+            M.set(A);
+
+            DMatrixRMaj rows = M.getRows(2, 7, new DMatrixRMaj(1,1));
+            assertEquals(5, rows.numRows);
+            for (int row = 2; row < 7; row++) {
+                for (int col = 0; col < 4; col++) {
+                    assertEquals(A.get(row,col), rows.get(row-2,col));
+                }
+            }
+
+            assertTrue(MatrixFeatures_DDRM.isIdentical(A, M.toRMaj(), 0));
+            M.close();
+
+            // changes should have been written to the file
+            DMatrixRMaj found = BinaryMatrixIO.load(file.getPath());
+            assertTrue(MatrixFeatures_DDRM.isIdentical(A, found, 0));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void copy() throws IOException {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(6,5,rand);
+        File file = File.createTempFile("ejml", ".bin");
+        try {
+            DMatrixMapped M = DMatrixMapped.create(file.toPath(), 6, 5, 2);
+            M.set(A);
+
+            // the copy must be the same type when accessed through the Matrix interface
+            Matrix m = M;
+            DMatrixMapped C = m.copy();
+            assertNotSame(M, C);
+            assertTrue(C.isWritable());
+            assertTrue(MatrixFeatures_DDRM.isIdentical(A, C.toRMaj(), 0));
+
+            // modifying the copy should not modify the original
+            C.set(0, 0, 100);
+            assertEquals(A.get(0,0), M.get(0,0));
+            C.close();
+            M.close();
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void zero() throws IOException {
+        File file = File.createTempFile("ejml", ".bin");
+        try {
+            DMatrixMapped M = DMatrixMapped.create(file.toPath(), 3, 5, 2);
+            M.set(RandomMatrices_DDRM.rectangle(3,5,rand));
+            M.zero();
+            for (long i = 0; i < M.getNumElementsLong(); i++) {
+                assertEquals(0, M.get(i));
+            }
+            M.close();
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void open_wrongType() throws IOException {
+        File file = File.createTempFile("ejml", ".bin");
+        try {
+            BinaryMatrixIO.save(new DMatrixRBlock(4,4,2), file.getPath(), false);
+            assertThrows(IOException.class, () -> DMatrixMapped.open(file.toPath()));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.data;
+
+import org.ejml.dense.row.MatrixFeatures_DDRM;
+import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestDMatrixOffHeap {
+    Random rand = new Random(234);
+
+    @Test
+    public void constructor() {
+        DMatrixOffHeap M = new DMatrixOffHeap(5,7,3);
+        assertEquals(5, M.getNumRows());
+        assertEquals(7, M.getNumCols());
+        assertEquals(35, M.getCapacity());
+        for (long i = 0; i < M.getNumElementsLong(); i++) {
+            assertEquals(0, M.get(i));
+        }
+    }
+
+    @Test
+    public void get_set() {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(6,5,rand);
+        DMatrixOffHeap M = new DMatrixOffHeap(6,5,2);
+        for (int row = 0; row < 6; row++) {
+            for (int col = 0; col < 5; col++) {
+                M.set(row, col, A.get(row,col));
+            }
+        }
+        for (int row = 0; row < 6; row++) {
+            for (int col = 0; col < 5; col++) {
+                assertEquals(A.get(row,col), M.get(row,col));
+                assertEquals(A.get(row,col), M.unsafe_get(row,col));
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> M.get(0,5));
+    }
+
+    @Test
+    public void getBlock_setBlock() {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(6,5,rand);
+        DMatrixOffHeap M = new DMatrixOffHeap(1,1,3);
+        M.set(A);
+
+        DMatrixRMaj block = M.getBlock(1, 4, 2, 5, new DMatrixRMaj(1,1));
+        assertEquals(3, block.numRows);
+        assertEquals(3, block.numCols);
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                assertEquals(A.get(row+1,col+2), block.get(row,col));
+            }
+        }
+
+        DMatrixRMaj B = RandomMatrices_DDRM.rectangle(2,3,rand);
+        M.setBlock(4, 1, B);
+        for (int row = 0; row < 2; row++) {
+            for (int col = 0; col < 3; col++) {
+                assertEquals(B.get(row,col), M.get(row+4,col+1));
+            }
+        }
+        assertEquals(A.get(4,0), M.get(4,0));
+        assertEquals(A.get(5,4), M.get(5,4));
+    }
+
+    @Test
+    public void reshape() {
+        DMatrixOffHeap M = new DMatrixOffHeap(2,3,2);
+        M.reshape(4,5);
+        assertEquals(20, M.getCapacity());
+        assertEquals(4, M.getNumRows());
+        assertEquals(5, M.getNumCols());
+
+        // every element should be accessible
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(4,5,rand);
+        M.set(A);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(A, M.toRMaj(), 0));
+
+        // shrinking doesn't change the capacity
+        M.reshape(2,2);
+        assertEquals(20, M.getCapacity());
+    }
+
+    @Test
+    public void copy() {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(6,5,rand);
+        DMatrixOffHeap M = new DMatrixOffHeap(1,1,3);
+        M.set(A);
+
+        // the copy must be the same type when accessed through the Matrix interface
+        Matrix m = M;
+        DMatrixOffHeap C = m.copy();
+        assertNotSame(M, C);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(A, C.toRMaj(), 0));
+
+        // modifying the copy should not modify the original
+        C.set(0, 0, 100);
+        assertEquals(A.get(0,0), M.get(0,0));
+    }
+
+    @Test
+    public void release() {
+        DMatrixOffHeap M = new DMatrixOffHeap(6,5,3);
+        M.release();
+        assertEquals(0, M.getNumRows());
+        assertEquals(0, M.getNumCols());
+        assertEquals(0, M.getCapacity());
+    }
+}
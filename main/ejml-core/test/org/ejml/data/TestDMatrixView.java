@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.data;
+
+import org.ejml.MatrixDimensionException;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.ejml.dense.row.MatrixFeatures_DDRM;
+import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestDMatrixView {
+    Random rand = new Random(234);
+
+    @Test
+    public void wrapArray() {
+        double[] data = new double[30];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i;
+        }
+
+        DMatrixView A = DMatrixView.wrap(data, 2, 3, 4, 7);
+        assertEquals(3, A.getNumRows());
+        assertEquals(4, A.getNumCols());
+        assertEquals(12, A.getNumElements());
+        assertFalse(A.isContiguous());
+        assertEquals(2, A.get(0,0));
+        assertEquals(2+7*2+3, A.get(2,3));
+        assertEquals(A.getIndex(1,2), 2+7+2);
+
+        // changes are written to the array
+        A.set(1,1,-5);
+        assertEquals(-5, data[2+7+1]);
+
+        assertThrows(IllegalArgumentException.class, () -> A.get(3,0));
+        assertThrows(IllegalArgumentException.class, () -> A.set(0,4,1));
+
+        // extends past the end of the array
+        assertThrows(IllegalArgumentException.class, () -> DMatrixView.wrap(data, 10, 3, 4, 9));
+        // stride too small
+        assertThrows(IllegalArgumentException.class, () -> DMatrixView.wrap(data, 0, 3, 4, 3));
+    }
+
+    @Test
+    public void subview() {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(6,8,rand);
+        DMatrixView V = DMatrixView.wrap(A, 1, 5, 2, 7);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(CommonOps_DDRM.extract(A,1,5,2,7), V.copy(), 0));
+
+        DMatrixView W = V.subview(1, 3, 2, 4);
+        assertSame(A.data, W.data);
+        assertEquals(A.get(2,4), W.get(0,0));
+        assertEquals(A.get(3,5), W.get(1,1));
+
+        assertThrows(IllegalArgumentException.class, () -> V.subview(0, 5, 0, 1));
+    }
+
+    @Test
+    public void zero_set() {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(5,5,rand);
+        DMatrixRMaj original = A.copy();
+        DMatrixView V = DMatrixView.wrap(A, 1, 3, 1, 4);
+        V.zero();
+        for (int row = 0; row < 5; row++) {
+            for (int col = 0; col < 5; col++) {
+                boolean inside = row >= 1 && row < 3 && col >= 1 && col < 4;
+                assertEquals(inside ? 0 : original.get(row,col), A.get(row,col));
+            }
+        }
+
+        DMatrixRMaj B = RandomMatrices_DDRM.rectangle(2,3,rand);
+        V.set(B);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(B, V.copy(), 0));
+
+        // copy from another view
+        DMatrixView W = DMatrixView.wrap(original, 0, 2, 0, 3);
+        V.set(W);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(CommonOps_DDRM.extract(original,0,2,0,3), V.copy(), 0));
+
+        // generic matrix
+        DMatrixSparseCSC C = new DMatrixSparseCSC(2,3,1);
+        C.set(1,2,5);
+        V.set(C);
+        assertEquals(5, V.get(1,2));
+
+        assertThrows(MatrixDimensionException.class, () -> V.set(new DMatrixRMaj(3,2)));
+    }
+
+    @Test
+    public void readWrite_DoubleBuffer() {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(4,6,rand);
+        DMatrixView V = DMatrixView.wrap(A, 1, 4, 2, 5);
+
+        for( DoubleBuffer buffer : new DoubleBuffer[]{DoubleBuffer.allocate(20),
+                ByteBuffer.allocateDirect(160).asDoubleBuffer()}) {
+            buffer.position(3);
+            V.write(buffer);
+            assertEquals(12, buffer.position());
+            for (int i = 0; i < 9; i++) {
+                assertEquals(V.get(i/3, i%3), buffer.get(3+i));
+            }
+
+            DMatrixView found = new DMatrixView(new double[20], 1, 3, 3, 6);
+            buffer.position(3);
+            found.read(buffer);
+            assertEquals(12, buffer.position());
+            assertTrue(MatrixFeatures_DDRM.isIdentical(V.copy(), found.copy(), 0));
+
+            buffer.position(15);
+            assertThrows(IllegalArgumentException.class, () -> found.read(buffer));
+            assertThrows(IllegalArgumentException.class, () -> V.write(buffer));
+        }
+
+        // contiguous view of an entire matrix
+        DoubleBuffer buffer = DoubleBuffer.allocate(24);
+        new DMatrixView(A).write(buffer);
+        for (int i = 0; i < 24; i++) {
+            assertEquals(A.data[i], buffer.get(i));
+        }
+    }
+
+    @Test
+    public void readWrite_ByteBuffer() {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(3,4,rand);
+        DMatrixView V = DMatrixView.wrap(A, 0, 3, 1, 4);
+
+        for( ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            ByteBuffer buffer = ByteBuffer.allocate(100).order(order);
+            buffer.put((byte)1);
+            V.write(buffer);
+            assertEquals(1+9*8, buffer.position());
+            assertEquals(V.get(1,0), buffer.getDouble(1+3*8));
+
+            DMatrixRMaj found = new DMatrixRMaj(3,3);
+            buffer.position(1);
+            new DMatrixView(found).read(buffer);
+            assertEquals(1+9*8, buffer.position());
+            assertTrue(MatrixFeatures_DDRM.isIdentical(V.copy(), found, 0));
+        }
+    }
+
+    /**
+     * Wrapping a heap buffer should reference its array without copying
+     */
+    @Test
+    public void wrapBuffer() {
+        double[] data = new double[20];
+        DoubleBuffer buffer = DoubleBuffer.wrap(data);
+        buffer.position(4);
+        DMatrixView V = DMatrixView.wrap(buffer, 2, 3, 5);
+        V.set(1,2,7);
+        assertEquals(7, data[4+5+2]);
+
+        // offset of a slice is taken into account
+        DoubleBuffer slice = buffer.slice();
+        slice.position(1);
+        V = DMatrixView.wrap(slice, 1, 2, 2);
+        V.set(0,1,3);
+        assertEquals(3, data[4+1+1]);
+
+        assertThrows(IllegalArgumentException.class, () -> DMatrixView.wrap(buffer, 4, 5, 5));
+        assertThrows(IllegalArgumentException.class, () ->
+                DMatrixView.wrap(ByteBuffer.allocateDirect(80).asDoubleBuffer(), 2, 2, 2));
+    }
+}
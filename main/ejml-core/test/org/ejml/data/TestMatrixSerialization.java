@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.data;
+
+import org.ejml.dense.block.MatrixOps_DDRB;
+import org.ejml.dense.row.MatrixFeatures_DDRM;
+import org.ejml.dense.row.MatrixFeatures_FDRM;
+import org.ejml.dense.row.MatrixFeatures_ZDRM;
+import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.ejml.dense.row.RandomMatrices_FDRM;
+import org.ejml.dense.row.RandomMatrices_ZDRM;
+import org.ejml.sparse.csc.MatrixFeatures_DSCC;
+import org.ejml.sparse.csc.RandomMatrices_DSCC;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestMatrixSerialization {
+    Random rand = new Random(234);
+
+    @Test
+    public void dense() throws Exception {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(5,7,rand);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(A, copy(A), 0));
+
+        FMatrixRMaj F = RandomMatrices_FDRM.rectangle(4,3,rand);
+        assertTrue(MatrixFeatures_FDRM.isIdentical(F, copy(F), 0));
+
+        ZMatrixRMaj Z = RandomMatrices_ZDRM.rectangle(3,6,rand);
+        assertTrue(MatrixFeatures_ZDRM.isIdentical(Z, copy(Z), 0));
+
+        DMatrixRBlock B = MatrixOps_DDRB.createRandom(9,11,-1,1,rand,4);
+        DMatrixRBlock foundB = copy(B);
+        assertEquals(4, foundB.blockLength);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(B, foundB, 0));
+
+        DMatrixRMaj empty = copy(new DMatrixRMaj(0,4));
+        assertEquals(0, empty.numRows);
+        assertEquals(4, empty.numCols);
+    }
+
+    /**
+     * Only the elements which are in use should be written
+     */
+    @Test
+    public void onlyUsedElements() throws Exception {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(20,20,rand);
+        int full = serialize(A).length;
+        A.reshape(2,2);
+        assertTrue(serialize(A).length < full/10);
+        DMatrixRMaj found = copy(A);
+        assertEquals(4, found.data.length);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(A, found, 0));
+
+        DMatrixSparseCSC S = RandomMatrices_DSCC.rectangle(10,10,20,rand);
+        S.growMaxLength(1000, true);
+        assertTrue(serialize(S).length < 1000);
+    }
+
+    @Test
+    public void sparse() throws Exception {
+        DMatrixSparseCSC A = RandomMatrices_DSCC.rectangle(20,15,60,rand);
+        DMatrixSparseCSC found = copy(A);
+        assertEquals(A.indicesSorted, found.indicesSorted);
+        assertTrue(MatrixFeatures_DSCC.isEquals(A, found));
+
+        DMatrixSparseTriplet T = new DMatrixSparseTriplet(5,4,10);
+        T.addItem(4,1,2.5);
+        T.addItem(0,3,-1.0);
+        DMatrixSparseTriplet foundT = copy(T);
+        assertEquals(5, foundT.numRows);
+        assertEquals(4, foundT.numCols);
+        assertEquals(2, foundT.nz_length);
+        assertEquals(2.5, foundT.get(4,1));
+        assertEquals(-1.0, foundT.get(0,3));
+        // it can still be modified after being read
+        foundT.addItem(1,1,3.0);
+        assertEquals(3.0, foundT.get(1,1));
+    }
+
+    @Test
+    public void fixed() throws Exception {
+        DMatrix4x4 A = new DMatrix4x4();
+        A.a23 = 2.5;
+        A.a44 = -1;
+        DMatrix4x4 found = copy(A);
+        assertEquals(2.5, found.a23);
+        assertEquals(-1, found.a44);
+    }
+
+    /**
+     * Streams written before the custom serialization, when the default serialization was used
+     */
+    @Test
+    public void readOldFormat() throws Exception {
+        String oldRMaj = "rO0ABXNyABlvcmcuZWptbC5kYXRhLkRNYXRyaXhSTWFqwB9REamwSmYCAAB4cgAZb3JnLmVqbWwuZGF0YS5ETWF0cml4MVJv" +
+                "d0NuyHZ8o3xXAgAAeHIAF29yZy5lam1sLmRhdGEuRE1hdHJpeEQxlOb44YhY4Y4CAANJAAdudW1Db2xzSQAHbnVtUm93c1sA" +
+                "BGRhdGF0AAJbRHhwAAAAAwAAAAJ1cgACW0Q+powUq2NaHgIAAHhwAAAABj/wAAAAAAAAQAAAAAAAAABACAAAAAAAAEAQAAAA" +
+                "AAAAQBQAAAAAAABAGAAAAAAAAA==";
+        DMatrixRMaj A = deserialize(oldRMaj);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(new DMatrixRMaj(2,3,true,1,2,3,4,5,6), A, 0));
+
+        String oldZRMaj = "rO0ABXNyABlvcmcuZWptbC5kYXRhLlpNYXRyaXhSTWFqQP6nmjHWbLQCAAB4cgAXb3JnLmVqbWwuZGF0YS5aTWF0cml4RDHY" +
+                "zFlgHIpTAAIAA0kAB251bUNvbHNJAAdudW1Sb3dzWwAEZGF0YXQAAltEeHAAAAACAAAAAXVyAAJbRD6mjBSrY1oeAgAAeHAA" +
+                "AAAEP/AAAAAAAABAAAAAAAAAAMAIAAAAAAAAQBAAAAAAAAA=";
+        ZMatrixRMaj Z = deserialize(oldZRMaj);
+        assertEquals(1, Z.numRows);
+        assertEquals(2, Z.numCols);
+        assertEquals(2, Z.getImag(0,0));
+        assertEquals(-3, Z.getReal(0,1));
+
+        String oldCSC = "rO0ABXNyAB5vcmcuZWptbC5kYXRhLkRNYXRyaXhTcGFyc2VDU0MLtBqxMU+wkgIAB1oADWluZGljZXNTb3J0ZWRJAAdudW1D" +
+                "b2xzSQAHbnVtUm93c0kACW56X2xlbmd0aFsAB2NvbF9pZHh0AAJbSVsAB256X3Jvd3NxAH4AAVsACW56X3ZhbHVlc3QAAltE" +
+                "eHAAAAAAAgAAAAMAAAACdXIAAltJTbpgJnbqsqUCAAB4cAAAAAMAAAAAAAAAAQAAAAJ1cQB+AAQAAAAEAAAAAAAAAAIAAAAA" +
+                "AAAAAHVyAAJbRD6mjBSrY1oeAgAAeHAAAAAEP/gAAAAAAADAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA=";
+        DMatrixSparseCSC S = deserialize(oldCSC);
+        assertEquals(3, S.numRows);
+        assertEquals(2, S.numCols);
+        assertEquals(2, S.nz_length);
+        assertEquals(1.5, S.get(0,0));
+        assertEquals(-2.0, S.get(2,1));
+    }
+
+    private static byte[] serialize( Object o ) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(o);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static <T> T copy( T o ) throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialize(o)))) {
+            return (T)in.readObject();
+        }
+    }
+
+    private static <T> T deserialize( String base64 ) throws Exception {
+        byte[] bytes = Base64.getDecoder().decode(base64);
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (T)in.readObject();
+        }
+    }
+}
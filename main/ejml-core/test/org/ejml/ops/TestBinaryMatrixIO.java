@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.ops;
+
+import org.ejml.data.*;
+import org.ejml.dense.block.MatrixOps_DDRB;
+import org.ejml.dense.row.MatrixFeatures_DDRM;
+import org.ejml.dense.row.MatrixFeatures_FDRM;
+import org.ejml.dense.row.MatrixFeatures_ZDRM;
+import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.ejml.dense.row.RandomMatrices_FDRM;
+import org.ejml.dense.row.RandomMatrices_ZDRM;
+import org.ejml.sparse.csc.MatrixFeatures_DSCC;
+import org.ejml.sparse.csc.RandomMatrices_DSCC;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestBinaryMatrixIO {
+    Random rand = new Random(234);
+
+    @Test
+    public void dense_DDRM() throws IOException {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(12,7,rand);
+        for( boolean checksum : new boolean[]{false,true}) {
+            DMatrixRMaj found = saveLoad(A, checksum);
+            assertNotSame(A, found);
+            assertTrue(MatrixFeatures_DDRM.isIdentical(A, found, 0));
+        }
+    }
+
+    @Test
+    public void dense_FDRM() throws IOException {
+        FMatrixRMaj A = RandomMatrices_FDRM.rectangle(5,9,rand);
+        FMatrixRMaj found = saveLoad(A, true);
+        assertTrue(MatrixFeatures_FDRM.isIdentical(A, found, 0));
+    }
+
+    @Test
+    public void dense_ZDRM() throws IOException {
+        ZMatrixRMaj A = RandomMatrices_ZDRM.rectangle(4,6,rand);
+        ZMatrixRMaj found = saveLoad(A, true);
+        assertTrue(MatrixFeatures_ZDRM.isIdentical(A, found, 0));
+    }
+
+    @Test
+    public void block_DDRB() throws IOException {
+        DMatrixRBlock A = MatrixOps_DDRB.createRandom(11,8,-1,1,rand,3);
+        DMatrixRBlock found = saveLoad(A, true);
+        assertEquals(3, found.blockLength);
+        assertTrue(MatrixOps_DDRB.isEquals(A, found, 0));
+    }
+
+    @Test
+    public void sparse_DSCC() throws IOException {
+        DMatrixSparseCSC A = RandomMatrices_DSCC.rectangle(20,15,60,rand);
+        DMatrixSparseCSC found = saveLoad(A, true);
+        assertEquals(A.indicesSorted, found.indicesSorted);
+        assertTrue(MatrixFeatures_DSCC.isEquals(A, found));
+    }
+
+    /**
+     * Use a small buffer so that arrays are split across multiple reads and writes
+     */
+    @Test
+    public void smallBuffer() throws IOException {
+        int original = BinaryMatrixIO.BUFFER_SIZE;
+        try {
+            BinaryMatrixIO.BUFFER_SIZE = 20;
+            DMatrixRMaj A = RandomMatrices_DDRM.rectangle(13,9,rand);
+            DMatrixRMaj foundA = saveLoad(A, true);
+            assertTrue(MatrixFeatures_DDRM.isIdentical(A, foundA, 0));
+
+            DMatrixSparseCSC B = RandomMatrices_DSCC.rectangle(20,15,37,rand);
+            DMatrixSparseCSC foundB = saveLoad(B, true);
+            assertTrue(MatrixFeatures_DSCC.isEquals(B, foundB));
+        } finally {
+            BinaryMatrixIO.BUFFER_SIZE = original;
+        }
+    }
+
+    /**
+     * Several matrices written to the same stream should be read back one at a time
+     */
+    @Test
+    public void multipleInStream() throws IOException {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(3,4,rand);
+        DMatrixSparseCSC B = RandomMatrices_DSCC.rectangle(6,5,8,rand);
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        WritableByteChannel out = Channels.newChannel(stream);
+        BinaryMatrixIO.save(A, out, true);
+        BinaryMatrixIO.save(B, out, false);
+
+        ReadableByteChannel in = Channels.newChannel(new ByteArrayInputStream(stream.toByteArray()));
+        DMatrixRMaj foundA = BinaryMatrixIO.load(in);
+        DMatrixSparseCSC foundB = BinaryMatrixIO.load(in);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(A, foundA, 0));
+        assertTrue(MatrixFeatures_DSCC.isEquals(B, foundB));
+    }
+
+    @Test
+    public void corruptedPayload() throws IOException {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(5,5,rand);
+        File file = File.createTempFile("ejml", ".bin");
+        try {
+            BinaryMatrixIO.save(A, file.getPath(), true);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.seek(BinaryMatrixIO.HEADER_LENGTH + 17);
+                int value = raf.read();
+                raf.seek(BinaryMatrixIO.HEADER_LENGTH + 17);
+                raf.write(value ^ 0xFF);
+            }
+            assertThrows(IOException.class, () -> BinaryMatrixIO.load(file.getPath()));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void notMatrixFile() {
+        byte[] junk = new byte[100];
+        ReadableByteChannel in = Channels.newChannel(new ByteArrayInputStream(junk));
+        assertThrows(IOException.class, () -> BinaryMatrixIO.load(in));
+    }
+
+    @Test
+    public void loadHeader() throws IOException {
+        DMatrixSparseCSC A = RandomMatrices_DSCC.rectangle(20,15,60,rand);
+        File file = File.createTempFile("ejml", ".bin");
+        try {
+            BinaryMatrixIO.save(A, file.getPath(), true);
+            BinaryMatrixIO.Header header = BinaryMatrixIO.loadHeader(file.getPath());
+            assertEquals(BinaryMatrixIO.STORAGE_CSC, header.storage);
+            assertEquals(8, header.precision);
+            assertEquals(20, header.numRows);
+            assertEquals(15, header.numCols);
+            assertEquals(A.nz_length, header.extra);
+            assertTrue(header.hasChecksum());
+            assertFalse(header.isComplex());
+            assertEquals(BinaryMatrixIO.HEADER_LENGTH + header.payloadLength + 8, file.length());
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    private <T extends Matrix> T saveLoad( Matrix A , boolean checksum ) throws IOException {
+        File file = File.createTempFile("ejml", ".bin");
+        try {
+            BinaryMatrixIO.save(A, file.getPath(), checksum);
+            return BinaryMatrixIO.load(file.getPath());
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+}
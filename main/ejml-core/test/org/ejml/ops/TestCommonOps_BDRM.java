@@ -18,15 +18,21 @@
 
 package org.ejml.ops;
 
+import org.ejml.MatrixDimensionException;
+import org.ejml.data.BMatrixPacked;
 import org.ejml.data.BMatrixRMaj;
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * @author Peter Abeles
  */
 public class TestCommonOps_BDRM {
+    Random rand = new Random(234);
+
     @Test
     public void transposeSquare() {
         BMatrixRMaj A = new BMatrixRMaj(4,4);
@@ -45,4 +51,100 @@ public class TestCommonOps_BDRM {
             }
         }
     }
+
+    @Test
+    public void logical() {
+        BMatrixPacked a = random(5,70);
+        BMatrixPacked b = random(5,70);
+
+        BMatrixPacked and = CommonOps_BDRM.and(a, b, null);
+        BMatrixPacked or = CommonOps_BDRM.or(a, b, null);
+        BMatrixPacked xor = CommonOps_BDRM.xor(a, b, null);
+        BMatrixPacked andNot = CommonOps_BDRM.andNot(a, b, null);
+        BMatrixPacked not = CommonOps_BDRM.not(a, null);
+        for (int row = 0; row < 5; row++) {
+            for (int col = 0; col < 70; col++) {
+                boolean va = a.get(row,col), vb = b.get(row,col);
+                assertEquals(va & vb, and.get(row,col));
+                assertEquals(va | vb, or.get(row,col));
+                assertEquals(va ^ vb, xor.get(row,col));
+                assertEquals(va & !vb, andNot.get(row,col));
+                assertEquals(!va, not.get(row,col));
+            }
+        }
+        // bits past the last column are not set
+        assertEquals(5*70, CommonOps_BDRM.countTrue(a) + CommonOps_BDRM.countTrue(not));
+
+        // in-place
+        BMatrixPacked c = a.copy();
+        CommonOps_BDRM.or(c, b, c);
+        assertArrayEquals(or.data, c.data);
+        CommonOps_BDRM.not(c, c);
+        assertEquals(5*70 - or.sum(), c.sum());
+
+        assertThrows(MatrixDimensionException.class, () -> CommonOps_BDRM.and(a, random(5,71), null));
+    }
+
+    @Test
+    public void countTrue() {
+        BMatrixPacked a = random(7,150);
+        int expected = 0;
+        for (int row = 0; row < 7; row++) {
+            for (int col = 0; col < 150; col++) {
+                if( a.get(row,col) )
+                    expected++;
+            }
+        }
+        assertEquals(expected, CommonOps_BDRM.countTrue(a));
+    }
+
+    @Test
+    public void mult() {
+        for( int[] shape : new int[][]{{5,70,3},{1,1,1},{10,64,130},{4,0,5}}) {
+            BMatrixPacked a = random(shape[0], shape[1]);
+            BMatrixPacked b = random(shape[1], shape[2]);
+            BMatrixPacked c = CommonOps_BDRM.mult(a, b, null);
+            BMatrixPacked d = CommonOps_BDRM.multTransB(a, CommonOps_BDRM.transpose(b, null), null);
+            assertEquals(shape[0], c.numRows);
+            assertEquals(shape[2], c.numCols);
+            for (int i = 0; i < shape[0]; i++) {
+                for (int j = 0; j < shape[2]; j++) {
+                    boolean expected = false;
+                    for (int k = 0; k < shape[1]; k++) {
+                        expected |= a.get(i,k) && b.get(k,j);
+                    }
+                    assertEquals(expected, c.get(i,j));
+                    assertEquals(expected, d.get(i,j));
+                }
+            }
+        }
+
+        BMatrixPacked a = random(3,4);
+        assertThrows(MatrixDimensionException.class, () -> CommonOps_BDRM.mult(a, a, null));
+        assertThrows(IllegalArgumentException.class, () -> CommonOps_BDRM.mult(a, random(4,3), a));
+    }
+
+    @Test
+    public void transpose_packed() {
+        BMatrixPacked a = random(70,130);
+        BMatrixPacked b = CommonOps_BDRM.transpose(a, null);
+        assertEquals(130, b.numRows);
+        assertEquals(70, b.numCols);
+        for (int row = 0; row < 70; row++) {
+            for (int col = 0; col < 130; col++) {
+                assertEquals(a.get(row,col), b.get(col,row));
+            }
+        }
+        assertEquals(a.sum(), b.sum());
+    }
+
+    private BMatrixPacked random( int rows , int cols ) {
+        BMatrixPacked A = new BMatrixPacked(rows, cols);
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                A.set(row, col, rand.nextInt(4) == 0);
+            }
+        }
+        return A;
+    }
 }
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.ops;
+
+import org.ejml.concurrency.EjmlConcurrency;
+import org.ejml.data.*;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.ejml.dense.row.MatrixFeatures_DDRM;
+import org.ejml.dense.row.MatrixFeatures_FDRM;
+import org.ejml.dense.row.MatrixFeatures_ZDRM;
+import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.ejml.dense.row.RandomMatrices_FDRM;
+import org.ejml.dense.row.RandomMatrices_ZDRM;
+import org.ejml.sparse.csc.CommonOps_DSCC;
+import org.ejml.sparse.csc.MatrixFeatures_DSCC;
+import org.ejml.sparse.csc.RandomMatrices_DSCC;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestCompressedMatrixIO {
+    Random rand = new Random(234);
+
+    int maxThreads;
+    int chunkValues;
+
+    @BeforeEach
+    public void setup() {
+        maxThreads = EjmlConcurrency.getMaxThreads();
+        chunkValues = CompressedMatrixIO.CHUNK_VALUES;
+
+        // small chunks so that matrices are split into several of them
+        EjmlConcurrency.setMaxThreads(4);
+        CompressedMatrixIO.CHUNK_VALUES = 50;
+    }
+
+    @AfterEach
+    public void cleanup() {
+        EjmlConcurrency.setMaxThreads(maxThreads);
+        CompressedMatrixIO.CHUNK_VALUES = chunkValues;
+    }
+
+    @Test
+    public void dense() throws IOException {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(40,7,rand);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(A, saveLoad(A), 0));
+
+        FMatrixRMaj F = RandomMatrices_FDRM.rectangle(13,20,rand);
+        assertTrue(MatrixFeatures_FDRM.isIdentical(F, saveLoad(F), 0));
+
+        ZMatrixRMaj Z = RandomMatrices_ZDRM.rectangle(9,11,rand);
+        assertTrue(MatrixFeatures_ZDRM.isIdentical(Z, saveLoad(Z), 0));
+
+        // rows which are larger than a chunk
+        A = RandomMatrices_DDRM.rectangle(3,120,rand);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(A, saveLoad(A), 0));
+
+        // empty
+        A = new DMatrixRMaj(0,5);
+        DMatrixRMaj found = saveLoad(A);
+        assertEquals(0, found.numRows);
+        assertEquals(5, found.numCols);
+    }
+
+    @Test
+    public void sparse() throws IOException {
+        DMatrixSparseCSC A = RandomMatrices_DSCC.rectangle(50,30,300,rand);
+        DMatrixSparseCSC found = saveLoad(A);
+        assertTrue(found.indicesSorted);
+        assertTrue(MatrixFeatures_DSCC.isEquals(A, found));
+
+        // unsorted row indices are preserved exactly
+        A.nz_rows[0] = A.nz_rows[1];
+        A.nz_rows[1] = 49;
+        A.indicesSorted = false;
+        found = saveLoad(A);
+        assertFalse(found.indicesSorted);
+        assertArrayEquals(A.col_idx, found.col_idx);
+        for (int i = 0; i < A.nz_length; i++) {
+            assertEquals(A.nz_rows[i], found.nz_rows[i]);
+            assertEquals(A.nz_values[i], found.nz_values[i]);
+        }
+
+        FMatrixSparseCSC F = new FMatrixSparseCSC(5,4,3);
+        F.set(4,0,1.5f);
+        F.set(0,3,-2.0f);
+        FMatrixSparseCSC foundF = saveLoad(F);
+        assertEquals(2, foundF.nz_length);
+        assertEquals(1.5f, foundF.get(4,0));
+        assertEquals(-2.0f, foundF.get(0,3));
+
+        // columns with no elements
+        DMatrixSparseCSC empty = new DMatrixSparseCSC(6,4,0);
+        empty.indicesSorted = true;
+        assertTrue(MatrixFeatures_DSCC.isEquals(empty, saveLoad(empty)));
+    }
+
+    /**
+     * Compressed files can be read by BinaryMatrixIO
+     */
+    @Test
+    public void readByBinaryMatrixIO() throws IOException {
+        DMatrixSparseCSC A = RandomMatrices_DSCC.rectangle(20,20,60,rand);
+        Path path = Files.createTempFile("ejml", ".bin");
+        try {
+            CompressedMatrixIO.save(A, path.toString());
+            assertTrue(BinaryMatrixIO.loadHeader(path.toString()).isCompressed());
+            DMatrixSparseCSC found = BinaryMatrixIO.load(path);
+            assertTrue(MatrixFeatures_DSCC.isEquals(A, found));
+
+            // the uncompressed format can't be read as compressed
+            BinaryMatrixIO.save(A, path, false);
+            assertThrows(IOException.class, () -> CompressedMatrixIO.load(path));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void loadRows() throws IOException {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(40,7,rand);
+        Path path = Files.createTempFile("ejml", ".bin");
+        try {
+            CompressedMatrixIO.save(A, path, 6);
+            int[][] ranges = {{0,40},{0,1},{5,21},{39,40}};
+            for( int[] r : ranges ) {
+                DMatrixRMaj found = CompressedMatrixIO.loadRows(path, r[0], r[1]);
+                DMatrixRMaj expected = CommonOps_DDRM.extract(A, r[0], r[1], 0, 7);
+                assertTrue(MatrixFeatures_DDRM.isIdentical(expected, found, 0));
+            }
+            DMatrixRMaj empty = CompressedMatrixIO.loadRows(path, 10, 10);
+            assertEquals(0, empty.numRows);
+            assertEquals(7, empty.numCols);
+            assertThrows(IllegalArgumentException.class, () -> CompressedMatrixIO.loadRows(path, 5, 41));
+            assertThrows(IOException.class, () -> CompressedMatrixIO.loadColumns(path, 0, 1));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void loadColumns() throws IOException {
+        DMatrixSparseCSC A = RandomMatrices_DSCC.rectangle(50,30,300,rand);
+        Path path = Files.createTempFile("ejml", ".bin");
+        try {
+            CompressedMatrixIO.save(A, path.toString());
+            int[][] ranges = {{0,30},{0,1},{7,19},{29,30},{4,4}};
+            for( int[] r : ranges ) {
+                DMatrixSparseCSC found = CompressedMatrixIO.loadColumns(path, r[0], r[1]);
+                DMatrixSparseCSC expected = new DMatrixSparseCSC(50, r[1]-r[0], 0);
+                CommonOps_DSCC.extract(A, 0, 50, r[0], r[1], expected, 0, 0);
+                expected.sortIndices(null);
+                assertTrue(MatrixFeatures_DSCC.isEquals(expected, found));
+                assertTrue(found.indicesSorted);
+            }
+            assertThrows(IllegalArgumentException.class, () -> CompressedMatrixIO.loadColumns(path, -1, 2));
+            assertThrows(IOException.class, () -> CompressedMatrixIO.loadRows(path, 0, 1));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void corrupted() throws IOException {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(20,7,rand);
+        byte[] bytes = save(A);
+        bytes[bytes.length-10] ^= 0x04;
+        assertThrows(IOException.class, () ->
+                CompressedMatrixIO.load(Channels.newChannel(new ByteArrayInputStream(bytes))));
+    }
+
+    /**
+     * Smooth data should compress to a small fraction of its original size
+     */
+    @Test
+    public void compresses() throws IOException {
+        // use the default chunk size
+        CompressedMatrixIO.CHUNK_VALUES = chunkValues;
+        DMatrixRMaj A = new DMatrixRMaj(200,50);
+        for (int i = 0; i < A.getNumElements(); i++) {
+            A.data[i] = i % 17;
+        }
+        assertTrue(save(A).length < A.getNumElements()*8/10);
+    }
+
+    private static byte[] save( Matrix A ) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompressedMatrixIO.save(A, Channels.newChannel(out), 1);
+        return out.toByteArray();
+    }
+
+    private static <T extends Matrix> T saveLoad( Matrix A ) throws IOException {
+        T fromStream = CompressedMatrixIO.load(Channels.newChannel(new ByteArrayInputStream(save(A))));
+
+        // the file path is read with positional reads and should produce the same result
+        Path path = Files.createTempFile("ejml", ".bin");
+        try {
+            CompressedMatrixIO.save(A, path, 1);
+            T fromFile = CompressedMatrixIO.load(path);
+            assertTrue(fromFile.getClass() == fromStream.getClass());
+            assertEquals(fromStream.getNumRows(), fromFile.getNumRows());
+        } finally {
+            Files.delete(path);
+        }
+        return fromStream;
+    }
+}
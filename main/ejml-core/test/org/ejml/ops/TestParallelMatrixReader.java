@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.ops;
+
+import org.ejml.concurrency.EjmlConcurrency;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.data.DMatrixSparseCSC;
+import org.ejml.data.DMatrixSparseTriplet;
+import org.ejml.data.ZMatrixRMaj;
+import org.ejml.dense.row.MatrixFeatures_DDRM;
+import org.ejml.dense.row.MatrixFeatures_ZDRM;
+import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.ejml.dense.row.RandomMatrices_ZDRM;
+import org.ejml.sparse.csc.MatrixFeatures_DSCC;
+import org.ejml.sparse.csc.RandomMatrices_DSCC;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestParallelMatrixReader {
+    Random rand = new Random(234);
+
+    int maxThreads;
+    int minChunkSize;
+    int segmentSize;
+
+    @BeforeEach
+    public void setup() {
+        maxThreads = EjmlConcurrency.getMaxThreads();
+        minChunkSize = ParallelMatrixReader.MIN_CHUNK_SIZE;
+        segmentSize = ParallelMatrixReader.SEGMENT_SIZE;
+
+        // tiny chunks and segments so that the splitting logic is exercised
+        EjmlConcurrency.setMaxThreads(4);
+        ParallelMatrixReader.MIN_CHUNK_SIZE = 32;
+        ParallelMatrixReader.SEGMENT_SIZE = 1 << 30;
+    }
+
+    @AfterEach
+    public void cleanup() {
+        EjmlConcurrency.setMaxThreads(maxThreads);
+        ParallelMatrixReader.MIN_CHUNK_SIZE = minChunkSize;
+        ParallelMatrixReader.SEGMENT_SIZE = segmentSize;
+    }
+
+    /**
+     * Read a file written by {@link MatrixIO#saveMatrixMarketD}, which has no banner
+     */
+    @Test
+    public void matrixMarket_ejml() throws IOException {
+        DMatrixSparseCSC A = RandomMatrices_DSCC.rectangle(30,20,120,rand);
+        StringWriter writer = new StringWriter();
+        MatrixIO.saveMatrixMarketD(A, "%.17g", writer);
+
+        DMatrixSparseCSC found = ParallelMatrixReader.loadMatrixMarket(write(writer.toString()).toString());
+        assertTrue(found.indicesSorted);
+        assertTrue(MatrixFeatures_DSCC.isEquals(A, found));
+
+        // multiple segments
+        ParallelMatrixReader.SEGMENT_SIZE = 100;
+        found = ParallelMatrixReader.loadMatrixMarket(write(writer.toString()).toString());
+        assertTrue(MatrixFeatures_DSCC.isEquals(A, found));
+    }
+
+    @Test
+    public void matrixMarket_symmetric() throws IOException {
+        String text =
+                "%%MatrixMarket matrix coordinate real symmetric\n" +
+                "% a comment\n" +
+                "\n" +
+                "3 3 4\n" +
+                "1 1 2.0\n" +
+                "3 1 -1.5\n" +
+                "% another comment\n" +
+                "2 2 4\n" +
+                "3 2 0.25\n";
+        DMatrixSparseCSC found = ParallelMatrixReader.loadMatrixMarket(write(text), null);
+        assertEquals(6, found.nz_length);
+        assertTrue(found.indicesSorted);
+        assertEquals(2.0, found.get(0,0));
+        assertEquals(-1.5, found.get(2,0));
+        assertEquals(-1.5, found.get(0,2));
+        assertEquals(0.25, found.get(1,2));
+        assertEquals(0.25, found.get(2,1));
+        assertEquals(4.0, found.get(1,1));
+    }
+
+    @Test
+    public void matrixMarket_skew_pattern_integer() throws IOException {
+        String skew = "%%MatrixMarket matrix coordinate integer skew-symmetric\n2 2 1\n2 1 7\n";
+        DMatrixSparseCSC found = ParallelMatrixReader.loadMatrixMarket(write(skew), null);
+        assertEquals(7.0, found.get(1,0));
+        assertEquals(-7.0, found.get(0,1));
+
+        String pattern = "%%MatrixMarket matrix coordinate pattern general\n2 3 2\n1 3\n2 1\n";
+        found = ParallelMatrixReader.loadMatrixMarket(write(pattern), null);
+        assertEquals(2, found.nz_length);
+        assertEquals(1.0, found.get(0,2));
+        assertEquals(1.0, found.get(1,0));
+    }
+
+    @Test
+    public void matrixMarket_hermitian() throws IOException {
+        String text = "%%MatrixMarket matrix coordinate complex hermitian\n" +
+                "2 2 3\n" +
+                "2 1 1.0 2.0\n" +
+                "1 1 3.0 0\n" +
+                "2 2 4.0 0\n";
+
+        assertThrows(IllegalArgumentException.class, () -> ParallelMatrixReader.loadMatrixMarket(write(text), null));
+
+        DMatrixSparseCSC imaginary = new DMatrixSparseCSC(1,1);
+        DMatrixSparseCSC real = ParallelMatrixReader.loadMatrixMarket(write(text), imaginary);
+        assertEquals(4, real.nz_length);
+        assertEquals(4, imaginary.nz_length);
+
+        assertEquals(3.0, real.get(0,0));
+        assertEquals(1.0, real.get(1,0));
+        assertEquals(1.0, real.get(0,1));
+        assertEquals(2.0, imaginary.get(1,0));
+        assertEquals(-2.0, imaginary.get(0,1));
+        assertEquals(4.0, real.get(1,1));
+    }
+
+    /**
+     * The number parser should produce the same values as Double.parseDouble
+     */
+    @Test
+    public void parseNumbers() throws IOException {
+        String[] numbers = {"1", "-2", "+3.5", "0.1", ".5", "-0.25e-3", "1E+2", "6.02214076e23",
+                "123456789012345678901234", "0.30000000000000004", "4.9e-324", "1.7976931348623157e308",
+                "NaN", "-Infinity", "0.000000000000000000000123"};
+
+        StringBuilder text = new StringBuilder();
+        text.append(numbers.length).append(" 1 ").append(numbers.length).append("\n");
+        for (int i = 0; i < numbers.length; i++) {
+            text.append(i+1).append(" 1 ").append(numbers[i]).append("\n");
+        }
+        DMatrixSparseCSC found = ParallelMatrixReader.loadMatrixMarket(write(text.toString()), null);
+        for (int i = 0; i < numbers.length; i++) {
+            assertEquals(Double.parseDouble(numbers[i]), found.get(i,0), numbers[i]);
+        }
+    }
+
+    @Test
+    public void malformed() {
+        assertThrows(IOException.class, () ->
+                ParallelMatrixReader.loadMatrixMarket(write("2 2 2\n1 1 1.0\n"), null));
+        assertThrows(IOException.class, () ->
+                ParallelMatrixReader.loadMatrixMarket(write("2 2 1\n1 1 1.0x\n"), null));
+        assertThrows(IOException.class, () ->
+                ParallelMatrixReader.loadMatrixMarket(write("2 2 1\n3 1 1.0\n"), null));
+        assertThrows(IOException.class, () ->
+                ParallelMatrixReader.loadMatrixMarket(write("2 2 1\n1 1 1.0 5\n"), null));
+    }
+
+    @Test
+    public void csv_dense() throws IOException {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(25,6,rand);
+        Path path = Files.createTempFile("ejml", ".csv");
+        try {
+            MatrixIO.saveDenseCSV(A, path.toString());
+            DMatrixRMaj found = ParallelMatrixReader.loadCSV(path);
+            assertTrue(MatrixFeatures_DDRM.isIdentical(A, found, 0));
+        } finally {
+            Files.delete(path);
+        }
+
+        // wrong number of columns on a line
+        assertThrows(IOException.class, () -> ParallelMatrixReader.loadCSV(write("2 2 real\n1 2\n3\n")));
+        // too few rows
+        assertThrows(IOException.class, () -> ParallelMatrixReader.loadCSV(write("3 2 real\n1 2\n3 4\n")));
+    }
+
+    @Test
+    public void csv_complex() throws IOException {
+        ZMatrixRMaj A = RandomMatrices_ZDRM.rectangle(7,3,rand);
+        StringBuilder text = new StringBuilder();
+        text.append("7 3 complex\n");
+        for (int row = 0; row < 7; row++) {
+            for (int col = 0; col < 3; col++) {
+                text.append(A.getReal(row,col)).append(" ").append(A.getImag(row,col)).append(" ");
+            }
+            text.append("\n");
+        }
+        ZMatrixRMaj found = ParallelMatrixReader.loadCSV(write(text.toString()));
+        assertTrue(MatrixFeatures_ZDRM.isIdentical(A, found, 0));
+    }
+
+    @Test
+    public void csv_sparse() throws IOException {
+        DMatrixSparseTriplet A = new DMatrixSparseTriplet(4,5,3);
+        A.addItem(3,1,2.5);
+        A.addItem(0,4,-1.0);
+        A.addItem(2,1,7.0);
+        Path path = Files.createTempFile("ejml", ".csv");
+        try {
+            MatrixIO.saveSparseCSV(A, path.toString());
+            DMatrixSparseCSC found = ParallelMatrixReader.loadCSV(path);
+            assertEquals(4, found.numRows);
+            assertEquals(5, found.numCols);
+            assertEquals(3, found.nz_length);
+            assertEquals(2.5, found.get(3,1));
+            assertEquals(-1.0, found.get(0,4));
+            assertEquals(7.0, found.get(2,1));
+            assertTrue(found.indicesSorted);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    private Path write( String text ) throws IOException {
+        Path path = Files.createTempFile("ejml", ".mtx");
+        path.toFile().deleteOnExit();
+        Files.write(path, text.getBytes(US_ASCII));
+        return path;
+    }
+}
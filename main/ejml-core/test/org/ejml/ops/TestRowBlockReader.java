@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.ops;
+
+import org.ejml.UtilEjml;
+import org.ejml.data.DMatrixRBlock;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.data.FMatrixRMaj;
+import org.ejml.data.Matrix;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.ejml.dense.row.MatrixFeatures_DDRM;
+import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.ejml.dense.row.RandomMatrices_FDRM;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestRowBlockReader {
+    Random rand = new Random(234);
+
+    @Test
+    public void csv_header() throws IOException {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(23,4,rand);
+        Path path = Files.createTempFile("ejml", ".csv");
+        try {
+            MatrixIO.saveDenseCSV(A, path.toString());
+            RowBlockReader reader = RowBlockReader.csv(Files.newInputStream(path), 5);
+            assertEquals(23, reader.getNumRows());
+            assertEquals(4, reader.getNumCols());
+            checkBlocks(A, reader, 5);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void csv_noHeader() throws IOException {
+        String text = "1 2\n3 4\n5 6\n";
+        DMatrixRMaj expected = new DMatrixRMaj(3,2,true,1,2,3,4,5,6);
+        checkBlocks(expected, RowBlockReader.csv(stream(text), 3, 2, 2), 2);
+
+        // the file has fewer rows than specified
+        RowBlockReader reader = RowBlockReader.csv(stream(text), 4, 2, 3);
+        DMatrixRMaj block = new DMatrixRMaj(1,1);
+        assertTrue(reader.next(block));
+        assertThrows(IOException.class, () -> reader.next(block));
+    }
+
+    @Test
+    public void binary_double() throws IOException {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(31,7,rand);
+        for( boolean checksum : new boolean[]{false,true}) {
+            byte[] bytes = save(A, checksum);
+            for( int height : new int[]{1,4,31,50} ) {
+                checkBlocks(A, RowBlockReader.binary(channel(bytes), height), height);
+            }
+        }
+    }
+
+    @Test
+    public void binary_float() throws IOException {
+        FMatrixRMaj F = RandomMatrices_FDRM.rectangle(12,5,rand);
+        DMatrixRMaj A = new DMatrixRMaj(12,5);
+        ConvertMatrixData.convert(F, A);
+
+        checkBlocks(A, RowBlockReader.binary(channel(save(F, true)), 5), 5);
+    }
+
+    @Test
+    public void binary_corrupted() throws IOException {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(10,3,rand);
+        byte[] bytes = save(A, true);
+        bytes[BinaryMatrixIO.HEADER_LENGTH+20] ^= 0x10;
+
+        RowBlockReader reader = RowBlockReader.binary(channel(bytes), 6);
+        DMatrixRMaj block = new DMatrixRMaj(1,1);
+        assertTrue(reader.next(block));
+        // the checksum is verified after the last block
+        assertThrows(IOException.class, () -> reader.next(block));
+
+        // not a row-major matrix
+        byte[] blockBytes = save(new DMatrixRBlock(4,4), false);
+        assertThrows(IOException.class, () -> RowBlockReader.binary(channel(blockBytes), 2));
+    }
+
+    @Test
+    public void prefetch() throws IOException {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(97,6,rand);
+        byte[] bytes = save(A, true);
+
+        try (RowBlockReader reader = RowBlockReader.binary(channel(bytes), 8).prefetch()) {
+            assertEquals(97, reader.getNumRows());
+            assertEquals(6, reader.getNumCols());
+            checkBlocks(A, reader, 8);
+        }
+
+        // errors in the background thread are passed to the caller
+        RowBlockReader reader = RowBlockReader.csv(stream("3 2 real\n1 2\n3\n5 6\n"), 1).prefetch();
+        DMatrixRMaj block = new DMatrixRMaj(1,1);
+        assertTrue(reader.next(block));
+        assertThrows(IOException.class, () -> reader.next(block));
+        assertThrows(IOException.class, () -> reader.next(block));
+        reader.close();
+
+        // close before everything has been read
+        try (RowBlockReader partial = RowBlockReader.binary(channel(bytes), 8).prefetch()) {
+            assertTrue(partial.next(block));
+        }
+    }
+
+    /**
+     * Accumulate the Gram matrix block by block and compare against computing it all at once
+     */
+    @Test
+    public void gram() throws IOException {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(60,5,rand);
+
+        DMatrixRMaj AtA = new DMatrixRMaj(5,5);
+        DMatrixRMaj block = new DMatrixRMaj(1,1);
+        try (RowBlockReader reader = RowBlockReader.binary(channel(save(A, false)), 7).prefetch()) {
+            while( reader.next(block) )
+                CommonOps_DDRM.multAddTransA(block, block, AtA);
+        }
+
+        DMatrixRMaj expected = new DMatrixRMaj(5,5);
+        CommonOps_DDRM.multTransA(A, A, expected);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(expected, AtA, UtilEjml.TEST_F64));
+    }
+
+    private void checkBlocks( DMatrixRMaj expected , RowBlockReader reader , int height ) throws IOException {
+        DMatrixRMaj block = new DMatrixRMaj(1,1);
+        int row = 0;
+        while( reader.next(block) ) {
+            assertEquals(row, reader.getRowsRead()-block.numRows);
+            assertEquals(Math.min(height, expected.numRows-row), block.numRows);
+            assertEquals(expected.numCols, block.numCols);
+            DMatrixRMaj sub = CommonOps_DDRM.extract(expected, row, row+block.numRows, 0, expected.numCols);
+            assertTrue(MatrixFeatures_DDRM.isIdentical(sub, block, 0));
+            row += block.numRows;
+        }
+        assertEquals(expected.numRows, row);
+        assertFalse(reader.next(block));
+        reader.close();
+    }
+
+    private static byte[] save( Matrix A , boolean checksum ) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryMatrixIO.save(A, Channels.newChannel(out), checksum);
+        return out.toByteArray();
+    }
+
+    private static ReadableByteChannel channel( byte[] bytes ) {
+        return Channels.newChannel(new ByteArrayInputStream(bytes));
+    }
+
+    private static InputStream stream( String text ) {
+        return new ByteArrayInputStream(text.getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,522 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.dense.row;
+
+import org.ejml.MatrixDimensionException;
+import org.ejml.data.DMatrixChunked;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.data.ReshapeMatrix;
+import org.ejml.dense.row.decomposition.TriangularSolver_DDRM;
+import org.ejml.dense.row.decomposition.chol.CholeskyDecompositionInner_DDRM;
+import org.ejml.dense.row.factory.DecompositionFactory_DDRM;
+import org.ejml.interfaces.decomposition.QRDecomposition;
+import org.jetbrains.annotations.Nullable;
+
+import static org.ejml.UtilEjml.reshapeOrDeclare;
+
+/**
+ * <p>
+ * Operations on {@link DMatrixChunked}, e.g. memory-mapped and off-heap matrices. Only small blocks are copied
+ * onto the heap at any point, so the matrices can be much larger than the available heap memory.
+ * </p>
+ *
+ * <p>
+ * Functions with a {@link DMatrixRMaj} output stream through the input one block of rows at a time. Functions
+ * which operate between chunked matrices are tiled. Square tiles are copied into heap scratch matrices, processed
+ * with the regular dense code, then copied back.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class ChunkedOps_DDRM {
+    /**
+     * Target number of elements in each block of rows that's copied onto the heap
+     */
+    public static int BLOCK_ELEMENTS = 1 << 16;
+
+    /**
+     * Width of square tiles used by the tiled algorithms
+     */
+    public static int TILE_WIDTH = 128;
+
+    /**
+     * <p>c = a * b</p>
+     *
+     * @param a Chunked matrix. Not modified.
+     * @param b Matrix on the heap with a.numCols rows. Not modified.
+     * @param c (Output) Storage for the results. Reshaped to a.numRows by b.numCols.
+     * @return The results
+     */
+    public static DMatrixRMaj mult( DMatrixChunked a , DMatrixRMaj b , @Nullable DMatrixRMaj c ) {
+        if( a.getNumCols() != b.numRows )
+            throw new MatrixDimensionException("The 'a' and 'b' matrices do not have compatible dimensions");
+        c = reshapeOrDeclare(c, a.getNumRows(), b.numCols);
+
+        DMatrixRMaj block = new DMatrixRMaj(1,1);
+        DMatrixRMaj product = new DMatrixRMaj(1,1);
+        int step = blockRows(a);
+        for (int row0 = 0; row0 < a.getNumRows(); row0 += step) {
+            int row1 = Math.min(a.getNumRows(), row0+step);
+            a.getRows(row0, row1, block);
+            CommonOps_DDRM.mult(block, b, product);
+            System.arraycopy(product.data, 0, c.data, row0*c.numCols, product.getNumElements());
+        }
+        return c;
+    }
+
+    /**
+     * <p>c = a<sup>T</sup> * b</p>
+     *
+     * @param a Chunked matrix. Not modified.
+     * @param b Matrix on the heap with a.numRows rows. Not modified.
+     * @param c (Output) Storage for the results. Reshaped to a.numCols by b.numCols.
+     * @return The results
+     */
+    public static DMatrixRMaj multTransA( DMatrixChunked a , DMatrixRMaj b , @Nullable DMatrixRMaj c ) {
+        if( a.getNumRows() != b.numRows )
+            throw new MatrixDimensionException("The 'a' and 'b' matrices do not have compatible dimensions");
+        c = reshapeOrDeclare(c, a.getNumCols(), b.numCols);
+        c.zero();
+
+        DMatrixRMaj block = new DMatrixRMaj(1,1);
+        DMatrixRMaj blockB = new DMatrixRMaj(1,1);
+        int step = blockRows(a);
+        for (int row0 = 0; row0 < a.getNumRows(); row0 += step) {
+            int row1 = Math.min(a.getNumRows(), row0+step);
+            a.getRows(row0, row1, block);
+            CommonOps_DDRM.extract(b, row0, row1, 0, b.numCols, blockB);
+            CommonOps_DDRM.multAddTransA(block, blockB, c);
+        }
+        return c;
+    }
+
+    /**
+     * <p>
+     * Computes the Gram matrix c = a<sup>T</sup> * a by accumulating the contribution from each block of rows.
+     * </p>
+     *
+     * @param a Chunked matrix. Not modified.
+     * @param c (Output) Storage for the results. Reshaped to a.numCols by a.numCols.
+     * @return The results
+     */
+    public static DMatrixRMaj multInner( DMatrixChunked a , @Nullable DMatrixRMaj c ) {
+        c = reshapeOrDeclare(c, a.getNumCols(), a.getNumCols());
+        c.zero();
+
+        DMatrixRMaj block = new DMatrixRMaj(1,1);
+        int step = blockRows(a);
+        for (int row0 = 0; row0 < a.getNumRows(); row0 += step) {
+            int row1 = Math.min(a.getNumRows(), row0+step);
+            a.getRows(row0, row1, block);
+            CommonOps_DDRM.multAddTransA(block, block, c);
+        }
+        return c;
+    }
+
+    /**
+     * Computes the sum of each column. See {@link CommonOps_DDRM#sumCols}.
+     *
+     * @param input Chunked matrix. Not modified.
+     * @param output (Output) Storage for the results. Reshaped into a row vector.
+     * @return Vector containing the sum of each column
+     */
+    public static DMatrixRMaj sumCols( DMatrixChunked input , @Nullable DMatrixRMaj output ) {
+        output = reshapeOrDeclare(output, 1, input.getNumCols());
+        output.zero();
+
+        int numCols = input.getNumCols();
+        DMatrixRMaj block = new DMatrixRMaj(1,1);
+        int step = blockRows(input);
+        for (int row0 = 0; row0 < input.getNumRows(); row0 += step) {
+            int row1 = Math.min(input.getNumRows(), row0+step);
+            input.getRows(row0, row1, block);
+            int index = 0;
+            for (int row = row0; row < row1; row++) {
+                for (int col = 0; col < numCols; col++) {
+                    output.data[col] += block.data[index++];
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Finds the minimum value in each column. See {@link CommonOps_DDRM#minCols}.
+     *
+     * @param input Chunked matrix. Not modified.
+     * @param output (Output) Storage for the results. Reshaped into a row vector.
+     * @return Vector containing the minimum of each column
+     */
+    public static DMatrixRMaj minCols( DMatrixChunked input , @Nullable DMatrixRMaj output ) {
+        output = reshapeOrDeclare(output, 1, input.getNumCols());
+        CommonOps_DDRM.fill(output, Double.MAX_VALUE);
+
+        int numCols = input.getNumCols();
+        DMatrixRMaj block = new DMatrixRMaj(1,1);
+        int step = blockRows(input);
+        for (int row0 = 0; row0 < input.getNumRows(); row0 += step) {
+            int row1 = Math.min(input.getNumRows(), row0+step);
+            input.getRows(row0, row1, block);
+            int index = 0;
+            for (int row = row0; row < row1; row++) {
+                for (int col = 0; col < numCols; col++) {
+                    double v = block.data[index++];
+                    if( v < output.data[col] )
+                        output.data[col] = v;
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Finds the maximum value in each column. See {@link CommonOps_DDRM#maxCols}.
+     *
+     * @param input Chunked matrix. Not modified.
+     * @param output (Output) Storage for the results. Reshaped into a row vector.
+     * @return Vector containing the maximum of each column
+     */
+    public static DMatrixRMaj maxCols( DMatrixChunked input , @Nullable DMatrixRMaj output ) {
+        output = reshapeOrDeclare(output, 1, input.getNumCols());
+        CommonOps_DDRM.fill(output, -Double.MAX_VALUE);
+
+        int numCols = input.getNumCols();
+        DMatrixRMaj block = new DMatrixRMaj(1,1);
+        int step = blockRows(input);
+        for (int row0 = 0; row0 < input.getNumRows(); row0 += step) {
+            int row1 = Math.min(input.getNumRows(), row0+step);
+            input.getRows(row0, row1, block);
+            int index = 0;
+            for (int row = row0; row < row1; row++) {
+                for (int col = 0; col < numCols; col++) {
+                    double v = block.data[index++];
+                    if( v > output.data[col] )
+                        output.data[col] = v;
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * <p>c = a * b</p>
+     *
+     * <p>Tiled multiplication where all three matrices are chunked.</p>
+     *
+     * @param a Chunked matrix. Not modified.
+     * @param b Chunked matrix. Not modified.
+     * @param c (Output) Storage for the results. Reshaped if possible, otherwise must be a.numRows by b.numCols.
+     */
+    public static void mult( DMatrixChunked a , DMatrixChunked b , DMatrixChunked c ) {
+        if( a.getNumCols() != b.getNumRows() )
+            throw new MatrixDimensionException("The 'a' and 'b' matrices do not have compatible dimensions");
+        if( a == c || b == c )
+            throw new IllegalArgumentException("Neither 'a' or 'b' can be the same matrix as 'c'");
+        reshape(c, a.getNumRows(), b.getNumCols());
+
+        int T = TILE_WIDTH;
+        DMatrixRMaj tileA = new DMatrixRMaj(T,T);
+        DMatrixRMaj tileB = new DMatrixRMaj(T,T);
+        DMatrixRMaj tileC = new DMatrixRMaj(T,T);
+
+        for (int row0 = 0; row0 < a.getNumRows(); row0 += T) {
+            int row1 = Math.min(a.getNumRows(), row0+T);
+            for (int col0 = 0; col0 < b.getNumCols(); col0 += T) {
+                int col1 = Math.min(b.getNumCols(), col0+T);
+                tileC.reshape(row1-row0, col1-col0);
+                tileC.zero();
+                for (int k0 = 0; k0 < a.getNumCols(); k0 += T) {
+                    int k1 = Math.min(a.getNumCols(), k0+T);
+                    a.getBlock(row0, row1, k0, k1, tileA);
+                    b.getBlock(k0, k1, col0, col1, tileB);
+                    CommonOps_DDRM.multAdd(tileA, tileB, tileC);
+                }
+                c.setBlock(row0, col0, tileC);
+            }
+        }
+    }
+
+    /**
+     * <p>c = a<sup>T</sup></p>
+     *
+     * @param a Chunked matrix. Not modified.
+     * @param c (Output) Storage for the results. Reshaped if possible, otherwise must be a.numCols by a.numRows.
+     */
+    public static void transpose( DMatrixChunked a , DMatrixChunked c ) {
+        if( a == c )
+            throw new IllegalArgumentException("In-place transpose isn't supported");
+        reshape(c, a.getNumCols(), a.getNumRows());
+
+        int T = TILE_WIDTH;
+        DMatrixRMaj tile = new DMatrixRMaj(T,T);
+        DMatrixRMaj tileT = new DMatrixRMaj(T,T);
+        for (int row0 = 0; row0 < a.getNumRows(); row0 += T) {
+            int row1 = Math.min(a.getNumRows(), row0+T);
+            for (int col0 = 0; col0 < a.getNumCols(); col0 += T) {
+                int col1 = Math.min(a.getNumCols(), col0+T);
+                a.getBlock(row0, row1, col0, col1, tile);
+                CommonOps_DDRM.transpose(tile, tileT);
+                c.setBlock(col0, row0, tileT);
+            }
+        }
+    }
+
+    /**
+     * <p>c = a + b</p>
+     *
+     * @param a Chunked matrix. Not modified.
+     * @param b Chunked matrix. Not modified.
+     * @param c (Output) Storage for the results. Reshaped if possible, otherwise must be the same shape as 'a'.
+     *          Can be the same instance as 'a' or 'b'.
+     */
+    public static void add( DMatrixChunked a , DMatrixChunked b , DMatrixChunked c ) {
+        if( a.getNumRows() != b.getNumRows() || a.getNumCols() != b.getNumCols() )
+            throw new MatrixDimensionException("The 'a' and 'b' matrices do not have compatible dimensions");
+        reshape(c, a.getNumRows(), a.getNumCols());
+
+        long N = a.getNumElementsLong();
+        double[] workA = new double[(int)Math.min(N, BLOCK_ELEMENTS)];
+        double[] workB = new double[workA.length];
+        for (long index = 0; index < N; index += workA.length) {
+            int length = (int)Math.min(workA.length, N-index);
+            a.get(index, workA, 0, length);
+            b.get(index, workB, 0, length);
+            for (int i = 0; i < length; i++) {
+                workA[i] += workB[i];
+            }
+            c.set(index, workA, 0, length);
+        }
+    }
+
+    /**
+     * <p>
+     * In-place tiled Cholesky decomposition, A = L*L<sup>T</sup>. On output the lower triangle contains L and
+     * the upper triangle is set to zero.
+     * </p>
+     *
+     * @param A (Input) Symmetric positive definite matrix. (Output) the lower triangular matrix L.
+     * @return true if successful or false if the matrix isn't positive definite
+     */
+    public static boolean cholesky( DMatrixChunked A ) {
+        if( A.getNumRows() != A.getNumCols() )
+            throw new MatrixDimensionException("Must be a square matrix");
+        int N = A.getNumRows();
+        int T = TILE_WIDTH;
+
+        CholeskyDecompositionInner_DDRM chol = new CholeskyDecompositionInner_DDRM(true);
+        DMatrixRMaj Lkk = new DMatrixRMaj(T,T);
+        DMatrixRMaj Aik = new DMatrixRMaj(T,T);
+        DMatrixRMaj Ajk = new DMatrixRMaj(T,T);
+        DMatrixRMaj Aij = new DMatrixRMaj(T,T);
+        DMatrixRMaj tran = new DMatrixRMaj(T,T);
+
+        for (int k0 = 0; k0 < N; k0 += T) {
+            int k1 = Math.min(N, k0+T);
+
+            // factor the diagonal tile
+            A.getBlock(k0, k1, k0, k1, Lkk);
+            if( !chol.decompose(Lkk) )
+                return false;
+            chol.getT(Lkk);
+            A.setBlock(k0, k0, Lkk);
+
+            // A(i,k) = A(i,k)*inv(L(k,k))^T for tiles below the diagonal
+            for (int i0 = k1; i0 < N; i0 += T) {
+                int i1 = Math.min(N, i0+T);
+                A.getBlock(i0, i1, k0, k1, Aik);
+                CommonOps_DDRM.transpose(Aik, tran);
+                TriangularSolver_DDRM.solveL(Lkk.data, tran.data, tran.numRows, tran.numCols);
+                CommonOps_DDRM.transpose(tran, Aik);
+                A.setBlock(i0, k0, Aik);
+            }
+
+            // update the trailing lower triangle, A(i,j) = A(i,j) - A(i,k)*A(j,k)^T
+            for (int i0 = k1; i0 < N; i0 += T) {
+                int i1 = Math.min(N, i0+T);
+                A.getBlock(i0, i1, k0, k1, Aik);
+                for (int j0 = k1; j0 <= i0; j0 += T) {
+                    int j1 = Math.min(N, j0+T);
+                    A.getBlock(j0, j1, k0, k1, Ajk);
+                    A.getBlock(i0, i1, j0, j1, Aij);
+                    CommonOps_DDRM.multAddTransB(-1, Aik, Ajk, Aij);
+                    A.setBlock(i0, j0, Aij);
+                }
+            }
+        }
+
+        // zero the upper triangle, the diagonal tiles have already been handled
+        for (int row0 = 0; row0 < N; row0 += T) {
+            int row1 = Math.min(N, row0+T);
+            for (int col0 = row0+T; col0 < N; col0 += T) {
+                int col1 = Math.min(N, col0+T);
+                Aij.reshape(row1-row0, col1-col0);
+                Aij.zero();
+                A.setBlock(row0, col0, Aij);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * <p>
+     * Solves L*L<sup>T</sup>*x = b using the output of {@link #cholesky}. The rows of L are streamed twice,
+     * forwards and then backwards.
+     * </p>
+     *
+     * @param L Lower triangular matrix computed by {@link #cholesky}. Not modified.
+     * @param b Matrix on the heap with L.numRows rows. Not modified.
+     * @param x (Output) Storage for the solution. Reshaped to the same shape as 'b'.
+     * @return The solution
+     */
+    public static DMatrixRMaj solveCholesky( DMatrixChunked L , DMatrixRMaj b , @Nullable DMatrixRMaj x ) {
+        int N = L.getNumRows();
+        if( L.getNumCols() != N || b.numRows != N )
+            throw new MatrixDimensionException("Incompatible shapes");
+        x = reshapeOrDeclare(x, N, b.numCols);
+        x.set(b);
+        int K = b.numCols;
+
+        DMatrixRMaj block = new DMatrixRMaj(1,1);
+        int step = blockRows(L);
+
+        // forward substitution, L*y = b
+        for (int row0 = 0; row0 < N; row0 += step) {
+            int row1 = Math.min(N, row0+step);
+            L.getRows(row0, row1, block);
+            for (int i = row0; i < row1; i++) {
+                int indexL = (i-row0)*N;
+                for (int col = 0; col < K; col++) {
+                    double sum = x.data[i*K+col];
+                    for (int j = 0; j < i; j++) {
+                        sum -= block.data[indexL+j]*x.data[j*K+col];
+                    }
+                    x.data[i*K+col] = sum/block.data[indexL+i];
+                }
+            }
+        }
+
+        // back substitution, L^T*x = y. Row i of L is column i of L^T
+        for (int row1 = N; row1 > 0; row1 -= step) {
+            int row0 = Math.max(0, row1-step);
+            L.getRows(row0, row1, block);
+            for (int i = row1-1; i >= row0; i--) {
+                int indexL = (i-row0)*N;
+                double diag = block.data[indexL+i];
+                for (int col = 0; col < K; col++) {
+                    double v = x.data[i*K+col] /= diag;
+                    for (int j = 0; j < i; j++) {
+                        x.data[j*K+col] -= block.data[indexL+j]*v;
+                    }
+                }
+            }
+        }
+        return x;
+    }
+
+    /**
+     * <p>
+     * Computes the upper triangular R from a QR decomposition of a tall matrix using a tall-skinny QR. Each block
+     * of rows is stacked below the current R and decomposed again, so only R and one block are on the heap.
+     * </p>
+     *
+     * @param A Chunked matrix with at least as many rows as columns. Not modified.
+     * @param R (Output) Storage for R. Reshaped to A.numCols by A.numCols.
+     * @return R
+     */
+    public static DMatrixRMaj qrR( DMatrixChunked A , @Nullable DMatrixRMaj R ) {
+        return tallSkinnyQR(A, null, R);
+    }
+
+    /**
+     * <p>
+     * Solves the least squares problem min ||A*x - b|| using a tall-skinny QR decomposition. Q is never formed.
+     * Instead [A b] is decomposed, which provides R and Q<sup>T</sup>b.
+     * </p>
+     *
+     * @param A Chunked matrix with at least as many rows as columns and full rank. Not modified.
+     * @param b Matrix on the heap with A.numRows rows. Not modified.
+     * @param x (Output) Storage for the solution. Reshaped to A.numCols by b.numCols.
+     * @return The solution
+     */
+    public static DMatrixRMaj solveLeastSquares( DMatrixChunked A , DMatrixRMaj b , @Nullable DMatrixRMaj x ) {
+        if( b.numRows != A.getNumRows() )
+            throw new MatrixDimensionException("'b' must have the same number of rows as 'A'");
+        int N = A.getNumCols();
+        DMatrixRMaj R = tallSkinnyQR(A, b, null);
+
+        x = reshapeOrDeclare(x, N, b.numCols);
+        CommonOps_DDRM.extract(R, 0, N, N, N+b.numCols, x, 0, 0);
+        TriangularSolver_DDRM.solveU(R.data, 0, R.numCols, N, x.data, 0, x.numCols, x.numCols);
+        return x;
+    }
+
+    private static DMatrixRMaj tallSkinnyQR( DMatrixChunked A , @Nullable DMatrixRMaj b , @Nullable DMatrixRMaj R ) {
+        if( A.getNumRows() < A.getNumCols() )
+            throw new IllegalArgumentException("Must have at least as many rows as columns");
+        int cols = A.getNumCols() + (b == null ? 0 : b.numCols);
+        QRDecomposition<DMatrixRMaj> qr = DecompositionFactory_DDRM.qr();
+
+        R = reshapeOrDeclare(R, 0, cols);
+        DMatrixRMaj block = new DMatrixRMaj(1,1);
+        DMatrixRMaj blockB = new DMatrixRMaj(1,1);
+        DMatrixRMaj augmented = new DMatrixRMaj(1,1);
+        DMatrixRMaj stacked = new DMatrixRMaj(1,1);
+
+        // blocks need at least as many rows as there are columns for the stacked decomposition to be efficient
+        int step = Math.max(cols, blockRows(A));
+        for (int row0 = 0; row0 < A.getNumRows(); row0 += step) {
+            int row1 = Math.min(A.getNumRows(), row0+step);
+            A.getRows(row0, row1, block);
+            if( b != null ) {
+                CommonOps_DDRM.extract(b, row0, row1, 0, b.numCols, blockB);
+                CommonOps_DDRM.concatColumns(block, blockB, augmented);
+                CommonOps_DDRM.concatRows(R, augmented, stacked);
+            } else {
+                CommonOps_DDRM.concatRows(R, block, stacked);
+            }
+            if( !qr.decompose(stacked) )
+                throw new RuntimeException("QR decomposition failed");
+            qr.getR(R, true);
+        }
+
+        // all the rows have been processed. R is now square
+        if( R.numRows < A.getNumCols() )
+            throw new RuntimeException("Unexpected number of rows in R");
+        return R;
+    }
+
+    /**
+     * Reshapes the output if it's a {@link ReshapeMatrix} otherwise makes sure it's the expected shape
+     */
+    private static void reshape( DMatrixChunked c , int numRows , int numCols ) {
+        if( c.getNumRows() == numRows && c.getNumCols() == numCols )
+            return;
+        if( c instanceof ReshapeMatrix )
+            ((ReshapeMatrix)c).reshape(numRows, numCols);
+        else
+            throw new MatrixDimensionException("Output has the wrong shape and can't be reshaped");
+    }
+
+    /**
+     * Number of rows in each block that's copied onto the heap
+     */
+    static int blockRows( DMatrixChunked a ) {
+        return Math.max(1, BLOCK_ELEMENTS/Math.max(1, a.getNumCols()));
+    }
+}
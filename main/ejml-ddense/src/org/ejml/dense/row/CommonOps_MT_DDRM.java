@@ -0,0 +1,467 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.dense.row;
+
+import org.ejml.MatrixDimensionException;
+import org.ejml.UtilEjml;
+import org.ejml.concurrency.EjmlConcurrency;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.decomposition.lu.LUDecompositionAlt_DDRM;
+import org.ejml.dense.row.misc.UnrolledInverseFromMinor_DDRM;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.ejml.UtilEjml.reshapeOrDeclare;
+
+/**
+ * <p>
+ * Concurrent versions of functions in {@link CommonOps_DDRM}. Matrix multiplication and transpose split the rows
+ * of the output into blocks, element-wise operations split the elements into blocks, and the linear solvers
+ * decompose the matrix once and then solve for blocks of columns independently. If the matrix is small or
+ * concurrency is turned off in {@link EjmlConcurrency} then the single threaded version is called.
+ * </p>
+ *
+ * <p>
+ * Each output element is computed independently of how the work is split between threads, so results do not
+ * depend on the number of threads.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class CommonOps_MT_DDRM {
+
+    // minimum number of elements each thread processes in element-wise operations
+    private static final int MIN_BLOCK = 5000;
+
+    /**
+     * <p>Performs the following operation:<br>
+     * <br>
+     * c = a * b <br>
+     * </p>
+     *
+     * @param A The left matrix in the multiplication operation. Not modified.
+     * @param B The right matrix in the multiplication operation. Not modified.
+     * @param C Where the results of the operation are stored. Modified.
+     * @see CommonOps_DDRM#mult(org.ejml.data.DMatrix1Row, org.ejml.data.DMatrix1Row, org.ejml.data.DMatrix1Row)
+     */
+    public static void mult( DMatrixRMaj A, DMatrixRMaj B, DMatrixRMaj C ) {
+        if (!EjmlConcurrency.useConcurrent(work(A.numRows, A.numCols, B.numCols))) {
+            CommonOps_DDRM.mult(A, B, C);
+            return;
+        }
+        if (A == C || B == C)
+            throw new IllegalArgumentException("Neither 'A' or 'B' can be the same matrix as 'C'");
+        if (A.numCols != B.numRows)
+            throw new MatrixDimensionException("The 'A' and 'B' matrices do not have compatible dimensions");
+        C.reshape(A.numRows, B.numCols);
+
+        EjmlConcurrency.loopBlocks(0, A.numRows, minRows(A.numCols*B.numCols), ( row0, row1 ) -> {
+            for (int i = row0; i < row1; i++) {
+                int indexC = i*C.numCols;
+                int endC = indexC + C.numCols;
+                for (int j = indexC; j < endC; j++) {
+                    C.data[j] = 0;
+                }
+                int indexA = i*A.numCols;
+                for (int k = 0; k < A.numCols; k++) {
+                    double valA = A.data[indexA++];
+                    int indexB = k*B.numCols;
+                    for (int j = indexC; j < endC; j++) {
+                        C.data[j] += valA*B.data[indexB++];
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * <p>Performs the following operation:<br>
+     * <br>
+     * c = a<sup>T</sup> * b <br>
+     * </p>
+     *
+     * @param A The left matrix in the multiplication operation. Not modified.
+     * @param B The right matrix in the multiplication operation. Not modified.
+     * @param C Where the results of the operation are stored. Modified.
+     */
+    public static void multTransA( DMatrixRMaj A, DMatrixRMaj B, DMatrixRMaj C ) {
+        if (!EjmlConcurrency.useConcurrent(work(A.numCols, A.numRows, B.numCols))) {
+            CommonOps_DDRM.multTransA(A, B, C);
+            return;
+        }
+        if (A == C || B == C)
+            throw new IllegalArgumentException("Neither 'A' or 'B' can be the same matrix as 'C'");
+        if (A.numRows != B.numRows)
+            throw new MatrixDimensionException("The 'A' and 'B' matrices do not have compatible dimensions");
+        C.reshape(A.numCols, B.numCols);
+
+        EjmlConcurrency.loopBlocks(0, A.numCols, minRows(A.numRows*B.numCols), ( row0, row1 ) -> {
+            for (int i = row0; i < row1; i++) {
+                int indexC = i*C.numCols;
+                int endC = indexC + C.numCols;
+                for (int j = indexC; j < endC; j++) {
+                    C.data[j] = 0;
+                }
+                for (int k = 0; k < A.numRows; k++) {
+                    double valA = A.data[k*A.numCols + i];
+                    int indexB = k*B.numCols;
+                    for (int j = indexC; j < endC; j++) {
+                        C.data[j] += valA*B.data[indexB++];
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * <p>Performs the following operation:<br>
+     * <br>
+     * c = a * b<sup>T</sup> <br>
+     * </p>
+     *
+     * @param A The left matrix in the multiplication operation. Not modified.
+     * @param B The right matrix in the multiplication operation. Not modified.
+     * @param C Where the results of the operation are stored. Modified.
+     */
+    public static void multTransB( DMatrixRMaj A, DMatrixRMaj B, DMatrixRMaj C ) {
+        if (!EjmlConcurrency.useConcurrent(work(A.numRows, A.numCols, B.numRows))) {
+            CommonOps_DDRM.multTransB(A, B, C);
+            return;
+        }
+        if (A == C || B == C)
+            throw new IllegalArgumentException("Neither 'A' or 'B' can be the same matrix as 'C'");
+        if (A.numCols != B.numCols)
+            throw new MatrixDimensionException("The 'A' and 'B' matrices do not have compatible dimensions");
+        C.reshape(A.numRows, B.numRows);
+
+        EjmlConcurrency.loopBlocks(0, A.numRows, minRows(A.numCols*B.numRows), ( row0, row1 ) -> {
+            for (int i = row0; i < row1; i++) {
+                int indexC = i*C.numCols;
+                int indexA = i*A.numCols;
+                for (int j = 0; j < B.numRows; j++) {
+                    int indexB = j*B.numCols;
+                    double total = 0;
+                    for (int k = 0; k < A.numCols; k++) {
+                        total += A.data[indexA + k]*B.data[indexB + k];
+                    }
+                    C.data[indexC++] = total;
+                }
+            }
+        });
+    }
+
+    /**
+     * Transposes matrix 'A' and stores the results in 'A_tran'
+     *
+     * @param A The original matrix.  Not modified.
+     * @param A_tran Where the transpose is stored. If null a new matrix is created. Modified.
+     * @return The transposed matrix.
+     */
+    public static DMatrixRMaj transpose( DMatrixRMaj A, @Nullable DMatrixRMaj A_tran ) {
+        if (!EjmlConcurrency.useConcurrent(A.getNumElements()))
+            return CommonOps_DDRM.transpose(A, A_tran);
+        if (A == A_tran)
+            throw new IllegalArgumentException("A and A_tran can't be the same instance");
+
+        final DMatrixRMaj output = reshapeOrDeclare(A_tran, A.numCols, A.numRows);
+        EjmlConcurrency.loopBlocks(0, output.numRows, minRows(output.numCols), ( row0, row1 ) -> {
+            for (int i = row0; i < row1; i++) {
+                int indexOut = i*output.numCols;
+                int indexA = i;
+                for (int j = 0; j < output.numCols; j++, indexA += A.numCols) {
+                    output.data[indexOut++] = A.data[indexA];
+                }
+            }
+        });
+        return output;
+    }
+
+    /**
+     * c = a + b. Matrix C can be the same instance as Matrix A and/or B.
+     *
+     * @param a A Matrix. Not modified.
+     * @param b A Matrix. Not modified.
+     * @param output (output) A Matrix where the results are stored. Can be null. Modified.
+     * @return The results.
+     */
+    public static DMatrixRMaj add( DMatrixRMaj a, DMatrixRMaj b, @Nullable DMatrixRMaj output ) {
+        if (!EjmlConcurrency.useConcurrent(a.getNumElements()))
+            return CommonOps_DDRM.add(a, b, output);
+        UtilEjml.checkSameShape(a, b, true);
+        final DMatrixRMaj c = reshapeOrDeclare(output, a);
+
+        EjmlConcurrency.loopBlocks(0, a.getNumElements(), MIN_BLOCK, ( idx0, idx1 ) -> {
+            for (int i = idx0; i < idx1; i++) {
+                c.data[i] = a.data[i] + b.data[i];
+            }
+        });
+        return c;
+    }
+
+    /**
+     * c = a + &beta; * b. Matrix C can be the same instance as Matrix A and/or B.
+     *
+     * @param a A Matrix. Not modified.
+     * @param beta Scaling factor for matrix b.
+     * @param b A Matrix. Not modified.
+     * @param output (output) A Matrix where the results are stored. Can be null. Modified.
+     * @return The results.
+     */
+    public static DMatrixRMaj add( DMatrixRMaj a, double beta, DMatrixRMaj b, @Nullable DMatrixRMaj output ) {
+        if (!EjmlConcurrency.useConcurrent(a.getNumElements()))
+            return CommonOps_DDRM.add(a, beta, b, output);
+        UtilEjml.checkSameShape(a, b, true);
+        final DMatrixRMaj c = reshapeOrDeclare(output, a);
+
+        EjmlConcurrency.loopBlocks(0, a.getNumElements(), MIN_BLOCK, ( idx0, idx1 ) -> {
+            for (int i = idx0; i < idx1; i++) {
+                c.data[i] = a.data[i] + beta*b.data[i];
+            }
+        });
+        return c;
+    }
+
+    /**
+     * c = &alpha; * a + &beta; * b. Matrix C can be the same instance as Matrix A and/or B.
+     *
+     * @param alpha Scaling factor for matrix a.
+     * @param a A Matrix. Not modified.
+     * @param beta Scaling factor for matrix b.
+     * @param b A Matrix. Not modified.
+     * @param output (output) A Matrix where the results are stored. Can be null. Modified.
+     * @return The results.
+     */
+    public static DMatrixRMaj add( double alpha, DMatrixRMaj a, double beta, DMatrixRMaj b,
+                                   @Nullable DMatrixRMaj output ) {
+        if (!EjmlConcurrency.useConcurrent(a.getNumElements()))
+            return CommonOps_DDRM.add(alpha, a, beta, b, output);
+        UtilEjml.checkSameShape(a, b, true);
+        final DMatrixRMaj c = reshapeOrDeclare(output, a);
+
+        EjmlConcurrency.loopBlocks(0, a.getNumElements(), MIN_BLOCK, ( idx0, idx1 ) -> {
+            for (int i = idx0; i < idx1; i++) {
+                c.data[i] = alpha*a.data[i] + beta*b.data[i];
+            }
+        });
+        return c;
+    }
+
+    /**
+     * c = a - b. Matrix C can be the same instance as Matrix A and/or B.
+     *
+     * @param a A Matrix. Not modified.
+     * @param b A Matrix. Not modified.
+     * @param output (output) A Matrix where the results are stored. Can be null. Modified.
+     * @return The results.
+     */
+    public static DMatrixRMaj subtract( DMatrixRMaj a, DMatrixRMaj b, @Nullable DMatrixRMaj output ) {
+        if (!EjmlConcurrency.useConcurrent(a.getNumElements()))
+            return CommonOps_DDRM.subtract(a, b, output);
+        UtilEjml.checkSameShape(a, b, true);
+        final DMatrixRMaj c = reshapeOrDeclare(output, a);
+
+        EjmlConcurrency.loopBlocks(0, a.getNumElements(), MIN_BLOCK, ( idx0, idx1 ) -> {
+            for (int i = idx0; i < idx1; i++) {
+                c.data[i] = a.data[i] - b.data[i];
+            }
+        });
+        return c;
+    }
+
+    /**
+     * b<sub>ij</sub> = &alpha;*a<sub>ij</sub>
+     *
+     * @param alpha the amount each element is multiplied by.
+     * @param a The matrix that is to be scaled.  Not modified.
+     * @param b Where the scaled matrix is stored. Modified.
+     */
+    public static void scale( double alpha, DMatrixRMaj a, DMatrixRMaj b ) {
+        if (!EjmlConcurrency.useConcurrent(a.getNumElements())) {
+            CommonOps_DDRM.scale(alpha, a, b);
+            return;
+        }
+        b.reshape(a.numRows, a.numCols);
+
+        EjmlConcurrency.loopBlocks(0, a.getNumElements(), MIN_BLOCK, ( idx0, idx1 ) -> {
+            for (int i = idx0; i < idx1; i++) {
+                b.data[i] = a.data[i]*alpha;
+            }
+        });
+    }
+
+    /**
+     * b<sub>ij</sub> = a<sub>ij</sub> /&alpha;
+     *
+     * @param input The matrix whose elements are to be divided.  Not modified.
+     * @param alpha the amount each element is divided by.
+     * @param output Where the results are stored. If null a new matrix is created. Modified.
+     * @return The results.
+     */
+    public static DMatrixRMaj divide( DMatrixRMaj input, double alpha, @Nullable DMatrixRMaj output ) {
+        if (!EjmlConcurrency.useConcurrent(input.getNumElements()))
+            return CommonOps_DDRM.divide(input, alpha, output);
+        final DMatrixRMaj c = reshapeOrDeclare(output, input);
+
+        EjmlConcurrency.loopBlocks(0, input.getNumElements(), MIN_BLOCK, ( idx0, idx1 ) -> {
+            for (int i = idx0; i < idx1; i++) {
+                c.data[i] = input.data[i]/alpha;
+            }
+        });
+        return c;
+    }
+
+    /**
+     * c<sub>ij</sub> = a<sub>ij</sub> * b<sub>ij</sub>
+     *
+     * @param A The left matrix in the multiplication operation. Not modified.
+     * @param B The right matrix in the multiplication operation. Not modified.
+     * @param output Where the results of the operation are stored. Modified.
+     * @return The results.
+     */
+    public static DMatrixRMaj elementMult( DMatrixRMaj A, DMatrixRMaj B, @Nullable DMatrixRMaj output ) {
+        if (!EjmlConcurrency.useConcurrent(A.getNumElements()))
+            return CommonOps_DDRM.elementMult(A, B, output);
+        UtilEjml.checkSameShape(A, B, true);
+        final DMatrixRMaj c = reshapeOrDeclare(output, A);
+
+        EjmlConcurrency.loopBlocks(0, A.getNumElements(), MIN_BLOCK, ( idx0, idx1 ) -> {
+            for (int i = idx0; i < idx1; i++) {
+                c.data[i] = A.data[i]*B.data[i];
+            }
+        });
+        return c;
+    }
+
+    /**
+     * c<sub>ij</sub> = a<sub>ij</sub> / b<sub>ij</sub>
+     *
+     * @param A The left matrix in the division operation. Not modified.
+     * @param B The right matrix in the division operation. Not modified.
+     * @param output Where the results of the operation are stored. Modified.
+     * @return The results.
+     */
+    public static DMatrixRMaj elementDiv( DMatrixRMaj A, DMatrixRMaj B, @Nullable DMatrixRMaj output ) {
+        if (!EjmlConcurrency.useConcurrent(A.getNumElements()))
+            return CommonOps_DDRM.elementDiv(A, B, output);
+        UtilEjml.checkSameShape(A, B, true);
+        final DMatrixRMaj c = reshapeOrDeclare(output, A);
+
+        EjmlConcurrency.loopBlocks(0, A.getNumElements(), MIN_BLOCK, ( idx0, idx1 ) -> {
+            for (int i = idx0; i < idx1; i++) {
+                c.data[i] = A.data[i]/B.data[i];
+            }
+        });
+        return c;
+    }
+
+    /**
+     * Solves for x in the linear system A*x = b. Square systems are decomposed once using LU and then
+     * the columns of b are solved for in parallel. Other systems are passed to {@link CommonOps_DDRM#solve}.
+     * Singular matrices are handled the same as in {@link CommonOps_DDRM#solve}.
+     *
+     * @param a A matrix that is m by n. Not modified.
+     * @param b A matrix that is n by k. Not modified.
+     * @param x A matrix that is m by k. Modified.
+     * @return true if it could invert the matrix false if it could not.
+     */
+    public static boolean solve( DMatrixRMaj a, DMatrixRMaj b, DMatrixRMaj x ) {
+        if (a.numRows != a.numCols || b.numCols <= 1 ||
+                !EjmlConcurrency.useConcurrent(work(a.numRows, a.numCols, b.numCols)))
+            return CommonOps_DDRM.solve(a, b, x);
+        if (b.numRows != a.numRows)
+            throw new MatrixDimensionException("Unexpected dimensions for b: b rows = " + b.numRows +
+                    " expected = " + a.numRows);
+
+        LUDecompositionAlt_DDRM lu = new LUDecompositionAlt_DDRM();
+        if (!lu.decompose(a))
+            return false;
+
+        x.reshape(a.numCols, b.numCols);
+        solveColumns(lu, b, x);
+        return true;
+    }
+
+    /**
+     * Computes the inverse of 'mat' and stores the results in 'result'. The matrix is decomposed once using LU
+     * and the columns of the inverse are then solved for in parallel. Singular matrices are handled the same as
+     * in {@link CommonOps_DDRM#invert(DMatrixRMaj, DMatrixRMaj)}.
+     *
+     * @param mat The matrix that is to be inverted.  Not modified.
+     * @param result Where the inverse matrix is stored.  Modified.
+     * @return true if it could invert the matrix false if it could not.
+     */
+    public static boolean invert( DMatrixRMaj mat, DMatrixRMaj result ) {
+        if (mat.numCols <= UnrolledInverseFromMinor_DDRM.MAX ||
+                !EjmlConcurrency.useConcurrent(work(mat.numRows, mat.numCols, mat.numCols)))
+            return CommonOps_DDRM.invert(mat, result);
+        if (mat.numCols != mat.numRows)
+            throw new MatrixDimensionException("Must be a square matrix.");
+
+        LUDecompositionAlt_DDRM lu = new LUDecompositionAlt_DDRM();
+        if (!lu.decompose(mat))
+            return false;
+
+        result.reshape(mat.numRows, mat.numCols);
+        solveColumns(lu, null, result);
+        return true;
+    }
+
+    /**
+     * Solves for each column in X using an already decomposed matrix. Each thread has its own work vector
+     * and only reads from the decomposition. If B is null then the identity matrix is used.
+     */
+    private static void solveColumns( LUDecompositionAlt_DDRM lu, @Nullable DMatrixRMaj B, DMatrixRMaj X ) {
+        final int N = X.numRows;
+        final int numCols = X.numCols;
+        List<double[]> workspace = new ArrayList<>();
+        EjmlConcurrency.loopBlocks(0, numCols, 1, workspace, () -> new double[N], ( vv, col0, col1 ) -> {
+            for (int j = col0; j < col1; j++) {
+                if (B == null) {
+                    for (int i = 0; i < N; i++) {
+                        vv[i] = i == j ? 1.0 : 0.0;
+                    }
+                } else {
+                    for (int i = 0, index = j; i < N; i++, index += numCols) {
+                        vv[i] = B.data[index];
+                    }
+                }
+                lu._solveVectorInternal(vv);
+                for (int i = 0, index = j; i < N; i++, index += numCols) {
+                    X.data[index] = vv[i];
+                }
+            }
+        });
+    }
+
+    /**
+     * Number of multiply-add operations, clamped so it can be passed to {@link EjmlConcurrency#useConcurrent(int)}
+     */
+    private static int work( int rows, int inner, int cols ) {
+        return (int)Math.min(Integer.MAX_VALUE, (long)rows*inner*cols);
+    }
+
+    /**
+     * Minimum number of rows in a block so that each thread does a reasonable amount of work
+     */
+    private static int minRows( int workPerRow ) {
+        return Math.max(1, MIN_BLOCK/Math.max(1, workPerRow));
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.dense.row;
+
+import org.ejml.MatrixDimensionException;
+import org.ejml.UtilEjml;
+import org.ejml.data.BMatrixPacked;
+import org.ejml.data.DMatrixRMaj;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * Creates bit packed masks, {@link BMatrixPacked}, by comparing the elements in a matrix and uses them to select
+ * elements. These are equivalent to the functions in {@link CommonOps_DDRM} which output a
+ * {@link org.ejml.data.BMatrixRMaj}, but the mask uses 1/8 the memory and can be combined with the logical
+ * operations in {@link org.ejml.ops.CommonOps_BDRM}.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class MaskOps_DDRM {
+    /**
+     * Applies the &lt; operator to each element in A.
+     *
+     * @param A Input matrix
+     * @param value value each element is compared against
+     * @param output (Optional) Storage for results. Can be null. Is reshaped.
+     * @return Mask with the results
+     */
+    public static BMatrixPacked elementLessThan( DMatrixRMaj A , double value , @Nullable BMatrixPacked output ) {
+        output = UtilEjml.reshapeOrDeclare(output, A.numRows, A.numCols);
+        for (int row = 0; row < A.numRows; row++) {
+            int indexA = row*A.numCols;
+            int indexOut = row*output.wordsPerRow;
+            for (int col0 = 0; col0 < A.numCols; col0 += 64) {
+                int length = Math.min(64, A.numCols-col0);
+                long word = 0;
+                for (int bit = 0; bit < length; bit++) {
+                    if( A.data[indexA++] < value )
+                        word |= 1L << bit;
+                }
+                output.data[indexOut++] = word;
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Applies the &le; operator to each element in A.
+     *
+     * @see #elementLessThan(DMatrixRMaj, double, BMatrixPacked)
+     */
+    public static BMatrixPacked elementLessThanOrEqual( DMatrixRMaj A , double value , @Nullable BMatrixPacked output ) {
+        output = UtilEjml.reshapeOrDeclare(output, A.numRows, A.numCols);
+        for (int row = 0; row < A.numRows; row++) {
+            int indexA = row*A.numCols;
+            int indexOut = row*output.wordsPerRow;
+            for (int col0 = 0; col0 < A.numCols; col0 += 64) {
+                int length = Math.min(64, A.numCols-col0);
+                long word = 0;
+                for (int bit = 0; bit < length; bit++) {
+                    if( A.data[indexA++] <= value )
+                        word |= 1L << bit;
+                }
+                output.data[indexOut++] = word;
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Applies the &gt; operator to each element in A.
+     *
+     * @see #elementLessThan(DMatrixRMaj, double, BMatrixPacked)
+     */
+    public static BMatrixPacked elementMoreThan( DMatrixRMaj A , double value , @Nullable BMatrixPacked output ) {
+        output = UtilEjml.reshapeOrDeclare(output, A.numRows, A.numCols);
+        for (int row = 0; row < A.numRows; row++) {
+            int indexA = row*A.numCols;
+            int indexOut = row*output.wordsPerRow;
+            for (int col0 = 0; col0 < A.numCols; col0 += 64) {
+                int length = Math.min(64, A.numCols-col0);
+                long word = 0;
+                for (int bit = 0; bit < length; bit++) {
+                    if( A.data[indexA++] > value )
+                        word |= 1L << bit;
+                }
+                output.data[indexOut++] = word;
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Applies the &ge; operator to each element in A.
+     *
+     * @see #elementLessThan(DMatrixRMaj, double, BMatrixPacked)
+     */
+    public static BMatrixPacked elementMoreThanOrEqual( DMatrixRMaj A , double value , @Nullable BMatrixPacked output ) {
+        output = UtilEjml.reshapeOrDeclare(output, A.numRows, A.numCols);
+        for (int row = 0; row < A.numRows; row++) {
+            int indexA = row*A.numCols;
+            int indexOut = row*output.wordsPerRow;
+            for (int col0 = 0; col0 < A.numCols; col0 += 64) {
+                int length = Math.min(64, A.numCols-col0);
+                long word = 0;
+                for (int bit = 0; bit < length; bit++) {
+                    if( A.data[indexA++] >= value )
+                        word |= 1L << bit;
+                }
+                output.data[indexOut++] = word;
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Applies the A &lt; B operator to each element.
+     *
+     * @param A Input matrix
+     * @param B Input matrix with the same shape as A
+     * @param output (Optional) Storage for results. Can be null. Is reshaped.
+     * @return Mask with the results
+     */
+    public static BMatrixPacked elementLessThan( DMatrixRMaj A , DMatrixRMaj B , @Nullable BMatrixPacked output ) {
+        UtilEjml.checkSameShape(A, B, true);
+        output = UtilEjml.reshapeOrDeclare(output, A.numRows, A.numCols);
+        for (int row = 0; row < A.numRows; row++) {
+            int indexA = row*A.numCols;
+            int indexOut = row*output.wordsPerRow;
+            for (int col0 = 0; col0 < A.numCols; col0 += 64) {
+                int length = Math.min(64, A.numCols-col0);
+                long word = 0;
+                for (int bit = 0; bit < length; bit++, indexA++) {
+                    if( A.data[indexA] < B.data[indexA] )
+                        word |= 1L << bit;
+                }
+                output.data[indexOut++] = word;
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Applies the A &le; B operator to each element.
+     *
+     * @see #elementLessThan(DMatrixRMaj, DMatrixRMaj, BMatrixPacked)
+     */
+    public static BMatrixPacked elementLessThanOrEqual( DMatrixRMaj A , DMatrixRMaj B , @Nullable BMatrixPacked output ) {
+        UtilEjml.checkSameShape(A, B, true);
+        output = UtilEjml.reshapeOrDeclare(output, A.numRows, A.numCols);
+        for (int row = 0; row < A.numRows; row++) {
+            int indexA = row*A.numCols;
+            int indexOut = row*output.wordsPerRow;
+            for (int col0 = 0; col0 < A.numCols; col0 += 64) {
+                int length = Math.min(64, A.numCols-col0);
+                long word = 0;
+                for (int bit = 0; bit < length; bit++, indexA++) {
+                    if( A.data[indexA] <= B.data[indexA] )
+                        word |= 1L << bit;
+                }
+                output.data[indexOut++] = word;
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Returns a column vector which contains all the elements in A which are true in the mask, in row-major order.
+     * Words in the mask which are all false are skipped.
+     *
+     * @param A Input matrix
+     * @param mask Input matrix marking elements in A. Same shape as A.
+     * @param output Storage for output column vector. Can be null. Will be reshaped.
+     * @return Column vector with marked elements
+     */
+    public static DMatrixRMaj elements( DMatrixRMaj A , BMatrixPacked mask , @Nullable DMatrixRMaj output ) {
+        checkMask(A, mask);
+        output = UtilEjml.reshapeOrDeclare(output, mask.sum(), 1);
+
+        int index = 0;
+        for (int row = 0; row < A.numRows; row++) {
+            int indexA = row*A.numCols;
+            int indexMask = row*mask.wordsPerRow;
+            for (int w = 0; w < mask.wordsPerRow; w++) {
+                long word = mask.data[indexMask+w];
+                while( word != 0 ) {
+                    int col = (w << 6) + Long.numberOfTrailingZeros(word);
+                    output.data[index++] = A.data[indexA+col];
+                    word &= word - 1;
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Sets every element in A which is true in the mask to the value
+     *
+     * @param A Matrix which is modified
+     * @param mask Input matrix marking elements in A. Same shape as A.
+     * @param value The value which marked elements are set to
+     */
+    public static void fill( DMatrixRMaj A , BMatrixPacked mask , double value ) {
+        checkMask(A, mask);
+        for (int row = 0; row < A.numRows; row++) {
+            int indexA = row*A.numCols;
+            int indexMask = row*mask.wordsPerRow;
+            for (int w = 0; w < mask.wordsPerRow; w++) {
+                long word = mask.data[indexMask+w];
+                while( word != 0 ) {
+                    A.data[indexA + (w << 6) + Long.numberOfTrailingZeros(word)] = value;
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+
+    private static void checkMask( DMatrixRMaj A , BMatrixPacked mask ) {
+        if( A.numRows != mask.numRows || A.numCols != mask.numCols )
+            throw new MatrixDimensionException("Must be same shape. "+A.numRows+"x"+A.numCols+" vs "+
+                    mask.numRows+"x"+mask.numCols);
+    }
+}
@@ -0,0 +1,815 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.dense.row;
+
+import org.ejml.MatrixDimensionException;
+import org.ejml.UtilEjml;
+import org.ejml.data.DMatrixView;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Operations on {@link DMatrixView}, i.e. a block of rows and columns inside of a larger array which is described
+ * by an offset and a stride. Blocked algorithms can operate on the blocks of a matrix in place instead of
+ * copying them out with {@link CommonOps_DDRM#extract} and back in with {@link CommonOps_DDRM#insert}.
+ * </p>
+ *
+ * <p>
+ * Views can't be reshaped, so outputs must already have the correct shape. An output of an element-wise operation
+ * can be the same region as an input. Matrix multiplication and transpose require that the output doesn't
+ * share any elements with an input, which is checked with {@link #overlaps}. Views of different blocks inside
+ * the same matrix never overlap.
+ * </p>
+ *
+ * <p>
+ * The decompositions are performed in place and are blocked. They only touch the region inside the view,
+ * e.g. a trailing block of a larger matrix can be factored directly.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class ViewOps_DDRM {
+    /**
+     * Width of the block columns used by the blocked decompositions
+     */
+    public static int BLOCK_WIDTH = 64;
+
+    // width of the square tiles used when transposing
+    private static final int TRANSPOSE_TILE = 32;
+
+    /**
+     * <p>c = a * b</p>
+     *
+     * @param a (Input) Left matrix. Not modified.
+     * @param b (Input) Right matrix. Not modified.
+     * @param c (Output) a.numRows by b.numCols. Must not overlap a or b. Modified.
+     */
+    public static void mult( DMatrixView a , DMatrixView b , DMatrixView c ) {
+        gemm(1.0, a, b, c, false);
+    }
+
+    /**
+     * <p>c = &alpha; * a * b</p>
+     *
+     * @see #mult(DMatrixView, DMatrixView, DMatrixView)
+     */
+    public static void mult( double alpha , DMatrixView a , DMatrixView b , DMatrixView c ) {
+        gemm(alpha, a, b, c, false);
+    }
+
+    /**
+     * <p>c = c + a * b</p>
+     *
+     * @param a (Input) Left matrix. Not modified.
+     * @param b (Input) Right matrix. Not modified.
+     * @param c (Input/Output) a.numRows by b.numCols. Must not overlap a or b. Modified.
+     */
+    public static void multAdd( DMatrixView a , DMatrixView b , DMatrixView c ) {
+        gemm(1.0, a, b, c, true);
+    }
+
+    /**
+     * <p>c = c + &alpha; * a * b</p>
+     *
+     * @see #multAdd(DMatrixView, DMatrixView, DMatrixView)
+     */
+    public static void multAdd( double alpha , DMatrixView a , DMatrixView b , DMatrixView c ) {
+        gemm(alpha, a, b, c, true);
+    }
+
+    /**
+     * <p>c = a<sup>T</sup> * b</p>
+     *
+     * @param a (Input) Left matrix. Not modified.
+     * @param b (Input) Right matrix. Not modified.
+     * @param c (Output) a.numCols by b.numCols. Must not overlap a or b. Modified.
+     */
+    public static void multTransA( DMatrixView a , DMatrixView b , DMatrixView c ) {
+        gemmTransA(1.0, a, b, c, false);
+    }
+
+    /**
+     * <p>c = &alpha; * a<sup>T</sup> * b</p>
+     *
+     * @see #multTransA(DMatrixView, DMatrixView, DMatrixView)
+     */
+    public static void multTransA( double alpha , DMatrixView a , DMatrixView b , DMatrixView c ) {
+        gemmTransA(alpha, a, b, c, false);
+    }
+
+    /**
+     * <p>c = c + a<sup>T</sup> * b</p>
+     *
+     * @see #multTransA(DMatrixView, DMatrixView, DMatrixView)
+     */
+    public static void multAddTransA( DMatrixView a , DMatrixView b , DMatrixView c ) {
+        gemmTransA(1.0, a, b, c, true);
+    }
+
+    /**
+     * <p>c = c + &alpha; * a<sup>T</sup> * b</p>
+     *
+     * @see #multTransA(DMatrixView, DMatrixView, DMatrixView)
+     */
+    public static void multAddTransA( double alpha , DMatrixView a , DMatrixView b , DMatrixView c ) {
+        gemmTransA(alpha, a, b, c, true);
+    }
+
+    /**
+     * <p>c = a * b<sup>T</sup></p>
+     *
+     * @param a (Input) Left matrix. Not modified.
+     * @param b (Input) Right matrix. Not modified.
+     * @param c (Output) a.numRows by b.numRows. Must not overlap a or b. Modified.
+     */
+    public static void multTransB( DMatrixView a , DMatrixView b , DMatrixView c ) {
+        gemmTransB(1.0, a, b, c, false);
+    }
+
+    /**
+     * <p>c = &alpha; * a * b<sup>T</sup></p>
+     *
+     * @see #multTransB(DMatrixView, DMatrixView, DMatrixView)
+     */
+    public static void multTransB( double alpha , DMatrixView a , DMatrixView b , DMatrixView c ) {
+        gemmTransB(alpha, a, b, c, false);
+    }
+
+    /**
+     * <p>c = c + a * b<sup>T</sup></p>
+     *
+     * @see #multTransB(DMatrixView, DMatrixView, DMatrixView)
+     */
+    public static void multAddTransB( DMatrixView a , DMatrixView b , DMatrixView c ) {
+        gemmTransB(1.0, a, b, c, true);
+    }
+
+    /**
+     * <p>c = c + &alpha; * a * b<sup>T</sup></p>
+     *
+     * @see #multTransB(DMatrixView, DMatrixView, DMatrixView)
+     */
+    public static void multAddTransB( double alpha , DMatrixView a , DMatrixView b , DMatrixView c ) {
+        gemmTransB(alpha, a, b, c, true);
+    }
+
+    /**
+     * <p>c = a + b</p>
+     *
+     * @param a (Input) Not modified.
+     * @param b (Input) Not modified.
+     * @param c (Output) Same shape as a and b. Can be the same region as a or b. Modified.
+     */
+    public static void add( DMatrixView a , DMatrixView b , DMatrixView c ) {
+        add(1.0, a, 1.0, b, c);
+    }
+
+    /**
+     * <p>c = &alpha; * a + &beta; * b</p>
+     *
+     * @param a (Input) Not modified.
+     * @param b (Input) Not modified.
+     * @param c (Output) Same shape as a and b. Can be the same region as a or b. Modified.
+     */
+    public static void add( double alpha , DMatrixView a , double beta , DMatrixView b , DMatrixView c ) {
+        UtilEjml.checkSameShape(a, b, c);
+        checkElementWise(a, c);
+        checkElementWise(b, c);
+
+        for (int row = 0; row < c.numRows; row++) {
+            int indexA = a.offset + row*a.stride;
+            int indexB = b.offset + row*b.stride;
+            int indexC = c.offset + row*c.stride;
+            for (int col = 0; col < c.numCols; col++) {
+                c.data[indexC+col] = alpha*a.data[indexA+col] + beta*b.data[indexB+col];
+            }
+        }
+    }
+
+    /**
+     * <p>a = a + b</p>
+     *
+     * @param a (Input/Output) Modified.
+     * @param b (Input) Same shape as a. Not modified.
+     */
+    public static void addEquals( DMatrixView a , DMatrixView b ) {
+        addEquals(a, 1.0, b);
+    }
+
+    /**
+     * <p>a = a + &beta; * b</p>
+     *
+     * @param a (Input/Output) Modified.
+     * @param b (Input) Same shape as a. Not modified.
+     */
+    public static void addEquals( DMatrixView a , double beta , DMatrixView b ) {
+        UtilEjml.checkSameShape(a, b, true);
+        checkElementWise(b, a);
+
+        for (int row = 0; row < a.numRows; row++) {
+            int indexA = a.offset + row*a.stride;
+            int indexB = b.offset + row*b.stride;
+            for (int col = 0; col < a.numCols; col++) {
+                a.data[indexA+col] += beta*b.data[indexB+col];
+            }
+        }
+    }
+
+    /**
+     * <p>c = a - b</p>
+     *
+     * @param a (Input) Not modified.
+     * @param b (Input) Not modified.
+     * @param c (Output) Same shape as a and b. Can be the same region as a or b. Modified.
+     */
+    public static void subtract( DMatrixView a , DMatrixView b , DMatrixView c ) {
+        add(1.0, a, -1.0, b, c);
+    }
+
+    /**
+     * <p>a = a - b</p>
+     *
+     * @param a (Input/Output) Modified.
+     * @param b (Input) Same shape as a. Not modified.
+     */
+    public static void subtractEquals( DMatrixView a , DMatrixView b ) {
+        addEquals(a, -1.0, b);
+    }
+
+    /**
+     * <p>a = &alpha; * a</p>
+     *
+     * @param alpha Scale factor
+     * @param a (Input/Output) Modified.
+     */
+    public static void scale( double alpha , DMatrixView a ) {
+        for (int row = 0; row < a.numRows; row++) {
+            int index = a.offset + row*a.stride;
+            int end = index + a.numCols;
+            while( index < end ) {
+                a.data[index++] *= alpha;
+            }
+        }
+    }
+
+    /**
+     * <p>b = &alpha; * a</p>
+     *
+     * @param alpha Scale factor
+     * @param a (Input) Not modified.
+     * @param b (Output) Same shape as a. Can be the same region as a. Modified.
+     */
+    public static void scale( double alpha , DMatrixView a , DMatrixView b ) {
+        UtilEjml.checkSameShape(a, b, true);
+        checkElementWise(a, b);
+
+        for (int row = 0; row < a.numRows; row++) {
+            int indexA = a.offset + row*a.stride;
+            int indexB = b.offset + row*b.stride;
+            for (int col = 0; col < a.numCols; col++) {
+                b.data[indexB+col] = alpha*a.data[indexA+col];
+            }
+        }
+    }
+
+    /**
+     * Sets every element in the view to the value
+     */
+    public static void fill( DMatrixView a , double value ) {
+        for (int row = 0; row < a.numRows; row++) {
+            int index = a.offset + row*a.stride;
+            Arrays.fill(a.data, index, index+a.numCols, value);
+        }
+    }
+
+    /**
+     * <p>b = a<sup>T</sup></p>
+     *
+     * @param a (Input) Not modified.
+     * @param b (Output) a.numCols by a.numRows. Must not overlap a. Modified.
+     */
+    public static void transpose( DMatrixView a , DMatrixView b ) {
+        if( a.numRows != b.numCols || a.numCols != b.numRows )
+            throw new MatrixDimensionException("Incompatible matrix dimensions");
+        checkNoOverlap(a, b);
+
+        // tiles are used so that the elements read from the columns of 'a' are still in the cache
+        for (int row0 = 0; row0 < a.numRows; row0 += TRANSPOSE_TILE) {
+            int row1 = Math.min(a.numRows, row0+TRANSPOSE_TILE);
+            for (int col0 = 0; col0 < a.numCols; col0 += TRANSPOSE_TILE) {
+                int col1 = Math.min(a.numCols, col0+TRANSPOSE_TILE);
+                for (int col = col0; col < col1; col++) {
+                    int indexB = b.offset + col*b.stride;
+                    for (int row = row0; row < row1; row++) {
+                        b.data[indexB+row] = a.data[a.offset+row*a.stride+col];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * In-place transpose of a square view
+     *
+     * @param a (Input/Output) Square matrix. Modified.
+     */
+    public static void transpose( DMatrixView a ) {
+        if( a.numRows != a.numCols )
+            throw new MatrixDimensionException("Must be a square matrix");
+
+        for (int row = 0; row < a.numRows; row++) {
+            for (int col = row+1; col < a.numCols; col++) {
+                int indexU = a.offset + row*a.stride + col;
+                int indexL = a.offset + col*a.stride + row;
+                double tmp = a.data[indexU];
+                a.data[indexU] = a.data[indexL];
+                a.data[indexL] = tmp;
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Solves L*X = B, where L is lower triangular. B is overwritten with X. Only the lower triangle of L is read.
+     * </p>
+     *
+     * @param L (Input) Square lower triangular matrix. Not modified.
+     * @param B (Input/Output) Right hand side with L.numRows rows. Must not overlap L. Modified.
+     * @param unitDiagonal If true the diagonal of L is assumed to be one and isn't read
+     */
+    public static void solveL( DMatrixView L , DMatrixView B , boolean unitDiagonal ) {
+        checkTriangular(L, B.numRows);
+        checkNoOverlap(L, B);
+        final int N = L.numRows;
+
+        for (int i = 0; i < N; i++) {
+            int indexL = L.offset + i*L.stride;
+            int indexI = B.offset + i*B.stride;
+            for (int k = 0; k < i; k++) {
+                axpy(-L.data[indexL+k], B.data, B.offset+k*B.stride, B.data, indexI, B.numCols);
+            }
+            if( !unitDiagonal )
+                divide(B.data, indexI, B.numCols, L.data[indexL+i]);
+        }
+    }
+
+    /**
+     * <p>
+     * Solves L<sup>T</sup>*X = B, where L is lower triangular. B is overwritten with X. Only the lower
+     * triangle of L is read.
+     * </p>
+     *
+     * @param L (Input) Square lower triangular matrix. Not modified.
+     * @param B (Input/Output) Right hand side with L.numRows rows. Must not overlap L. Modified.
+     */
+    public static void solveTranL( DMatrixView L , DMatrixView B ) {
+        checkTriangular(L, B.numRows);
+        checkNoOverlap(L, B);
+        final int N = L.numRows;
+
+        // L' is upper triangular. Row k of L is column k of L', which lets L be traversed along its rows
+        for (int k = N-1; k >= 0; k--) {
+            int indexL = L.offset + k*L.stride;
+            int indexK = B.offset + k*B.stride;
+            divide(B.data, indexK, B.numCols, L.data[indexL+k]);
+            for (int i = 0; i < k; i++) {
+                axpy(-L.data[indexL+i], B.data, indexK, B.data, B.offset+i*B.stride, B.numCols);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Solves U*X = B, where U is upper triangular. B is overwritten with X. Only the upper triangle of U is read.
+     * </p>
+     *
+     * @param U (Input) Square upper triangular matrix. Not modified.
+     * @param B (Input/Output) Right hand side with U.numRows rows. Must not overlap U. Modified.
+     * @param unitDiagonal If true the diagonal of U is assumed to be one and isn't read
+     */
+    public static void solveU( DMatrixView U , DMatrixView B , boolean unitDiagonal ) {
+        checkTriangular(U, B.numRows);
+        checkNoOverlap(U, B);
+        final int N = U.numRows;
+
+        for (int i = N-1; i >= 0; i--) {
+            int indexU = U.offset + i*U.stride;
+            int indexI = B.offset + i*B.stride;
+            for (int k = i+1; k < N; k++) {
+                axpy(-U.data[indexU+k], B.data, B.offset+k*B.stride, B.data, indexI, B.numCols);
+            }
+            if( !unitDiagonal )
+                divide(B.data, indexI, B.numCols, U.data[indexU+i]);
+        }
+    }
+
+    /**
+     * <p>
+     * Solves X*L<sup>T</sup> = B, where L is lower triangular. B is overwritten with X. Only the lower
+     * triangle of L is read. This is the panel update in a blocked Cholesky decomposition.
+     * </p>
+     *
+     * @param L (Input) Square lower triangular matrix. Not modified.
+     * @param B (Input/Output) Right hand side with L.numRows columns. Must not overlap L. Modified.
+     */
+    public static void solveRightTranL( DMatrixView L , DMatrixView B ) {
+        checkTriangular(L, B.numCols);
+        checkNoOverlap(L, B);
+        final int N = L.numRows;
+
+        // each row x of X is the solution to L*x' = b'
+        for (int row = 0; row < B.numRows; row++) {
+            int indexB = B.offset + row*B.stride;
+            for (int j = 0; j < N; j++) {
+                int indexL = L.offset + j*L.stride;
+                double sum = B.data[indexB+j];
+                for (int k = 0; k < j; k++) {
+                    sum -= L.data[indexL+k]*B.data[indexB+k];
+                }
+                B.data[indexB+j] = sum/L.data[indexL+j];
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Solves X*U = B, where U is upper triangular. B is overwritten with X. Only the upper triangle of U is read.
+     * This is the panel update in a blocked LU decomposition.
+     * </p>
+     *
+     * @param U (Input) Square upper triangular matrix. Not modified.
+     * @param B (Input/Output) Right hand side with U.numRows columns. Must not overlap U. Modified.
+     * @param unitDiagonal If true the diagonal of U is assumed to be one and isn't read
+     */
+    public static void solveRightU( DMatrixView U , DMatrixView B , boolean unitDiagonal ) {
+        checkTriangular(U, B.numCols);
+        checkNoOverlap(U, B);
+        final int N = U.numRows;
+
+        for (int row = 0; row < B.numRows; row++) {
+            int indexB = B.offset + row*B.stride;
+            for (int k = 0; k < N; k++) {
+                int indexU = U.offset + k*U.stride;
+                if( !unitDiagonal )
+                    B.data[indexB+k] /= U.data[indexU+k];
+                axpy(-B.data[indexB+k], U.data, indexU+k+1, B.data, indexB+k+1, N-k-1);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Computes the Cholesky decomposition A = L*L<sup>T</sup> of a symmetric positive definite matrix in place.
+     * Only the lower triangle is read and it's overwritten by L. The upper triangle isn't read or modified.
+     * </p>
+     *
+     * @param A (Input/Output) Square matrix. Modified.
+     * @return true if successful or false if the matrix isn't positive definite
+     */
+    public static boolean cholesky( DMatrixView A ) {
+        if( A.numRows != A.numCols )
+            throw new MatrixDimensionException("Must be a square matrix");
+        final int N = A.numRows;
+
+        for (int j0 = 0; j0 < N; j0 += BLOCK_WIDTH) {
+            int j1 = Math.min(N, j0+BLOCK_WIDTH);
+            DMatrixView A11 = A.subview(j0, j1, j0, j1);
+            if( !choleskyInner(A11) )
+                return false;
+            if( j1 == N )
+                break;
+
+            // L21 = A21*inv(L11')
+            DMatrixView A21 = A.subview(j1, N, j0, j1);
+            solveRightTranL(A11, A21);
+
+            // A22 = A22 - L21*L21'
+            symmRankUpdateLower(A21, A.subview(j1, N, j1, N));
+        }
+        return true;
+    }
+
+    /**
+     * Solves A*X = B using the output of {@link #cholesky}. B is overwritten with X.
+     *
+     * @param L (Input) Decomposed matrix. Not modified.
+     * @param B (Input/Output) Right hand side. Modified.
+     */
+    public static void solveCholesky( DMatrixView L , DMatrixView B ) {
+        solveL(L, B, false);
+        solveTranL(L, B);
+    }
+
+    /**
+     * <p>
+     * Computes the LU decomposition P*A = L*U with partial pivoting in place. L is unit lower triangular and is
+     * stored below the diagonal, U is stored on and above the diagonal. Rows of the view are swapped as the
+     * pivots are selected.
+     * </p>
+     *
+     * @param A (Input/Output) m by n matrix. Modified.
+     * @param pivots (Output) Length of at least min(m,n). Row i was swapped with row pivots[i] on step i.
+     * @return false if an exact zero was encountered on the diagonal of U, i.e. the matrix is singular
+     */
+    public static boolean lu( DMatrixView A , int[] pivots ) {
+        final int M = A.numRows;
+        final int N = A.numCols;
+        final int K = Math.min(M, N);
+        if( pivots.length < K )
+            throw new IllegalArgumentException("pivots must have a length of at least "+K);
+
+        boolean nonsingular = true;
+        for (int j0 = 0; j0 < K; j0 += BLOCK_WIDTH) {
+            int j1 = Math.min(K, j0+BLOCK_WIDTH);
+
+            // factor the tall panel and apply its row swaps to the rest of the matrix
+            nonsingular &= luInner(A.subview(j0, M, j0, j1), pivots, j0);
+            for (int i = j0; i < j1; i++) {
+                if( pivots[i] != i ) {
+                    swapRows(A, i, pivots[i], 0, j0);
+                    swapRows(A, i, pivots[i], j1, N);
+                }
+            }
+            if( j1 == N )
+                continue;
+
+            // U12 = inv(L11)*A12
+            DMatrixView A12 = A.subview(j0, j1, j1, N);
+            solveL(A.subview(j0, j1, j0, j1), A12, true);
+
+            // A22 = A22 - L21*U12
+            if( j1 < M )
+                multAdd(-1.0, A.subview(j1, M, j0, j1), A12, A.subview(j1, M, j1, N));
+        }
+        return nonsingular;
+    }
+
+    /**
+     * Solves A*X = B using the output of {@link #lu} on a square matrix. B is overwritten with X.
+     *
+     * @param LU (Input) Decomposed matrix. Not modified.
+     * @param pivots (Input) Pivots from the decomposition. Not modified.
+     * @param B (Input/Output) Right hand side. Modified.
+     */
+    public static void solveLU( DMatrixView LU , int[] pivots , DMatrixView B ) {
+        if( LU.numRows != LU.numCols )
+            throw new MatrixDimensionException("Must be a square matrix");
+        if( B.numRows != LU.numRows )
+            throw new MatrixDimensionException("B must have the same number of rows as LU");
+        for (int i = 0; i < LU.numRows; i++) {
+            if( pivots[i] != i )
+                swapRows(B, i, pivots[i], 0, B.numCols);
+        }
+        solveL(LU, B, true);
+        solveU(LU, B, false);
+    }
+
+    /**
+     * Returns true if the two views share at least one element. Views of different arrays never overlap.
+     */
+    public static boolean overlaps( DMatrixView a , DMatrixView b ) {
+        if( a.data != b.data || a.getNumElements() == 0 || b.getNumElements() == 0 )
+            return false;
+        // make 'a' the view which starts first
+        if( a.offset > b.offset ) {
+            DMatrixView tmp = a; a = b; b = tmp;
+        }
+        int lastA = a.getIndex(a.numRows-1, a.numCols-1);
+        if( lastA < b.offset )
+            return false;
+        if( a.stride != b.stride )
+            return true;
+
+        // Both are rectangles in a grid with 'stride' columns. Place 'a' at the origin. A row of 'b' can
+        // wrap around onto the next row of the grid, so it's split into the part before and after the wrap.
+        final int stride = a.stride;
+        int delta = b.offset - a.offset;
+        int rowB = delta/stride;
+        int colB = delta%stride;
+        if( rectanglesIntersect(a.numRows, a.numCols, rowB, colB, b.numRows, Math.min(b.numCols, stride-colB)) )
+            return true;
+        int wrapped = colB + b.numCols - stride;
+        return wrapped > 0 && rectanglesIntersect(a.numRows, a.numCols, rowB+1, 0, b.numRows, wrapped);
+    }
+
+    /**
+     * Checks to see if a rectangle at the origin intersects the second rectangle
+     */
+    private static boolean rectanglesIntersect( int rowsA , int colsA , int row0 , int col0 , int rows , int cols ) {
+        return row0 < rowsA && col0 < colsA && rows > 0 && cols > 0;
+    }
+
+    /**
+     * c = c*(add ? 1 : 0) + alpha*a*b. Loops are ordered so that the inner loop moves along the rows of b and c.
+     */
+    private static void gemm( double alpha , DMatrixView a , DMatrixView b , DMatrixView c , boolean add ) {
+        if( a.numCols != b.numRows )
+            throw new MatrixDimensionException("The 'a' and 'b' matrices do not have compatible dimensions");
+        if( c.numRows != a.numRows || c.numCols != b.numCols )
+            throw new MatrixDimensionException("c must be "+a.numRows+"x"+b.numCols);
+        checkNoOverlap(a, c);
+        checkNoOverlap(b, c);
+        if( !add )
+            c.zero();
+
+        for (int i = 0; i < a.numRows; i++) {
+            int indexA = a.offset + i*a.stride;
+            int indexC = c.offset + i*c.stride;
+            for (int k = 0; k < a.numCols; k++) {
+                axpy(alpha*a.data[indexA+k], b.data, b.offset+k*b.stride, c.data, indexC, c.numCols);
+            }
+        }
+    }
+
+    /**
+     * c = c*(add ? 1 : 0) + alpha*a'*b. Rows of a and b are traversed together.
+     */
+    private static void gemmTransA( double alpha , DMatrixView a , DMatrixView b , DMatrixView c , boolean add ) {
+        if( a.numRows != b.numRows )
+            throw new MatrixDimensionException("The 'a' and 'b' matrices do not have compatible dimensions");
+        if( c.numRows != a.numCols || c.numCols != b.numCols )
+            throw new MatrixDimensionException("c must be "+a.numCols+"x"+b.numCols);
+        checkNoOverlap(a, c);
+        checkNoOverlap(b, c);
+        if( !add )
+            c.zero();
+
+        for (int k = 0; k < a.numRows; k++) {
+            int indexA = a.offset + k*a.stride;
+            int indexB = b.offset + k*b.stride;
+            for (int i = 0; i < a.numCols; i++) {
+                axpy(alpha*a.data[indexA+i], b.data, indexB, c.data, c.offset+i*c.stride, c.numCols);
+            }
+        }
+    }
+
+    /**
+     * c = c*(add ? 1 : 0) + alpha*a*b'. Each element is the dot product of a row in a with a row in b.
+     */
+    private static void gemmTransB( double alpha , DMatrixView a , DMatrixView b , DMatrixView c , boolean add ) {
+        if( a.numCols != b.numCols )
+            throw new MatrixDimensionException("The 'a' and 'b' matrices do not have compatible dimensions");
+        if( c.numRows != a.numRows || c.numCols != b.numRows )
+            throw new MatrixDimensionException("c must be "+a.numRows+"x"+b.numRows);
+        checkNoOverlap(a, c);
+        checkNoOverlap(b, c);
+
+        for (int i = 0; i < a.numRows; i++) {
+            int indexA = a.offset + i*a.stride;
+            int indexC = c.offset + i*c.stride;
+            for (int j = 0; j < b.numRows; j++) {
+                double sum = alpha*dot(a.data, indexA, b.data, b.offset+j*b.stride, a.numCols);
+                if( add )
+                    c.data[indexC+j] += sum;
+                else
+                    c.data[indexC+j] = sum;
+            }
+        }
+    }
+
+    /**
+     * Lower triangle of c = c - a*a'. The upper triangle of c isn't modified.
+     */
+    private static void symmRankUpdateLower( DMatrixView a , DMatrixView c ) {
+        for (int i = 0; i < c.numRows; i++) {
+            int indexA = a.offset + i*a.stride;
+            int indexC = c.offset + i*c.stride;
+            for (int j = 0; j <= i; j++) {
+                c.data[indexC+j] -= dot(a.data, indexA, a.data, a.offset+j*a.stride, a.numCols);
+            }
+        }
+    }
+
+    /**
+     * Unblocked Cholesky decomposition of a block on the diagonal
+     */
+    private static boolean choleskyInner( DMatrixView A ) {
+        final int N = A.numRows;
+        for (int i = 0; i < N; i++) {
+            int indexI = A.offset + i*A.stride;
+            for (int j = 0; j <= i; j++) {
+                int indexJ = A.offset + j*A.stride;
+                double sum = A.data[indexI+j] - dot(A.data, indexI, A.data, indexJ, j);
+                if( i == j ) {
+                    if( sum <= 0.0 )
+                        return false;
+                    A.data[indexI+i] = Math.sqrt(sum);
+                } else {
+                    A.data[indexI+j] = sum/A.data[indexJ+j];
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Unblocked LU decomposition with partial pivoting of a tall panel. Pivots are saved relative to the
+     * parent matrix.
+     */
+    private static boolean luInner( DMatrixView A , int[] pivots , int pivotOffset ) {
+        final int M = A.numRows;
+        final int N = A.numCols;
+        boolean nonsingular = true;
+
+        for (int k = 0; k < N; k++) {
+            // select the row with the largest magnitude in column k
+            int best = k;
+            double bestValue = Math.abs(A.data[A.getIndex(k, k)]);
+            for (int i = k+1; i < M; i++) {
+                double value = Math.abs(A.data[A.getIndex(i, k)]);
+                if( value > bestValue ) {
+                    best = i;
+                    bestValue = value;
+                }
+            }
+            pivots[pivotOffset+k] = pivotOffset+best;
+            if( best != k )
+                swapRows(A, k, best, 0, N);
+
+            int indexK = A.getIndex(k, k);
+            double diag = A.data[indexK];
+            if( diag == 0.0 ) {
+                nonsingular = false;
+                continue;
+            }
+
+            for (int i = k+1; i < M; i++) {
+                int indexI = A.getIndex(i, k);
+                double l = A.data[indexI] /= diag;
+                axpy(-l, A.data, indexK+1, A.data, indexI+1, N-k-1);
+            }
+        }
+        return nonsingular;
+    }
+
+    private static void swapRows( DMatrixView A , int row0 , int row1 , int col0 , int col1 ) {
+        int index0 = A.offset + row0*A.stride;
+        int index1 = A.offset + row1*A.stride;
+        for (int col = col0; col < col1; col++) {
+            double tmp = A.data[index0+col];
+            A.data[index0+col] = A.data[index1+col];
+            A.data[index1+col] = tmp;
+        }
+    }
+
+    /**
+     * y = y + alpha*x
+     */
+    private static void axpy( double alpha , double[] x , int indexX , double[] y , int indexY , int length ) {
+        for (int i = 0; i < length; i++) {
+            y[indexY+i] += alpha*x[indexX+i];
+        }
+    }
+
+    private static double dot( double[] x , int indexX , double[] y , int indexY , int length ) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += x[indexX+i]*y[indexY+i];
+        }
+        return sum;
+    }
+
+    private static void divide( double[] x , int index , int length , double value ) {
+        for (int i = 0; i < length; i++) {
+            x[index+i] /= value;
+        }
+    }
+
+    private static void checkTriangular( DMatrixView T , int length ) {
+        if( T.numRows != T.numCols )
+            throw new MatrixDimensionException("Triangular matrix must be square");
+        if( T.numRows != length )
+            throw new MatrixDimensionException("Incompatible matrix dimensions");
+    }
+
+    private static void checkNoOverlap( DMatrixView input , DMatrixView output ) {
+        if( overlaps(input, output) )
+            throw new IllegalArgumentException("The output must not share elements with an input");
+    }
+
+    /**
+     * Element-wise operations can write to the same region they read from but not one which partially overlaps
+     */
+    private static void checkElementWise( DMatrixView input , DMatrixView output ) {
+        if( input.offset == output.offset && input.stride == output.stride && input.data == output.data )
+            return;
+        checkNoOverlap(input, output);
+    }
+}
@@ -56,9 +56,9 @@ public class LinearSolverQrHouseCol_DDRM extends LinearSolverAbstract_DDRM {
     protected int maxRows = -1;
     protected int maxCols = -1;
 
-    private double[][] QR; // a column major QR matrix
-    private final DMatrixRMaj R = new DMatrixRMaj(1,1);
-    private double[] gammas;
+    protected double[][] QR; // a column major QR matrix
+    protected final DMatrixRMaj R = new DMatrixRMaj(1,1);
+    protected double[] gammas;
 
     /**
      * Creates a linear solver that uses QR decomposition.
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.dense.row.linsol.qr;
+
+import org.ejml.concurrency.EjmlConcurrency;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.decomposition.TriangularSolver_DDRM;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Concurrent implementation of {@link LinearSolverQrHouseCol_DDRM}. The decomposition is computed once and
+ * then each thread solves for a block of columns in X. Only the decomposition is shared between threads and
+ * it is only read from, so the solution is the same as the single threaded solver's.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class LinearSolverQrHouseCol_MT_DDRM extends LinearSolverQrHouseCol_DDRM {
+
+    // work vectors for each thread
+    private final List<DMatrixRMaj> workspace = new ArrayList<>();
+
+    /**
+     * Solves for X using the QR decomposition.
+     *
+     * @param B A matrix that is n by m.  Not modified.
+     * @param X An n by m matrix where the solution is written to.  Modified.
+     */
+    @Override
+    public void solve(DMatrixRMaj B, DMatrixRMaj X) {
+        long work = (long)numRows*numCols*B.numCols;
+        if( B.numCols <= 1 || !EjmlConcurrency.useConcurrent((int)Math.min(Integer.MAX_VALUE,work)) ) {
+            super.solve(B,X);
+            return;
+        }
+        if( B.numRows != numRows )
+            throw new IllegalArgumentException("Unexpected dimensions for X: X rows = "+X.numRows+" expected = "+numRows);
+        X.reshape(numCols,B.numCols);
+
+        final int BnumCols = B.numCols;
+        final int N = numRows;
+
+        EjmlConcurrency.loopBlocks(0, BnumCols, 1, workspace, () -> new DMatrixRMaj(1,1), ( vector, col0, col1 ) -> {
+            vector.reshape(N,1);
+            final double[] a = vector.data;
+
+            for( int colB = col0; colB < col1; colB++ ) {
+                // make a copy of this column in the vector
+                for( int i = 0; i < numRows; i++ ) {
+                    a[i] = B.data[i*BnumCols + colB];
+                }
+
+                // a = Q_{n-1}...Q_2*Q_1*b
+                // Q_n*b = (I-gamma*u*u^T)*b = b - u*(gamma*U^T*b)
+                // u[n] is implicitly one so the shared decomposition is never written to
+                for( int n = 0; n < numCols; n++ ) {
+                    double []u = QR[n];
+
+                    double val = a[n];
+                    for( int k = n+1; k < numRows; k++ ) {
+                        val += u[k]*a[k];
+                    }
+                    val *= gammas[n];
+
+                    a[n] -= val;
+                    for( int k = n+1; k < numRows; k++ ) {
+                        a[k] -= u[k]*val;
+                    }
+                }
+
+                // solve for Rx = b using the standard upper triangular solver
+                TriangularSolver_DDRM.solveU(R.data,a,numCols);
+
+                // save the results
+                for( int i = 0; i < numCols; i++ ) {
+                    X.data[i*X.numCols+colB] = a[i];
+                }
+            }
+        });
+    }
+}
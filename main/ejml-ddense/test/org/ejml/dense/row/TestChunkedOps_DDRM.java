@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.dense.row;
+
+import org.ejml.UtilEjml;
+import org.ejml.data.DMatrixMapped;
+import org.ejml.data.DMatrixOffHeap;
+import org.ejml.data.DMatrixRMaj;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestChunkedOps_DDRM {
+    Random rand = new Random(234);
+
+    File file;
+    DMatrixRMaj A;
+    DMatrixMapped M;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        // small blocks so that the matrix is processed in several pieces
+        ChunkedOps_DDRM.BLOCK_ELEMENTS = 20;
+        ChunkedOps_DDRM.TILE_WIDTH = 4;
+        file = File.createTempFile("ejml", ".bin");
+        A = RandomMatrices_DDRM.rectangle(23,6,rand);
+        M = DMatrixMapped.create(file.toPath(), 23, 6, 4);
+        M.set(A);
+    }
+
+    @AfterEach
+    public void cleanup() {
+        ChunkedOps_DDRM.BLOCK_ELEMENTS = 1 << 16;
+        ChunkedOps_DDRM.TILE_WIDTH = 128;
+        M.close();
+        file.delete();
+    }
+
+    @Test
+    public void mult() {
+        DMatrixRMaj B = RandomMatrices_DDRM.rectangle(6,3,rand);
+        DMatrixRMaj expected = CommonOps_DDRM.mult(A, B, null);
+        DMatrixRMaj found = ChunkedOps_DDRM.mult(M, B, null);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(expected, found, UtilEjml.TEST_F64));
+    }
+
+    @Test
+    public void multTransA() {
+        DMatrixRMaj B = RandomMatrices_DDRM.rectangle(23,1,rand);
+        DMatrixRMaj expected = new DMatrixRMaj(1,1);
+        CommonOps_DDRM.multTransA(A, B, expected);
+        DMatrixRMaj found = ChunkedOps_DDRM.multTransA(M, B, new DMatrixRMaj(2,2));
+        assertTrue(MatrixFeatures_DDRM.isIdentical(expected, found, UtilEjml.TEST_F64));
+    }
+
+    @Test
+    public void multInner() {
+        DMatrixRMaj expected = new DMatrixRMaj(1,1);
+        CommonOps_DDRM.multInner(A, expected);
+        DMatrixRMaj found = ChunkedOps_DDRM.multInner(M, null);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(expected, found, UtilEjml.TEST_F64));
+    }
+
+    @Test
+    public void columnReductions() {
+        assertTrue(MatrixFeatures_DDRM.isIdentical(CommonOps_DDRM.sumCols(A, null),
+                ChunkedOps_DDRM.sumCols(M, null), UtilEjml.TEST_F64));
+        assertTrue(MatrixFeatures_DDRM.isIdentical(CommonOps_DDRM.minCols(A, null),
+                ChunkedOps_DDRM.minCols(M, null), 0));
+        assertTrue(MatrixFeatures_DDRM.isIdentical(CommonOps_DDRM.maxCols(A, null),
+                ChunkedOps_DDRM.maxCols(M, null), 0));
+    }
+
+    @Test
+    public void mult_tiled() {
+        DMatrixRMaj B = RandomMatrices_DDRM.rectangle(6,9,rand);
+        DMatrixRMaj expected = CommonOps_DDRM.mult(A, B, null);
+
+        DMatrixOffHeap C = new DMatrixOffHeap(1,1,3);
+        ChunkedOps_DDRM.mult(M, offHeap(B), C);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(expected, C.toRMaj(), UtilEjml.TEST_F64));
+    }
+
+    @Test
+    public void transpose_tiled() {
+        DMatrixOffHeap C = new DMatrixOffHeap(1,1,3);
+        ChunkedOps_DDRM.transpose(M, C);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(CommonOps_DDRM.transpose(A, null), C.toRMaj(), 0));
+    }
+
+    @Test
+    public void add() {
+        DMatrixRMaj B = RandomMatrices_DDRM.rectangle(23,6,rand);
+        DMatrixRMaj expected = new DMatrixRMaj(1,1);
+        CommonOps_DDRM.add(A, B, expected);
+
+        DMatrixOffHeap C = new DMatrixOffHeap(1,1,3);
+        ChunkedOps_DDRM.add(M, offHeap(B), C);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(expected, C.toRMaj(), UtilEjml.TEST_F64));
+    }
+
+    @Test
+    public void cholesky() {
+        DMatrixRMaj S = RandomMatrices_DDRM.symmetricPosDef(11, rand);
+        DMatrixOffHeap L = offHeap(S);
+        assertTrue(ChunkedOps_DDRM.cholesky(L));
+
+        DMatrixRMaj found = L.toRMaj();
+        assertTrue(MatrixFeatures_DDRM.isLowerTriangle(found, 0, 0));
+        DMatrixRMaj LLt = new DMatrixRMaj(1,1);
+        CommonOps_DDRM.multTransB(found, found, LLt);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(S, LLt, UtilEjml.TEST_F64));
+
+        // solve a system using the decomposition
+        DMatrixRMaj b = RandomMatrices_DDRM.rectangle(11,2,rand);
+        DMatrixRMaj x = ChunkedOps_DDRM.solveCholesky(L, b, null);
+        DMatrixRMaj Sx = CommonOps_DDRM.mult(S, x, null);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(b, Sx, UtilEjml.TEST_F64));
+
+        // not positive definite
+        DMatrixRMaj N = S.copy();
+        CommonOps_DDRM.scale(-1, N);
+        assertFalse(ChunkedOps_DDRM.cholesky(offHeap(N)));
+    }
+
+    @Test
+    public void qrR() {
+        DMatrixRMaj R = ChunkedOps_DDRM.qrR(M, null);
+        assertTrue(MatrixFeatures_DDRM.isUpperTriangle(R, 0, 0));
+
+        // R^T*R = A^T*A
+        DMatrixRMaj RtR = new DMatrixRMaj(1,1);
+        CommonOps_DDRM.multTransA(R, R, RtR);
+        DMatrixRMaj AtA = new DMatrixRMaj(1,1);
+        CommonOps_DDRM.multInner(A, AtA);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(AtA, RtR, UtilEjml.TEST_F64));
+    }
+
+    @Test
+    public void solveLeastSquares() {
+        DMatrixRMaj b = RandomMatrices_DDRM.rectangle(23,2,rand);
+        DMatrixRMaj expected = new DMatrixRMaj(1,1);
+        assertTrue(CommonOps_DDRM.solve(A, b, expected));
+
+        DMatrixRMaj found = ChunkedOps_DDRM.solveLeastSquares(M, b, null);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(expected, found, UtilEjml.TEST_F64));
+    }
+
+    private DMatrixOffHeap offHeap( DMatrixRMaj src ) {
+        DMatrixOffHeap out = new DMatrixOffHeap(1,1,3);
+        out.set(src);
+        return out;
+    }
+}
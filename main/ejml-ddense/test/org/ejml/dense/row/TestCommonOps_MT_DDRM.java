@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.dense.row;
+
+import org.ejml.EjmlUnitTests;
+import org.ejml.MatrixDimensionException;
+import org.ejml.UtilEjml;
+import org.ejml.concurrency.EjmlConcurrency;
+import org.ejml.data.DMatrixRMaj;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestCommonOps_MT_DDRM {
+
+    private final Random rand = new Random(234);
+
+    private int threshold;
+    private int maxThreads;
+
+    @BeforeEach
+    public void before() {
+        // force the concurrent code to run on small matrices and with multiple threads
+        threshold = EjmlConcurrency.ELEMENT_THRESHOLD;
+        maxThreads = EjmlConcurrency.getMaxThreads();
+        EjmlConcurrency.ELEMENT_THRESHOLD = 0;
+        EjmlConcurrency.setMaxThreads(4);
+    }
+
+    @AfterEach
+    public void after() {
+        EjmlConcurrency.ELEMENT_THRESHOLD = threshold;
+        EjmlConcurrency.setMaxThreads(maxThreads);
+    }
+
+    @Test
+    public void mult() {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(35, 20, -1, 1, rand);
+        DMatrixRMaj B = RandomMatrices_DDRM.rectangle(20, 25, -1, 1, rand);
+        DMatrixRMaj expected = new DMatrixRMaj(1, 1);
+        DMatrixRMaj found = new DMatrixRMaj(1, 1);
+
+        CommonOps_DDRM.mult(A, B, expected);
+        CommonOps_MT_DDRM.mult(A, B, found);
+        EjmlUnitTests.assertEquals(expected, found, UtilEjml.TEST_F64);
+
+        assertThrows(IllegalArgumentException.class, () -> CommonOps_MT_DDRM.mult(A, B, A));
+    }
+
+    @Test
+    public void multTransA() {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(20, 35, -1, 1, rand);
+        DMatrixRMaj B = RandomMatrices_DDRM.rectangle(20, 25, -1, 1, rand);
+        DMatrixRMaj expected = new DMatrixRMaj(1, 1);
+        DMatrixRMaj found = new DMatrixRMaj(1, 1);
+
+        CommonOps_DDRM.multTransA(A, B, expected);
+        CommonOps_MT_DDRM.multTransA(A, B, found);
+        EjmlUnitTests.assertEquals(expected, found, UtilEjml.TEST_F64);
+    }
+
+    @Test
+    public void multTransB() {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(35, 20, -1, 1, rand);
+        DMatrixRMaj B = RandomMatrices_DDRM.rectangle(25, 20, -1, 1, rand);
+        DMatrixRMaj expected = new DMatrixRMaj(1, 1);
+        DMatrixRMaj found = new DMatrixRMaj(1, 1);
+
+        CommonOps_DDRM.multTransB(A, B, expected);
+        CommonOps_MT_DDRM.multTransB(A, B, found);
+        EjmlUnitTests.assertEquals(expected, found, UtilEjml.TEST_F64);
+    }
+
+    @Test
+    public void transpose() {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(35, 20, -1, 1, rand);
+        DMatrixRMaj expected = CommonOps_DDRM.transpose(A, null);
+        DMatrixRMaj found = CommonOps_MT_DDRM.transpose(A, null);
+        EjmlUnitTests.assertEquals(expected, found, UtilEjml.TEST_F64);
+    }
+
+    @Test
+    public void elementWise() {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(35, 20, 0.5, 1, rand);
+        DMatrixRMaj B = RandomMatrices_DDRM.rectangle(35, 20, 0.5, 1, rand);
+
+        EjmlUnitTests.assertEquals(CommonOps_DDRM.add(A, B, null),
+                CommonOps_MT_DDRM.add(A, B, null), UtilEjml.TEST_F64);
+        EjmlUnitTests.assertEquals(CommonOps_DDRM.add(A, 1.5, B, null),
+                CommonOps_MT_DDRM.add(A, 1.5, B, null), UtilEjml.TEST_F64);
+        EjmlUnitTests.assertEquals(CommonOps_DDRM.add(0.5, A, 1.5, B, null),
+                CommonOps_MT_DDRM.add(0.5, A, 1.5, B, null), UtilEjml.TEST_F64);
+        EjmlUnitTests.assertEquals(CommonOps_DDRM.subtract(A, B, null),
+                CommonOps_MT_DDRM.subtract(A, B, null), UtilEjml.TEST_F64);
+        EjmlUnitTests.assertEquals(CommonOps_DDRM.elementMult(A, B, null),
+                CommonOps_MT_DDRM.elementMult(A, B, null), UtilEjml.TEST_F64);
+        EjmlUnitTests.assertEquals(CommonOps_DDRM.elementDiv(A, B, null),
+                CommonOps_MT_DDRM.elementDiv(A, B, null), UtilEjml.TEST_F64);
+        EjmlUnitTests.assertEquals(CommonOps_DDRM.divide(A, 2.5, null),
+                CommonOps_MT_DDRM.divide(A, 2.5, null), UtilEjml.TEST_F64);
+
+        DMatrixRMaj expected = new DMatrixRMaj(1, 1);
+        CommonOps_DDRM.scale(2.5, A, expected);
+        CommonOps_MT_DDRM.scale(2.5, A, A);
+        EjmlUnitTests.assertEquals(expected, A, UtilEjml.TEST_F64);
+
+        assertThrows(MatrixDimensionException.class,
+                () -> CommonOps_MT_DDRM.add(A, new DMatrixRMaj(2, 3), null));
+    }
+
+    @Test
+    public void solve() {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(30, 30, -1, 1, rand);
+        DMatrixRMaj B = RandomMatrices_DDRM.rectangle(30, 12, -1, 1, rand);
+        DMatrixRMaj X = new DMatrixRMaj(1, 1);
+
+        assertTrue(CommonOps_MT_DDRM.solve(A, B, X));
+        DMatrixRMaj found = new DMatrixRMaj(1, 1);
+        CommonOps_DDRM.mult(A, X, found);
+        EjmlUnitTests.assertEquals(B, found, UtilEjml.TEST_F64);
+
+        // singular matrix, the concurrent path is forced on and must agree with the single threaded one
+        assertTrue(EjmlConcurrency.useConcurrent(30*30*12));
+        DMatrixRMaj singular = new DMatrixRMaj(30, 30);
+        assertEquals(CommonOps_DDRM.solve(singular, B, found), CommonOps_MT_DDRM.solve(singular, B, X));
+    }
+
+    @Test
+    public void invert() {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(30, 30, -1, 1, rand);
+        DMatrixRMaj expected = new DMatrixRMaj(1, 1);
+        DMatrixRMaj found = new DMatrixRMaj(1, 1);
+
+        assertTrue(CommonOps_DDRM.invert(A, expected));
+        assertTrue(CommonOps_MT_DDRM.invert(A, found));
+        EjmlUnitTests.assertEquals(expected, found, UtilEjml.TEST_F64);
+
+        // singular matrix, the concurrent path is forced on and must agree with the single threaded one
+        assertTrue(EjmlConcurrency.useConcurrent(30*30*30));
+        DMatrixRMaj singular = new DMatrixRMaj(30, 30);
+        assertEquals(CommonOps_DDRM.invert(singular, expected), CommonOps_MT_DDRM.invert(singular, found));
+    }
+}
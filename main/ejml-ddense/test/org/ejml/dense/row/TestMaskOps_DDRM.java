@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.dense.row;
+
+import org.ejml.MatrixDimensionException;
+import org.ejml.data.BMatrixPacked;
+import org.ejml.data.BMatrixRMaj;
+import org.ejml.data.DMatrixRMaj;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestMaskOps_DDRM {
+    Random rand = new Random(234);
+
+    /**
+     * Compare against the functions which output a BMatrixRMaj
+     */
+    @Test
+    public void compare() {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(4,130,rand);
+        DMatrixRMaj B = RandomMatrices_DDRM.rectangle(4,130,rand);
+        A.set(2,70,0.5);
+
+        checkSame(CommonOps_DDRM.elementLessThan(A, 0.5, null), MaskOps_DDRM.elementLessThan(A, 0.5, null));
+        checkSame(CommonOps_DDRM.elementLessThanOrEqual(A, 0.5, null), MaskOps_DDRM.elementLessThanOrEqual(A, 0.5, null));
+        checkSame(CommonOps_DDRM.elementMoreThan(A, 0.5, null), MaskOps_DDRM.elementMoreThan(A, 0.5, null));
+        checkSame(CommonOps_DDRM.elementMoreThanOrEqual(A, 0.5, null), MaskOps_DDRM.elementMoreThanOrEqual(A, 0.5, null));
+        checkSame(CommonOps_DDRM.elementLessThan(A, B, null), MaskOps_DDRM.elementLessThan(A, B, null));
+        checkSame(CommonOps_DDRM.elementLessThanOrEqual(A, B, null), MaskOps_DDRM.elementLessThanOrEqual(A, B, null));
+
+        // the output is reshaped and all the old values are overwritten
+        BMatrixPacked output = new BMatrixPacked(4,130);
+        output.fill(true);
+        MaskOps_DDRM.elementMoreThan(A, 2.0, output);
+        assertEquals(0, output.sum());
+        MaskOps_DDRM.elementMoreThan(new DMatrixRMaj(2,3), -1, output);
+        assertEquals(6, output.sum());
+    }
+
+    @Test
+    public void elements() {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(5,100,rand);
+        BMatrixPacked mask = MaskOps_DDRM.elementMoreThan(A, 0.3, null);
+        DMatrixRMaj expected = CommonOps_DDRM.elements(A, CommonOps_DDRM.elementMoreThan(A, 0.3, null), null);
+        DMatrixRMaj found = MaskOps_DDRM.elements(A, mask, null);
+        assertEquals(expected.numRows, found.numRows);
+        assertEquals(1, found.numCols);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(expected, found, 0));
+
+        assertThrows(MatrixDimensionException.class, () -> MaskOps_DDRM.elements(A, new BMatrixPacked(5,99), null));
+    }
+
+    @Test
+    public void fill() {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(3,80,rand);
+        DMatrixRMaj original = A.copy();
+        BMatrixPacked mask = MaskOps_DDRM.elementLessThan(A, 0.5, null);
+        MaskOps_DDRM.fill(A, mask, -1);
+        for (int i = 0; i < A.data.length; i++) {
+            assertEquals(original.data[i] < 0.5 ? -1 : original.data[i], A.data[i]);
+        }
+    }
+
+    private static void checkSame( BMatrixRMaj expected , BMatrixPacked found ) {
+        assertEquals(expected.numRows, found.numRows);
+        assertEquals(expected.numCols, found.numCols);
+        assertEquals(expected.sum(), found.sum());
+        for (int row = 0; row < expected.numRows; row++) {
+            for (int col = 0; col < expected.numCols; col++) {
+                assertEquals(expected.get(row,col), found.get(row,col));
+            }
+        }
+    }
+}
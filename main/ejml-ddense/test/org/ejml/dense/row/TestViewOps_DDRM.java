@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.dense.row;
+
+import org.ejml.MatrixDimensionException;
+import org.ejml.UtilEjml;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.data.DMatrixView;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestViewOps_DDRM {
+    Random rand = new Random(234);
+
+    @BeforeEach
+    public void setup() {
+        // small blocks so that the blocked code paths are exercised
+        ViewOps_DDRM.BLOCK_WIDTH = 3;
+    }
+
+    @Test
+    public void mult() {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(9,10,rand);
+        DMatrixView a = DMatrixView.wrap(A, 1, 5, 2, 8);
+        DMatrixView b = DMatrixView.wrap(A, 3, 9, 0, 3);
+        DMatrixView bt = DMatrixView.wrap(A, 5, 8, 3, 9);
+        DMatrixView at = DMatrixView.wrap(A, 3, 9, 4, 8);
+
+        DMatrixRMaj C = RandomMatrices_DDRM.rectangle(6,7,rand);
+        DMatrixRMaj original = C.copy();
+        DMatrixView c = DMatrixView.wrap(C, 1, 5, 2, 5);
+
+        ViewOps_DDRM.mult(a, b, c);
+        checkOutput(CommonOps_DDRM.mult(a.copy(), b.copy(), null), C, original, c);
+        DMatrixRMaj expected = new DMatrixRMaj(4,3);
+        CommonOps_DDRM.mult(2.0, a.copy(), b.copy(), expected);
+        ViewOps_DDRM.mult(2.0, a, b, c);
+        checkOutput(expected, C, original, c);
+
+        expected = c.copy();
+        CommonOps_DDRM.multAdd(-1.5, a.copy(), b.copy(), expected);
+        ViewOps_DDRM.multAdd(-1.5, a, b, c);
+        checkOutput(expected, C, original, c);
+
+        ViewOps_DDRM.multTransB(a, bt, c);
+        checkOutput(CommonOps_DDRM.multTransB(a.copy(), bt.copy(), null), C, original, c);
+        expected = c.copy();
+        CommonOps_DDRM.multAddTransB(0.5, a.copy(), bt.copy(), expected);
+        ViewOps_DDRM.multAddTransB(0.5, a, bt, c);
+        checkOutput(expected, C, original, c);
+
+        original = C.copy();
+        DMatrixView c4 = DMatrixView.wrap(C, 0, 4, 1, 5);
+        ViewOps_DDRM.multTransA(at, at, c4);
+        checkOutput(CommonOps_DDRM.multTransA(at.copy(), at.copy(), null), C, original, c4);
+        expected = c4.copy();
+        CommonOps_DDRM.multAddTransA(at.copy(), at.copy(), expected);
+        ViewOps_DDRM.multAddTransA(at, at, c4);
+        checkOutput(expected, C, original, c4);
+
+        assertThrows(MatrixDimensionException.class, () -> ViewOps_DDRM.mult(a, a, c));
+        // the output overlaps an input
+        assertThrows(IllegalArgumentException.class, () ->
+                ViewOps_DDRM.mult(a, b, DMatrixView.wrap(A, 0, 4, 0, 3)));
+    }
+
+    @Test
+    public void elementWise() {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(8,8,rand);
+        DMatrixView a = DMatrixView.wrap(A, 0, 3, 0, 4);
+        DMatrixView b = DMatrixView.wrap(A, 4, 7, 3, 7);
+        DMatrixRMaj original = A.copy();
+
+        DMatrixRMaj expected = new DMatrixRMaj(3,4);
+        CommonOps_DDRM.add(2.0, a.copy(), -3.0, b.copy(), expected);
+        DMatrixView c = DMatrixView.wrap(A, 4, 7, 0, 4);
+        assertThrows(IllegalArgumentException.class, () -> ViewOps_DDRM.add(2.0, a, -3.0, b, c));
+        DMatrixView d = DMatrixView.wrap(A, 0, 3, 4, 8);
+        ViewOps_DDRM.add(2.0, a, -3.0, b, d);
+        checkOutput(expected, A, original, d);
+
+        // the output is the same region as an input
+        expected = CommonOps_DDRM.add(a.copy(), b.copy(), null);
+        ViewOps_DDRM.add(a, b, a);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(expected, a.copy(), UtilEjml.TEST_F64));
+
+        expected = CommonOps_DDRM.subtract(b.copy(), a.copy(), null);
+        ViewOps_DDRM.subtractEquals(b, a);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(expected, b.copy(), UtilEjml.TEST_F64));
+
+        expected = b.copy();
+        CommonOps_DDRM.scale(-2.0, expected);
+        ViewOps_DDRM.scale(-2.0, b);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(expected, b.copy(), UtilEjml.TEST_F64));
+
+        ViewOps_DDRM.scale(0.5, b, d);
+        CommonOps_DDRM.scale(0.5, expected);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(expected, d.copy(), UtilEjml.TEST_F64));
+
+        assertThrows(MatrixDimensionException.class, () ->
+                ViewOps_DDRM.addEquals(a, DMatrixView.wrap(A, 4, 6, 0, 4)));
+    }
+
+    @Test
+    public void transpose() {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(50,80,rand);
+        DMatrixView a = DMatrixView.wrap(A, 1, 35, 2, 40);
+        DMatrixRMaj B = new DMatrixRMaj(45,40);
+        DMatrixRMaj original = B.copy();
+        DMatrixView b = DMatrixView.wrap(B, 3, 41, 5, 39);
+        ViewOps_DDRM.transpose(a, b);
+        checkOutput(CommonOps_DDRM.transpose(a.copy(), null), B, original, b);
+
+        DMatrixView square = DMatrixView.wrap(A, 10, 20, 30, 40);
+        DMatrixRMaj expected = CommonOps_DDRM.transpose(square.copy(), null);
+        ViewOps_DDRM.transpose(square);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(expected, square.copy(), 0));
+
+        assertThrows(IllegalArgumentException.class, () ->
+                ViewOps_DDRM.transpose(a, DMatrixView.wrap(A, 10, 48, 20, 54)));
+    }
+
+    @Test
+    public void triangularSolves() {
+        int N = 7;
+        DMatrixRMaj M = RandomMatrices_DDRM.rectangle(12,12,rand);
+        for (int i = 0; i < 12; i++) {
+            M.add(i, i, 5);
+        }
+        DMatrixView T = DMatrixView.wrap(M, 2, 2+N, 3, 3+N);
+        DMatrixRMaj L = T.copy();
+        DMatrixRMaj U = T.copy();
+        DMatrixRMaj L1 = T.copy();
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                if( j > i ) { L.set(i,j,0); L1.set(i,j,0); }
+                if( j < i ) U.set(i,j,0);
+            }
+            L1.set(i,i,1);
+        }
+
+        DMatrixRMaj X = RandomMatrices_DDRM.rectangle(20,20,rand);
+        DMatrixView x = DMatrixView.wrap(X, 5, 5+N, 4, 8);
+        DMatrixView xt = DMatrixView.wrap(X, 1, 4, 10, 10+N);
+
+        DMatrixRMaj B = CommonOps_DDRM.mult(L, x.copy(), null);
+        checkSolve(B, x.copy(), b -> ViewOps_DDRM.solveL(T, b, false));
+        B = CommonOps_DDRM.mult(L1, x.copy(), null);
+        checkSolve(B, x.copy(), b -> ViewOps_DDRM.solveL(T, b, true));
+        B = CommonOps_DDRM.multTransA(L, x.copy(), null);
+        checkSolve(B, x.copy(), b -> ViewOps_DDRM.solveTranL(T, b));
+        B = CommonOps_DDRM.mult(U, x.copy(), null);
+        checkSolve(B, x.copy(), b -> ViewOps_DDRM.solveU(T, b, false));
+        B = CommonOps_DDRM.multTransB(xt.copy(), L, null);
+        checkSolve(B, xt.copy(), b -> ViewOps_DDRM.solveRightTranL(T, b));
+        B = CommonOps_DDRM.mult(xt.copy(), U, null);
+        checkSolve(B, xt.copy(), b -> ViewOps_DDRM.solveRightU(T, b, false));
+
+        assertThrows(MatrixDimensionException.class, () -> ViewOps_DDRM.solveL(T, xt, false));
+        assertThrows(IllegalArgumentException.class, () ->
+                ViewOps_DDRM.solveL(T, DMatrixView.wrap(M, 0, N, 0, 4), false));
+    }
+
+    @Test
+    public void cholesky() {
+        int N = 11;
+        DMatrixRMaj A = RandomMatrices_DDRM.symmetricPosDef(N, rand);
+        DMatrixRMaj M = RandomMatrices_DDRM.rectangle(N+4,N+6,rand);
+        DMatrixRMaj original = M.copy();
+        DMatrixView a = DMatrixView.wrap(M, 2, 2+N, 5, 5+N);
+        a.set(A);
+        assertTrue(ViewOps_DDRM.cholesky(a));
+
+        DMatrixRMaj L = a.copy();
+        for (int i = 0; i < N; i++) {
+            for (int j = i+1; j < N; j++) {
+                // the upper triangle is not modified
+                assertEquals(A.get(i,j), L.get(i,j));
+                L.set(i,j,0);
+            }
+        }
+        DMatrixRMaj found = CommonOps_DDRM.multTransB(L, L, null);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(A, found, UtilEjml.TEST_F64));
+        checkOutside(M, original, a);
+
+        DMatrixRMaj X = RandomMatrices_DDRM.rectangle(N,2,rand);
+        DMatrixRMaj B = CommonOps_DDRM.mult(A, X, null);
+        ViewOps_DDRM.solveCholesky(a, new DMatrixView(B));
+        assertTrue(MatrixFeatures_DDRM.isIdentical(X, B, UtilEjml.TEST_F64));
+
+        // not positive definite
+        a.set(A);
+        a.set(7, 7, -1);
+        assertFalse(ViewOps_DDRM.cholesky(a));
+    }
+
+    @Test
+    public void lu() {
+        for( int[] shape : new int[][]{{10,10},{12,7},{6,11}}) {
+            int m = shape[0], n = shape[1];
+            DMatrixRMaj M = RandomMatrices_DDRM.rectangle(m+3, n+5, rand);
+            DMatrixRMaj original = M.copy();
+            DMatrixView a = DMatrixView.wrap(M, 1, 1+m, 4, 4+n);
+            DMatrixRMaj A = a.copy();
+
+            int K = Math.min(m, n);
+            int[] pivots = new int[K];
+            assertTrue(ViewOps_DDRM.lu(a, pivots));
+            checkOutside(M, original, a);
+
+            // P*A = L*U
+            DMatrixRMaj L = new DMatrixRMaj(m, K);
+            DMatrixRMaj U = new DMatrixRMaj(K, n);
+            for (int i = 0; i < m; i++) {
+                for (int j = 0; j < n; j++) {
+                    if( j < i && j < K ) L.set(i,j,a.get(i,j));
+                    else if( j >= i ) U.set(i,j,a.get(i,j));
+                }
+                if( i < K ) L.set(i,i,1);
+            }
+            DMatrixRMaj PA = A.copy();
+            for (int i = 0; i < K; i++) {
+                for (int j = 0; j < n; j++) {
+                    double tmp = PA.get(i,j);
+                    PA.set(i,j,PA.get(pivots[i],j));
+                    PA.set(pivots[i],j,tmp);
+                }
+            }
+            DMatrixRMaj found = CommonOps_DDRM.mult(L, U, null);
+            assertTrue(MatrixFeatures_DDRM.isIdentical(PA, found, UtilEjml.TEST_F64));
+
+            if( m == n ) {
+                DMatrixRMaj X = RandomMatrices_DDRM.rectangle(n,3,rand);
+                DMatrixRMaj B = CommonOps_DDRM.mult(A, X, null);
+                ViewOps_DDRM.solveLU(a, pivots, new DMatrixView(B));
+                assertTrue(MatrixFeatures_DDRM.isIdentical(X, B, UtilEjml.TEST_F64));
+            }
+        }
+
+        // singular
+        DMatrixRMaj S = RandomMatrices_DDRM.rectangle(6,6,rand);
+        for (int i = 0; i < 6; i++) {
+            S.set(i, 2, 0);
+        }
+        assertFalse(ViewOps_DDRM.lu(new DMatrixView(S), new int[6]));
+    }
+
+    @Test
+    public void overlaps() {
+        DMatrixRMaj A = new DMatrixRMaj(10,10);
+        DMatrixView a = DMatrixView.wrap(A, 2, 6, 2, 6);
+        assertTrue(ViewOps_DDRM.overlaps(a, a));
+        assertTrue(ViewOps_DDRM.overlaps(a, DMatrixView.wrap(A, 5, 8, 5, 8)));
+        assertTrue(ViewOps_DDRM.overlaps(DMatrixView.wrap(A, 5, 8, 5, 8), a));
+        // side by side and on top of each other
+        assertFalse(ViewOps_DDRM.overlaps(a, DMatrixView.wrap(A, 2, 6, 6, 10)));
+        assertFalse(ViewOps_DDRM.overlaps(a, DMatrixView.wrap(A, 6, 10, 0, 10)));
+        assertFalse(ViewOps_DDRM.overlaps(DMatrixView.wrap(A, 0, 10, 0, 2), a));
+        // different arrays and empty views
+        assertFalse(ViewOps_DDRM.overlaps(a, new DMatrixView(new DMatrixRMaj(10,10))));
+        assertFalse(ViewOps_DDRM.overlaps(a, DMatrixView.wrap(A, 3, 3, 3, 5)));
+
+        // rows of the second view wrap around the stride of the first
+        double[] data = new double[40];
+        DMatrixView b = DMatrixView.wrap(data, 2, 4, 3, 8);
+        assertFalse(ViewOps_DDRM.overlaps(b, DMatrixView.wrap(data, 7, 3, 3, 8)));
+        assertTrue(ViewOps_DDRM.overlaps(b, DMatrixView.wrap(data, 7, 3, 4, 8)));
+        assertFalse(ViewOps_DDRM.overlaps(b, DMatrixView.wrap(data, 5, 3, 5, 8)));
+        assertTrue(ViewOps_DDRM.overlaps(b, DMatrixView.wrap(data, 0, 2, 3, 8)));
+    }
+
+    private interface Solve {
+        void process( DMatrixView b );
+    }
+
+    /**
+     * Solves for X inside of a view and makes sure only the view was modified
+     */
+    private void checkSolve( DMatrixRMaj B , DMatrixRMaj expected , Solve solve ) {
+        DMatrixRMaj storage = RandomMatrices_DDRM.rectangle(B.numRows+2, B.numCols+3, rand);
+        DMatrixRMaj original = storage.copy();
+        DMatrixView b = DMatrixView.wrap(storage, 1, 1+B.numRows, 2, 2+B.numCols);
+        b.set(B);
+        solve.process(b);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(expected, b.copy(), UtilEjml.TEST_F64));
+        checkOutside(storage, original, b);
+    }
+
+    private static void checkOutput( DMatrixRMaj expected , DMatrixRMaj storage , DMatrixRMaj original ,
+                                     DMatrixView view ) {
+        assertTrue(MatrixFeatures_DDRM.isIdentical(expected, view.copy(), UtilEjml.TEST_F64));
+        checkOutside(storage, original, view);
+    }
+
+    /**
+     * Elements in storage which are outside of the view should not have been modified
+     */
+    private static void checkOutside( DMatrixRMaj storage , DMatrixRMaj original , DMatrixView view ) {
+        for (int i = 0; i < storage.data.length; i++) {
+            int local = i - view.offset;
+            boolean inside = local >= 0 && local/view.stride < view.numRows && local%view.stride < view.numCols;
+            if( !inside )
+                assertEquals(original.data[i], storage.data[i], "index "+i);
+        }
+    }
+}
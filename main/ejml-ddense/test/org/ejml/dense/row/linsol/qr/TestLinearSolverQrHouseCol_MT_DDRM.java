@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.dense.row.linsol.qr;
+
+import org.ejml.concurrency.EjmlConcurrency;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.MatrixFeatures_DDRM;
+import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.ejml.dense.row.linsol.GenericLinearSolverChecks_DDRM;
+import org.ejml.interfaces.linsol.LinearSolverDense;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestLinearSolverQrHouseCol_MT_DDRM extends GenericLinearSolverChecks_DDRM {
+
+    private int threshold;
+    private int maxThreads;
+
+    @BeforeEach
+    public void before() {
+        // force the concurrent code to run on small matrices and with multiple threads
+        threshold = EjmlConcurrency.ELEMENT_THRESHOLD;
+        maxThreads = EjmlConcurrency.getMaxThreads();
+        EjmlConcurrency.ELEMENT_THRESHOLD = 0;
+        EjmlConcurrency.setMaxThreads(4);
+    }
+
+    @AfterEach
+    public void after() {
+        EjmlConcurrency.ELEMENT_THRESHOLD = threshold;
+        EjmlConcurrency.setMaxThreads(maxThreads);
+    }
+
+    @Override
+    protected LinearSolverDense<DMatrixRMaj> createSolver(DMatrixRMaj A ) {
+        return new LinearSolverQrHouseCol_MT_DDRM();
+    }
+
+    /**
+     * Solution should be identical to the single threaded solver, including for rank deficient systems
+     */
+    @Test
+    public void compareToSingleThread() {
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(20, 20, -1, 1, rand);
+        // make it rank deficient
+        for (int col = 0; col < A.numCols; col++) {
+            A.set(5, col, A.get(3, col));
+        }
+        DMatrixRMaj B = RandomMatrices_DDRM.rectangle(20, 7, -1, 1, rand);
+
+        LinearSolverQrHouseCol_DDRM single = new LinearSolverQrHouseCol_DDRM();
+        LinearSolverQrHouseCol_MT_DDRM concurrent = new LinearSolverQrHouseCol_MT_DDRM();
+        assertTrue(EjmlConcurrency.useConcurrent(20*20*7));
+
+        assertTrue(single.setA(A));
+        assertTrue(concurrent.setA(A));
+
+        DMatrixRMaj expected = new DMatrixRMaj(1, 1);
+        DMatrixRMaj found = new DMatrixRMaj(1, 1);
+        single.solve(B, expected);
+        concurrent.solve(B, found);
+
+        assertTrue(MatrixFeatures_DDRM.isIdentical(expected, found, 0));
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.sparse.block;
+
+import org.ejml.MatrixDimensionException;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.data.DMatrixSparseBlockCSC;
+import org.jetbrains.annotations.Nullable;
+
+import static org.ejml.UtilEjml.reshapeOrDeclare;
+import static org.ejml.UtilEjml.stringShapes;
+
+/**
+ * Common operations on {@link DMatrixSparseBlockCSC}.
+ *
+ * @author Peter Abeles
+ */
+public class CommonOps_DSBC {
+
+    /**
+     * Checks to see if the block structure is valid. Block rows must be sorted and unique within each
+     * block column and the offsets must match the size of each block.
+     *
+     * @return true if valid or false if not
+     */
+    public static boolean checkStructure( DMatrixSparseBlockCSC A ) {
+        if( A.col_idx.length < A.numBlockCols+1 )
+            return false;
+        if( A.col_idx[0] != 0 || A.col_idx[A.numBlockCols] != A.nz_blocks )
+            return false;
+        if( A.nz_offsets[0] != 0 || A.nz_offsets[A.nz_blocks] != A.nz_length )
+            return false;
+        if( A.nz_values.length < A.nz_length )
+            return false;
+        for (int blockCol = 0; blockCol < A.numBlockCols; blockCol++) {
+            int width = A.blockWidth(blockCol);
+            int idx0 = A.col_idx[blockCol];
+            int idx1 = A.col_idx[blockCol+1];
+            if( idx0 > idx1 )
+                return false;
+            for (int i = idx0; i < idx1; i++) {
+                int blockRow = A.nz_blockRows[i];
+                if( blockRow < 0 || blockRow >= A.numBlockRows )
+                    return false;
+                if( i > idx0 && A.nz_blockRows[i-1] >= blockRow )
+                    return false;
+                if( A.nz_offsets[i+1]-A.nz_offsets[i] != A.blockHeight(blockRow)*width )
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Performs matrix multiplication.  C = A*B
+     *
+     * @param A Matrix
+     * @param B Dense Matrix
+     * @param output Dense Matrix. If null a new matrix is declared.
+     * @return The output matrix
+     */
+    public static DMatrixRMaj mult( DMatrixSparseBlockCSC A , DMatrixRMaj B , @Nullable DMatrixRMaj output )
+    {
+        if( A.numCols != B.numRows )
+            throw new MatrixDimensionException("Inconsistent matrix shapes. "+stringShapes(A,B));
+        output = reshapeOrDeclare(output,A.numRows,B.numCols);
+        output.zero();
+
+        multAddNoCheck(A,B,output);
+
+        return output;
+    }
+
+    /**
+     * <p>C = C + A*B</p>
+     */
+    public static void multAdd( DMatrixSparseBlockCSC A , DMatrixRMaj B , DMatrixRMaj output )
+    {
+        if( A.numCols != B.numRows )
+            throw new MatrixDimensionException("Inconsistent matrix shapes. "+stringShapes(A,B));
+        if( A.numRows != output.numRows || B.numCols != output.numCols )
+            throw new MatrixDimensionException("Inconsistent matrix shapes. "+stringShapes(A,B,output));
+
+        multAddNoCheck(A,B,output);
+    }
+
+    private static void multAddNoCheck( DMatrixSparseBlockCSC A , DMatrixRMaj B , DMatrixRMaj C ) {
+        final int N = B.numCols;
+
+        for (int blockCol = 0; blockCol < A.numBlockCols; blockCol++) {
+            int col0 = A.col_blocks[blockCol];
+            int width = A.col_blocks[blockCol+1]-col0;
+            int idx0 = A.col_idx[blockCol];
+            int idx1 = A.col_idx[blockCol+1];
+
+            for (int block = idx0; block < idx1; block++) {
+                int blockRow = A.nz_blockRows[block];
+                int row0 = A.row_blocks[blockRow];
+                int row1 = A.row_blocks[blockRow+1];
+                int indexA = A.nz_offsets[block];
+
+                for (int row = row0; row < row1; row++) {
+                    int indexC = row*N;
+                    for (int k = 0; k < width; k++) {
+                        double valA = A.nz_values[indexA++];
+                        int indexB = (col0+k)*N;
+                        for (int j = 0; j < N; j++) {
+                            C.data[indexC+j] += valA*B.data[indexB+j];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Performs matrix multiplication.  C = A<sup>T</sup>*B
+     *
+     * @param A Matrix
+     * @param B Dense Matrix
+     * @param output Dense Matrix. If null a new matrix is declared.
+     * @return The output matrix
+     */
+    public static DMatrixRMaj multTransA( DMatrixSparseBlockCSC A , DMatrixRMaj B , @Nullable DMatrixRMaj output )
+    {
+        if( A.numRows != B.numRows )
+            throw new MatrixDimensionException("Inconsistent matrix shapes. "+stringShapes(A,B));
+        output = reshapeOrDeclare(output,A.numCols,B.numCols);
+        output.zero();
+
+        multAddTransANoCheck(A,B,output);
+
+        return output;
+    }
+
+    /**
+     * <p>C = C + A<sup>T</sup>*B</p>
+     */
+    public static void multAddTransA( DMatrixSparseBlockCSC A , DMatrixRMaj B , DMatrixRMaj output )
+    {
+        if( A.numRows != B.numRows )
+            throw new MatrixDimensionException("Inconsistent matrix shapes. "+stringShapes(A,B));
+        if( A.numCols != output.numRows || B.numCols != output.numCols )
+            throw new MatrixDimensionException("Inconsistent matrix shapes. "+stringShapes(A,B,output));
+
+        multAddTransANoCheck(A,B,output);
+    }
+
+    private static void multAddTransANoCheck( DMatrixSparseBlockCSC A , DMatrixRMaj B , DMatrixRMaj C ) {
+        final int N = B.numCols;
+
+        for (int blockCol = 0; blockCol < A.numBlockCols; blockCol++) {
+            int col0 = A.col_blocks[blockCol];
+            int width = A.col_blocks[blockCol+1]-col0;
+            int idx0 = A.col_idx[blockCol];
+            int idx1 = A.col_idx[blockCol+1];
+
+            for (int block = idx0; block < idx1; block++) {
+                int blockRow = A.nz_blockRows[block];
+                int row0 = A.row_blocks[blockRow];
+                int row1 = A.row_blocks[blockRow+1];
+                int indexA = A.nz_offsets[block];
+
+                for (int row = row0; row < row1; row++) {
+                    int indexB = row*N;
+                    for (int k = 0; k < width; k++) {
+                        double valA = A.nz_values[indexA++];
+                        int indexC = (col0+k)*N;
+                        for (int j = 0; j < N; j++) {
+                            C.data[indexC+j] += valA*B.data[indexB+j];
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
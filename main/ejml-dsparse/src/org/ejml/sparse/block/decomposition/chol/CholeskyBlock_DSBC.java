@@ -0,0 +1,426 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.sparse.block.decomposition.chol;
+
+import org.ejml.data.Complex_F64;
+import org.ejml.data.DMatrix3x3;
+import org.ejml.data.DMatrix6x6;
+import org.ejml.data.DMatrixSparseBlockCSC;
+import org.ejml.data.IGrowArray;
+import org.ejml.dense.fixed.CommonOps_DDF3;
+import org.ejml.dense.fixed.CommonOps_DDF6;
+import org.ejml.interfaces.decomposition.CholeskySparseDecomposition_F64;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+import static org.ejml.UtilEjml.adjust;
+
+/**
+ * <p>
+ * Cholesky decomposition of a {@link DMatrixSparseBlockCSC} using a right looking block algorithm. Each block
+ * is processed as a small dense matrix. If every block is 3x3 or 6x6 then the unrolled kernels in
+ * {@link CommonOps_DDF3} and {@link CommonOps_DDF6} are used, otherwise a generic dense kernel is used.
+ * </p>
+ *
+ * <p>
+ * Only the lower triangular blocks of the input matrix are read and the row and column blocks must be the same.
+ * The block structure of L is computed symbolically using the elimination tree of the block graph, which can be
+ * locked and reused for matrices with the same block structure.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class CholeskyBlock_DSBC implements
+        CholeskySparseDecomposition_F64<DMatrixSparseBlockCSC>
+{
+    private int N;
+
+    // storage for decomposition
+    DMatrixSparseBlockCSC L = new DMatrixSparseBlockCSC(new int[0],new int[0],0);
+
+    // workspace storage
+    IGrowArray gw = new IGrowArray(1);
+    int[] parent = new int[0];
+
+    // dense kernels used to process each block
+    BlockKernel kernel = new BlockKernel();
+
+    // true if it has successfully decomposed a matrix
+    private boolean decomposed = false;
+    // if true then the structure is locked and won't be computed again
+    private boolean locked = false;
+
+    @Override
+    public boolean decompose( DMatrixSparseBlockCSC orig ) {
+        if( orig.numCols != orig.numRows )
+            throw new IllegalArgumentException("Must be a square matrix");
+        if( !orig.isBlockSymmetric() )
+            throw new IllegalArgumentException("Row and column blocks must be the same");
+
+        if( !locked || !decomposed)
+            performSymbolic(orig);
+
+        if( performDecomposition(orig) ) {
+            decomposed = true;
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Computes the block structure of L. The structure of column k is the union of the lower blocks in column k
+     * of A and the structure of every child of k in the elimination tree.
+     */
+    public void performSymbolic( DMatrixSparseBlockCSC A ) {
+        N = A.numBlockCols;
+        if( parent.length < N )
+            parent = new int[N];
+
+        int[] work = adjust(gw,3*N);
+        // work[0:N] = mark, work[N:2N] = head of child list, work[2N:3N] = next sibling
+        Arrays.fill(work,0,2*N,-1);
+
+        int[] blockRows = new int[Math.max(1,A.nz_blocks)];
+        int[] hist = new int[N];
+        int[] colStart = new int[N];
+        int total = 0;
+
+        for (int k = 0; k < N; k++) {
+            int start = total;
+
+            // diagonal block is always included so that it's the first block in the column
+            work[k] = k;
+            blockRows = grow(blockRows,total+1);
+            blockRows[total++] = k;
+
+            for (int i = A.col_idx[k]; i < A.col_idx[k+1]; i++) {
+                int row = A.nz_blockRows[i];
+                if( row > k && work[row] != k ) {
+                    work[row] = k;
+                    blockRows = grow(blockRows,total+1);
+                    blockRows[total++] = row;
+                }
+            }
+
+            // add the structure of each child
+            for (int child = work[N+k]; child != -1; child = work[2*N+child]) {
+                for (int i = colStart[child]; i < colStart[child]+hist[child]; i++ ) {
+                    int row = blockRows[i];
+                    if( row > k && work[row] != k ) {
+                        work[row] = k;
+                        blockRows = grow(blockRows,total+1);
+                        blockRows[total++] = row;
+                    }
+                }
+            }
+
+            Arrays.sort(blockRows,start+1,total);
+            hist[k] = total-start;
+            colStart[k] = start;
+
+            // parent is the first row below the diagonal
+            parent[k] = total-start > 1 ? blockRows[start+1] : -1;
+            if( parent[k] != -1 ) {
+                work[2*N+k] = work[N+parent[k]];
+                work[N+parent[k]] = k;
+            }
+        }
+
+        L.reshapeBlocks(A.getBlockRowSizes(),A.getBlockColSizes(),0);
+        L.histogramToStructure(hist,blockRows);
+        kernel = selectKernel(A);
+    }
+
+    private static int[] grow( int[] array , int length ) {
+        if( array.length < length )
+            return Arrays.copyOf(array,Math.max(length,array.length*2));
+        return array;
+    }
+
+    /**
+     * Selects the unrolled kernel if all blocks are the same size and an unrolled kernel exists for it
+     */
+    private static BlockKernel selectKernel( DMatrixSparseBlockCSC A ) {
+        int size = A.numBlockRows > 0 ? A.blockHeight(0) : 0;
+        for (int i = 1; i < A.numBlockRows; i++) {
+            if( A.blockHeight(i) != size )
+                return new BlockKernel();
+        }
+        switch( size ) {
+            case 3: return new BlockKernel3();
+            case 6: return new BlockKernel6();
+            default: return new BlockKernel();
+        }
+    }
+
+    private boolean performDecomposition( DMatrixSparseBlockCSC A ) {
+        int[] map = adjust(gw,N);
+        Arrays.fill(map,0,N,-1);
+
+        // copy the lower blocks from A into L
+        Arrays.fill(L.nz_values,0,L.nz_length,0);
+        for (int k = 0; k < N; k++) {
+            for (int i = L.col_idx[k]; i < L.col_idx[k+1]; i++) {
+                map[L.nz_blockRows[i]] = i;
+            }
+            for (int i = A.col_idx[k]; i < A.col_idx[k+1]; i++) {
+                int row = A.nz_blockRows[i];
+                if( row < k )
+                    continue;
+                int offsetL = L.nz_offsets[map[row]];
+                System.arraycopy(A.nz_values,A.nz_offsets[i],L.nz_values,offsetL,L.nz_offsets[map[row]+1]-offsetL);
+            }
+            for (int i = L.col_idx[k]; i < L.col_idx[k+1]; i++) {
+                map[L.nz_blockRows[i]] = -1;
+            }
+        }
+
+        for (int k = 0; k < N; k++) {
+            int n = L.blockWidth(k);
+            int idx0 = L.col_idx[k];
+            int idx1 = L.col_idx[k+1];
+
+            //----- L(k,k) = chol(A(k,k))
+            if( !kernel.cholesky(L.nz_values,L.nz_offsets[idx0],n) )
+                return false;
+
+            //----- L(i,k) = A(i,k)*inv(L(k,k))'
+            for (int p = idx0+1; p < idx1; p++) {
+                kernel.solveTransposeL(L.nz_values,L.nz_offsets[idx0],n,L.nz_offsets[p],L.blockHeight(L.nz_blockRows[p]));
+            }
+
+            //----- A(i,j) = A(i,j) - L(i,k)*L(j,k)' for i >= j > k
+            for (int q = idx0+1; q < idx1; q++) {
+                int j = L.nz_blockRows[q];
+                int heightJ = L.blockHeight(j);
+                for (int i = L.col_idx[j]; i < L.col_idx[j+1]; i++) {
+                    map[L.nz_blockRows[i]] = i;
+                }
+                for (int p = q; p < idx1; p++) {
+                    int i = L.nz_blockRows[p];
+                    int target = map[i];
+                    kernel.multSubTransB(L.nz_values,L.nz_offsets[p],L.blockHeight(i),
+                            L.nz_offsets[q],heightJ,n,L.nz_offsets[target]);
+                }
+                for (int i = L.col_idx[j]; i < L.col_idx[j+1]; i++) {
+                    map[L.nz_blockRows[i]] = -1;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Dense operations on blocks stored inside of an array. Blocks are in a row-major format.
+     */
+    static class BlockKernel {
+        /**
+         * In place lower Cholesky decomposition of the n by n block. Upper triangle is set to zero.
+         */
+        boolean cholesky( double[] data , int offset , int n ) {
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j <= i; j++) {
+                    double sum = data[offset+i*n+j];
+                    for (int k = 0; k < j; k++) {
+                        sum -= data[offset+i*n+k]*data[offset+j*n+k];
+                    }
+                    if( i == j ) {
+                        // not positive definite
+                        if( !(sum > 0) )
+                            return false;
+                        data[offset+i*n+i] = Math.sqrt(sum);
+                    } else {
+                        data[offset+i*n+j] = sum/data[offset+j*n+j];
+                    }
+                }
+                for (int j = i+1; j < n; j++) {
+                    data[offset+i*n+j] = 0;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * B = B*inv(L)' where L is n by n and B is height by n
+         */
+        void solveTransposeL( double[] data , int offsetL , int n , int offsetB , int height ) {
+            for (int row = 0; row < height; row++) {
+                int indexB = offsetB+row*n;
+                for (int i = 0; i < n; i++) {
+                    double sum = data[indexB+i];
+                    for (int k = 0; k < i; k++) {
+                        sum -= data[indexB+k]*data[offsetL+i*n+k];
+                    }
+                    data[indexB+i] = sum/data[offsetL+i*n+i];
+                }
+            }
+        }
+
+        /**
+         * C = C - A*B' where A is heightA by n, B is heightB by n, and C is heightA by heightB
+         */
+        void multSubTransB( double[] data , int offsetA , int heightA , int offsetB , int heightB , int n ,
+                            int offsetC ) {
+            for (int i = 0; i < heightA; i++) {
+                for (int j = 0; j < heightB; j++) {
+                    double sum = 0;
+                    for (int k = 0; k < n; k++) {
+                        sum += data[offsetA+i*n+k]*data[offsetB+j*n+k];
+                    }
+                    data[offsetC+i*heightB+j] -= sum;
+                }
+            }
+        }
+    }
+
+    /**
+     * Kernel for when all blocks are 3x3
+     */
+    static class BlockKernel3 extends BlockKernel {
+        DMatrix3x3 a = new DMatrix3x3();
+        DMatrix3x3 b = new DMatrix3x3();
+        DMatrix3x3 c = new DMatrix3x3();
+
+        @Override
+        boolean cholesky( double[] data , int offset , int n ) {
+            a.set(offset,data);
+            if( !(a.a11 > 0) || !CommonOps_DDF3.cholL(a) || !(a.a22 > 0 && a.a33 > 0) )
+                return false;
+            store(a,data,offset);
+            return true;
+        }
+
+        @Override
+        void multSubTransB( double[] data , int offsetA , int heightA , int offsetB , int heightB , int n ,
+                            int offsetC ) {
+            a.set(offsetA,data);
+            b.set(offsetB,data);
+            c.set(offsetC,data);
+            CommonOps_DDF3.multAddTransB(-1,a,b,c);
+            store(c,data,offsetC);
+        }
+
+        static void store( DMatrix3x3 m , double[] data , int offset ) {
+            data[offset  ] = m.a11; data[offset+1] = m.a12; data[offset+2] = m.a13;
+            data[offset+3] = m.a21; data[offset+4] = m.a22; data[offset+5] = m.a23;
+            data[offset+6] = m.a31; data[offset+7] = m.a32; data[offset+8] = m.a33;
+        }
+    }
+
+    /**
+     * Kernel for when all blocks are 6x6
+     */
+    static class BlockKernel6 extends BlockKernel {
+        DMatrix6x6 a = new DMatrix6x6();
+        DMatrix6x6 b = new DMatrix6x6();
+        DMatrix6x6 c = new DMatrix6x6();
+
+        @Override
+        boolean cholesky( double[] data , int offset , int n ) {
+            a.set(offset,data);
+            if( !(a.a11 > 0) || !CommonOps_DDF6.cholL(a) ||
+                    !(a.a22 > 0 && a.a33 > 0 && a.a44 > 0 && a.a55 > 0 && a.a66 > 0) )
+                return false;
+            store(a,data,offset);
+            return true;
+        }
+
+        @Override
+        void multSubTransB( double[] data , int offsetA , int heightA , int offsetB , int heightB , int n ,
+                            int offsetC ) {
+            a.set(offsetA,data);
+            b.set(offsetB,data);
+            c.set(offsetC,data);
+            CommonOps_DDF6.multAddTransB(-1,a,b,c);
+            store(c,data,offsetC);
+        }
+
+        static void store( DMatrix6x6 m , double[] data , int offset ) {
+            data[offset   ] = m.a11; data[offset+ 1] = m.a12; data[offset+ 2] = m.a13;
+            data[offset+ 3] = m.a14; data[offset+ 4] = m.a15; data[offset+ 5] = m.a16;
+            data[offset+ 6] = m.a21; data[offset+ 7] = m.a22; data[offset+ 8] = m.a23;
+            data[offset+ 9] = m.a24; data[offset+10] = m.a25; data[offset+11] = m.a26;
+            data[offset+12] = m.a31; data[offset+13] = m.a32; data[offset+14] = m.a33;
+            data[offset+15] = m.a34; data[offset+16] = m.a35; data[offset+17] = m.a36;
+            data[offset+18] = m.a41; data[offset+19] = m.a42; data[offset+20] = m.a43;
+            data[offset+21] = m.a44; data[offset+22] = m.a45; data[offset+23] = m.a46;
+            data[offset+24] = m.a51; data[offset+25] = m.a52; data[offset+26] = m.a53;
+            data[offset+27] = m.a54; data[offset+28] = m.a55; data[offset+29] = m.a56;
+            data[offset+30] = m.a61; data[offset+31] = m.a62; data[offset+32] = m.a63;
+            data[offset+33] = m.a64; data[offset+34] = m.a65; data[offset+35] = m.a66;
+        }
+    }
+
+    @Override
+    public boolean inputModified() {
+        return false;
+    }
+
+    @Override
+    public boolean isLower() {
+        return true;
+    }
+
+    @Override
+    public DMatrixSparseBlockCSC getT( @Nullable DMatrixSparseBlockCSC T ) {
+        if( T == null ) {
+            T = new DMatrixSparseBlockCSC(L);
+        } else {
+            T.set(L);
+        }
+        return T;
+    }
+
+    @Override
+    public Complex_F64 computeDeterminant() {
+        double value = 1;
+        for (int k = 0; k < N; k++) {
+            int n = L.blockWidth(k);
+            int offset = L.nz_offsets[L.col_idx[k]];
+            for (int i = 0; i < n; i++) {
+                value *= L.nz_values[offset+i*n+i];
+            }
+        }
+        return new Complex_F64(value*value,0);
+    }
+
+    /**
+     * Returns the elimination tree of the block graph
+     */
+    public int[] getParent() {
+        return parent;
+    }
+
+    public DMatrixSparseBlockCSC getL() {
+        return L;
+    }
+
+    @Override
+    public void setStructureLocked( boolean locked ) {
+        this.locked = locked;
+    }
+
+    @Override
+    public boolean isStructureLocked() {
+        return locked;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.sparse.block.misc;
+
+import org.ejml.data.DMatrixSparseBlockCSC;
+
+/**
+ * Triangular solvers for {@link DMatrixSparseBlockCSC}. The triangular matrix is assumed to have square blocks
+ * along the diagonal with the diagonal block being the first block in each block column.
+ *
+ * @author Peter Abeles
+ */
+public class TriangularSolver_DSBC {
+
+    /**
+     * Solves for a lower triangular block matrix against a dense vector. L*x = b
+     *
+     * @param L Lower triangular block matrix. Not modified.
+     * @param x (Input) Solution matrix 'b'.  (Output) matrix 'x'
+     */
+    public static void solveL( DMatrixSparseBlockCSC L , double[] x ) {
+        for (int blockCol = 0; blockCol < L.numBlockCols; blockCol++) {
+            int col0 = L.col_blocks[blockCol];
+            int width = L.col_blocks[blockCol+1]-col0;
+            int idx0 = L.col_idx[blockCol];
+            int idx1 = L.col_idx[blockCol+1];
+
+            // forward substitution with the lower triangular diagonal block
+            int diag = L.nz_offsets[idx0];
+            for (int i = 0; i < width; i++) {
+                double sum = x[col0+i];
+                for (int k = 0; k < i; k++) {
+                    sum -= L.nz_values[diag+i*width+k]*x[col0+k];
+                }
+                x[col0+i] = sum/L.nz_values[diag+i*width+i];
+            }
+
+            // update the elements below the diagonal block
+            for (int block = idx0+1; block < idx1; block++) {
+                int blockRow = L.nz_blockRows[block];
+                int row0 = L.row_blocks[blockRow];
+                int row1 = L.row_blocks[blockRow+1];
+                int indexL = L.nz_offsets[block];
+                for (int row = row0; row < row1; row++) {
+                    double sum = 0;
+                    for (int k = 0; k < width; k++) {
+                        sum += L.nz_values[indexL++]*x[col0+k];
+                    }
+                    x[row] -= sum;
+                }
+            }
+        }
+    }
+
+    /**
+     * Solves for the transpose of a lower triangular block matrix against a dense vector. L<sup>T</sup>*x = b
+     *
+     * @param L Lower triangular block matrix. Not modified.
+     * @param x (Input) Solution matrix 'b'.  (Output) matrix 'x'
+     */
+    public static void solveTranL( DMatrixSparseBlockCSC L , double[] x ) {
+        for (int blockCol = L.numBlockCols-1; blockCol >= 0; blockCol--) {
+            int col0 = L.col_blocks[blockCol];
+            int width = L.col_blocks[blockCol+1]-col0;
+            int idx0 = L.col_idx[blockCol];
+            int idx1 = L.col_idx[blockCol+1];
+
+            // subtract the contribution from elements which have already been solved for
+            for (int block = idx0+1; block < idx1; block++) {
+                int blockRow = L.nz_blockRows[block];
+                int row0 = L.row_blocks[blockRow];
+                int row1 = L.row_blocks[blockRow+1];
+                int indexL = L.nz_offsets[block];
+                for (int row = row0; row < row1; row++) {
+                    double valX = x[row];
+                    for (int k = 0; k < width; k++) {
+                        x[col0+k] -= L.nz_values[indexL++]*valX;
+                    }
+                }
+            }
+
+            // back substitution with the transpose of the diagonal block
+            int diag = L.nz_offsets[idx0];
+            for (int i = width-1; i >= 0; i--) {
+                double sum = x[col0+i];
+                for (int k = i+1; k < width; k++) {
+                    sum -= L.nz_values[diag+k*width+i]*x[col0+k];
+                }
+                x[col0+i] = sum/L.nz_values[diag+i*width+i];
+            }
+        }
+    }
+}
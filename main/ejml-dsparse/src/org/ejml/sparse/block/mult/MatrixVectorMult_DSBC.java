@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.sparse.block.mult;
+
+import org.ejml.data.DMatrixSparseBlockCSC;
+
+import java.util.Arrays;
+
+/**
+ * Matrix-vector multiplication for {@link DMatrixSparseBlockCSC}. Each non-zero block is processed as a small
+ * dense matrix, so only one block row index is read for every block instead of one row index per element.
+ *
+ * @author Peter Abeles
+ */
+public class MatrixVectorMult_DSBC {
+    /**
+     * c = A*b
+     *
+     * @param A (Input) Matrix
+     * @param b (Input) vector
+     * @param offsetB (Input) first index in vector b
+     * @param c (Output) vector
+     * @param offsetC (Output) first index in vector c
+     */
+    public static void mult( DMatrixSparseBlockCSC A ,
+                             double[] b , int offsetB ,
+                             double[] c , int offsetC )
+    {
+        Arrays.fill(c,offsetC,offsetC+A.numRows,0);
+        multAdd(A,b,offsetB,c,offsetC);
+    }
+
+    /**
+     * c = c + A*b
+     *
+     * @param A (Input) Matrix
+     * @param b (Input) vector
+     * @param offsetB (Input) first index in vector b
+     * @param c (Output) vector
+     * @param offsetC (Output) first index in vector c
+     */
+    public static void multAdd( DMatrixSparseBlockCSC A ,
+                                double[] b , int offsetB ,
+                                double[] c , int offsetC )
+    {
+        if( b.length-offsetB < A.numCols)
+            throw new IllegalArgumentException("Length of 'b' isn't long enough");
+        if( c.length-offsetC < A.numRows)
+            throw new IllegalArgumentException("Length of 'c' isn't long enough");
+
+        for (int blockCol = 0; blockCol < A.numBlockCols; blockCol++) {
+            int col0 = offsetB+A.col_blocks[blockCol];
+            int width = A.col_blocks[blockCol+1]-A.col_blocks[blockCol];
+            int idx0 = A.col_idx[blockCol];
+            int idx1 = A.col_idx[blockCol+1];
+
+            for (int block = idx0; block < idx1; block++) {
+                int blockRow = A.nz_blockRows[block];
+                int indexC = offsetC+A.row_blocks[blockRow];
+                int endC = offsetC+A.row_blocks[blockRow+1];
+                int indexA = A.nz_offsets[block];
+
+                for (; indexC < endC; indexC++) {
+                    double sum = 0;
+                    for (int k = 0; k < width; k++) {
+                        sum += A.nz_values[indexA++]*b[col0+k];
+                    }
+                    c[indexC] += sum;
+                }
+            }
+        }
+    }
+
+    /**
+     * c = A<sup>T</sup>*b
+     *
+     * @param A (Input) Matrix
+     * @param b (Input) vector
+     * @param offsetB (Input) first index in vector b
+     * @param c (Output) vector
+     * @param offsetC (Output) first index in vector c
+     */
+    public static void multTransA( DMatrixSparseBlockCSC A ,
+                                   double[] b , int offsetB ,
+                                   double[] c , int offsetC )
+    {
+        if( b.length-offsetB < A.numRows)
+            throw new IllegalArgumentException("Length of 'b' isn't long enough");
+        if( c.length-offsetC < A.numCols)
+            throw new IllegalArgumentException("Length of 'c' isn't long enough");
+
+        Arrays.fill(c,offsetC,offsetC+A.numCols,0);
+
+        for (int blockCol = 0; blockCol < A.numBlockCols; blockCol++) {
+            int col0 = offsetC+A.col_blocks[blockCol];
+            int width = A.col_blocks[blockCol+1]-A.col_blocks[blockCol];
+            int idx0 = A.col_idx[blockCol];
+            int idx1 = A.col_idx[blockCol+1];
+
+            for (int block = idx0; block < idx1; block++) {
+                int blockRow = A.nz_blockRows[block];
+                int indexB = offsetB+A.row_blocks[blockRow];
+                int endB = offsetB+A.row_blocks[blockRow+1];
+                int indexA = A.nz_offsets[block];
+
+                for (; indexB < endB; indexB++) {
+                    double valB = b[indexB];
+                    for (int k = 0; k < width; k++) {
+                        c[col0+k] += A.nz_values[indexA++]*valB;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.sparse.csc;
+
+import org.ejml.MatrixDimensionException;
+import org.ejml.data.DGrowArray;
+import org.ejml.data.DMatrixSparseCSC;
+import org.ejml.data.IGrowArray;
+import org.ejml.masks.Mask;
+import org.ejml.ops.DSemiRing;
+import org.ejml.ops.DSemiRings;
+import org.ejml.sparse.csc.misc.ImplCommonOpsWithSemiRing_DSCC;
+import org.ejml.sparse.csc.mult.ImplMultiplicationWithSemiRing_DSCC;
+import org.ejml.sparse.csc.mult.MatrixVectorMultWithSemiRing_DSCC;
+import org.jetbrains.annotations.Nullable;
+
+import static org.ejml.UtilEjml.reshapeOrDeclare;
+import static org.ejml.UtilEjml.stringShapes;
+
+/**
+ * <p>
+ * Operations on {@link DMatrixSparseCSC} where plus and times are replaced by a {@link DSemiRing}, in the style of
+ * <a href="https://graphblas.github.io/">GraphBLAS</a>. Elements which are not stored have the value of the add
+ * monoid's identity. For example, using {@link DSemiRings#MIN_PLUS} a matrix-vector product relaxes the edges of
+ * a graph for shortest path and {@link DSemiRings#OR_AND} computes the next frontier in a breadth first search.
+ * </p>
+ *
+ * <p>
+ * Each function takes an optional {@link Mask} which specifies which elements in the output are computed.
+ * Sparse outputs only contain selected elements and dense outputs only have selected elements modified.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class CommonOpsWithSemiRing_DSCC {
+
+    /**
+     * Performs matrix multiplication.  C = A*B
+     *
+     * @param A (Input) Matrix. Not modified.
+     * @param B (Input) Matrix. Not modified.
+     * @param output (Output) Storage for results.  Data length is increased if increased if insufficient.
+     * @param semiRing Semiring which defines add and multiply
+     * @param mask (Optional) Which elements in the output are computed.  Can be null.
+     * @param gw (Optional) Storage for internal workspace.  Can be null.
+     * @param gx (Optional) Storage for internal workspace.  Can be null.
+     */
+    public static DMatrixSparseCSC mult( DMatrixSparseCSC A, DMatrixSparseCSC B, @Nullable DMatrixSparseCSC output,
+                                         DSemiRing semiRing, @Nullable Mask mask,
+                                         @Nullable IGrowArray gw, @Nullable DGrowArray gx ) {
+        if( A.numCols != B.numRows )
+            throw new MatrixDimensionException("Inconsistent matrix shapes. "+stringShapes(A,B));
+        output = reshapeOrDeclare(output,A,A.numRows,B.numCols);
+        if( mask != null )
+            mask.compatible(output);
+
+        ImplMultiplicationWithSemiRing_DSCC.mult(A,B,output,semiRing,mask,gw,gx);
+
+        return output;
+    }
+
+    public static DMatrixSparseCSC mult( DMatrixSparseCSC A, DMatrixSparseCSC B, @Nullable DMatrixSparseCSC output,
+                                         DSemiRing semiRing ) {
+        return mult(A,B,output,semiRing,null,null,null);
+    }
+
+    /**
+     * Performs matrix-vector multiplication.  c = A*b
+     *
+     * @param A (Input) Matrix. Not modified.
+     * @param b (Input) Vector. Not modified.
+     * @param c (Output) Vector. Only elements selected by the mask are modified.
+     * @param semiRing Semiring which defines add and multiply
+     * @param mask (Optional) Which elements in c are computed.  Can be null.
+     */
+    public static void mult( DMatrixSparseCSC A, double[] b, double[] c, DSemiRing semiRing, @Nullable Mask mask ) {
+        if( mask != null )
+            mask.compatible(A.numRows);
+        MatrixVectorMultWithSemiRing_DSCC.mult(A,b,c,semiRing,mask);
+    }
+
+    /**
+     * Performs vector-matrix multiplication.  c = a<sup>T</sup>*B
+     *
+     * @param a (Input) Vector. Not modified.
+     * @param B (Input) Matrix. Not modified.
+     * @param c (Output) Vector. Only elements selected by the mask are modified.
+     * @param semiRing Semiring which defines add and multiply
+     * @param mask (Optional) Which elements in c are computed.  Can be null.
+     */
+    public static void mult( double[] a, DMatrixSparseCSC B, double[] c, DSemiRing semiRing, @Nullable Mask mask ) {
+        if( mask != null )
+            mask.compatible(B.numCols);
+        MatrixVectorMultWithSemiRing_DSCC.mult(a,B,c,semiRing,mask);
+    }
+
+    /**
+     * Performs matrix addition:<br>
+     * C = (&alpha;&otimes;A) &oplus; (&beta;&otimes;B)<br>
+     * The output contains the union of elements in A and B.
+     *
+     * @param alpha scalar value multiplied against A
+     * @param A Matrix
+     * @param beta scalar value multiplied against B
+     * @param B Matrix
+     * @param output (Output) Storage for results. If null a new matrix is declared.
+     * @param semiRing Semiring which defines add and multiply
+     * @param mask (Optional) Which elements in the output are computed.  Can be null.
+     * @param gw (Optional) Storage for internal workspace.  Can be null.
+     * @param gx (Optional) Storage for internal workspace.  Can be null.
+     */
+    public static DMatrixSparseCSC add( double alpha, DMatrixSparseCSC A, double beta, DMatrixSparseCSC B,
+                                        @Nullable DMatrixSparseCSC output, DSemiRing semiRing, @Nullable Mask mask,
+                                        @Nullable IGrowArray gw, @Nullable DGrowArray gx ) {
+        if( A.numRows != B.numRows || A.numCols != B.numCols )
+            throw new MatrixDimensionException("Inconsistent matrix shapes. "+stringShapes(A,B));
+        output = reshapeOrDeclare(output,A,A.numRows,A.numCols);
+        if( mask != null )
+            mask.compatible(output);
+
+        ImplCommonOpsWithSemiRing_DSCC.add(alpha,A,beta,B,output,semiRing,mask,gw,gx);
+
+        return output;
+    }
+
+    /**
+     * Performs an element-wise multiplication.<br>
+     * C[i,j] = A[i,j]&otimes;B[i,j]<br>
+     * The output contains the intersection of elements in A and B.
+     *
+     * @param A (Input) Matrix
+     * @param B (Input) Matrix
+     * @param output (Output) Storage for results. If null a new matrix is declared.
+     * @param semiRing Semiring which defines multiply
+     * @param mask (Optional) Which elements in the output are computed.  Can be null.
+     * @param gw (Optional) Storage for internal workspace.  Can be null.
+     * @param gx (Optional) Storage for internal workspace.  Can be null.
+     */
+    public static DMatrixSparseCSC elementMult( DMatrixSparseCSC A, DMatrixSparseCSC B,
+                                                @Nullable DMatrixSparseCSC output,
+                                                DSemiRing semiRing, @Nullable Mask mask,
+                                                @Nullable IGrowArray gw, @Nullable DGrowArray gx ) {
+        if( A.numRows != B.numRows || A.numCols != B.numCols )
+            throw new MatrixDimensionException("All inputs must have the same number of rows and columns. "+stringShapes(A,B));
+        output = reshapeOrDeclare(output,A,A.numRows,A.numCols);
+        if( mask != null )
+            mask.compatible(output);
+
+        ImplCommonOpsWithSemiRing_DSCC.elementMult(A,B,output,semiRing,mask,gw,gx);
+
+        return output;
+    }
+}
@@ -129,6 +129,22 @@ public class CommonOps_DSCC {
         return a_t;
     }
 
+    /**
+     * Perform matrix transpose but only updates the values. The structure of a_t must have been computed by
+     * {@link #transpose(DMatrixSparseCSC, DMatrixSparseCSC, IGrowArray)} using a matrix with the same structure as 'a'.
+     * No memory is allocated and nz_rows and col_idx in a_t are not modified.
+     *
+     * @param a Input matrix.  Not modified
+     * @param a_t Transposed matrix with a precomputed structure.  Only values are modified.
+     * @param gw (Optional) Storage for internal workspace.  Can be null.
+     */
+    public static void transposeNumeric(DMatrixSparseCSC a , DMatrixSparseCSC a_t , @Nullable IGrowArray gw ) {
+        if( a.numRows != a_t.numCols || a.numCols != a_t.numRows || a.nz_length != a_t.nz_length )
+            throw new MatrixDimensionException("Inconsistent matrix shapes. "+stringShapes(a,a_t));
+
+        ImplCommonOps_DSCC.transposeNumeric(a, a_t, gw);
+    }
+
     public static DMatrixSparseCSC mult(DMatrixSparseCSC A , DMatrixSparseCSC B , @Nullable DMatrixSparseCSC output ) {
         return mult(A,B,output,null,null);
     }
@@ -154,6 +170,26 @@ public class CommonOps_DSCC {
         return output;
     }
 
+    /**
+     * Performs matrix multiplication, C = A*B, but only updates the values in C. The structure of C
+     * must already contain every non-zero element in the product, for example, it was the output of a previous call
+     * to {@link #mult(DMatrixSparseCSC, DMatrixSparseCSC, DMatrixSparseCSC, IGrowArray, DGrowArray)} with matrices
+     * that had the same structure. No memory is allocated and nz_rows and col_idx in C are not modified.
+     *
+     * @param A (Input) Matrix. Not modified.
+     * @param B (Input) Matrix. Not modified.
+     * @param C (Output) Matrix with a precomputed structure.  Only values are modified.
+     * @param gx (Optional) Storage for internal workspace.  Can be null.
+     */
+    public static void multNumeric(DMatrixSparseCSC A , DMatrixSparseCSC B , DMatrixSparseCSC C ,
+                                   @Nullable DGrowArray gx )
+    {
+        if( A.numCols != B.numRows || A.numRows != C.numRows || B.numCols != C.numCols )
+            throw new MatrixDimensionException("Inconsistent matrix shapes. "+stringShapes(A,B,C));
+
+        ImplSparseSparseMult_DSCC.multNumeric(A,B,C,gx);
+    }
+
     public static DMatrixSparseCSC multTransA(DMatrixSparseCSC A , DMatrixSparseCSC B , @Nullable DMatrixSparseCSC output ,
                                               @Nullable IGrowArray gw, @Nullable DGrowArray gx )
     {
@@ -166,6 +202,26 @@ public class CommonOps_DSCC {
         return output;
     }
 
+    /**
+     * Performs matrix multiplication, C = A<sup>T</sup>*B, but only updates the values in C. The structure of C
+     * must already contain every element which can be non-zero. Note that
+     * {@link #multTransA(DMatrixSparseCSC, DMatrixSparseCSC, DMatrixSparseCSC, IGrowArray, DGrowArray)} does not
+     * save elements which summed to exactly zero. No memory is allocated and nz_rows and col_idx in C are not modified.
+     *
+     * @param A (Input) Matrix. Not modified.
+     * @param B (Input) Matrix. Not modified.
+     * @param C (Output) Matrix with a precomputed structure.  Only values are modified.
+     * @param gx (Optional) Storage for internal workspace.  Can be null.
+     */
+    public static void multTransANumeric(DMatrixSparseCSC A , DMatrixSparseCSC B , DMatrixSparseCSC C ,
+                                         @Nullable DGrowArray gx )
+    {
+        if( A.numRows != B.numRows || A.numCols != C.numRows || B.numCols != C.numCols )
+            throw new MatrixDimensionException("Inconsistent matrix shapes. "+stringShapes(A,B,C));
+
+        ImplSparseSparseMult_DSCC.multTransANumeric(A,B,C,gx);
+    }
+
     /**
      * Performs matrix multiplication.  C = A*B<sup>T</sup>. B needs to be sorted and will be sorted if it
      * has not already been sorted.
@@ -372,6 +428,28 @@ public class CommonOps_DSCC {
         ImplCommonOps_DSCC.add(alpha,A,beta,B,C, gw, gx);
     }
 
+    /**
+     * Performs matrix addition, C = &alpha;A + &beta;B, but only updates the values in C. The structure of C must
+     * already contain every non-zero element in A and B, for example, it was the output of a previous call to
+     * {@link #add(double, DMatrixSparseCSC, double, DMatrixSparseCSC, DMatrixSparseCSC, IGrowArray, DGrowArray)}
+     * with matrices that had the same structure. No memory is allocated and nz_rows and col_idx in C are not modified.
+     *
+     * @param alpha scalar value multiplied against A
+     * @param A Matrix
+     * @param beta scalar value multiplied against B
+     * @param B Matrix
+     * @param C Output matrix with a precomputed structure.  Only values are modified.
+     * @param gx (Optional) Storage for internal workspace.  Can be null.
+     */
+    public static void addNumeric(double alpha, DMatrixSparseCSC A, double beta, DMatrixSparseCSC B, DMatrixSparseCSC C,
+                                  @Nullable DGrowArray gx)
+    {
+        if( A.numRows != B.numRows || A.numCols != B.numCols || A.numRows != C.numRows || A.numCols != C.numCols )
+            throw new MatrixDimensionException("Inconsistent matrix shapes. "+stringShapes(A,B,C));
+
+        ImplCommonOps_DSCC.addNumeric(alpha,A,beta,B,C,gx);
+    }
+
     public static DMatrixSparseCSC identity(int length ) {
         return identity(length, length);
     }
@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.sparse.csc;
+
+import org.ejml.MatrixDimensionException;
+import org.ejml.concurrency.EjmlConcurrency;
+import org.ejml.concurrency.IntRangeConsumer;
+import org.ejml.data.DGrowArray;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.data.DMatrixSparseCSC;
+import org.ejml.data.IGrowArray;
+import org.ejml.ops.DBinaryOperator;
+import org.ejml.ops.DUnaryOperator;
+import org.ejml.sparse.csc.misc.ImplCommonOps_MT_DSCC;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.ejml.UtilEjml.stringShapes;
+
+/**
+ * <p>
+ * Concurrent versions of functions in {@link CommonOps_DSCC}. Element-wise operations split the non-zero values
+ * into equal sized blocks and column-wise operations split the columns into blocks with about the same number of
+ * non-zero elements. If the matrix is small or concurrency is turned off in {@link EjmlConcurrency} then the
+ * single threaded version is called.
+ * </p>
+ *
+ * <p>
+ * Reductions are computed in each block starting from the initial value and the partial results are then
+ * combined using the same function. For the result to match the single threaded version the function must be
+ * associative and the initial value must be its identity, e.g. 0 for addition.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class CommonOps_MT_DSCC {
+
+    // minimum number of non-zero elements each thread processes
+    private static final int MIN_BLOCK = 2000;
+
+    /**
+     * B = scalar*A.   A and B can be the same instance.
+     *
+     * @param scalar (Input) Scalar value
+     * @param A (Input) Matrix. Not modified.
+     * @param B (Output) Matrix. Modified.
+     */
+    public static void scale(double scalar, DMatrixSparseCSC A, DMatrixSparseCSC B) {
+        if( !EjmlConcurrency.useConcurrent(A.nz_length) ) {
+            CommonOps_DSCC.scale(scalar,A,B);
+            return;
+        }
+        if( A != B )
+            B.copyStructure(A);
+
+        EjmlConcurrency.loopBlocks(0,A.nz_length,MIN_BLOCK,(idx0,idx1)->{
+            for (int i = idx0; i < idx1; i++) {
+                B.nz_values[i] = A.nz_values[i]*scalar;
+            }
+        });
+    }
+
+    /**
+     * Sum of all elements
+     *
+     * @param A (Input) Matrix. Not modified.
+     * @return scalar
+     */
+    public static double elementSum( DMatrixSparseCSC A ) {
+        if( !EjmlConcurrency.useConcurrent(A.nz_length) )
+            return CommonOps_DSCC.elementSum(A);
+
+        List<double[]> partial = new ArrayList<>();
+        int blocks = EjmlConcurrency.loopBlocks(0,A.nz_length,MIN_BLOCK,partial,()->new double[1],(sum,idx0,idx1)->{
+            double total = 0;
+            for (int i = idx0; i < idx1; i++) {
+                total += A.nz_values[i];
+            }
+            sum[0] = total;
+        });
+
+        double sum = 0;
+        for (int i = 0; i < blocks; i++) {
+            sum += partial.get(i)[0];
+        }
+        return sum;
+    }
+
+    /**
+     * Performs an element-wise multiplication.<br>
+     * C[i,j] = A[i,j]*B[i,j]<br>
+     * All matrices must have the same shape.
+     *
+     * @param A (Input) Matrix.
+     * @param B (Input) Matrix
+     * @param C (Output) Matrix.
+     * @param listWork (Optional) Storage for internal workspace.  Can be null.
+     */
+    public static void elementMult( DMatrixSparseCSC A, DMatrixSparseCSC B, DMatrixSparseCSC C ,
+                                    @Nullable List<ImplCommonOps_MT_DSCC.Workspace> listWork ) {
+        if( A.numCols != B.numCols || A.numRows != B.numRows )
+            throw new MatrixDimensionException("All inputs must have the same number of rows and columns. "+stringShapes(A,B));
+        if( !EjmlConcurrency.useConcurrent(A.nz_length+B.nz_length) ) {
+            CommonOps_DSCC.elementMult(A,B,C,null,null);
+            return;
+        }
+        C.reshape(A.numRows,A.numCols);
+        if( listWork == null )
+            listWork = new ArrayList<>();
+
+        ImplCommonOps_MT_DSCC.elementMult(A,B,C,listWork);
+    }
+
+    /**
+     * Finds the maximum abs in each column of A and stores it into values
+     * @param A (Input) Matrix
+     * @param values (Output) storage for column max abs
+     */
+    public static void columnMaxAbs( DMatrixSparseCSC A , double []values ) {
+        if( values.length < A.numCols )
+            throw new IllegalArgumentException("Array is too small. "+values.length+" < "+A.numCols);
+        if( !EjmlConcurrency.useConcurrent(A.nz_length) ) {
+            CommonOps_DSCC.columnMaxAbs(A,values);
+            return;
+        }
+
+        loopColumnBlocks(A,(col0,col1)->{
+            for (int col = col0; col < col1; col++) {
+                int idx1 = A.col_idx[col+1];
+                double maxabs = 0;
+                for (int i = A.col_idx[col]; i < idx1; i++) {
+                    double v = Math.abs(A.nz_values[i]);
+                    if( v > maxabs )
+                        maxabs = v;
+                }
+                values[col] = maxabs;
+            }
+        });
+    }
+
+    /**
+     * Copies all elements from input into output which are &gt; tol.
+     *
+     * @param input (Input) input matrix. Not modified.
+     * @param output (Output) Output matrix. Modified and shaped to match input. Must not be input.
+     * @param tol Tolerance for defining zero
+     * @param gw (Optional) Storage for internal workspace.  Can be null.
+     */
+    public static void removeZeros( DMatrixSparseCSC input , DMatrixSparseCSC output , double tol ,
+                                    @Nullable IGrowArray gw ) {
+        if( input == output )
+            throw new IllegalArgumentException("input and output must be different instances");
+        if( !EjmlConcurrency.useConcurrent(input.nz_length) ) {
+            CommonOps_DSCC.removeZeros(input,output,tol);
+            return;
+        }
+        if( gw == null )
+            gw = new IGrowArray();
+
+        ImplCommonOps_MT_DSCC.removeZeros(input,output,tol,gw);
+    }
+
+    /**
+     * This applies a given unary function on every value stored in the matrix
+     *
+     * B = f(A).   A and B can be the same instance.
+     *
+     * @param input (Input) input matrix. Not modified
+     * @param func Unary function accepting a double
+     * @param output (Output) Matrix. Modified.
+     * @return The output matrix
+     */
+    public static DMatrixSparseCSC apply(DMatrixSparseCSC input, DUnaryOperator func, @Nullable DMatrixSparseCSC output) {
+        if (output == null) {
+            output = input.createLike();
+        }
+        if (input != output) {
+            output.copyStructure(input);
+        }
+        if( !EjmlConcurrency.useConcurrent(input.nz_length) ) {
+            return CommonOps_DSCC.apply(input,func,output);
+        }
+
+        final DMatrixSparseCSC _output = output;
+        EjmlConcurrency.loopBlocks(0,input.nz_length,MIN_BLOCK,(idx0,idx1)->{
+            for (int i = idx0; i < idx1; i++) {
+                _output.nz_values[i] = func.apply(input.nz_values[i]);
+            }
+        });
+
+        return output;
+    }
+
+    public static DMatrixSparseCSC apply(DMatrixSparseCSC input, DUnaryOperator func) {
+        return apply(input, func, input);
+    }
+
+    /**
+     * This accumulates the matrix values to a scalar value.
+     *
+     * @param input (Input) input matrix. Not modified
+     * @param initValue initial value for accumulator
+     * @param func Associative accumulator function defining "+" for accumulator +=  cellValue
+     * @return accumulated value
+     */
+    public static double reduceScalar(DMatrixSparseCSC input, double initValue, DBinaryOperator func) {
+        if( !EjmlConcurrency.useConcurrent(input.nz_length) )
+            return CommonOps_DSCC.reduceScalar(input,initValue,func);
+
+        List<double[]> partial = new ArrayList<>();
+        int blocks = EjmlConcurrency.loopBlocks(0,input.nz_length,MIN_BLOCK,partial,()->new double[1],(acc,idx0,idx1)->{
+            // only the first block starts from initValue so that it's applied once. Blocks are never empty
+            double result = idx0 == 0 ? func.apply(initValue, input.nz_values[0]) : input.nz_values[idx0];
+            for (int i = idx0+1; i < idx1; i++) {
+                result = func.apply(result, input.nz_values[i]);
+            }
+            acc[0] = result;
+        });
+
+        if( blocks == 0 )
+            return initValue;
+        double result = partial.get(0)[0];
+        for (int i = 1; i < blocks; i++) {
+            result = func.apply(result, partial.get(i)[0]);
+        }
+        return result;
+    }
+
+    public static double reduceScalar(DMatrixSparseCSC input, DBinaryOperator func) {
+        return reduceScalar(input, 0, func);
+    }
+
+    /**
+     * This accumulates the values per column to a scalar value
+     *
+     * @param input     (Input) input matrix. Not modified
+     * @param initValue initial value for accumulator
+     * @param func      Accumulator function defining "+" for accumulator +=  cellValue
+     * @param output    output (Output) Vector, where result can be stored in
+     * @return a column-vector, where v[i] == values of column i reduced to scalar based on `func`
+     */
+    public static DMatrixRMaj reduceColumnWise(DMatrixSparseCSC input, double initValue, DBinaryOperator func,
+                                               @Nullable DMatrixRMaj output) {
+        if( !EjmlConcurrency.useConcurrent(input.nz_length) )
+            return CommonOps_DSCC.reduceColumnWise(input,initValue,func,output);
+
+        if (output == null) {
+            output = new DMatrixRMaj(1, input.numCols);
+        } else {
+            output.reshape(1, input.numCols);
+        }
+
+        final double[] data = output.data;
+        loopColumnBlocks(input,(col0,col1)->{
+            for (int col = col0; col < col1; col++) {
+                int end = input.col_idx[col + 1];
+                double acc = initValue;
+                for (int i = input.col_idx[col]; i < end; i++) {
+                    acc = func.apply(acc, input.nz_values[i]);
+                }
+                data[col] = acc;
+            }
+        });
+
+        return output;
+    }
+
+    /**
+     * This accumulates the values per row to a scalar value. Each block of columns computes a partial result
+     * for every row and these are combined with func.
+     *
+     * @param input     (Input) input matrix. Not modified
+     * @param initValue initial value for accumulator
+     * @param func      Associative accumulator function defining "+" for accumulator += cellValue
+     * @param output    output (Output) Vector, where result can be stored in
+     * @param listWork  (Optional) Storage for partial results.  Can be null.
+     * @return a row-vector, where v[i] == values of row i reduced to scalar based on `func`
+     */
+    public static DMatrixRMaj reduceRowWise(DMatrixSparseCSC input, double initValue, DBinaryOperator func,
+                                            @Nullable DMatrixRMaj output, @Nullable List<DGrowArray> listWork ) {
+        if( !EjmlConcurrency.useConcurrent(input.nz_length) )
+            return CommonOps_DSCC.reduceRowWise(input,initValue,func,output);
+
+        if (output == null) {
+            output = new DMatrixRMaj(1, input.numRows);
+        } else {
+            output.reshape(1, input.numRows);
+        }
+        if( listWork == null )
+            listWork = new ArrayList<>();
+
+        final int numBlocks = Math.max(1,ImplCommonOps_MT_DSCC.numberOfColumnBlocks(input));
+        final int[] blocks = new int[numBlocks+1];
+        ImplCommonOps_MT_DSCC.balanceColumns(input,numBlocks,blocks);
+        while( listWork.size() < numBlocks )
+            listWork.add(new DGrowArray());
+
+        // Only the first block starts from initValue so that it's applied once. In the other blocks a row starts
+        // from its first element. The second half of each work array marks which rows a block has seen.
+        final int N = input.numRows;
+        final List<DGrowArray> _listWork = listWork;
+        EjmlConcurrency.loopFor(0,numBlocks,block->{
+            DGrowArray work = _listWork.get(block);
+            work.reshape(2*N);
+            double[] partial = work.data;
+            Arrays.fill(partial,0,N,initValue);
+            Arrays.fill(partial,N,2*N,block == 0 ? 1 : 0);
+
+            for (int col = blocks[block]; col < blocks[block+1]; col++) {
+                int end = input.col_idx[col + 1];
+                for (int i = input.col_idx[col]; i < end; i++) {
+                    int row = input.nz_rows[i];
+                    if( partial[N+row] == 0 ) {
+                        partial[N+row] = 1;
+                        partial[row] = input.nz_values[i];
+                    } else {
+                        partial[row] = func.apply(partial[row], input.nz_values[i]);
+                    }
+                }
+            }
+        });
+
+        // combine the partial results
+        final double[] data = output.data;
+        System.arraycopy(listWork.get(0).data,0,data,0,N);
+        EjmlConcurrency.loopBlocks(0,N,MIN_BLOCK,(row0,row1)->{
+            for (int block = 1; block < numBlocks; block++) {
+                double[] partial = _listWork.get(block).data;
+                for (int row = row0; row < row1; row++) {
+                    if( partial[N+row] != 0 )
+                        data[row] = func.apply(data[row], partial[row]);
+                }
+            }
+        });
+
+        return output;
+    }
+
+    /**
+     * Splits the columns into blocks with about the same number of non-zero elements and processes them concurrently
+     */
+    private static void loopColumnBlocks( DMatrixSparseCSC A , IntRangeConsumer consumer ) {
+        final int numBlocks = Math.max(1,ImplCommonOps_MT_DSCC.numberOfColumnBlocks(A));
+        final int[] blocks = new int[numBlocks+1];
+        ImplCommonOps_MT_DSCC.balanceColumns(A,numBlocks,blocks);
+
+        EjmlConcurrency.loopFor(0,numBlocks,block->consumer.accept(blocks[block],blocks[block+1]));
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.sparse.csc.misc;
+
+import org.ejml.data.DGrowArray;
+import org.ejml.data.DMatrixSparseCSC;
+import org.ejml.data.IGrowArray;
+import org.ejml.masks.Mask;
+import org.ejml.ops.DBinaryOperator;
+import org.ejml.ops.DSemiRing;
+import org.ejml.ops.DSemiRings;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+import static org.ejml.UtilEjml.adjust;
+
+/**
+ * Implementation of element-wise operations which use a {@link DSemiRing}.
+ * Not recommended for direct use. Instead use {@link org.ejml.sparse.csc.CommonOpsWithSemiRing_DSCC}.
+ *
+ * @author Peter Abeles
+ */
+public class ImplCommonOpsWithSemiRing_DSCC {
+
+    /**
+     * Performs matrix addition:<br>
+     * C = (&alpha;&otimes;A) &oplus; (&beta;&otimes;B)
+     *
+     * @param alpha scalar value multiplied against A
+     * @param A Matrix
+     * @param beta scalar value multiplied against B
+     * @param B Matrix
+     * @param C Output matrix.
+     * @param semiRing Semiring which defines add and multiply
+     * @param mask (Optional) Which elements in C are computed.  Can be null.
+     * @param gw (Optional) Storage for internal workspace.  Can be null.
+     * @param gx (Optional) Storage for internal workspace.  Can be null.
+     */
+    public static void add( double alpha, DMatrixSparseCSC A, double beta, DMatrixSparseCSC B, DMatrixSparseCSC C,
+                            DSemiRing semiRing, @Nullable Mask mask,
+                            @Nullable IGrowArray gw, @Nullable DGrowArray gx ) {
+        if( mask == null && semiRing == DSemiRings.PLUS_TIMES ) {
+            ImplCommonOps_DSCC.add(alpha,A,beta,B,C,gw,gx);
+            return;
+        }
+
+        double []x = adjust(gx,A.numRows);
+        int []w = adjust(gw,A.numRows,A.numRows);
+        DBinaryOperator add = semiRing.add.func;
+        DBinaryOperator mult = semiRing.mult.func;
+
+        C.growMaxLength(A.nz_length+B.nz_length,false);
+        C.indicesSorted = false;
+        C.nz_length = 0;
+        C.col_idx[0] = 0;
+
+        for (int col = 0; col < A.numCols; col++) {
+            int mark = col+1;
+            C.col_idx[mark] = C.nz_length;
+            if( mask != null )
+                mask.setIndexColumn(col);
+
+            int idxA1 = A.col_idx[col+1];
+            for (int i = A.col_idx[col]; i < idxA1; i++) {
+                int row = A.nz_rows[i];
+                if( mask != null && !mask.isSet(row,col) )
+                    continue;
+                addRow(C,row,mark,w);
+                x[row] = mult.apply(alpha,A.nz_values[i]);
+            }
+
+            int idxB1 = B.col_idx[col+1];
+            for (int i = B.col_idx[col]; i < idxB1; i++) {
+                int row = B.nz_rows[i];
+                if( mask != null && !mask.isSet(row,col) )
+                    continue;
+                double value = mult.apply(beta,B.nz_values[i]);
+                if( w[row] < mark ) {
+                    addRow(C,row,mark,w);
+                    x[row] = value;
+                } else {
+                    x[row] = add.apply(x[row],value);
+                }
+            }
+
+            for (int i = C.col_idx[col]; i < C.nz_length; i++) {
+                C.nz_values[i] = x[C.nz_rows[i]];
+            }
+        }
+    }
+
+    /**
+     * Performs an element-wise multiplication.<br>
+     * C[i,j] = A[i,j]&otimes;B[i,j]
+     *
+     * @param A (Input) Matrix
+     * @param B (Input) Matrix
+     * @param C (Output) Matrix.
+     * @param semiRing Semiring which defines multiply
+     * @param mask (Optional) Which elements in C are computed.  Can be null.
+     * @param gw (Optional) Storage for internal workspace.  Can be null.
+     * @param gx (Optional) Storage for internal workspace.  Can be null.
+     */
+    public static void elementMult( DMatrixSparseCSC A, DMatrixSparseCSC B, DMatrixSparseCSC C,
+                                    DSemiRing semiRing, @Nullable Mask mask,
+                                    @Nullable IGrowArray gw, @Nullable DGrowArray gx ) {
+        if( mask == null && semiRing == DSemiRings.PLUS_TIMES ) {
+            ImplCommonOps_DSCC.elementMult(A,B,C,gw,gx);
+            return;
+        }
+
+        double []x = adjust(gx,A.numRows);
+        int []w = adjust(gw,A.numRows);
+        Arrays.fill(w,0,A.numRows,-1);
+        DBinaryOperator mult = semiRing.mult.func;
+
+        C.growMaxLength(Math.min(A.nz_length,B.nz_length),false);
+        C.indicesSorted = B.indicesSorted;
+        C.nz_length = 0;
+        C.col_idx[0] = 0;
+
+        for (int col = 0; col < A.numCols; col++) {
+            if( mask != null )
+                mask.setIndexColumn(col);
+
+            int idxA1 = A.col_idx[col+1];
+            for (int i = A.col_idx[col]; i < idxA1; i++) {
+                int row = A.nz_rows[i];
+                w[row] = col;
+                x[row] = A.nz_values[i];
+            }
+
+            int idxB1 = B.col_idx[col+1];
+            for (int i = B.col_idx[col]; i < idxB1; i++) {
+                int row = B.nz_rows[i];
+                if( w[row] != col || (mask != null && !mask.isSet(row,col)) )
+                    continue;
+                if( C.nz_length >= C.nz_rows.length )
+                    C.growMaxLength(C.nz_length*2+1,true);
+                C.nz_values[C.nz_length] = mult.apply(x[row],B.nz_values[i]);
+                C.nz_rows[C.nz_length++] = row;
+            }
+            C.col_idx[col+1] = C.nz_length;
+        }
+    }
+
+    private static void addRow( DMatrixSparseCSC C, int row, int mark, int[] w ) {
+        if( C.nz_length >= C.nz_rows.length ) {
+            C.growMaxLength(C.nz_length*2+1,true);
+        }
+        w[row] = mark;
+        C.nz_rows[C.nz_length] = row;
+        C.col_idx[mark] = ++C.nz_length;
+    }
+}
@@ -79,6 +79,29 @@ public class ImplCommonOps_DSCC {
         }
     }
 
+    /**
+     * Performs a matrix transpose where the structure of C was previously computed by
+     * {@link #transpose(DMatrixSparseCSC, DMatrixSparseCSC, IGrowArray)} using a matrix with the same structure
+     * as A. Only the values in C are modified.
+     *
+     * @param A Original matrix.  Not modified.
+     * @param C Transposed matrix with a precomputed structure. Only nz_values is modified.
+     * @param gw (Optional) Storage for internal workspace.  Can be null.
+     */
+    public static void transposeNumeric(DMatrixSparseCSC A , DMatrixSparseCSC C , @Nullable IGrowArray gw ) {
+        int []work = adjust(gw,A.numRows);
+        System.arraycopy(C.col_idx,0,work,0,C.numCols);
+
+        int idx0 = A.col_idx[0];
+        for (int j = 1; j <= A.numCols; j++) {
+            int idx1 = A.col_idx[j];
+            for (int i = idx0; i < idx1; i++) {
+                C.nz_values[work[A.nz_rows[i]]++] = A.nz_values[i];
+            }
+            idx0 = idx1;
+        }
+    }
+
     /**
      * Performs matrix addition:<br>
      * C = &alpha;A + &beta;B
@@ -117,6 +140,47 @@ public class ImplCommonOps_DSCC {
         C.col_idx[A.numCols] = C.nz_length;
     }
 
+    /**
+     * Performs matrix addition:<br>
+     * C = &alpha;A + &beta;B<br>
+     * Only the values in C are modified and its structure must already contain every non-zero element in A and B,
+     * e.g. it was the output of a previous call to add.
+     *
+     * @param alpha scalar value multiplied against A
+     * @param A Matrix
+     * @param beta scalar value multiplied against B
+     * @param B Matrix
+     * @param C Matrix with a precomputed structure. Only nz_values is modified.
+     * @param gx (Optional) Storage for internal workspace.  Can be null.
+     */
+    public static void addNumeric(double alpha, DMatrixSparseCSC A, double beta, DMatrixSparseCSC B, DMatrixSparseCSC C,
+                                  @Nullable DGrowArray gx)
+    {
+        double []x = adjust(gx,A.numRows);
+
+        for (int col = 0; col < A.numCols; col++) {
+            int idxC0 = C.col_idx[col];
+            int idxC1 = C.col_idx[col+1];
+
+            for (int i = idxC0; i < idxC1; i++) {
+                x[C.nz_rows[i]] = 0;
+            }
+
+            int idxA1 = A.col_idx[col+1];
+            for (int i = A.col_idx[col]; i < idxA1; i++) {
+                x[A.nz_rows[i]] += alpha*A.nz_values[i];
+            }
+            int idxB1 = B.col_idx[col+1];
+            for (int i = B.col_idx[col]; i < idxB1; i++) {
+                x[B.nz_rows[i]] += beta*B.nz_values[i];
+            }
+
+            for (int i = idxC0; i < idxC1; i++) {
+                C.nz_values[i] = x[C.nz_rows[i]];
+            }
+        }
+    }
+
     /**
      * Adds the results of adding a column in A and B as a new column in C.<br>
      * C(:,end+1) = &alpha;*A(:,colA) + &beta;*B(:,colB)
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.sparse.csc.misc;
+
+import org.ejml.concurrency.EjmlConcurrency;
+import org.ejml.data.DGrowArray;
+import org.ejml.data.DMatrixSparseCSC;
+import org.ejml.data.IGrowArray;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.ejml.UtilEjml.adjust;
+
+/**
+ * Concurrent implementations of functions in {@link ImplCommonOps_DSCC}. Work is split into blocks of columns
+ * which have about the same number of non-zero elements.
+ *
+ * @author Peter Abeles
+ */
+public class ImplCommonOps_MT_DSCC {
+
+    /**
+     * Splits the columns into blocks which have approximately the same number of non-zero elements.
+     *
+     * @param A (Input) Matrix
+     * @param numBlocks Number of blocks
+     * @param blocks (Output) First column in each block. Length is numBlocks+1 and the last element is numCols.
+     */
+    public static void balanceColumns( DMatrixSparseCSC A , int numBlocks , int[] blocks ) {
+        blocks[0] = 0;
+        blocks[numBlocks] = A.numCols;
+        for (int b = 1; b < numBlocks; b++) {
+            int target = (int)((long)A.nz_length*b/numBlocks);
+            // first column which starts at or after the target
+            int col = Arrays.binarySearch(A.col_idx,0,A.numCols+1,target);
+            if( col < 0 ) {
+                col = -col-1;
+            } else {
+                // skip over empty columns
+                while( col > 0 && A.col_idx[col-1] == target )
+                    col--;
+            }
+            blocks[b] = Math.max(blocks[b-1],Math.min(col,A.numCols));
+        }
+    }
+
+    /**
+     * Number of column blocks which should be used for this matrix
+     */
+    public static int numberOfColumnBlocks( DMatrixSparseCSC A ) {
+        return Math.min(A.numCols,EjmlConcurrency.computeNumberOfBlocks(0,A.nz_length,1000));
+    }
+
+    /**
+     * Performs an element-wise multiplication.<br>
+     * C[i,j] = A[i,j]*B[i,j]<br>
+     * All matrices must have the same shape.
+     *
+     * @param A (Input) Matrix.
+     * @param B (Input) Matrix
+     * @param C (Output) Matrix.
+     * @param listWork Storage for internal workspace. One element is used for each block.
+     */
+    public static void elementMult( DMatrixSparseCSC A, DMatrixSparseCSC B, DMatrixSparseCSC C,
+                                    List<Workspace> listWork )
+    {
+        final int numBlocks = Math.max(1,numberOfColumnBlocks(A));
+        final int[] blocks = new int[numBlocks+1];
+        balanceColumns(A,numBlocks,blocks);
+        while( listWork.size() < numBlocks )
+            listWork.add(new Workspace());
+
+        // Each block computes its columns inside of its own workspace
+        EjmlConcurrency.loopFor(0,numBlocks,block->{
+            Workspace work = listWork.get(block);
+            int col0 = blocks[block], col1 = blocks[block+1];
+
+            double []x = adjust(work.x,A.numRows);
+            int []w = adjust(work.w,A.numRows);
+            Arrays.fill(w,0,A.numRows,-1);
+            int[] counts = adjust(work.counts,col1-col0);
+
+            int length = 0;
+            for (int col = col0; col < col1; col++) {
+                int idxA0 = A.col_idx[col], idxA1 = A.col_idx[col+1];
+                int idxB0 = B.col_idx[col], idxB1 = B.col_idx[col+1];
+
+                int maxInRow = Math.min(idxA1-idxA0,idxB1-idxB0);
+                if( length+maxInRow > work.rows.data.length ) {
+                    int desired = (length+maxInRow)*2;
+                    work.rows.growInternal(desired-work.rows.data.length);
+                    work.values.growInternal(desired-work.values.data.length);
+                }
+
+                for (int i = idxA0; i < idxA1; i++) {
+                    int row = A.nz_rows[i];
+                    w[row] = col;
+                    x[row] = A.nz_values[i];
+                }
+
+                int before = length;
+                for (int i = idxB0; i < idxB1; i++) {
+                    int row = B.nz_rows[i];
+                    if( w[row] == col ) {
+                        work.values.data[length] = x[row]*B.nz_values[i];
+                        work.rows.data[length++] = row;
+                    }
+                }
+                counts[col-col0] = length-before;
+            }
+            work.length = length;
+        });
+
+        // Combine the results from each block
+        int total = 0;
+        for (int block = 0; block < numBlocks; block++) {
+            total += listWork.get(block).length;
+        }
+        C.growMaxLength(total,false);
+        C.nz_length = total;
+        C.indicesSorted = A.indicesSorted && B.indicesSorted;
+
+        C.col_idx[0] = 0;
+        for (int block = 0; block < numBlocks; block++) {
+            int[] counts = listWork.get(block).counts.data;
+            for (int col = blocks[block]; col < blocks[block+1]; col++) {
+                C.col_idx[col+1] = C.col_idx[col] + counts[col-blocks[block]];
+            }
+        }
+
+        EjmlConcurrency.loopFor(0,numBlocks,block->{
+            Workspace work = listWork.get(block);
+            int offset = C.col_idx[blocks[block]];
+            System.arraycopy(work.rows.data,0,C.nz_rows,offset,work.length);
+            System.arraycopy(work.values.data,0,C.nz_values,offset,work.length);
+        });
+    }
+
+    /**
+     * Copies all elements from input into output which are &gt; tol.
+     *
+     * @param input (Input) input matrix. Not modified.
+     * @param output (Output) Output matrix. Modified and shaped to match input.
+     * @param tol Tolerance for defining zero
+     * @param gw Storage for internal workspace.
+     */
+    public static void removeZeros( DMatrixSparseCSC input , DMatrixSparseCSC output , double tol , IGrowArray gw ) {
+        final int numBlocks = Math.max(1,numberOfColumnBlocks(input));
+        final int[] blocks = new int[numBlocks+1];
+        balanceColumns(input,numBlocks,blocks);
+
+        // count the number of elements which are kept in each column
+        final int[] counts = adjust(gw,input.numCols);
+        EjmlConcurrency.loopFor(0,numBlocks,block->{
+            for (int col = blocks[block]; col < blocks[block+1]; col++) {
+                int count = 0;
+                for (int i = input.col_idx[col]; i < input.col_idx[col+1]; i++) {
+                    if( Math.abs(input.nz_values[i]) > tol )
+                        count++;
+                }
+                counts[col] = count;
+            }
+        });
+
+        output.reshape(input.numRows, input.numCols, 0);
+        output.histogramToStructure(counts);
+        output.indicesSorted = input.indicesSorted;
+
+        EjmlConcurrency.loopFor(0,numBlocks,block->{
+            for (int col = blocks[block]; col < blocks[block+1]; col++) {
+                int index = output.col_idx[col];
+                for (int i = input.col_idx[col]; i < input.col_idx[col+1]; i++) {
+                    double val = input.nz_values[i];
+                    if( Math.abs(val) > tol ) {
+                        output.nz_rows[index] = input.nz_rows[i];
+                        output.nz_values[index++] = val;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Workspace for a single block of columns
+     */
+    public static class Workspace {
+        // dense workspace
+        public final DGrowArray x = new DGrowArray();
+        public final IGrowArray w = new IGrowArray();
+        // Elements computed in this block
+        public final IGrowArray rows = new IGrowArray();
+        public final DGrowArray values = new DGrowArray();
+        // number of elements in each column
+        public final IGrowArray counts = new IGrowArray();
+        public int length;
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.sparse.csc.misc;
+
+import org.ejml.concurrency.EjmlConcurrency;
+import org.ejml.data.DGrowArray;
+import org.ejml.data.DMatrixSparseCSC;
+import org.ejml.data.DMatrixSparseTriplet;
+import org.ejml.data.IGrowArray;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * Assembles a {@link DMatrixSparseCSC} from a large number of entries which are added concurrently. Each thread
+ * writes into its own {@link DMatrixSparseTriplet} buffer so no synchronization is needed while filling. The
+ * conversion into CSC format is a parallel counting sort which sums duplicate entries and outputs sorted row
+ * indices.
+ * </p>
+ *
+ * <p>
+ * Assembly is split into a symbolic step, which computes the structure of the output matrix and where each
+ * buffered entry goes, and a numeric step which only moves values. If the structure is locked then the
+ * symbolic step is skipped on later calls. This "re-assembly" mode requires that each buffer receives the
+ * same entries in the same order, e.g. when assembling the same mesh repeatedly with new values. Thread local
+ * buffers depend on which thread processes which entries so use {@link #createBuffer()} to
+ * assign work to buffers deterministically when re-assembling.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class TripletAssembler_MT_DSCC {
+    // shape of the assembled matrix
+    private final int numRows, numCols;
+
+    // buffers which entries are written into
+    private final List<DMatrixSparseTriplet> buffers = new ArrayList<>();
+    private final ThreadLocal<DMatrixSparseTriplet> localBuffer = ThreadLocal.withInitial(this::createBuffer);
+
+    // for each buffer, the location of each entry inside of 'work'
+    private final List<IGrowArray> targets = new ArrayList<>();
+    // number of entries in each buffer when the structure was computed
+    private int[] bufferLengths = new int[0];
+    private int structureBuffers;
+
+    // Entries sorted by their location in the output matrix
+    private final DGrowArray work = new DGrowArray();
+    // For each non-zero element in the output, the first entry in work which is summed into it
+    private final IGrowArray gatherStart = new IGrowArray();
+
+    // workspace for symbolic step
+    private final IGrowArray histogram = new IGrowArray();
+    private final IGrowArray colStart = new IGrowArray();
+    private final IGrowArray entryRows = new IGrowArray();
+    private final IGrowArray entryOrder = new IGrowArray();
+    private final List<ColumnWorkspace> columnWork = new ArrayList<>();
+
+    // true if the structure has been computed
+    private boolean structureValid = false;
+    // if true then the structure is locked and won't be computed again
+    private boolean locked = false;
+
+    public TripletAssembler_MT_DSCC( int numRows , int numCols ) {
+        this.numRows = numRows;
+        this.numCols = numCols;
+    }
+
+    /**
+     * Creates a new buffer which entries can be added to. Each buffer must only be written to by a single
+     * thread at a time.
+     */
+    public synchronized DMatrixSparseTriplet createBuffer() {
+        DMatrixSparseTriplet buffer = new DMatrixSparseTriplet(numRows,numCols,0);
+        buffers.add(buffer);
+        targets.add(new IGrowArray());
+        return buffer;
+    }
+
+    /**
+     * Returns the buffer which belongs to the calling thread. It's created the first time it's requested.
+     */
+    public DMatrixSparseTriplet getLocalBuffer() {
+        return localBuffer.get();
+    }
+
+    /**
+     * Adds an entry to the calling thread's buffer. Duplicate entries are summed together.
+     */
+    public void addItem( int row , int col , double value ) {
+        localBuffer.get().addItem(row,col,value);
+    }
+
+    /**
+     * Removes all entries from the buffers. The buffers and structure are not discarded.
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < buffers.size(); i++) {
+            buffers.get(i).reset();
+        }
+    }
+
+    /**
+     * Converts all the entries in the buffers into a CSC matrix. Duplicates are summed and the row indices
+     * are sorted. If the structure is locked and has already been computed then only the values are updated.
+     *
+     * @param dst (Output) Storage for the assembled matrix. If null a new matrix is declared.
+     * @return The assembled matrix
+     */
+    public synchronized DMatrixSparseCSC assemble( @Nullable DMatrixSparseCSC dst ) {
+        if( dst == null )
+            dst = new DMatrixSparseCSC(numRows,numCols,0);
+        if( !locked || !structureValid )
+            performSymbolic(dst);
+        performNumeric(dst);
+        return dst;
+    }
+
+    /**
+     * Updates the values in a matrix which was previously assembled without changing its structure. Each buffer
+     * must have the same entries in the same order as when the structure was computed.
+     *
+     * @param dst (Output) Matrix which was previously returned by {@link #assemble}
+     */
+    public synchronized void reassemble( DMatrixSparseCSC dst ) {
+        if( !structureValid )
+            throw new IllegalArgumentException("The structure has not been computed yet");
+        performNumeric(dst);
+    }
+
+    /**
+     * Computes the structure of the output matrix and where each entry in the buffers is written to.
+     */
+    public synchronized void performSymbolic( DMatrixSparseCSC dst ) {
+        final int numBuffers = structureBuffers = buffers.size();
+        if( bufferLengths.length < numBuffers )
+            bufferLengths = new int[numBuffers];
+
+        int total = 0;
+        for (int i = 0; i < numBuffers; i++) {
+            bufferLengths[i] = buffers.get(i).nz_length;
+            total += bufferLengths[i];
+        }
+
+        //----- Count the number of entries in each column for each buffer
+        // At least numCols long since it's reused to store the number of unique rows in each column
+        histogram.reshape(Math.max(1,numBuffers)*numCols);
+        final int[] hist = histogram.data;
+        EjmlConcurrency.loopFor(0,numBuffers,b->{
+            int[] rowcol = buffers.get(b).nz_rowcol.data;
+            int offset = b*numCols;
+            Arrays.fill(hist,offset,offset+numCols,0);
+            for (int i = 0; i < bufferLengths[b]; i++) {
+                hist[offset+rowcol[i*2+1]]++;
+            }
+        });
+
+        //----- Where each buffer starts writing inside of each column
+        colStart.reshape(numCols+1);
+        final int[] start = colStart.data;
+        int index = 0;
+        for (int col = 0; col < numCols; col++) {
+            start[col] = index;
+            for (int b = 0; b < numBuffers; b++) {
+                int count = hist[b*numCols+col];
+                hist[b*numCols+col] = index;
+                index += count;
+            }
+        }
+        start[numCols] = index;
+
+        //----- Counting sort by column. Each buffer writes into its own part of each column
+        entryRows.reshape(total);
+        final int[] rows = entryRows.data;
+        EjmlConcurrency.loopFor(0,numBuffers,b->{
+            int[] rowcol = buffers.get(b).nz_rowcol.data;
+            int offset = b*numCols;
+            IGrowArray targetArray = targets.get(b);
+            targetArray.reshape(bufferLengths[b]);
+            int[] target = targetArray.data;
+            for (int i = 0; i < bufferLengths[b]; i++) {
+                int location = hist[offset+rowcol[i*2+1]]++;
+                rows[location] = rowcol[i*2];
+                target[i] = location;
+            }
+        });
+
+        //----- Find the unique rows in each column
+        // the histogram is no longer needed and is used to store the number of unique rows in each column
+        final int[] uniqueCount = hist;
+        EjmlConcurrency.loopBlocks(0,numCols,1,columnWork,ColumnWorkspace::new,(w,col0,col1)->{
+            int[] mark = w.reset(numRows);
+            for (int col = col0; col < col1; col++) {
+                int count = 0;
+                for (int i = start[col]; i < start[col+1]; i++) {
+                    if( mark[rows[i]] != col ) {
+                        mark[rows[i]] = col;
+                        count++;
+                    }
+                }
+                uniqueCount[col] = count;
+            }
+        });
+
+        dst.reshape(numRows,numCols,0);
+        dst.histogramToStructure(uniqueCount);
+        dst.indicesSorted = true;
+
+        //----- Sort the rows in each column and figure out where each entry gets summed into
+        gatherStart.reshape(dst.nz_length+1);
+        entryOrder.reshape(total);
+        final int[] gather = gatherStart.data;
+        final int[] order = entryOrder.data;
+        final DMatrixSparseCSC output = dst;
+        EjmlConcurrency.loopBlocks(0,numCols,1,columnWork,ColumnWorkspace::new,(w,col0,col1)->{
+            int[] mark = w.reset(numRows);
+            int[] location = w.location;
+            for (int col = col0; col < col1; col++) {
+                int idx0 = output.col_idx[col];
+                int idx1 = output.col_idx[col+1];
+
+                int k = idx0;
+                for (int i = start[col]; i < start[col+1]; i++) {
+                    if( mark[rows[i]] != col ) {
+                        mark[rows[i]] = col;
+                        output.nz_rows[k++] = rows[i];
+                    }
+                }
+                Arrays.sort(output.nz_rows,idx0,idx1);
+
+                // count the number of entries summed into each element
+                for (k = idx0; k < idx1; k++) {
+                    location[output.nz_rows[k]] = k;
+                    gather[k] = 0;
+                }
+                for (int i = start[col]; i < start[col+1]; i++) {
+                    gather[location[rows[i]]]++;
+                }
+
+                // convert counts into where each element's entries start
+                int sum = start[col];
+                for (k = idx0; k < idx1; k++) {
+                    int count = gather[k];
+                    gather[k] = sum;
+                    location[output.nz_rows[k]] = sum;
+                    sum += count;
+                }
+
+                // order entries so that all the entries in an element are next to each other
+                for (int i = start[col]; i < start[col+1]; i++) {
+                    order[i] = location[rows[i]]++;
+                }
+            }
+        });
+        gather[dst.nz_length] = total;
+
+        //----- Compose the two steps so that each entry is written directly into its final location
+        EjmlConcurrency.loopFor(0,numBuffers,b->{
+            int[] target = targets.get(b).data;
+            for (int i = 0; i < bufferLengths[b]; i++) {
+                target[i] = order[target[i]];
+            }
+        });
+
+        structureValid = true;
+    }
+
+    /**
+     * Copies the values from the buffers into the output matrix using the previously computed structure.
+     */
+    private void performNumeric( DMatrixSparseCSC dst ) {
+        final int numBuffers = structureBuffers;
+        if( dst.nz_length+1 != gatherStart.length || dst.numRows != numRows || dst.numCols != numCols )
+            throw new IllegalArgumentException("Matrix doesn't match the structure");
+        for (int b = 0; b < buffers.size(); b++) {
+            // buffers which were created after the structure was computed must be empty
+            int expected = b < numBuffers ? bufferLengths[b] : 0;
+            if( buffers.get(b).nz_length != expected )
+                throw new IllegalArgumentException("Buffer "+b+" has a different number of entries than the structure");
+        }
+
+        work.reshape(gatherStart.data[dst.nz_length]);
+        final double[] values = work.data;
+        EjmlConcurrency.loopFor(0,numBuffers,b->{
+            double[] src = buffers.get(b).nz_value.data;
+            int[] target = targets.get(b).data;
+            for (int i = 0; i < bufferLengths[b]; i++) {
+                values[target[i]] = src[i];
+            }
+        });
+
+        final int[] gather = gatherStart.data;
+        final double[] nz_values = dst.nz_values;
+        EjmlConcurrency.loopBlocks(0,dst.nz_length,1000,(idx0,idx1)->{
+            for (int k = idx0; k < idx1; k++) {
+                double sum = 0;
+                for (int i = gather[k]; i < gather[k+1]; i++) {
+                    sum += values[i];
+                }
+                nz_values[k] = sum;
+            }
+        });
+    }
+
+    public void setStructureLocked( boolean locked ) {
+        this.locked = locked;
+    }
+
+    public boolean isStructureLocked() {
+        return locked;
+    }
+
+    public int getNumRows() {
+        return numRows;
+    }
+
+    public int getNumCols() {
+        return numCols;
+    }
+
+    /**
+     * Workspace for processing a block of columns
+     */
+    private static class ColumnWorkspace {
+        int[] mark = new int[0];
+        int[] location = new int[0];
+
+        int[] reset( int numRows ) {
+            if( mark.length < numRows ) {
+                mark = new int[numRows];
+                location = new int[numRows];
+            }
+            Arrays.fill(mark,0,numRows,-1);
+            return mark;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.sparse.csc.mult;
+
+import org.ejml.data.DGrowArray;
+import org.ejml.data.DMatrixSparseCSC;
+import org.ejml.data.IGrowArray;
+import org.ejml.masks.Mask;
+import org.ejml.ops.DBinaryOperator;
+import org.ejml.ops.DSemiRing;
+import org.ejml.ops.DSemiRings;
+import org.jetbrains.annotations.Nullable;
+
+import static org.ejml.UtilEjml.adjust;
+
+/**
+ * Implementation of sparse-sparse matrix multiplication using a {@link DSemiRing} instead of plus and times.
+ * Semirings in {@link DSemiRings} which are commonly used have their own inner loops so that the functional
+ * interfaces are not called for every element. Without a mask, {@link DSemiRings#PLUS_TIMES} is the same as
+ * {@link ImplSparseSparseMult_DSCC#mult}.
+ *
+ * @author Peter Abeles
+ */
+public class ImplMultiplicationWithSemiRing_DSCC {
+
+    /**
+     * Performs matrix multiplication.  C = A*B
+     *
+     * @param A Matrix
+     * @param B Matrix
+     * @param C Storage for results.  Data length is increased if increased if insufficient.
+     * @param semiRing Semiring which defines add and multiply
+     * @param mask (Optional) Which elements in C are computed.  Can be null.
+     * @param gw (Optional) Storage for internal workspace.  Can be null.
+     * @param gx (Optional) Storage for internal workspace.  Can be null.
+     */
+    public static void mult(DMatrixSparseCSC A, DMatrixSparseCSC B, DMatrixSparseCSC C, DSemiRing semiRing,
+                            @Nullable Mask mask, @Nullable IGrowArray gw, @Nullable DGrowArray gx )
+    {
+        if( mask == null && semiRing == DSemiRings.PLUS_TIMES ) {
+            ImplSparseSparseMult_DSCC.mult(A,B,C,gw,gx);
+            return;
+        }
+
+        double []x = adjust(gx, A.numRows);
+        int []w = adjust(gw, A.numRows, A.numRows);
+
+        C.growMaxLength(A.nz_length+B.nz_length,false);
+        C.indicesSorted = false;
+        C.nz_length = 0;
+        C.col_idx[0] = 0;
+
+        // C(i,j) = sum_k A(i,k) * B(k,j)
+        for (int colB = 0; colB < B.numCols; colB++) {
+            int idx0 = B.col_idx[colB];
+            int idx1 = B.col_idx[colB+1];
+            C.col_idx[colB+1] = C.nz_length;
+
+            if( mask != null )
+                mask.setIndexColumn(colB);
+
+            // C(:,j) = sum_k A(:,k)*B(k,j)
+            for (int bi = idx0; bi < idx1; bi++) {
+                multAddColA(A,B.nz_rows[bi],B.nz_values[bi],C,colB+1,semiRing,mask,x,w);
+            }
+
+            // take the values in the dense vector 'x' and put them into 'C'
+            int idxC0 = C.col_idx[colB];
+            int idxC1 = C.col_idx[colB+1];
+
+            for (int i = idxC0; i < idxC1; i++) {
+                C.nz_values[i] = x[C.nz_rows[i]];
+            }
+        }
+    }
+
+    /**
+     * Performs the operation x = x &oplus; A(:,colA) &otimes; alpha
+     *
+     * @param mark Column in C + 1. Used to mark rows which have been added to the column.
+     * @param mask (Optional) Rows in C which are computed. Must be indexed to column mark-1. Can be null.
+     */
+    public static void multAddColA( DMatrixSparseCSC A, int colA, double alpha,
+                                    DMatrixSparseCSC C, int mark, DSemiRing semiRing, @Nullable Mask mask,
+                                    double[] x, int[] w ) {
+        int idxA0 = A.col_idx[colA];
+        int idxA1 = A.col_idx[colA+1];
+        int colC = mark-1;
+
+        if( semiRing == DSemiRings.PLUS_TIMES ) {
+            for (int j = idxA0; j < idxA1; j++) {
+                int row = A.nz_rows[j];
+                if( mask != null && !mask.isSet(row,colC) )
+                    continue;
+                double value = A.nz_values[j]*alpha;
+                if( w[row] < mark ) {
+                    addRow(C,row,mark,w);
+                    x[row] = value;
+                } else {
+                    x[row] += value;
+                }
+            }
+        } else if( semiRing == DSemiRings.MIN_PLUS ) {
+            for (int j = idxA0; j < idxA1; j++) {
+                int row = A.nz_rows[j];
+                if( mask != null && !mask.isSet(row,colC) )
+                    continue;
+                double value = A.nz_values[j]+alpha;
+                if( w[row] < mark ) {
+                    addRow(C,row,mark,w);
+                    x[row] = value;
+                } else if( value < x[row] ) {
+                    x[row] = value;
+                }
+            }
+        } else if( semiRing == DSemiRings.OR_AND ) {
+            boolean valueB = alpha != 0;
+            for (int j = idxA0; j < idxA1; j++) {
+                int row = A.nz_rows[j];
+                if( mask != null && !mask.isSet(row,colC) )
+                    continue;
+                double value = valueB && A.nz_values[j] != 0 ? 1 : 0;
+                if( w[row] < mark ) {
+                    addRow(C,row,mark,w);
+                    x[row] = value;
+                } else if( value != 0 ) {
+                    x[row] = 1;
+                }
+            }
+        } else if( semiRing == DSemiRings.PLUS_PAIR ) {
+            for (int j = idxA0; j < idxA1; j++) {
+                int row = A.nz_rows[j];
+                if( mask != null && !mask.isSet(row,colC) )
+                    continue;
+                if( w[row] < mark ) {
+                    addRow(C,row,mark,w);
+                    x[row] = 1;
+                } else {
+                    x[row] += 1;
+                }
+            }
+        } else {
+            DBinaryOperator add = semiRing.add.func;
+            DBinaryOperator mult = semiRing.mult.func;
+            for (int j = idxA0; j < idxA1; j++) {
+                int row = A.nz_rows[j];
+                if( mask != null && !mask.isSet(row,colC) )
+                    continue;
+                double value = mult.apply(A.nz_values[j],alpha);
+                if( w[row] < mark ) {
+                    addRow(C,row,mark,w);
+                    x[row] = value;
+                } else {
+                    x[row] = add.apply(x[row],value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a row to the last column in C
+     */
+    private static void addRow( DMatrixSparseCSC C, int row, int mark, int[] w ) {
+        if( C.nz_length >= C.nz_rows.length ) {
+            C.growMaxLength(C.nz_length*2+1,true);
+        }
+        w[row] = mark;
+        C.nz_rows[C.nz_length] = row;
+        C.col_idx[mark] = ++C.nz_length;
+    }
+}
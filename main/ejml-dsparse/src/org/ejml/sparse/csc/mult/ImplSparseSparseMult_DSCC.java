@@ -85,6 +85,47 @@ public class ImplSparseSparseMult_DSCC {
 
     }
 
+    /**
+     * Performs matrix multiplication.  C = A*B. Only the values in C are modified and its structure must
+     * already contain every non-zero element in the product, e.g. it was the output of a previous call
+     * to {@link #mult(DMatrixSparseCSC, DMatrixSparseCSC, DMatrixSparseCSC, IGrowArray, DGrowArray)}.
+     *
+     * @param A Matrix
+     * @param B Matrix
+     * @param C Matrix with a precomputed structure. Only nz_values is modified.
+     * @param gx (Optional) Storage for internal workspace.  Can be null.
+     */
+    public static void multNumeric(DMatrixSparseCSC A, DMatrixSparseCSC B, DMatrixSparseCSC C,
+                                   @Nullable DGrowArray gx )
+    {
+        double []x = adjust(gx, A.numRows);
+
+        for (int colB = 0; colB < B.numCols; colB++) {
+            int idxC0 = C.col_idx[colB];
+            int idxC1 = C.col_idx[colB+1];
+
+            for (int i = idxC0; i < idxC1; i++) {
+                x[C.nz_rows[i]] = 0;
+            }
+
+            // x = sum_k A(:,k)*B(k,j)
+            int idxB1 = B.col_idx[colB+1];
+            for (int bi = B.col_idx[colB]; bi < idxB1; bi++) {
+                int colA = B.nz_rows[bi];
+                double valB = B.nz_values[bi];
+
+                int idxA1 = A.col_idx[colA+1];
+                for (int ai = A.col_idx[colA]; ai < idxA1; ai++) {
+                    x[A.nz_rows[ai]] += A.nz_values[ai]*valB;
+                }
+            }
+
+            for (int i = idxC0; i < idxC1; i++) {
+                C.nz_values[i] = x[C.nz_rows[i]];
+            }
+        }
+    }
+
     /**
      * Performs matrix multiplication.  C = A<sup>T</sup></sup>*B
      *
@@ -147,6 +188,51 @@ public class ImplSparseSparseMult_DSCC {
         }
     }
 
+    /**
+     * Performs matrix multiplication.  C = A<sup>T</sup>*B. Only the values in C are modified and its structure must
+     * already contain every non-zero element in the product. Elements which are in the structure but not in the
+     * product are set to zero.
+     *
+     * @param A Matrix
+     * @param B Matrix
+     * @param C Matrix with a precomputed structure. Only nz_values is modified.
+     * @param gx (Optional) Storage for internal workspace.  Can be null.
+     */
+    public static void multTransANumeric(DMatrixSparseCSC A, DMatrixSparseCSC B, DMatrixSparseCSC C,
+                                         @Nullable DGrowArray gx )
+    {
+        double []x = adjust(gx, A.numRows);
+        Arrays.fill(x,0,A.numRows,0);
+
+        for (int colB = 0; colB < B.numCols; colB++) {
+            int idxB0 = B.col_idx[colB];
+            int idxB1 = B.col_idx[colB+1];
+
+            // convert the column of B into a dense format
+            for (int bi = idxB0; bi < idxB1; bi++) {
+                x[B.nz_rows[bi]] = B.nz_values[bi];
+            }
+
+            // C(colA,colB) = A(:,colA)*B(:,colB)
+            int idxC1 = C.col_idx[colB+1];
+            for (int i = C.col_idx[colB]; i < idxC1; i++) {
+                int colA = C.nz_rows[i];
+                int idxA1 = A.col_idx[colA+1];
+
+                double sum = 0;
+                for (int ai = A.col_idx[colA]; ai < idxA1; ai++) {
+                    sum += x[A.nz_rows[ai]]*A.nz_values[ai];
+                }
+                C.nz_values[i] = sum;
+            }
+
+            // return x to zero for the next column
+            for (int bi = idxB0; bi < idxB1; bi++) {
+                x[B.nz_rows[bi]] = 0;
+            }
+        }
+    }
+
     /**
      * Performs matrix multiplication.  C = A*B<sup>T</sup></sup>
      *
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.sparse.csc.mult;
+
+import org.ejml.data.DMatrixSparseCSC;
+import org.ejml.masks.Mask;
+import org.ejml.ops.DBinaryOperator;
+import org.ejml.ops.DSemiRing;
+import org.ejml.ops.DSemiRings;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Sparse matrix-vector multiplication using a {@link DSemiRing} instead of plus and times. If a mask is
+ * provided then only elements in the output vector which are selected by the mask are modified.
+ *
+ * @author Peter Abeles
+ */
+public class MatrixVectorMultWithSemiRing_DSCC {
+    /**
+     * c = A*b
+     *
+     * @param A (Input) Matrix
+     * @param b (Input) vector
+     * @param c (Output) vector
+     * @param semiRing Semiring which defines add and multiply
+     * @param mask (Optional) Which elements in c are computed.  Can be null.
+     */
+    public static void mult( DMatrixSparseCSC A, double[] b, double[] c, DSemiRing semiRing, @Nullable Mask mask ) {
+        if( b.length < A.numCols )
+            throw new IllegalArgumentException("Length of 'b' isn't long enough");
+        if( c.length < A.numRows )
+            throw new IllegalArgumentException("Length of 'c' isn't long enough");
+
+        if( mask == null && semiRing == DSemiRings.PLUS_TIMES ) {
+            MatrixVectorMult_DSCC.mult(A,b,0,c,0);
+            return;
+        }
+
+        for (int i = 0; i < A.numRows; i++) {
+            if( mask == null || mask.isSet(i) )
+                c[i] = semiRing.add.id;
+        }
+
+        DBinaryOperator add = semiRing.add.func;
+        DBinaryOperator mult = semiRing.mult.func;
+        boolean minPlus = semiRing == DSemiRings.MIN_PLUS;
+        boolean orAnd = semiRing == DSemiRings.OR_AND;
+        boolean plusPair = semiRing == DSemiRings.PLUS_PAIR;
+
+        for (int k = 0; k < A.numCols; k++) {
+            double valueB = b[k];
+            int idx1 = A.col_idx[k+1];
+
+            if( minPlus ) {
+                for (int indexA = A.col_idx[k]; indexA < idx1; indexA++) {
+                    int row = A.nz_rows[indexA];
+                    if( mask != null && !mask.isSet(row) )
+                        continue;
+                    c[row] = Math.min(c[row], A.nz_values[indexA] + valueB);
+                }
+            } else if( orAnd ) {
+                if( valueB == 0 )
+                    continue;
+                for (int indexA = A.col_idx[k]; indexA < idx1; indexA++) {
+                    int row = A.nz_rows[indexA];
+                    if( mask != null && !mask.isSet(row) )
+                        continue;
+                    if( A.nz_values[indexA] != 0 )
+                        c[row] = 1;
+                }
+            } else if( plusPair ) {
+                // every element in 'b' is present, so each element in A adds one
+                for (int indexA = A.col_idx[k]; indexA < idx1; indexA++) {
+                    int row = A.nz_rows[indexA];
+                    if( mask != null && !mask.isSet(row) )
+                        continue;
+                    c[row] += 1;
+                }
+            } else {
+                for (int indexA = A.col_idx[k]; indexA < idx1; indexA++) {
+                    int row = A.nz_rows[indexA];
+                    if( mask != null && !mask.isSet(row) )
+                        continue;
+                    c[row] = add.apply(c[row], mult.apply(A.nz_values[indexA], valueB));
+                }
+            }
+        }
+    }
+
+    /**
+     * c = a<sup>T</sup>*B
+     *
+     * @param a (Input) vector
+     * @param B (Input) Matrix
+     * @param c (Output) vector
+     * @param semiRing Semiring which defines add and multiply
+     * @param mask (Optional) Which elements in c are computed.  Can be null.
+     */
+    public static void mult( double[] a, DMatrixSparseCSC B, double[] c, DSemiRing semiRing, @Nullable Mask mask ) {
+        if( a.length < B.numRows )
+            throw new IllegalArgumentException("Length of 'a' isn't long enough");
+        if( c.length < B.numCols )
+            throw new IllegalArgumentException("Length of 'c' isn't long enough");
+
+        for (int k = 0; k < B.numCols; k++) {
+            if( mask != null && !mask.isSet(k) )
+                continue;
+            c[k] = innerProduct(a,B,k,semiRing);
+        }
+    }
+
+    /**
+     * Computes a<sup>T</sup>*B(:,column) using the semiring
+     */
+    public static double innerProduct( double[] a, DMatrixSparseCSC B, int column, DSemiRing semiRing ) {
+        int idx0 = B.col_idx[column];
+        int idx1 = B.col_idx[column+1];
+
+        if( semiRing == DSemiRings.PLUS_TIMES ) {
+            double sum = 0;
+            for (int indexB = idx0; indexB < idx1; indexB++) {
+                sum += a[B.nz_rows[indexB]]*B.nz_values[indexB];
+            }
+            return sum;
+        } else if( semiRing == DSemiRings.MIN_PLUS ) {
+            double min = Double.POSITIVE_INFINITY;
+            for (int indexB = idx0; indexB < idx1; indexB++) {
+                min = Math.min(min, a[B.nz_rows[indexB]] + B.nz_values[indexB]);
+            }
+            return min;
+        } else if( semiRing == DSemiRings.OR_AND ) {
+            // stop as soon as one pair is found
+            for (int indexB = idx0; indexB < idx1; indexB++) {
+                if( a[B.nz_rows[indexB]] != 0 && B.nz_values[indexB] != 0 )
+                    return 1;
+            }
+            return 0;
+        } else if( semiRing == DSemiRings.PLUS_PAIR ) {
+            // number of elements in the column
+            return idx1-idx0;
+        } else {
+            DBinaryOperator add = semiRing.add.func;
+            DBinaryOperator mult = semiRing.mult.func;
+            double sum = semiRing.add.id;
+            for (int indexB = idx0; indexB < idx1; indexB++) {
+                sum = add.apply(sum, mult.apply(a[B.nz_rows[indexB]], B.nz_values[indexB]));
+            }
+            return sum;
+        }
+    }
+}
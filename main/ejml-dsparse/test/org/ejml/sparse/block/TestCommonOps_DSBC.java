@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.sparse.block;
+
+import org.ejml.EjmlUnitTests;
+import org.ejml.UtilEjml;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.data.DMatrixSparseBlockCSC;
+import org.ejml.data.DMatrixSparseCSC;
+import org.ejml.data.DMatrixSparseTriplet;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.ejml.ops.ConvertDMatrixStruct;
+import org.ejml.sparse.block.mult.MatrixVectorMult_DSBC;
+import org.ejml.sparse.csc.RandomMatrices_DSCC;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestCommonOps_DSBC {
+    Random rand = new Random(234);
+
+    int[] rowSizes = new int[]{3,1,4,2};
+    int[] colSizes = new int[]{2,3,3};
+
+    private DMatrixSparseBlockCSC createRandom( DMatrixSparseCSC csc ) {
+        DMatrixSparseBlockCSC A = new DMatrixSparseBlockCSC(rowSizes,colSizes,0);
+        ConvertDMatrixStruct.convert(csc,A,null);
+        return A;
+    }
+
+    @Test
+    public void convert_csc() {
+        for (int trial = 0; trial < 20; trial++) {
+            DMatrixSparseCSC csc = RandomMatrices_DSCC.rectangle(10,8,rand.nextInt(30),rand);
+            DMatrixSparseBlockCSC A = createRandom(csc);
+
+            assertTrue(CommonOps_DSBC.checkStructure(A));
+            EjmlUnitTests.assertEquals(csc,A,UtilEjml.TEST_F64);
+
+            DMatrixSparseCSC found = ConvertDMatrixStruct.convert(A,(DMatrixSparseCSC)null);
+            assertTrue(found.indicesSorted);
+            EjmlUnitTests.assertEquals(csc,found,UtilEjml.TEST_F64);
+        }
+    }
+
+    @Test
+    public void convert_triplet() {
+        DMatrixSparseTriplet triplet = new DMatrixSparseTriplet(10,8,10);
+        triplet.addItem(0,0,1);
+        triplet.addItem(9,7,2);
+        triplet.addItem(4,3,3);
+        triplet.addItem(4,3,4);
+        triplet.addItem(2,6,5);
+
+        DMatrixSparseBlockCSC A = new DMatrixSparseBlockCSC(rowSizes,colSizes,0);
+        ConvertDMatrixStruct.convert(triplet,A,null);
+
+        assertTrue(CommonOps_DSBC.checkStructure(A));
+        assertEquals(1,A.get(0,0),UtilEjml.TEST_F64);
+        assertEquals(2,A.get(9,7),UtilEjml.TEST_F64);
+        assertEquals(7,A.get(4,3),UtilEjml.TEST_F64);
+        assertEquals(5,A.get(2,6),UtilEjml.TEST_F64);
+        assertEquals(0,A.get(1,6),UtilEjml.TEST_F64);
+        assertEquals(4,A.nz_blocks);
+    }
+
+    @Test
+    public void set_get() {
+        DMatrixSparseBlockCSC A = new DMatrixSparseBlockCSC(rowSizes,colSizes,0);
+        DMatrixRMaj expected = new DMatrixRMaj(10,8);
+        for (int i = 0; i < 30; i++) {
+            int row = rand.nextInt(10);
+            int col = rand.nextInt(8);
+            double value = rand.nextDouble();
+            A.set(row,col,value);
+            expected.set(row,col,value);
+            assertTrue(CommonOps_DSBC.checkStructure(A));
+        }
+        EjmlUnitTests.assertEquals(expected,A,UtilEjml.TEST_F64);
+    }
+
+    @Test
+    public void mult() {
+        DMatrixSparseCSC csc = RandomMatrices_DSCC.rectangle(10,8,30,rand);
+        DMatrixSparseBlockCSC A = createRandom(csc);
+        DMatrixRMaj denseA = ConvertDMatrixStruct.convert(csc,(DMatrixRMaj)null);
+        DMatrixRMaj B = RandomMatrices_DDRM.rectangle(8,4,rand);
+
+        DMatrixRMaj expected = CommonOps_DDRM.mult(denseA,B,null);
+        DMatrixRMaj found = CommonOps_DSBC.mult(A,B,null);
+        EjmlUnitTests.assertEquals(expected,found,UtilEjml.TEST_F64);
+
+        CommonOps_DSBC.multAdd(A,B,found);
+        CommonOps_DDRM.scale(2,expected);
+        EjmlUnitTests.assertEquals(expected,found,UtilEjml.TEST_F64);
+    }
+
+    @Test
+    public void multTransA() {
+        DMatrixSparseCSC csc = RandomMatrices_DSCC.rectangle(10,8,30,rand);
+        DMatrixSparseBlockCSC A = createRandom(csc);
+        DMatrixRMaj denseA = ConvertDMatrixStruct.convert(csc,(DMatrixRMaj)null);
+        DMatrixRMaj B = RandomMatrices_DDRM.rectangle(10,4,rand);
+
+        DMatrixRMaj expected = CommonOps_DDRM.multTransA(denseA,B,null);
+        DMatrixRMaj found = CommonOps_DSBC.multTransA(A,B,null);
+        EjmlUnitTests.assertEquals(expected,found,UtilEjml.TEST_F64);
+
+        CommonOps_DSBC.multAddTransA(A,B,found);
+        CommonOps_DDRM.scale(2,expected);
+        EjmlUnitTests.assertEquals(expected,found,UtilEjml.TEST_F64);
+    }
+
+    @Test
+    public void matrixVector() {
+        DMatrixSparseCSC csc = RandomMatrices_DSCC.rectangle(10,8,30,rand);
+        DMatrixSparseBlockCSC A = createRandom(csc);
+        DMatrixRMaj denseA = ConvertDMatrixStruct.convert(csc,(DMatrixRMaj)null);
+
+        double[] b = new double[10];
+        double[] c = new double[12];
+        for (int i = 0; i < b.length; i++) {
+            b[i] = rand.nextDouble();
+        }
+
+        MatrixVectorMult_DSBC.mult(A,b,1,c,2);
+        DMatrixRMaj expected = CommonOps_DDRM.mult(denseA,new DMatrixRMaj(8,1,true,java.util.Arrays.copyOfRange(b,1,9)),null);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(expected.data[i],c[i+2],UtilEjml.TEST_F64);
+        }
+
+        MatrixVectorMult_DSBC.multTransA(A,c,2,b,0);
+        DMatrixRMaj expectedT = CommonOps_DDRM.multTransA(denseA,expected,null);
+        for (int i = 0; i < 8; i++) {
+            assertEquals(expectedT.data[i],b[i],UtilEjml.TEST_F64);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.sparse.block.decomposition.chol;
+
+import org.ejml.EjmlUnitTests;
+import org.ejml.UtilEjml;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.data.DMatrixSparseBlockCSC;
+import org.ejml.data.DMatrixSparseCSC;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.ejml.ops.ConvertDMatrixStruct;
+import org.ejml.sparse.block.misc.TriangularSolver_DSBC;
+import org.ejml.sparse.csc.CommonOps_DSCC;
+import org.ejml.sparse.csc.RandomMatrices_DSCC;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestCholeskyBlock_DSBC {
+    Random rand = new Random(234);
+
+    @Test
+    public void decompose_uniform3() {
+        check(DMatrixSparseBlockCSC.uniformSizes(30,3));
+    }
+
+    @Test
+    public void decompose_uniform6() {
+        check(DMatrixSparseBlockCSC.uniformSizes(36,6));
+    }
+
+    @Test
+    public void decompose_variable() {
+        check(new int[]{1,4,2,5,3,3,2});
+    }
+
+    private void check( int[] sizes ) {
+        int N = 0;
+        for( int s : sizes ) N += s;
+
+        for (int trial = 0; trial < 10; trial++) {
+            DMatrixSparseCSC A_csc = RandomMatrices_DSCC.symmetricPosDef(N,0.6,rand);
+            DMatrixSparseBlockCSC A = new DMatrixSparseBlockCSC(sizes,sizes,0);
+            ConvertDMatrixStruct.convert(A_csc,A,null);
+
+            CholeskyBlock_DSBC alg = new CholeskyBlock_DSBC();
+            assertTrue(alg.decompose(A));
+
+            // A = L*L'
+            DMatrixSparseCSC L = ConvertDMatrixStruct.convert(alg.getL(),(DMatrixSparseCSC)null);
+            DMatrixSparseCSC found = CommonOps_DSCC.multTransB(L,L,null,null,null);
+            EjmlUnitTests.assertEquals(A_csc,found,UtilEjml.TEST_F64);
+
+            // A*x = b
+            DMatrixRMaj x = new DMatrixRMaj(N,1);
+            for (int i = 0; i < N; i++) {
+                x.data[i] = rand.nextDouble()-0.5;
+            }
+            DMatrixRMaj b = CommonOps_DSCC.mult(A_csc,x,null);
+            TriangularSolver_DSBC.solveL(alg.getL(),b.data);
+            TriangularSolver_DSBC.solveTranL(alg.getL(),b.data);
+            EjmlUnitTests.assertEquals(x,b,UtilEjml.TEST_F64);
+
+            double expected = CommonOps_DDRM.det(ConvertDMatrixStruct.convert(A_csc,(DMatrixRMaj)null));
+            assertEquals(expected,alg.computeDeterminant().real,Math.abs(expected)*UtilEjml.TEST_F64);
+        }
+    }
+
+    /**
+     * Only the lower triangle of the matrix should be read
+     */
+    @Test
+    public void ignoresUpper() {
+        int[] sizes = DMatrixSparseBlockCSC.uniformSizes(12,3);
+        DMatrixSparseCSC A_csc = RandomMatrices_DSCC.symmetricPosDef(12,0.5,rand);
+        DMatrixSparseBlockCSC A = new DMatrixSparseBlockCSC(sizes,sizes,0);
+        ConvertDMatrixStruct.convert(A_csc,A,null);
+
+        CholeskyBlock_DSBC alg = new CholeskyBlock_DSBC();
+        assertTrue(alg.decompose(A));
+        DMatrixSparseBlockCSC expected = alg.getL().copy();
+
+        for (int col = 0; col < 12; col++) {
+            for (int row = 0; row < col; row++) {
+                if( A.isAssigned(row,col) )
+                    A.set(row,col,100);
+            }
+        }
+        assertTrue(alg.decompose(A));
+        EjmlUnitTests.assertEquals(expected,alg.getL(),UtilEjml.TEST_F64);
+    }
+
+    @Test
+    public void lockedStructure() {
+        int[] sizes = DMatrixSparseBlockCSC.uniformSizes(18,6);
+        DMatrixSparseCSC A_csc = RandomMatrices_DSCC.symmetricPosDef(18,0.5,rand);
+        DMatrixSparseBlockCSC A = new DMatrixSparseBlockCSC(sizes,sizes,0);
+        ConvertDMatrixStruct.convert(A_csc,A,null);
+
+        CholeskyBlock_DSBC alg = new CholeskyBlock_DSBC();
+        alg.setStructureLocked(true);
+        assertTrue(alg.decompose(A));
+        int[] before = alg.getL().nz_blockRows;
+
+        // scale the values but keep the structure
+        for (int i = 0; i < A.nz_length; i++) {
+            A.nz_values[i] *= 2;
+        }
+        assertTrue(alg.decompose(A));
+        assertSame(before,alg.getL().nz_blockRows);
+
+        DMatrixSparseCSC L = ConvertDMatrixStruct.convert(alg.getL(),(DMatrixSparseCSC)null);
+        DMatrixSparseCSC found = CommonOps_DSCC.multTransB(L,L,null,null,null);
+        EjmlUnitTests.assertEquals(A,found,UtilEjml.TEST_F64);
+    }
+
+    @Test
+    public void notPositiveDefinite() {
+        for( int blockSize : new int[]{2,3,6}) {
+            int[] sizes = DMatrixSparseBlockCSC.uniformSizes(12,blockSize);
+            DMatrixSparseBlockCSC A = new DMatrixSparseBlockCSC(sizes,sizes,0);
+            for (int i = 0; i < 12; i++) {
+                A.set(i,i,1);
+            }
+            A.set(10,10,-1);
+
+            assertFalse(new CholeskyBlock_DSBC().decompose(A));
+        }
+    }
+}
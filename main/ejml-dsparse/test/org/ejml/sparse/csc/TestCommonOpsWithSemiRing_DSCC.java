@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.sparse.csc;
+
+import org.ejml.UtilEjml;
+import org.ejml.data.DMatrixSparseCSC;
+import org.ejml.masks.DMaskPrimitive;
+import org.ejml.masks.DMaskSparseStructural;
+import org.ejml.masks.Mask;
+import org.ejml.ops.DMonoids;
+import org.ejml.ops.DSemiRing;
+import org.ejml.ops.DSemiRings;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestCommonOpsWithSemiRing_DSCC {
+
+    private final Random rand = new Random(234);
+
+    // includes the semirings with specialized code and one which uses the generic code
+    private final DSemiRing[] semiRings = new DSemiRing[]{
+            DSemiRings.PLUS_TIMES, DSemiRings.MIN_PLUS, DSemiRings.OR_AND, DSemiRings.PLUS_PAIR,
+            DSemiRings.MAX_TIMES, new DSemiRing(DMonoids.PLUS, DMonoids.TIMES)};
+
+    @Test
+    public void mult_matrix() {
+        for (DSemiRing semiRing : semiRings) {
+            for (boolean useMask : new boolean[]{false, true}) {
+                DMatrixSparseCSC A = RandomMatrices_DSCC.rectangle(10, 8, 30, 0.1, 1, rand);
+                DMatrixSparseCSC B = RandomMatrices_DSCC.rectangle(8, 9, 30, 0.1, 1, rand);
+                DMatrixSparseCSC maskMatrix = RandomMatrices_DSCC.rectangle(10, 9, 40, rand);
+                Mask mask = useMask ? new DMaskSparseStructural(maskMatrix, false) : null;
+
+                DMatrixSparseCSC found = CommonOpsWithSemiRing_DSCC.mult(A, B, null, semiRing, mask, null, null);
+                assertTrue(CommonOps_DSCC.checkStructure(found));
+
+                for (int row = 0; row < 10; row++) {
+                    for (int col = 0; col < 9; col++) {
+                        boolean selected = !useMask || maskMatrix.isAssigned(row, col);
+                        boolean any = false;
+                        double expected = semiRing.add.id;
+                        for (int k = 0; k < 8; k++) {
+                            if (A.isAssigned(row, k) && B.isAssigned(k, col)) {
+                                any = true;
+                                expected = semiRing.add.func.apply(expected,
+                                        semiRing.mult.func.apply(A.get(row, k), B.get(k, col)));
+                            }
+                        }
+                        assertEquals(any && selected, found.isAssigned(row, col));
+                        if (any && selected)
+                            assertEquals(expected, found.get(row, col), UtilEjml.TEST_F64);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void mult_matrixVector() {
+        for (DSemiRing semiRing : semiRings) {
+            for (boolean useMask : new boolean[]{false, true}) {
+                DMatrixSparseCSC A = RandomMatrices_DSCC.rectangle(10, 8, 30, 0.1, 1, rand);
+                double[] b = randomVector(8);
+                double[] maskValues = randomVector(10);
+                maskValues[2] = 0;
+                Mask mask = useMask ? new DMaskPrimitive(maskValues, true) : null;
+
+                double[] c = new double[10];
+                c[2] = 100;
+                CommonOpsWithSemiRing_DSCC.mult(A, b, c, semiRing, mask);
+
+                for (int row = 0; row < 10; row++) {
+                    // negated mask, so only row 2 is computed
+                    if (useMask && row != 2) {
+                        assertEquals(0, c[row]);
+                        continue;
+                    }
+                    double expected = semiRing.add.id;
+                    for (int k = 0; k < 8; k++) {
+                        if (A.isAssigned(row, k))
+                            expected = semiRing.add.func.apply(expected, semiRing.mult.func.apply(A.get(row, k), b[k]));
+                    }
+                    assertEquals(expected, c[row], UtilEjml.TEST_F64);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void mult_vectorMatrix() {
+        for (DSemiRing semiRing : semiRings) {
+            for (boolean useMask : new boolean[]{false, true}) {
+                DMatrixSparseCSC B = RandomMatrices_DSCC.rectangle(8, 10, 30, 0.1, 1, rand);
+                double[] a = randomVector(8);
+                double[] maskValues = new double[10];
+                maskValues[3] = 1;
+                Mask mask = useMask ? new DMaskPrimitive(maskValues, false) : null;
+
+                double[] c = new double[10];
+                CommonOpsWithSemiRing_DSCC.mult(a, B, c, semiRing, mask);
+
+                for (int col = 0; col < 10; col++) {
+                    if (useMask && col != 3) {
+                        assertEquals(0, c[col]);
+                        continue;
+                    }
+                    double expected = semiRing.add.id;
+                    for (int k = 0; k < 8; k++) {
+                        if (B.isAssigned(k, col))
+                            expected = semiRing.add.func.apply(expected, semiRing.mult.func.apply(a[k], B.get(k, col)));
+                    }
+                    assertEquals(expected, c[col], UtilEjml.TEST_F64);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void add() {
+        for (DSemiRing semiRing : semiRings) {
+            for (boolean useMask : new boolean[]{false, true}) {
+                DMatrixSparseCSC A = RandomMatrices_DSCC.rectangle(10, 8, 30, 0.1, 1, rand);
+                DMatrixSparseCSC B = RandomMatrices_DSCC.rectangle(10, 8, 30, 0.1, 1, rand);
+                DMatrixSparseCSC maskMatrix = RandomMatrices_DSCC.rectangle(10, 8, 40, rand);
+                Mask mask = useMask ? new DMaskSparseStructural(maskMatrix, true) : null;
+
+                DMatrixSparseCSC found = CommonOpsWithSemiRing_DSCC.add(1.5, A, 0.5, B, null, semiRing, mask, null, null);
+                assertTrue(CommonOps_DSCC.checkStructure(found));
+
+                for (int row = 0; row < 10; row++) {
+                    for (int col = 0; col < 8; col++) {
+                        boolean selected = !useMask || !maskMatrix.isAssigned(row, col);
+                        boolean inA = A.isAssigned(row, col), inB = B.isAssigned(row, col);
+                        assertEquals(selected && (inA || inB), found.isAssigned(row, col));
+                        if (!selected || !(inA || inB))
+                            continue;
+                        double expected = semiRing.add.id;
+                        if (inA) expected = semiRing.add.func.apply(expected, semiRing.mult.func.apply(1.5, A.get(row, col)));
+                        if (inB) expected = semiRing.add.func.apply(expected, semiRing.mult.func.apply(0.5, B.get(row, col)));
+                        assertEquals(expected, found.get(row, col), UtilEjml.TEST_F64);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void elementMult() {
+        for (DSemiRing semiRing : semiRings) {
+            for (boolean useMask : new boolean[]{false, true}) {
+                DMatrixSparseCSC A = RandomMatrices_DSCC.rectangle(10, 8, 40, 0.1, 1, rand);
+                DMatrixSparseCSC B = RandomMatrices_DSCC.rectangle(10, 8, 40, 0.1, 1, rand);
+                DMatrixSparseCSC maskMatrix = RandomMatrices_DSCC.rectangle(10, 8, 40, rand);
+                Mask mask = useMask ? new DMaskSparseStructural(maskMatrix, false) : null;
+
+                DMatrixSparseCSC found = CommonOpsWithSemiRing_DSCC.elementMult(A, B, null, semiRing, mask, null, null);
+                assertTrue(CommonOps_DSCC.checkStructure(found));
+
+                for (int row = 0; row < 10; row++) {
+                    for (int col = 0; col < 8; col++) {
+                        boolean selected = !useMask || maskMatrix.isAssigned(row, col);
+                        boolean both = A.isAssigned(row, col) && B.isAssigned(row, col);
+                        assertEquals(selected && both, found.isAssigned(row, col));
+                        if (selected && both)
+                            assertEquals(semiRing.mult.func.apply(A.get(row, col), B.get(row, col)),
+                                    found.get(row, col), UtilEjml.TEST_F64);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Breadth first search on a small graph using the OR-AND semiring with the visited nodes as a negated mask
+     */
+    @Test
+    public void breadthFirstSearch() {
+        // directed graph 0->1, 0->2, 1->3, 2->3, 3->4, 5->0. Edges are stored as A(src,dst)
+        DMatrixSparseCSC A = new DMatrixSparseCSC(6, 6);
+        int[][] edges = new int[][]{{0, 1}, {0, 2}, {1, 3}, {2, 3}, {3, 4}, {5, 0}};
+        for (int[] e : edges) {
+            A.set(e[0], e[1], 1);
+        }
+
+        double[] visited = new double[6];
+        double[] frontier = new double[6];
+        double[] next = new double[6];
+        int[] level = new int[6];
+        java.util.Arrays.fill(level, -1);
+
+        frontier[0] = 1;
+        for (int depth = 0; depth < 6; depth++) {
+            boolean any = false;
+            for (int i = 0; i < 6; i++) {
+                if (frontier[i] != 0) {
+                    visited[i] = 1;
+                    level[i] = depth;
+                    any = true;
+                }
+            }
+            if (!any)
+                break;
+            java.util.Arrays.fill(next, 0);
+            CommonOpsWithSemiRing_DSCC.mult(frontier, A, next, DSemiRings.OR_AND, new DMaskPrimitive(visited, true));
+            System.arraycopy(next, 0, frontier, 0, 6);
+        }
+
+        assertArrayEquals(new int[]{0, 1, 1, 2, 3, -1}, level);
+    }
+
+    private double[] randomVector( int length ) {
+        double[] v = new double[length];
+        for (int i = 0; i < length; i++) {
+            v[i] = rand.nextDouble() + 0.1;
+        }
+        return v;
+    }
+}
@@ -1527,4 +1527,96 @@ public class TestCommonOps_DSCC {
             assertEquals(expected, result.get(i));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void transposeNumeric() {
+        DMatrixSparseCSC A = RandomMatrices_DSCC.rectangle(8,6,20,rand);
+        DMatrixSparseCSC A_t = CommonOps_DSCC.transpose(A,null,null);
+        int[] nz_rows = A_t.nz_rows;
+
+        // change the values but not the structure
+        for (int i = 0; i < A.nz_length; i++) {
+            A.nz_values[i] = rand.nextDouble();
+        }
+        CommonOps_DSCC.transposeNumeric(A,A_t,null);
+
+        assertSame(nz_rows,A_t.nz_rows);
+        assertTrue(CommonOps_DSCC.checkStructure(A_t));
+        EjmlUnitTests.assertEquals(CommonOps_DSCC.transpose(A,null,null),A_t,UtilEjml.TEST_F64);
+    }
+
+    @Test
+    public void multNumeric() {
+        DMatrixSparseCSC A = RandomMatrices_DSCC.rectangle(8,6,20,rand);
+        DMatrixSparseCSC B = RandomMatrices_DSCC.rectangle(6,7,20,rand);
+        DMatrixSparseCSC C = CommonOps_DSCC.mult(A,B,null);
+        DMatrixSparseCSC expected = new DMatrixSparseCSC(1,1,0);
+
+        for (int trial = 0; trial < 5; trial++) {
+            randomizeValues(A);
+            randomizeValues(B);
+            int[] nz_rows = C.nz_rows;
+            int[] col_idx = C.col_idx;
+            int nz_length = C.nz_length;
+
+            CommonOps_DSCC.multNumeric(A,B,C,null);
+            CommonOps_DSCC.mult(A,B,expected);
+
+            assertSame(nz_rows,C.nz_rows);
+            assertSame(col_idx,C.col_idx);
+            assertEquals(nz_length,C.nz_length);
+            EjmlUnitTests.assertEquals(expected,C,UtilEjml.TEST_F64);
+        }
+    }
+
+    @Test
+    public void multTransANumeric() {
+        DMatrixSparseCSC A = RandomMatrices_DSCC.rectangle(6,8,20,rand);
+        DMatrixSparseCSC B = RandomMatrices_DSCC.rectangle(6,7,20,rand);
+        DMatrixSparseCSC C = CommonOps_DSCC.multTransA(A,B,null,null,null);
+        DMatrixSparseCSC expected = new DMatrixSparseCSC(1,1,0);
+
+        for (int trial = 0; trial < 5; trial++) {
+            randomizeValues(A);
+            randomizeValues(B);
+            int[] nz_rows = C.nz_rows;
+            int nz_length = C.nz_length;
+
+            CommonOps_DSCC.multTransANumeric(A,B,C,null);
+            CommonOps_DSCC.multTransA(A,B,expected,null,null);
+
+            assertSame(nz_rows,C.nz_rows);
+            assertEquals(nz_length,C.nz_length);
+            EjmlUnitTests.assertEquals(expected,C,UtilEjml.TEST_F64);
+        }
+    }
+
+    @Test
+    public void addNumeric() {
+        DMatrixSparseCSC A = RandomMatrices_DSCC.rectangle(8,6,20,rand);
+        DMatrixSparseCSC B = RandomMatrices_DSCC.rectangle(8,6,20,rand);
+        DMatrixSparseCSC C = new DMatrixSparseCSC(8,6,0);
+        CommonOps_DSCC.add(1.5,A,-0.5,B,C,null,null);
+        DMatrixSparseCSC expected = new DMatrixSparseCSC(8,6,0);
+
+        for (int trial = 0; trial < 5; trial++) {
+            randomizeValues(A);
+            randomizeValues(B);
+            int[] nz_rows = C.nz_rows;
+            int nz_length = C.nz_length;
+
+            CommonOps_DSCC.addNumeric(1.5,A,-0.5,B,C,null);
+            CommonOps_DSCC.add(1.5,A,-0.5,B,expected,null,null);
+
+            assertSame(nz_rows,C.nz_rows);
+            assertEquals(nz_length,C.nz_length);
+            EjmlUnitTests.assertEquals(expected,C,UtilEjml.TEST_F64);
+        }
+    }
+
+    private void randomizeValues( DMatrixSparseCSC A ) {
+        for (int i = 0; i < A.nz_length; i++) {
+            A.nz_values[i] = rand.nextDouble()-0.5;
+        }
+    }
+}
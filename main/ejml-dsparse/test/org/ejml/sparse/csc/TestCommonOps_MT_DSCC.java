@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.sparse.csc;
+
+import org.ejml.EjmlUnitTests;
+import org.ejml.UtilEjml;
+import org.ejml.concurrency.EjmlConcurrency;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.data.DMatrixSparseCSC;
+import org.ejml.data.IGrowArray;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestCommonOps_MT_DSCC {
+
+    private final Random rand = new Random(234);
+
+    private int threshold;
+
+    @BeforeEach
+    public void before() {
+        // force the concurrent code to run on small matrices
+        threshold = EjmlConcurrency.ELEMENT_THRESHOLD;
+        EjmlConcurrency.ELEMENT_THRESHOLD = 0;
+    }
+
+    @AfterEach
+    public void after() {
+        EjmlConcurrency.ELEMENT_THRESHOLD = threshold;
+    }
+
+    private DMatrixSparseCSC createMatrix() {
+        DMatrixSparseCSC A = RandomMatrices_DSCC.rectangle(150,120,6000,-1,1,rand);
+        // make the distribution of elements uneven
+        for (int col = 0; col < 10; col++) {
+            for (int row = 0; row < A.numRows; row++) {
+                A.set(row,col,rand.nextDouble());
+            }
+        }
+        return A;
+    }
+
+    @Test
+    public void scale() {
+        DMatrixSparseCSC A = createMatrix();
+        DMatrixSparseCSC expected = new DMatrixSparseCSC(1,1);
+        DMatrixSparseCSC found = new DMatrixSparseCSC(1,1);
+        CommonOps_DSCC.scale(2.5,A,expected);
+        CommonOps_MT_DSCC.scale(2.5,A,found);
+        EjmlUnitTests.assertEquals(expected,found,UtilEjml.TEST_F64);
+
+        CommonOps_MT_DSCC.scale(2.5,A,A);
+        EjmlUnitTests.assertEquals(expected,A,UtilEjml.TEST_F64);
+    }
+
+    @Test
+    public void elementSum() {
+        DMatrixSparseCSC A = createMatrix();
+        assertEquals(CommonOps_DSCC.elementSum(A),CommonOps_MT_DSCC.elementSum(A),UtilEjml.TEST_F64);
+    }
+
+    @Test
+    public void elementMult() {
+        DMatrixSparseCSC A = createMatrix();
+        DMatrixSparseCSC B = createMatrix();
+        DMatrixSparseCSC expected = new DMatrixSparseCSC(1,1);
+        DMatrixSparseCSC found = new DMatrixSparseCSC(1,1);
+
+        CommonOps_DSCC.elementMult(A,B,expected,null,null);
+        CommonOps_MT_DSCC.elementMult(A,B,found,null);
+
+        assertTrue(CommonOps_DSCC.checkStructure(found));
+        EjmlUnitTests.assertEquals(expected,found,UtilEjml.TEST_F64);
+    }
+
+    @Test
+    public void columnMaxAbs() {
+        DMatrixSparseCSC A = createMatrix();
+        double[] expected = new double[A.numCols];
+        double[] found = new double[A.numCols];
+        CommonOps_DSCC.columnMaxAbs(A,expected);
+        CommonOps_MT_DSCC.columnMaxAbs(A,found);
+        assertArrayEquals(expected,found,UtilEjml.TEST_F64);
+    }
+
+    @Test
+    public void removeZeros() {
+        DMatrixSparseCSC A = createMatrix();
+        DMatrixSparseCSC expected = new DMatrixSparseCSC(1,1);
+        DMatrixSparseCSC found = new DMatrixSparseCSC(1,1);
+        CommonOps_DSCC.removeZeros(A,expected,0.5);
+        CommonOps_MT_DSCC.removeZeros(A,found,0.5,new IGrowArray());
+
+        assertTrue(CommonOps_DSCC.checkStructure(found));
+        assertEquals(expected.nz_length,found.nz_length);
+        EjmlUnitTests.assertEquals(expected,found,UtilEjml.TEST_F64);
+    }
+
+    @Test
+    public void apply() {
+        DMatrixSparseCSC A = createMatrix();
+        DMatrixSparseCSC expected = CommonOps_DSCC.apply(A,x->2*x+1,A.copy());
+        DMatrixSparseCSC found = CommonOps_MT_DSCC.apply(A,x->2*x+1,null);
+        EjmlUnitTests.assertEquals(expected,found,UtilEjml.TEST_F64);
+    }
+
+    @Test
+    public void reduceScalar() {
+        DMatrixSparseCSC A = createMatrix();
+        assertEquals(CommonOps_DSCC.reduceScalar(A,Double::sum),
+                CommonOps_MT_DSCC.reduceScalar(A,Double::sum),UtilEjml.TEST_F64);
+        assertEquals(CommonOps_DSCC.reduceScalar(A,-Double.MAX_VALUE,Math::max),
+                CommonOps_MT_DSCC.reduceScalar(A,-Double.MAX_VALUE,Math::max),UtilEjml.TEST_F64);
+    }
+
+    /**
+     * initValue isn't the identity of func. It should only be applied once, no matter how many blocks there are
+     */
+    @Test
+    public void reduce_initValueNotIdentity() {
+        int maxThreads = EjmlConcurrency.getMaxThreads();
+        try {
+            EjmlConcurrency.setMaxThreads(4);
+            DMatrixSparseCSC A = createMatrix();
+
+            assertEquals(CommonOps_DSCC.reduceScalar(A,5,Double::sum),
+                    CommonOps_MT_DSCC.reduceScalar(A,5,Double::sum),UtilEjml.TEST_F64);
+
+            DMatrixRMaj expected = CommonOps_DSCC.reduceRowWise(A,5,Double::sum,null);
+            DMatrixRMaj found = CommonOps_MT_DSCC.reduceRowWise(A,5,Double::sum,null,null);
+            EjmlUnitTests.assertEquals(expected,found,UtilEjml.TEST_F64);
+
+            // a row with no elements is only the initial value. Adding a row at the end leaves it empty
+            A.numRows += 1;
+            expected = CommonOps_DSCC.reduceRowWise(A,5,Double::sum,null);
+            found = CommonOps_MT_DSCC.reduceRowWise(A,5,Double::sum,null,null);
+            EjmlUnitTests.assertEquals(expected,found,UtilEjml.TEST_F64);
+        } finally {
+            EjmlConcurrency.setMaxThreads(maxThreads);
+        }
+    }
+
+    @Test
+    public void reduceColumnWise() {
+        DMatrixSparseCSC A = createMatrix();
+        DMatrixRMaj expected = CommonOps_DSCC.reduceColumnWise(A,0,Double::sum,null);
+        DMatrixRMaj found = CommonOps_MT_DSCC.reduceColumnWise(A,0,Double::sum,null);
+        EjmlUnitTests.assertEquals(expected,found,UtilEjml.TEST_F64);
+    }
+
+    @Test
+    public void reduceRowWise() {
+        DMatrixSparseCSC A = createMatrix();
+        DMatrixRMaj expected = CommonOps_DSCC.sumRows(A,null);
+        DMatrixRMaj found = CommonOps_MT_DSCC.reduceRowWise(A,0,Double::sum,null,null);
+        assertEquals(A.numRows,found.getNumElements());
+        for (int i = 0; i < A.numRows; i++) {
+            assertEquals(expected.data[i],found.data[i],UtilEjml.TEST_F64);
+        }
+    }
+
+    /**
+     * Turning off concurrency should produce the same results
+     */
+    @Test
+    public void notConcurrent() {
+        DMatrixSparseCSC A = createMatrix();
+        double expected = CommonOps_MT_DSCC.elementSum(A);
+        try {
+            EjmlConcurrency.setConcurrent(false);
+            assertEquals(expected,CommonOps_MT_DSCC.elementSum(A),UtilEjml.TEST_F64);
+        } finally {
+            EjmlConcurrency.setConcurrent(true);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.sparse.csc.misc;
+
+import org.ejml.data.DMatrixSparseCSC;
+import org.ejml.sparse.csc.RandomMatrices_DSCC;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestImplCommonOps_MT_DSCC {
+
+    private final Random rand = new Random(234);
+
+    @Test
+    public void balanceColumns() {
+        DMatrixSparseCSC A = RandomMatrices_DSCC.rectangle(100,50,800,rand);
+        // put most of the elements in one column
+        for (int row = 0; row < A.numRows; row++) {
+            A.set(row,20,1);
+        }
+
+        for (int numBlocks = 1; numBlocks < 8; numBlocks++) {
+            int[] blocks = new int[numBlocks+1];
+            ImplCommonOps_MT_DSCC.balanceColumns(A,numBlocks,blocks);
+
+            assertEquals(0,blocks[0]);
+            assertEquals(A.numCols,blocks[numBlocks]);
+            for (int i = 0; i < numBlocks; i++) {
+                assertTrue(blocks[i] <= blocks[i+1]);
+                // each block should have about the same number of elements unless a single column prevents it
+                int count = A.col_idx[blocks[i+1]]-A.col_idx[blocks[i]];
+                int ideal = A.nz_length/numBlocks;
+                int largestColumn = 0;
+                for (int col = Math.max(0,blocks[i]-1); col < Math.min(A.numCols,blocks[i+1]+1); col++) {
+                    largestColumn = Math.max(largestColumn,A.col_idx[col+1]-A.col_idx[col]);
+                }
+                assertTrue(count <= ideal+2*largestColumn);
+            }
+        }
+    }
+
+    @Test
+    public void balanceColumns_empty() {
+        DMatrixSparseCSC A = new DMatrixSparseCSC(10,5,0);
+        int[] blocks = new int[4];
+        ImplCommonOps_MT_DSCC.balanceColumns(A,3,blocks);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(blocks[i] <= blocks[i+1]);
+        }
+        assertEquals(5,blocks[3]);
+    }
+}
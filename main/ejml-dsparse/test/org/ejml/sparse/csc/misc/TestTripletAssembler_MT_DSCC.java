@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.sparse.csc.misc;
+
+import org.ejml.EjmlUnitTests;
+import org.ejml.UtilEjml;
+import org.ejml.concurrency.EjmlConcurrency;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.data.DMatrixSparseCSC;
+import org.ejml.data.DMatrixSparseTriplet;
+import org.ejml.sparse.csc.CommonOps_DSCC;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestTripletAssembler_MT_DSCC {
+    Random rand = new Random(234);
+
+    int numRows = 40, numCols = 30;
+
+    @Test
+    public void assemble_buffers() {
+        TripletAssembler_MT_DSCC alg = new TripletAssembler_MT_DSCC(numRows,numCols);
+        DMatrixRMaj expected = new DMatrixRMaj(numRows,numCols);
+        List<DMatrixSparseTriplet> buffers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            buffers.add(alg.createBuffer());
+        }
+        fill(buffers,expected);
+
+        DMatrixSparseCSC found = alg.assemble(null);
+        assertTrue(CommonOps_DSCC.checkStructure(found));
+        assertTrue(CommonOps_DSCC.checkSortedFlag(found));
+        assertFalse(CommonOps_DSCC.checkDuplicateElements(found));
+        EjmlUnitTests.assertEquals(expected,found,UtilEjml.TEST_F64);
+    }
+
+    @Test
+    public void assemble_threadLocal() {
+        TripletAssembler_MT_DSCC alg = new TripletAssembler_MT_DSCC(numRows,numCols);
+        int N = 2000;
+        int[] rows = new int[N], cols = new int[N];
+        double[] values = new double[N];
+        DMatrixRMaj expected = new DMatrixRMaj(numRows,numCols);
+        for (int i = 0; i < N; i++) {
+            rows[i] = rand.nextInt(numRows);
+            cols[i] = rand.nextInt(numCols);
+            values[i] = rand.nextDouble();
+            expected.add(rows[i],cols[i],values[i]);
+        }
+
+        EjmlConcurrency.loopFor(0,N,i->alg.addItem(rows[i],cols[i],values[i]));
+
+        DMatrixSparseCSC found = alg.assemble(null);
+        assertTrue(CommonOps_DSCC.checkStructure(found));
+        assertTrue(CommonOps_DSCC.checkSortedFlag(found));
+        EjmlUnitTests.assertEquals(expected,found,UtilEjml.TEST_F64);
+    }
+
+    @Test
+    public void reassemble() {
+        TripletAssembler_MT_DSCC alg = new TripletAssembler_MT_DSCC(numRows,numCols);
+        alg.setStructureLocked(true);
+        List<DMatrixSparseTriplet> buffers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            buffers.add(alg.createBuffer());
+        }
+        DMatrixRMaj expected = new DMatrixRMaj(numRows,numCols);
+        fill(buffers,expected);
+
+        DMatrixSparseCSC found = alg.assemble(null);
+        int[] nz_rows = found.nz_rows;
+        double[] nz_values = found.nz_values;
+
+        // same entries with new values
+        expected.zero();
+        for (DMatrixSparseTriplet b : buffers) {
+            for (int i = 0; i < b.nz_length; i++) {
+                b.nz_value.data[i] = rand.nextDouble();
+                expected.add(b.nz_rowcol.data[i*2],b.nz_rowcol.data[i*2+1],b.nz_value.data[i]);
+            }
+        }
+        assertSame(found,alg.assemble(found));
+        assertSame(nz_rows,found.nz_rows);
+        assertSame(nz_values,found.nz_values);
+        EjmlUnitTests.assertEquals(expected,found,UtilEjml.TEST_F64);
+
+        // different number of entries isn't allowed
+        buffers.get(0).addItem(0,0,1);
+        assertThrows(IllegalArgumentException.class,()->alg.reassemble(found));
+    }
+
+    @Test
+    public void emptyBuffers() {
+        TripletAssembler_MT_DSCC alg = new TripletAssembler_MT_DSCC(numRows,numCols);
+        alg.createBuffer();
+        DMatrixSparseCSC found = alg.assemble(null);
+        assertEquals(0,found.nz_length);
+        assertEquals(numRows,found.numRows);
+        assertEquals(numCols,found.numCols);
+    }
+
+    @Test
+    public void noBuffers() {
+        TripletAssembler_MT_DSCC alg = new TripletAssembler_MT_DSCC(numRows,numCols);
+        DMatrixSparseCSC found = alg.assemble(null);
+        assertEquals(0,found.nz_length);
+        assertEquals(numRows,found.numRows);
+        assertEquals(numCols,found.numCols);
+    }
+
+    private void fill( List<DMatrixSparseTriplet> buffers , DMatrixRMaj expected ) {
+        for (int i = 0; i < 500; i++) {
+            DMatrixSparseTriplet b = buffers.get(rand.nextInt(buffers.size()));
+            int row = rand.nextInt(numRows);
+            int col = rand.nextInt(numCols);
+            double value = rand.nextDouble();
+            b.addItem(row,col,value);
+            expected.add(row,col,value);
+        }
+    }
+}
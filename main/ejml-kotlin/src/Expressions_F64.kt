@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.kotlin
+
+import org.ejml.MatrixDimensionException
+import org.ejml.data.DMatrixRMaj
+import org.ejml.dense.row.CommonOps_DDRM
+
+//----------------------- DDRM Expressions -------------------------------------------
+//
+// Operators inside of assign { } build up a DExpr instead of computing intermediate matrices. The expression
+// is then evaluated directly into the output matrix using a single fused element-wise pass followed by
+// multAdd for each matrix product. No matrices are declared.
+//
+//   C.assign { A * B + D }
+//   C.assign { (A + B) * 2.0 }
+//   C.assignAdd { A.T * B - 0.5 * D }
+
+/**
+ * Evaluates the expression and stores the results in this matrix, which is reshaped to match.
+ * Matrices used in a product can't be the same instance as this matrix.
+ */
+inline fun DMatrixRMaj.assign( expression : DExprScope.() -> DExpr ) : DMatrixRMaj {
+    DExprScope.expression().evalTo(this, false)
+    return this
+}
+
+/**
+ * Evaluates the expression and adds the results to this matrix, i.e. this = this + expression
+ */
+inline fun DMatrixRMaj.assignAdd( expression : DExprScope.() -> DExpr ) : DMatrixRMaj {
+    DExprScope.expression().evalTo(this, true)
+    return this
+}
+
+/**
+ * Operators which are available inside of [assign] and [assignAdd]. They take priority over the operators
+ * in Extensions_F64.kt which compute their results immediately.
+ */
+object DExprScope {
+    /** Transpose of the matrix. Folded into products and read in place by element-wise terms. */
+    val DMatrixRMaj.T : DExpr get() = DExpr.element(1.0, this, true)
+
+    fun expr( a : DMatrixRMaj ) : DExpr = DExpr.element(1.0, a, false)
+
+    operator fun DMatrixRMaj.times( b : DMatrixRMaj ) : DExpr = expr(this) * expr(b)
+    operator fun DMatrixRMaj.times( b : DExpr ) : DExpr = expr(this) * b
+    operator fun DMatrixRMaj.times( b : Double ) : DExpr = expr(this) * b
+    operator fun Double.times( b : DMatrixRMaj ) : DExpr = expr(b) * this
+    operator fun Double.times( b : DExpr ) : DExpr = b * this
+
+    operator fun DMatrixRMaj.plus( b : DMatrixRMaj ) : DExpr = expr(this) + expr(b)
+    operator fun DMatrixRMaj.plus( b : DExpr ) : DExpr = expr(this) + b
+    operator fun DMatrixRMaj.plus( b : Double ) : DExpr = expr(this) + b
+
+    operator fun DMatrixRMaj.minus( b : DMatrixRMaj ) : DExpr = expr(this) - expr(b)
+    operator fun DMatrixRMaj.minus( b : DExpr ) : DExpr = expr(this) - b
+    operator fun DMatrixRMaj.minus( b : Double ) : DExpr = expr(this) + (-b)
+
+    operator fun DMatrixRMaj.div( b : Double ) : DExpr = expr(this) * (1.0/b)
+
+    operator fun DMatrixRMaj.unaryMinus() : DExpr = expr(this) * -1.0
+
+    /** Element-wise multiplication. Infix functions have lower precedence than + so use parentheses. */
+    infix fun DMatrixRMaj.elementMult( b : DMatrixRMaj ) : DExpr = expr(this).elementMult(expr(b))
+}
+
+/**
+ * A lazily evaluated expression which is a weighted sum of element-wise terms, matrix products, and a constant.
+ * Element-wise terms are a matrix or the element-wise product of two matrices. Products are between
+ * two, possibly transposed, matrices. Created using the operators in [DExprScope].
+ */
+class DExpr private constructor(
+        internal val elements : List<ElementTerm>,
+        internal val products : List<ProductTerm>,
+        internal val constant : Double ) {
+
+    internal class ElementTerm( val alpha : Double, val a : DMatrixRMaj, val transA : Boolean,
+                                val b : DMatrixRMaj?, val transB : Boolean ) {
+        val numRows get() = if (transA) a.numCols else a.numRows
+        val numCols get() = if (transA) a.numRows else a.numCols
+
+        fun scale( scale : Double ) = ElementTerm(alpha*scale, a, transA, b, transB)
+    }
+
+    internal class ProductTerm( val alpha : Double, val a : DMatrixRMaj, val transA : Boolean,
+                                val b : DMatrixRMaj, val transB : Boolean ) {
+        val numRows get() = if (transA) a.numCols else a.numRows
+        val numCols get() = if (transB) b.numRows else b.numCols
+
+        fun scale( scale : Double ) = ProductTerm(alpha*scale, a, transA, b, transB)
+    }
+
+    companion object {
+        internal fun element( alpha : Double, a : DMatrixRMaj, trans : Boolean ) =
+                DExpr(listOf(ElementTerm(alpha, a, trans, null, false)), emptyList(), 0.0)
+    }
+
+    operator fun plus( b : DExpr ) = DExpr(elements + b.elements, products + b.products, constant + b.constant)
+    operator fun plus( b : DMatrixRMaj ) = this + element(1.0, b, false)
+    operator fun plus( b : Double ) = DExpr(elements, products, constant + b)
+
+    operator fun minus( b : DExpr ) = this + b*-1.0
+    operator fun minus( b : DMatrixRMaj ) = this + element(-1.0, b, false)
+    operator fun minus( b : Double ) = this + (-b)
+
+    operator fun unaryMinus() = this*-1.0
+
+    operator fun times( b : Double ) =
+            DExpr(elements.map { it.scale(b) }, products.map { it.scale(b) }, constant*b)
+    operator fun div( b : Double ) = this*(1.0/b)
+    operator fun times( b : DMatrixRMaj ) = this*element(1.0, b, false)
+
+    /**
+     * Matrix multiplication. Both expressions must be a single scaled and possibly transposed matrix, since
+     * anything else would require temporary storage.
+     */
+    operator fun times( b : DExpr ) : DExpr {
+        val termA = singleMatrix("multiplication")
+        val termB = b.singleMatrix("multiplication")
+        val product = ProductTerm(termA.alpha*termB.alpha, termA.a, termA.transA, termB.a, termB.transA)
+        return DExpr(emptyList(), listOf(product), 0.0)
+    }
+
+    /**
+     * Element-wise multiplication. Both expressions must be a single scaled and possibly transposed matrix.
+     */
+    infix fun elementMult( b : DExpr ) : DExpr {
+        val termA = singleMatrix("element-wise multiplication")
+        val termB = b.singleMatrix("element-wise multiplication")
+        if (termA.numRows != termB.numRows || termA.numCols != termB.numCols)
+            throw MatrixDimensionException("Element-wise multiplication requires matrices with the same shape")
+        val term = ElementTerm(termA.alpha*termB.alpha, termA.a, termA.transA, termB.a, termB.transA)
+        return DExpr(listOf(term), emptyList(), 0.0)
+    }
+
+    private fun singleMatrix( operation : String ) : ElementTerm {
+        if (elements.size != 1 || products.isNotEmpty() || constant != 0.0 || elements[0].b != null)
+            throw IllegalArgumentException("Only matrices can be used in $operation without temporary storage")
+        return elements[0]
+    }
+
+    /**
+     * Evaluates the expression and writes the results into 'output'. If 'add' is true then the results
+     * are added to 'output' instead.
+     */
+    fun evalTo( output : DMatrixRMaj, add : Boolean ) {
+        var numRows = -1
+        var numCols = -1
+        if (add) {
+            numRows = output.numRows
+            numCols = output.numCols
+        }
+        for (t in elements) {
+            if (numRows == -1) { numRows = t.numRows; numCols = t.numCols }
+            else if (t.numRows != numRows || t.numCols != numCols)
+                throw MatrixDimensionException("Inconsistent shapes in expression")
+        }
+        for (t in products) {
+            val inner = if (t.transA) t.a.numRows else t.a.numCols
+            val innerB = if (t.transB) t.b.numCols else t.b.numRows
+            if (inner != innerB)
+                throw MatrixDimensionException("Matrices in product do not have compatible dimensions")
+            if (numRows == -1) { numRows = t.numRows; numCols = t.numCols }
+            else if (t.numRows != numRows || t.numCols != numCols)
+                throw MatrixDimensionException("Inconsistent shapes in expression")
+            if (t.a === output || t.b === output)
+                throw IllegalArgumentException("The output can't be used in a matrix product")
+        }
+        if (numRows == -1)
+            throw IllegalArgumentException("Expression doesn't contain any matrices")
+        for (t in elements) {
+            // in-place reads are only safe if elements are read in the same order they are written
+            if ((t.transA && t.a === output) || (t.transB && t.b === output))
+                throw IllegalArgumentException("The output can't be transposed in the expression")
+        }
+
+        output.reshape(numRows, numCols)
+
+        // products overwrite the output if nothing else has been written to it
+        var written = add
+        if (elements.isNotEmpty() || constant != 0.0 || products.isEmpty()) {
+            evalElements(output, add, numRows, numCols)
+            written = true
+        }
+
+        for (t in products) {
+            if (written) {
+                when {
+                    t.transA && t.transB -> CommonOps_DDRM.multAddTransAB(t.alpha, t.a, t.b, output)
+                    t.transA -> CommonOps_DDRM.multAddTransA(t.alpha, t.a, t.b, output)
+                    t.transB -> CommonOps_DDRM.multAddTransB(t.alpha, t.a, t.b, output)
+                    else -> CommonOps_DDRM.multAdd(t.alpha, t.a, t.b, output)
+                }
+            } else {
+                when {
+                    t.transA && t.transB -> CommonOps_DDRM.multTransAB(t.alpha, t.a, t.b, output)
+                    t.transA -> CommonOps_DDRM.multTransA(t.alpha, t.a, t.b, output)
+                    t.transB -> CommonOps_DDRM.multTransB(t.alpha, t.a, t.b, output)
+                    else -> CommonOps_DDRM.mult(t.alpha, t.a, t.b, output)
+                }
+                written = true
+            }
+        }
+    }
+
+    /**
+     * Computes all the element-wise terms in a single pass. Every operand is read at an index before the output
+     * is written to it, so operands can be the same instance as the output.
+     */
+    private fun evalElements( output : DMatrixRMaj, add : Boolean, numRows : Int, numCols : Int ) {
+        val out = output.data
+        val anyTransposed = elements.any { it.transA || it.transB }
+
+        if (!anyTransposed) {
+            // common case, everything can be processed as a flat array
+            val length = numRows*numCols
+            when (elements.size) {
+                0 -> {
+                    for (i in 0 until length) out[i] = (if (add) out[i] else 0.0) + constant
+                }
+                1 -> {
+                    val t = elements[0]
+                    val a = t.a.data
+                    val b = t.b?.data
+                    for (i in 0 until length) {
+                        val v = if (b == null) t.alpha*a[i] else t.alpha*a[i]*b[i]
+                        out[i] = (if (add) out[i] else 0.0) + constant + v
+                    }
+                }
+                else -> {
+                    for (i in 0 until length) {
+                        var sum = constant
+                        for (t in elements) {
+                            val b = t.b
+                            sum += if (b == null) t.alpha*t.a.data[i] else t.alpha*t.a.data[i]*b.data[i]
+                        }
+                        out[i] = (if (add) out[i] else 0.0) + sum
+                    }
+                }
+            }
+            return
+        }
+
+        var index = 0
+        for (row in 0 until numRows) {
+            for (col in 0 until numCols) {
+                var sum = constant
+                for (t in elements) {
+                    var v = t.alpha*(if (t.transA) t.a.data[col*t.a.numCols + row] else t.a.data[index])
+                    val b = t.b
+                    if (b != null)
+                        v *= if (t.transB) b.data[col*b.numCols + row] else b.data[index]
+                    sum += v
+                }
+                out[index] = (if (add) out[index] else 0.0) + sum
+                index++
+            }
+        }
+    }
+}
@@ -0,0 +1,420 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.equation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal writer for Java class files. Only the features needed by {@link SequenceCodeGenerator} are supported.
+ * Class files are written using version 49 (Java 5). Starting with version 50 the JVM verifies methods using
+ * StackMapTable frames, which would need to be computed for every branch in the generated loops. Older class files
+ * are still checked by the type inferencing verifier on current JVMs, which keeps this writer simple.
+ *
+ * @author Peter Abeles
+ */
+class ClassFileWriter {
+    // @formatter:off
+    static final int ACONST_NULL = 0x01, DCONST_0 = 0x0e, DCONST_1 = 0x0f, BIPUSH = 0x10, SIPUSH = 0x11,
+            LDC_W = 0x13, LDC2_W = 0x14, ILOAD = 0x15, DLOAD = 0x18, ALOAD = 0x19, DALOAD = 0x31,
+            ISTORE = 0x36, DSTORE = 0x39, ASTORE = 0x3a, DASTORE = 0x52, POP = 0x57, POP2 = 0x58, DUP = 0x59,
+            DADD = 0x63, DSUB = 0x67, DMUL = 0x6b, DDIV = 0x6f, DNEG = 0x77, IINC = 0x84,
+            IFNE = 0x9a, IF_ICMPGE = 0xa2, GOTO = 0xa7, RETURN = 0xb1, GETFIELD = 0xb4, PUTFIELD = 0xb5,
+            INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8, NEW = 0xbb, ATHROW = 0xbf;
+    // @formatter:on
+
+    static final int ACC_PUBLIC = 0x0001, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+
+    // internal name of the class being written and its super class, e.g. "java/lang/Object"
+    final String className;
+    final String superName;
+
+    // Constant pool
+    ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    DataOutputStream pool = new DataOutputStream(poolBytes);
+    Map<String, Integer> poolLookup = new HashMap<>();
+    int poolCount = 1;
+
+    List<byte[]> fields = new ArrayList<>();
+    List<byte[]> methods = new ArrayList<>();
+
+    ClassFileWriter( String className, String superName ) {
+        this.className = className;
+        this.superName = superName;
+    }
+
+    /**
+     * Adds a public field to the class
+     */
+    void addField( String name, Class<?> type ) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(ACC_PUBLIC);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor(type)));
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        fields.add(bytes.toByteArray());
+    }
+
+    /**
+     * Adds a public constructor with no arguments which invokes the super class's constructor
+     */
+    void addDefaultConstructor() {
+        Code code = new Code();
+        code.aload(0);
+        code.invokespecial(superName, "<init>", "()V", 1, 0);
+        code.op(RETURN, 0);
+        addMethod("<init>", "()V", code);
+    }
+
+    /**
+     * Adds a public method to the class
+     */
+    void addMethod( String name, String descriptor, Code code ) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            byte[] instructions = code.toByteArray();
+            out.writeShort(ACC_PUBLIC);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(1);
+            out.writeShort(utf8("Code"));
+            out.writeInt(12 + instructions.length);
+            out.writeShort(code.maxStack);
+            out.writeShort(code.maxLocals);
+            out.writeInt(instructions.length);
+            out.write(instructions);
+            out.writeShort(0); // exception table
+            out.writeShort(0); // attributes
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        methods.add(bytes.toByteArray());
+    }
+
+    byte[] toByteArray() {
+        int thisIndex = classRef(className);
+        int superIndex = classRef(superName);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(poolCount);
+            out.write(poolBytes.toByteArray());
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisIndex);
+            out.writeShort(superIndex);
+            out.writeShort(0); // interfaces
+            out.writeShort(fields.size());
+            for (byte[] f : fields) {
+                out.write(f);
+            }
+            out.writeShort(methods.size());
+            for (byte[] m : methods) {
+                out.write(m);
+            }
+            out.writeShort(0); // attributes
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    int utf8( String text ) {
+        return constant("U" + text, 1, 1, out -> out.writeUTF(text));
+    }
+
+    int string( String text ) {
+        int index = utf8(text);
+        return constant("S" + text, 8, 1, out -> out.writeShort(index));
+    }
+
+    int integer( int value ) {
+        return constant("I" + value, 3, 1, out -> out.writeInt(value));
+    }
+
+    int doubleValue( double value ) {
+        return constant("D" + Double.doubleToRawLongBits(value), 6, 2, out -> out.writeDouble(value));
+    }
+
+    int classRef( String internalName ) {
+        int index = utf8(internalName);
+        return constant("C" + internalName, 7, 1, out -> out.writeShort(index));
+    }
+
+    int nameAndType( String name, String descriptor ) {
+        int indexName = utf8(name);
+        int indexDesc = utf8(descriptor);
+        return constant("N" + name + " " + descriptor, 12, 1, out -> {
+            out.writeShort(indexName);
+            out.writeShort(indexDesc);
+        });
+    }
+
+    int memberRef( int tag, String owner, String name, String descriptor ) {
+        int indexOwner = classRef(owner);
+        int indexNT = nameAndType(name, descriptor);
+        return constant(tag + owner + "." + name + " " + descriptor, tag, 1, out -> {
+            out.writeShort(indexOwner);
+            out.writeShort(indexNT);
+        });
+    }
+
+    private int constant( String key, int tag, int slots, PoolEntry entry ) {
+        Integer index = poolLookup.get(key);
+        if (index != null)
+            return index;
+        try {
+            pool.writeByte(tag);
+            entry.write(pool);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        index = poolCount;
+        poolCount += slots;
+        poolLookup.put(key, index);
+        return index;
+    }
+
+    private interface PoolEntry {
+        void write( DataOutputStream out ) throws IOException;
+    }
+
+    static String internalName( Class<?> type ) {
+        return type.getName().replace('.', '/');
+    }
+
+    static String descriptor( Class<?> type ) {
+        if (type == void.class) return "V";
+        if (type == boolean.class) return "Z";
+        if (type == int.class) return "I";
+        if (type == double.class) return "D";
+        if (type == float.class) return "F";
+        if (type == long.class) return "J";
+        if (type.isArray())
+            return "[" + descriptor(type.getComponentType());
+        return "L" + internalName(type) + ";";
+    }
+
+    static String descriptor( Method method ) {
+        StringBuilder builder = new StringBuilder("(");
+        for (Class<?> c : method.getParameterTypes()) {
+            builder.append(descriptor(c));
+        }
+        return builder.append(")").append(descriptor(method.getReturnType())).toString();
+    }
+
+    /**
+     * Number of slots a value of this type takes up on the stack
+     */
+    static int slots( Class<?> type ) {
+        if (type == void.class)
+            return 0;
+        return type == double.class || type == long.class ? 2 : 1;
+    }
+
+    /**
+     * Byte code for a single method. The maximum stack size is computed as instructions are added.
+     */
+    class Code {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int stack, maxStack, maxLocals = 1;
+
+        // location of each label in the code. -1 if not yet known
+        List<Integer> labels = new ArrayList<>();
+        // locations of jump offsets which need to be filled in: {position of opcode, position of offset, label}
+        List<int[]> jumps = new ArrayList<>();
+
+        void op( int opcode, int stackChange ) {
+            bytes.write(opcode);
+            adjustStack(stackChange);
+        }
+
+        void aload( int index ) { local(ALOAD, index, 1, 1); }
+        void astore( int index ) { local(ASTORE, index, -1, 1); }
+        void iload( int index ) { local(ILOAD, index, 1, 1); }
+        void istore( int index ) { local(ISTORE, index, -1, 1); }
+        void dload( int index ) { local(DLOAD, index, 2, 2); }
+        void dstore( int index ) { local(DSTORE, index, -2, 2); }
+
+        private void local( int opcode, int index, int stackChange, int size ) {
+            if (index > 255)
+                throw new IllegalArgumentException("Too many local variables");
+            bytes.write(opcode);
+            bytes.write(index);
+            maxLocals = Math.max(maxLocals, index + size);
+            adjustStack(stackChange);
+        }
+
+        void iinc( int index, int amount ) {
+            bytes.write(IINC);
+            bytes.write(index);
+            bytes.write(amount);
+        }
+
+        void iconst( int value ) {
+            if (value >= -1 && value <= 5) {
+                bytes.write(0x03 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                bytes.write(BIPUSH);
+                bytes.write(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                bytes.write(SIPUSH);
+                writeShort(value);
+            } else {
+                bytes.write(LDC_W);
+                writeShort(integer(value));
+            }
+            adjustStack(1);
+        }
+
+        void dconst( double value ) {
+            if (Double.doubleToRawLongBits(value) == 0L) {
+                bytes.write(DCONST_0);
+            } else if (value == 1.0) {
+                bytes.write(DCONST_1);
+            } else {
+                bytes.write(LDC2_W);
+                writeShort(doubleValue(value));
+            }
+            adjustStack(2);
+        }
+
+        void ldcString( String text ) {
+            bytes.write(LDC_W);
+            writeShort(string(text));
+            adjustStack(1);
+        }
+
+        void newObject( Class<?> type ) {
+            bytes.write(NEW);
+            writeShort(classRef(internalName(type)));
+            adjustStack(1);
+        }
+
+        void getfield( String owner, String name, Class<?> type ) {
+            bytes.write(GETFIELD);
+            writeShort(memberRef(9, owner, name, descriptor(type)));
+            adjustStack(slots(type) - 1);
+        }
+
+        void putfield( String owner, String name, Class<?> type ) {
+            bytes.write(PUTFIELD);
+            writeShort(memberRef(9, owner, name, descriptor(type)));
+            adjustStack(-slots(type) - 1);
+        }
+
+        /**
+         * Invokes a static or virtual method. The returned value is left on the stack
+         */
+        void invoke( Method method ) {
+            boolean isStatic = java.lang.reflect.Modifier.isStatic(method.getModifiers());
+            int argSlots = isStatic ? 0 : 1;
+            for (Class<?> c : method.getParameterTypes()) {
+                argSlots += slots(c);
+            }
+            bytes.write(isStatic ? INVOKESTATIC : INVOKEVIRTUAL);
+            writeShort(memberRef(10, internalName(method.getDeclaringClass()), method.getName(), descriptor(method)));
+            adjustStack(slots(method.getReturnType()) - argSlots);
+        }
+
+        /**
+         * Invokes a method and discards the returned value
+         */
+        void call( Method method ) {
+            invoke(method);
+            int returned = slots(method.getReturnType());
+            if (returned == 1)
+                op(POP, -1);
+            else if (returned == 2)
+                op(POP2, -2);
+        }
+
+        void invokespecial( String owner, String name, String descriptor, int argSlots, int returnSlots ) {
+            bytes.write(INVOKESPECIAL);
+            writeShort(memberRef(10, owner, name, descriptor));
+            adjustStack(returnSlots - argSlots);
+        }
+
+        int createLabel() {
+            labels.add(-1);
+            return labels.size() - 1;
+        }
+
+        void mark( int label ) {
+            labels.set(label, bytes.size());
+        }
+
+        /**
+         * Adds a jump instruction to the label
+         *
+         * @param stackChange how the stack changes when the jump instruction is executed
+         */
+        void jump( int opcode, int label, int stackChange ) {
+            int position = bytes.size();
+            bytes.write(opcode);
+            jumps.add(new int[]{position, bytes.size(), label});
+            writeShort(0);
+            adjustStack(stackChange);
+        }
+
+        private void writeShort( int value ) {
+            bytes.write((value >> 8) & 0xFF);
+            bytes.write(value & 0xFF);
+        }
+
+        private void adjustStack( int change ) {
+            stack += change;
+            if (stack < 0)
+                throw new RuntimeException("BUG negative stack");
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        byte[] toByteArray() {
+            byte[] code = bytes.toByteArray();
+            for (int[] jump : jumps) {
+                int target = labels.get(jump[2]);
+                if (target < 0)
+                    throw new RuntimeException("BUG label was never marked");
+                int offset = target - jump[0];
+                if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE)
+                    throw new RuntimeException("Generated method is too large");
+                code[jump[1]] = (byte)(offset >> 8);
+                code[jump[1] + 1] = (byte)offset;
+            }
+            if (code.length >= 65535)
+                throw new RuntimeException("Generated method is too large");
+            return code;
+        }
+    }
+}
@@ -23,8 +23,10 @@ import org.ejml.ops.ConvertDMatrixStruct;
 import org.ejml.ops.ConvertFMatrixStruct;
 import org.ejml.ops.ConvertMatrixData;
 import org.ejml.simple.SimpleMatrix;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
@@ -245,6 +247,15 @@ public class Equation {
     ManagerFunctions functions = new ManagerFunctions();
     ManagerTempVariables managerTemp = new ManagerTempVariables();
 
+    // If true then compiled sequences are optimized by fusing operations together
+    boolean optimize = true;
+
+    // If true then compiled sequences are converted into byte code
+    boolean generateCode = false;
+
+    // Sequences compiled by process(String). Null if caching is turned off
+    @Nullable SequenceCache<Sequence> cache = new SequenceCache<>(50);
+
     public Equation() {
         alias(Math.PI,"pi");
         alias(Math.E,"e");
@@ -289,11 +300,11 @@ public class Equation {
     public void alias(DMatrixRMaj variable , String name ) {
         if( isReserved(name))
             throw new RuntimeException("Reserved word or contains a reserved character");
-        VariableMatrix old = (VariableMatrix)variables.get(name);
-        if( old == null ) {
-            variables.put(name, new VariableMatrix(variable));
-        }else {
-            old.matrix = variable;
+        Variable old = variables.get(name);
+        if( old instanceof VariableMatrix ) {
+            ((VariableMatrix)old).matrix = variable;
+        } else {
+            replaceVariable(name, old, new VariableMatrix(variable));
         }
     }
 
@@ -303,10 +314,33 @@ public class Equation {
         alias(f,name);
     }
 
+    /**
+     * Adds a new sparse matrix variable. If one already has the same name it is written over. Operations
+     * on sparse matrices are performed using sparse algorithms, see {@link OperationSparse}. Operations without
+     * a sparse implementation convert it into a dense matrix.
+     *
+     * @param variable Matrix which is to be assigned to name
+     * @param name The name of the variable
+     */
     public void alias(DMatrixSparseCSC variable , String name ) {
-        DMatrixRMaj f = new DMatrixRMaj(variable.numRows,variable.numCols);
-        ConvertDMatrixStruct.convert(variable,f);
-        alias(f,name);
+        if( isReserved(name))
+            throw new RuntimeException("Reserved word or contains a reserved character");
+        Variable old = variables.get(name);
+        if( old instanceof VariableSparseMatrix ) {
+            ((VariableSparseMatrix)old).matrix = variable;
+        } else {
+            replaceVariable(name, old, new VariableSparseMatrix(variable));
+        }
+    }
+
+    /**
+     * Adds a new variable. If it replaces one with a different type then cached sequences which reference
+     * the old variable are discarded.
+     */
+    private void replaceVariable( String name , @Nullable Variable old , Variable variable ) {
+        variables.put(name, variable);
+        if( old != null && cache != null )
+            cache.clear();
     }
 
     public void alias( SimpleMatrix variable , String name ) {
@@ -407,6 +441,21 @@ public class Equation {
         return compile(equation,true,false);
     }
 
+    /**
+     * Compiles each equation and combines them into a single dependency graph. When performed, operations which
+     * don't depend on each other can be run concurrently.
+     *
+     * @param equations Equations in the order they would be processed in
+     * @return Graph containing the operations from every equation
+     */
+    public SequenceGraph compileGraph( String... equations ) {
+        List<Sequence> sequences = new ArrayList<>();
+        for (String equation : equations) {
+            sequences.add(compile(equation));
+        }
+        return new SequenceGraph(sequences);
+    }
+
     /**
      * Parses the equation and compiles it into a sequence which can be executed later on
      * @param equation String in simple equation format.
@@ -455,6 +504,14 @@ public class Equation {
                 compileAssignment(sequence, tokens, t0);
             }
 
+            if (optimize) {
+                OperationFusion.process(sequence);
+            }
+
+            if (generateCode) {
+                sequence = SequenceCodeGenerator.generate(sequence);
+            }
+
             if (debug) {
                 System.out.println("Operations:\n------------");
                 for (int i = 0; i < sequence.operations.size(); i++) {
@@ -488,13 +545,15 @@ public class Equation {
         if (range == null) {
             // no range, so copy results into the entire output matrix
             sequence.output = createVariableInferred(t0, variableRight);
-            sequence.addOperation(Operation.copy(variableRight, sequence.output));
+            addOperation(sequence, Operation.copy(variableRight, sequence.output), sequence.output, variableRight);
         } else {
             // a sub-matrix range is specified.  Copy into that inner part
             if (t0.getType() == Type.WORD) {
                 throw new ParseError("Can't do lazy variable initialization with submatrices. " + t0.getWord());
             }
-            sequence.addOperation(Operation.copy(variableRight, t0.getVariable(), range));
+            List<Variable> inputs = new ArrayList<>(range);
+            inputs.add(variableRight);
+            addOperation(sequence, Operation.copy(variableRight, t0.getVariable(), range), t0.getVariable(), inputs);
         }
     }
 
@@ -539,7 +598,16 @@ public class Equation {
         t = t.next;
         macro.tokens = new TokenList(t,tokens.last);
 
-        sequence.addOperation(macro.createOperation(macros));
+        // Cached sequences might have been compiled using an older version of the macro
+        final Operation define = macro.createOperation(macros);
+        sequence.addOperation(new Operation(define.name()) {
+            @Override
+            public void process() {
+                define.process();
+                if (cache != null)
+                    cache.clear();
+            }
+        });
     }
 
 
@@ -588,7 +656,11 @@ public class Equation {
         if( t0.getType() == Type.WORD ) {
             switch( variableRight.getType()) {
                 case MATRIX:
-                    alias(new DMatrixRMaj(1,1),t0.getWord());
+                    if( variableRight instanceof VariableSparseMatrix ) {
+                        alias(new DMatrixSparseCSC(1,1,0),t0.getWord());
+                    } else {
+                        alias(new DMatrixRMaj(1,1),t0.getWord());
+                    }
                     break;
 
                 case SCALAR:
@@ -822,7 +894,7 @@ public class Equation {
             throw new ParseError("Expected 2 inputs to sub-matrix");
         }
 
-        sequence.addOperation(info.op);
+        addOperation(sequence, info, variables);
 
         return new TokenList.Token(info.output);
     }
@@ -1135,9 +1207,15 @@ public class Equation {
                 parseBlockNoParentheses(bracketLet, sequence, true);
                 MatrixConstructor constructor = constructMatrix(bracketLet);
 
+                List<Variable> inputs = new ArrayList<>();
+                for (TokenList.Token n = bracketLet.first; n != null; n = n.next) {
+                    if( n.getType() == Type.VARIABLE )
+                        inputs.add(n.getVariable());
+                }
+
                 // define the matrix op and inject into token list
                 Operation.Info info = Operation.matrixConstructor(constructor);
-                sequence.addOperation(info.op);
+                addOperation(sequence, info, inputs);
 
                 tokens.insert(start.previous, new TokenList.Token(info.output));
 
@@ -1206,7 +1284,7 @@ public class Equation {
                 // create the operation
                 Operation.Info info = Operation.neg(token.next.getVariable(),functions.getManagerTemp());
                 // add the operation to the sequence
-                sequence.addOperation(info.op);
+                addOperation(sequence, info, token.next.getVariable());
                 // update the token list
                 TokenList.Token t = new TokenList.Token(info.output);
                 tokens.insert(token.next,t);
@@ -1296,7 +1374,7 @@ public class Equation {
     {
         Operation.Info info = functions.create('\'',variable.getVariable());
 
-        sequence.addOperation(info.op);
+        addOperation(sequence, info, variable.getVariable());
 
         // replace the symbols with their output
         TokenList.Token t = new TokenList.Token(info.output);
@@ -1317,7 +1395,7 @@ public class Equation {
     {
         Operation.Info info = functions.create(op.symbol, left.getVariable(), right.getVariable());
 
-        sequence.addOperation(info.op);
+        addOperation(sequence, info, left.getVariable(), right.getVariable());
 
         // replace the symbols with their output
         TokenList.Token t = new TokenList.Token(info.output);
@@ -1335,17 +1413,17 @@ public class Equation {
     protected TokenList.Token createFunction( TokenList.Token name , List<TokenList.Token> inputs , TokenList tokens , Sequence sequence )
     {
         Operation.Info info;
+        List<Variable> vars = new ArrayList<>();
+        for (int i = 0; i < inputs.size(); i++) {
+            vars.add(inputs.get(i).getVariable());
+        }
         if( inputs.size() == 1 )
-            info = functions.create(name.getFunction().getName(),inputs.get(0).getVariable());
+            info = functions.create(name.getFunction().getName(),vars.get(0));
         else {
-            List<Variable> vars = new ArrayList<>();
-            for (int i = 0; i < inputs.size(); i++) {
-                vars.add(inputs.get(i).getVariable());
-            }
             info = functions.create(name.getFunction().getName(), vars );
         }
 
-        sequence.addOperation(info.op);
+        addOperation(sequence, info, vars);
 
         // replace the symbols with the function's output
         TokenList.Token t = new TokenList.Token(info.output);
@@ -1354,6 +1432,30 @@ public class Equation {
 
     }
 
+    /**
+     * Adds the operation to the sequence and records which variables it reads and writes to. This information
+     * is used later on to optimize the sequence.
+     */
+    private static void addOperation( Sequence sequence, Operation op, Variable output, Variable... inputs ) {
+        List<Variable> list = new ArrayList<>();
+        Collections.addAll(list, inputs);
+        addOperation(sequence, op, output, list);
+    }
+
+    private static void addOperation( Sequence sequence, Operation.Info info, Variable... inputs ) {
+        addOperation(sequence, info.op, info.output, inputs);
+    }
+
+    private static void addOperation( Sequence sequence, Operation.Info info, List<Variable> inputs ) {
+        addOperation(sequence, info.op, info.output, inputs);
+    }
+
+    private static void addOperation( Sequence sequence, Operation op, Variable output, List<Variable> inputs ) {
+        op.inputVariables = inputs;
+        op.outputVariable = output;
+        sequence.addOperation(op);
+    }
+
     /**
      * Looks up a variable given its name.  If none is found then return null.
      */
@@ -1370,6 +1472,10 @@ public class Equation {
         return ((VariableMatrix)variables.get(token)).matrix;
     }
 
+    public DMatrixSparseCSC lookupDSCC(String token) {
+        return ((VariableSparseMatrix)variables.get(token)).matrix;
+    }
+
     public FMatrixRMaj lookupFDRM(String token) {
         DMatrixRMaj d = ((VariableMatrix)variables.get(token)).matrix;
         FMatrixRMaj f = new FMatrixRMaj(d.numRows,d.numCols);
@@ -1661,10 +1767,56 @@ public class Equation {
      * @param equation String in simple equation format
      */
     public Equation process( String equation ) {
-        compile(equation).perform();
+        if (cache == null) {
+            compile(equation).perform();
+            return this;
+        }
+
+        String key = cacheKey(equation);
+        Sequence sequence = cache.get(key);
+        if (sequence == null) {
+            sequence = compile(equation);
+            sequence.perform();
+            cache.put(key, sequence);
+        } else {
+            sequence.perform();
+        }
         return this;
     }
 
+    /**
+     * Creates the key for a sequence in the cache. It's composed of the equation, compile settings,
+     * and the type and shape of every variable referenced in the equation.
+     */
+    String cacheKey( String equation ) {
+        StringBuilder key = new StringBuilder(equation.length()*2);
+        key.append(equation).append('|').append(optimize ? 'o' : '-').append(generateCode ? 'g' : '-');
+
+        int start = -1;
+        for (int i = 0; i <= equation.length(); i++) {
+            if (i < equation.length() && isLetter(equation.charAt(i))) {
+                if (start < 0)
+                    start = i;
+                continue;
+            }
+            if (start < 0)
+                continue;
+            Variable v = variables.get(equation.substring(start, i));
+            start = -1;
+            if (v == null) {
+                key.append("|-");
+            } else if (v instanceof VariableMatrix) {
+                DMatrixRMaj m = ((VariableMatrix)v).matrix;
+                key.append('|').append(m.numRows).append('x').append(m.numCols);
+            } else if (v instanceof VariableSparseMatrix) {
+                key.append("|s");
+            } else {
+                key.append('|').append(v.getType().ordinal());
+            }
+        }
+        return key.toString();
+    }
+
     /**
      * Compiles and performs the provided equation.
      *
@@ -1689,6 +1841,8 @@ public class Equation {
 
         if( v instanceof VariableMatrix ) {
             ((VariableMatrix)v).matrix.print();
+        } else if( v instanceof VariableSparseMatrix ) {
+            ((VariableSparseMatrix)v).matrix.print();
         } else if(v instanceof VariableScalar ) {
             System.out.println("Scalar = "+((VariableScalar)v).getDouble() );
         } else {
@@ -1696,6 +1850,66 @@ public class Equation {
         }
     }
 
+    /**
+     * If true then compiled sequences will be optimized. Chains of element-wise operations are fused into a
+     * single pass and matrix multiplications absorb transposes, scale factors, and additions.
+     *
+     * @see OperationFusion
+     */
+    public void setOptimize( boolean optimize ) {
+        this.optimize = optimize;
+    }
+
+    public boolean isOptimize() {
+        return optimize;
+    }
+
+    /**
+     * If true then compiled sequences will be converted into byte code, which removes the overhead of invoking
+     * each operation. Best used when a sequence is compiled once and performed many times on small matrices.
+     *
+     * @see SequenceCodeGenerator
+     */
+    public void setGenerateCode( boolean generateCode ) {
+        this.generateCode = generateCode;
+    }
+
+    public boolean isGenerateCode() {
+        return generateCode;
+    }
+
+    /**
+     * If true then matrix operations (multiplication, transpose, solve, invert, and element-wise operations) will
+     * use the concurrent implementations in {@link org.ejml.dense.row.CommonOps_MT_DDRM}. This can be changed
+     * after a sequence has been compiled. Byte code generated by {@link #setGenerateCode(boolean)} and fused
+     * element-wise operations are always single threaded.
+     *
+     * @see org.ejml.concurrency.EjmlConcurrency
+     */
+    public void setConcurrent( boolean concurrent ) {
+        managerTemp.setConcurrent(concurrent);
+    }
+
+    public boolean isConcurrent() {
+        return managerTemp.isConcurrent();
+    }
+
+    /**
+     * Changes the maximum number of sequences which are cached by {@link #process(String)}. Repeatedly processing
+     * the same equation will then only parse it once, as long as the variables it references keep the same type
+     * and shape. If zero then caching is turned off.
+     */
+    public void setCacheSize( int size ) {
+        cache = size > 0 ? new SequenceCache<>(size) : null;
+    }
+
+    /**
+     * Returns the cache used by {@link #process(String)} or null if caching is turned off
+     */
+    public @Nullable SequenceCache<Sequence> getCache() {
+        return cache;
+    }
+
     /**
      * Returns the functions manager
      */
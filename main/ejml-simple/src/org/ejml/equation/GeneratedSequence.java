@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.equation;
+
+/**
+ * Base class for sequences which have been converted into a class by {@link SequenceCodeGenerator}. Calling
+ * {@link #perform()} invokes the operations directly instead of looping through the list of operations.
+ *
+ * @author Peter Abeles
+ */
+public abstract class GeneratedSequence extends Sequence {
+    // true if the matrices were converted into fixed sized matrices
+    boolean fixedSize;
+
+    @Override
+    public abstract void perform();
+
+    /**
+     * Returns true if the generated code operates on fixed sized matrices, e.g. {@link org.ejml.data.DMatrix3x3}
+     */
+    public boolean isFixedSize() {
+        return fixedSize;
+    }
+}
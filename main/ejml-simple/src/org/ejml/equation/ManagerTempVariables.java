@@ -34,14 +34,32 @@ public class ManagerTempVariables {
      */
     Random rand = new Random(0xDEADBEEF);
 
+    /**
+     * If true then operations will use concurrent implementations when available. Checked each time an
+     * operation is performed.
+     */
+    boolean concurrent = false;
+
     public Random getRandom() {
         return rand;
     }
 
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    public void setConcurrent( boolean concurrent ) {
+        this.concurrent = concurrent;
+    }
+
     public VariableMatrix createMatrix() {
         return VariableMatrix.createTemp();
     }
 
+    public VariableSparseMatrix createSparseMatrix() {
+        return VariableSparseMatrix.createTemp();
+    }
+
     public VariableDouble createDouble() {
         return new VariableDouble(0);
     }
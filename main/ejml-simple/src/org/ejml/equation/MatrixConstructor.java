@@ -18,6 +18,7 @@
 
 package org.ejml.equation;
 
+import org.ejml.data.DMatrix;
 import org.ejml.data.DMatrixRMaj;
 import org.ejml.dense.row.CommonOps_DDRM;
 
@@ -157,7 +158,7 @@ public class MatrixConstructor {
 
         private Item(Variable variable) {
             this.variable = variable;
-            matrix = variable instanceof VariableMatrix;
+            matrix = variable instanceof VariableMatrix || variable instanceof VariableSparseMatrix;
         }
 
         private Item() {
@@ -166,7 +167,7 @@ public class MatrixConstructor {
 
         public int getRows() {
             if( matrix ) {
-                return ((VariableMatrix)variable).matrix.numRows;
+                return getMatrix().getNumRows();
             } else {
                 return 1;
             }
@@ -174,7 +175,7 @@ public class MatrixConstructor {
 
         public int getColumns() {
             if( matrix ) {
-                return ((VariableMatrix)variable).matrix.numCols;
+                return getMatrix().getNumCols();
             } else if( variable.getType() == VariableType.SCALAR ){
                 return 1;
             } else if( variable.getType() == VariableType.INTEGER_SEQUENCE ) {
@@ -184,7 +185,9 @@ public class MatrixConstructor {
             }
         }
 
-        public DMatrixRMaj getMatrix() {
+        public DMatrix getMatrix() {
+            if( variable instanceof VariableSparseMatrix )
+                return ((VariableSparseMatrix)variable).matrix;
             return ((VariableMatrix)variable).matrix;
         }
 
@@ -22,10 +22,13 @@ import org.ejml.MatrixDimensionException;
 import org.ejml.data.DMatrixRMaj;
 import org.ejml.data.Matrix;
 import org.ejml.dense.row.CommonOps_DDRM;
+import org.ejml.dense.row.CommonOps_MT_DDRM;
 import org.ejml.dense.row.MatrixFeatures_DDRM;
 import org.ejml.dense.row.NormOps_DDRM;
 import org.ejml.dense.row.RandomMatrices_DDRM;
 import org.ejml.dense.row.factory.LinearSolverFactory_DDRM;
+import org.ejml.dense.row.linsol.qr.LinearSolverQrHouseCol_DDRM;
+import org.ejml.dense.row.linsol.qr.LinearSolverQrHouseCol_MT_DDRM;
 import org.ejml.dense.row.mult.VectorVectorMult_DDRM;
 import org.ejml.interfaces.linsol.LinearSolverDense;
 import org.jetbrains.annotations.Nullable;
@@ -42,6 +45,11 @@ public abstract class Operation {
 
     String name;
 
+    // Variables read by this operation. Null if unknown, in which case the sequence can't be optimized
+    @Nullable List<Variable> inputVariables;
+    // Variable which this operation writes to
+    @Nullable Variable outputVariable;
+
     protected Operation(String name) {
         this.name = name;
     }
@@ -66,6 +74,8 @@ public abstract class Operation {
     }
 
     public static Info multiply(final Variable A, final Variable B, ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A,B) )
+            return OperationSparse.multiply(A,B,manager);
 
         Info ret = new Info();
 
@@ -80,7 +90,10 @@ public abstract class Operation {
 
                     resize(output,mA.matrix.numRows,mB.matrix.numCols);
                     try {
-                        CommonOps_DDRM.mult(mA.matrix, mB.matrix, output.matrix);
+                        if( manager.isConcurrent() )
+                            CommonOps_MT_DDRM.mult(mA.matrix, mB.matrix, output.matrix);
+                        else
+                            CommonOps_DDRM.mult(mA.matrix, mB.matrix, output.matrix);
                     } catch( MatrixDimensionException e ) {
                         // provide a more informative message if special case
                         checkThrow1x1AgainstNxM(mA.matrix,mB.matrix,"multiply");
@@ -130,7 +143,10 @@ public abstract class Operation {
                 @Override
                 public void process() {
                     output.matrix.reshape(m.matrix.numRows,m.matrix.numCols);
-                    CommonOps_DDRM.scale(s.getDouble(),m.matrix,output.matrix);
+                    if( manager.isConcurrent() )
+                        CommonOps_MT_DDRM.scale(s.getDouble(),m.matrix,output.matrix);
+                    else
+                        CommonOps_DDRM.scale(s.getDouble(),m.matrix,output.matrix);
                 }
             };
         }
@@ -140,6 +156,8 @@ public abstract class Operation {
 
     @SuppressWarnings("ArgumentSelectionDefectChecker")
     public static Info divide(final Variable A, final Variable B, ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A,B) )
+            return OperationSparse.divide(A,B,manager);
 
         Info ret = new Info();
 
@@ -154,7 +172,10 @@ public abstract class Operation {
                 @Override
                 public void process() {
                     output.matrix.reshape(m.matrix.numRows,m.matrix.numCols);
-                    CommonOps_DDRM.divide(m.matrix,s.getDouble(),output.matrix);
+                    if( manager.isConcurrent() )
+                        CommonOps_MT_DDRM.divide(m.matrix,s.getDouble(),output.matrix);
+                    else
+                        CommonOps_DDRM.divide(m.matrix,s.getDouble(),output.matrix);
                 }
             };
         } else if( A instanceof VariableScalar && B instanceof VariableMatrix ) {
@@ -202,6 +223,9 @@ public abstract class Operation {
      * Returns the negative of the input variable
      */
     public static Info neg(final Variable A, ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A) )
+            return OperationSparse.neg(A,manager);
+
         Info ret = new Info();
 
         if( A instanceof VariableInteger  ) {
@@ -241,6 +265,9 @@ public abstract class Operation {
     }
 
     public static Info pow(final Variable A, final Variable B, ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A,B) )
+            return OperationSparse.dense((inputs, m) -> pow(inputs.get(0), inputs.get(1), m), manager, A, B);
+
         Info ret = new Info();
         final VariableDouble output = manager.createDouble();
         ret.output = output;
@@ -264,6 +291,9 @@ public abstract class Operation {
     }
 
     public static Info atan2(final Variable A, final Variable B, ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A,B) )
+            return OperationSparse.dense((inputs, m) -> atan2(inputs.get(0), inputs.get(1), m), manager, A, B);
+
         Info ret = new Info();
         final VariableDouble output = manager.createDouble();
         ret.output = output;
@@ -287,6 +317,9 @@ public abstract class Operation {
     }
 
     public static Info sqrt(final Variable A, ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A) )
+            return OperationSparse.dense((inputs, m) -> sqrt(inputs.get(0), m), manager, A);
+
         Info ret = new Info();
         final VariableDouble output = manager.createDouble();
         ret.output = output;
@@ -309,6 +342,9 @@ public abstract class Operation {
     }
 
     public static Info sin(final Variable A, ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A) )
+            return OperationSparse.dense((inputs, m) -> sin(inputs.get(0), m), manager, A);
+
         Info ret = new Info();
         final VariableDouble output = manager.createDouble();
         ret.output = output;
@@ -329,6 +365,9 @@ public abstract class Operation {
     }
 
     public static Info cos(final Variable A, ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A) )
+            return OperationSparse.dense((inputs, m) -> cos(inputs.get(0), m), manager, A);
+
         Info ret = new Info();
         final VariableDouble output = manager.createDouble();
         ret.output = output;
@@ -349,6 +388,9 @@ public abstract class Operation {
     }
 
     public static Info atan(final Variable A, ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A) )
+            return OperationSparse.dense((inputs, m) -> atan(inputs.get(0), m), manager, A);
+
         Info ret = new Info();
         final VariableDouble output = manager.createDouble();
         ret.output = output;
@@ -369,6 +411,9 @@ public abstract class Operation {
     }
 
     public static Info exp(final Variable A, ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A) )
+            return OperationSparse.dense((inputs, m) -> exp(inputs.get(0), m), manager, A);
+
         final Info ret = new Info();
 
 
@@ -401,6 +446,9 @@ public abstract class Operation {
     }
 
     public static Info log(final Variable A, ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A) )
+            return OperationSparse.dense((inputs, m) -> log(inputs.get(0), m), manager, A);
+
         final Info ret = new Info();
 
         if( A instanceof VariableScalar  ) {
@@ -432,6 +480,9 @@ public abstract class Operation {
     }
 
     public static Info add(final Variable A, final Variable B, ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A,B) )
+            return OperationSparse.add(A,B,manager);
+
         Info ret = new Info();
 
         if( A instanceof VariableMatrix && B instanceof VariableMatrix ) {
@@ -445,7 +496,10 @@ public abstract class Operation {
 
                     resize(output, mA.matrix.numRows, mA.matrix.numCols);
                     try {
-                        CommonOps_DDRM.add(mA.matrix, mB.matrix, output.matrix);
+                        if( manager.isConcurrent() )
+                            CommonOps_MT_DDRM.add(mA.matrix, mB.matrix, output.matrix);
+                        else
+                            CommonOps_DDRM.add(mA.matrix, mB.matrix, output.matrix);
                     } catch( MatrixDimensionException e ) {
                         checkThrow1x1AgainstNxM(mA.matrix,mB.matrix,"add");
                     }
@@ -501,7 +555,7 @@ public abstract class Operation {
         return ret;
     }
 
-    private static void checkThrow1x1AgainstNxM( Matrix A , Matrix B , String operation ) {
+    static void checkThrow1x1AgainstNxM( Matrix A , Matrix B , String operation ) {
         if((A.getNumCols() == 1&&A.getNumRows()==1) || (B.getNumCols() == 1&&B.getNumRows() == 1)) {
             throw new MatrixDimensionException("Trying to "+operation+" a 1x1 matrix to every element in a " +
                     "MxN matrix? Turn the 1x1 matrix into a scalar by accessing its element. This is " +
@@ -510,6 +564,9 @@ public abstract class Operation {
     }
 
     public static Info subtract(final Variable A, final Variable B, ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A,B) )
+            return OperationSparse.subtract(A,B,manager);
+
         Info ret = new Info();
 
         if( A instanceof VariableMatrix && B instanceof VariableMatrix ) {
@@ -523,7 +580,10 @@ public abstract class Operation {
 
                     resize(output, mA.matrix.numRows, mA.matrix.numCols);
                     try {
-                        CommonOps_DDRM.subtract(mA.matrix, mB.matrix, output.matrix);
+                        if( manager.isConcurrent() )
+                            CommonOps_MT_DDRM.subtract(mA.matrix, mB.matrix, output.matrix);
+                        else
+                            CommonOps_DDRM.subtract(mA.matrix, mB.matrix, output.matrix);
                     } catch( MatrixDimensionException e ) {
                         checkThrow1x1AgainstNxM(mA.matrix,mB.matrix,"subtract");
                     }
@@ -584,6 +644,9 @@ public abstract class Operation {
     }
 
     public static Info elementMult( final Variable A , final Variable B , ManagerTempVariables manager ) {
+        if( OperationSparse.isSparse(A,B) )
+            return OperationSparse.elementMult(A,B,manager);
+
         Info ret = new Info();
 
         if( A instanceof VariableMatrix && B instanceof VariableMatrix ) {
@@ -596,7 +659,10 @@ public abstract class Operation {
                     VariableMatrix mB = (VariableMatrix)B;
 
                     resize(output, mA.matrix.numRows, mA.matrix.numCols);
-                    CommonOps_DDRM.elementMult(mA.matrix, mB.matrix, output.matrix);
+                    if( manager.isConcurrent() )
+                        CommonOps_MT_DDRM.elementMult(mA.matrix, mB.matrix, output.matrix);
+                    else
+                        CommonOps_DDRM.elementMult(mA.matrix, mB.matrix, output.matrix);
                 }
             };
         } else {
@@ -607,6 +673,9 @@ public abstract class Operation {
     }
 
     public static Info elementDivision( final Variable A , final Variable B , ManagerTempVariables manager ) {
+        if( OperationSparse.isSparse(A,B) )
+            return OperationSparse.dense((inputs, m) -> elementDivision(inputs.get(0), inputs.get(1), m), manager, A, B);
+
         Info ret = new Info();
 
         if( A instanceof VariableMatrix && B instanceof VariableMatrix ) {
@@ -619,7 +688,10 @@ public abstract class Operation {
                     VariableMatrix mB = (VariableMatrix)B;
 
                     resize(output, mA.matrix.numRows, mA.matrix.numCols);
-                    CommonOps_DDRM.elementDiv(mA.matrix, mB.matrix, output.matrix);
+                    if( manager.isConcurrent() )
+                        CommonOps_MT_DDRM.elementDiv(mA.matrix, mB.matrix, output.matrix);
+                    else
+                        CommonOps_DDRM.elementDiv(mA.matrix, mB.matrix, output.matrix);
                 }
             };
         } else {
@@ -630,6 +702,9 @@ public abstract class Operation {
     }
 
     public static Info elementPow(final Variable A, final Variable B, ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A,B) )
+            return OperationSparse.dense((inputs, m) -> elementPow(inputs.get(0), inputs.get(1), m), manager, A, B);
+
         Info ret = new Info();
 
 
@@ -700,6 +775,8 @@ public abstract class Operation {
     }
 
     public static Operation copy( final Variable src , final Variable dst ) {
+        if( OperationSparse.isSparse(src,dst) )
+            return OperationSparse.copy(src,dst);
 
         if( src instanceof VariableMatrix  ) {
             if( dst instanceof VariableMatrix ) {
@@ -758,6 +835,9 @@ public abstract class Operation {
     }
 
     public static Operation copy( final Variable src , final Variable dst , final List<Variable> range ) {
+        if( OperationSparse.isSparse(src,dst) )
+            return OperationSparse.copy(src,dst,range);
+
         if( src instanceof VariableMatrix && dst instanceof VariableMatrix ) {
             return new Operation("copyR-mm") {
                 Extents extents = new Extents();
@@ -864,6 +944,9 @@ public abstract class Operation {
     }
 
     public static Info transpose( final Variable A , ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A) )
+            return OperationSparse.transpose(A,manager);
+
         Info ret = new Info();
 
         if( A instanceof VariableMatrix ) {
@@ -874,7 +957,10 @@ public abstract class Operation {
                 public void process() {
                     VariableMatrix mA = (VariableMatrix)A;
                     output.matrix.reshape(mA.matrix.numCols, mA.matrix.numRows);
-                    CommonOps_DDRM.transpose(mA.matrix, output.matrix);
+                    if( manager.isConcurrent() )
+                        CommonOps_MT_DDRM.transpose(mA.matrix, output.matrix);
+                    else
+                        CommonOps_DDRM.transpose(mA.matrix, output.matrix);
                 }
             };
         } else {
@@ -887,6 +973,9 @@ public abstract class Operation {
      * Matrix inverse
      */
     public static Info inv( final Variable A , ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A) )
+            return OperationSparse.dense((inputs, m) -> inv(inputs.get(0), m), manager, A);
+
         Info ret = new Info();
 
         if( A instanceof VariableMatrix ) {
@@ -897,7 +986,10 @@ public abstract class Operation {
                 public void process() {
                     VariableMatrix mA = (VariableMatrix)A;
                     output.matrix.reshape(mA.matrix.numRows, mA.matrix.numCols);
-                    if( !CommonOps_DDRM.invert(mA.matrix,output.matrix) )
+                    boolean success = manager.isConcurrent() ?
+                            CommonOps_MT_DDRM.invert(mA.matrix,output.matrix) :
+                            CommonOps_DDRM.invert(mA.matrix,output.matrix);
+                    if( !success )
                         throw new RuntimeException("Inverse failed!");
                 }
             };
@@ -920,6 +1012,9 @@ public abstract class Operation {
      * Matrix pseudo-inverse
      */
     public static Info pinv( final Variable A , ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A) )
+            return OperationSparse.dense((inputs, m) -> pinv(inputs.get(0), m), manager, A);
+
         Info ret = new Info();
 
         if( A instanceof VariableMatrix ) {
@@ -949,6 +1044,9 @@ public abstract class Operation {
     }
 
     public static Info rref( final Variable A , ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A) )
+            return OperationSparse.dense((inputs, m) -> rref(inputs.get(0), m), manager, A);
+
         Info ret = new Info();
 
         if( A instanceof VariableMatrix ) {
@@ -981,6 +1079,9 @@ public abstract class Operation {
      * Matrix determinant
      */
     public static Info det( final Variable A , ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A) )
+            return OperationSparse.det(A,manager);
+
         Info ret = new Info();
 
         final VariableDouble output = manager.createDouble();
@@ -1008,6 +1109,9 @@ public abstract class Operation {
     }
 
     public static Info trace( final Variable A , ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A) )
+            return OperationSparse.trace(A,manager);
+
         Info ret = new Info();
         final VariableDouble output = manager.createDouble();
         ret.output = output;
@@ -1034,6 +1138,9 @@ public abstract class Operation {
     }
 
     public static Info normF( final Variable A , ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A) )
+            return OperationSparse.normF(A,manager);
+
         Info ret = new Info();
         final VariableDouble output = manager.createDouble();
         ret.output = output;
@@ -1058,6 +1165,9 @@ public abstract class Operation {
     }
 
     public static Info normP( final Variable A , final Variable P , ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A,P) )
+            return OperationSparse.dense((inputs, m) -> normP(inputs.get(0), inputs.get(1), m), manager, A, P);
+
         Info ret = new Info();
         final VariableDouble output = manager.createDouble();
         ret.output = output;
@@ -1079,6 +1189,9 @@ public abstract class Operation {
     }
 
     public static Info max( final Variable A , ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A) )
+            return OperationSparse.dense((inputs, m) -> max(inputs.get(0), m), manager, A);
+
         Info ret = new Info();
 
         if( A instanceof VariableMatrix ) {
@@ -1114,6 +1227,9 @@ public abstract class Operation {
     }
 
     public static Info max_two( final Variable A , final Variable P , ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A,P) )
+            return OperationSparse.dense((inputs, m) -> max_two(inputs.get(0), inputs.get(1), m), manager, A, P);
+
         Info ret = new Info();
         final VariableMatrix output = manager.createMatrix();
         ret.output = output;
@@ -1148,6 +1264,9 @@ public abstract class Operation {
     }
 
     public static Info min( final Variable A , ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A) )
+            return OperationSparse.dense((inputs, m) -> min(inputs.get(0), m), manager, A);
+
         Info ret = new Info();
 
         if( A instanceof VariableMatrix ) {
@@ -1183,6 +1302,9 @@ public abstract class Operation {
     }
 
     public static Info min_two( final Variable A , final Variable P , ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A,P) )
+            return OperationSparse.dense((inputs, m) -> min_two(inputs.get(0), inputs.get(1), m), manager, A, P);
+
         Info ret = new Info();
         final VariableMatrix output = manager.createMatrix();
         ret.output = output;
@@ -1217,6 +1339,9 @@ public abstract class Operation {
     }
 
     public static Info abs( final Variable A , ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A) )
+            return OperationSparse.dense((inputs, m) -> abs(inputs.get(0), m), manager, A);
+
         Info ret = new Info();
 
         if( A instanceof VariableMatrix ) {
@@ -1260,6 +1385,9 @@ public abstract class Operation {
      * Returns an identity matrix
      */
     public static Info eye( final Variable A , ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A) )
+            return OperationSparse.dense((inputs, m) -> eye(inputs.get(0), m), manager, A);
+
         Info ret = new Info();
         final VariableMatrix output = manager.createMatrix();
         ret.output = output;
@@ -1290,6 +1418,9 @@ public abstract class Operation {
     }
 
     public static Info diag( final Variable A , ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A) )
+            return OperationSparse.dense((inputs, m) -> diag(inputs.get(0), m), manager, A);
+
         Info ret = new Info();
 
         if( A instanceof VariableMatrix ) {
@@ -1446,6 +1577,9 @@ public abstract class Operation {
      * Kronecker product
      */
     public static Info kron( final Variable A , final Variable B, ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A,B) )
+            return OperationSparse.dense((inputs, m) -> kron(inputs.get(0), inputs.get(1), m), manager, A, B);
+
         Info ret = new Info();
         final VariableMatrix output = manager.createMatrix();
         ret.output = output;
@@ -1471,6 +1605,9 @@ public abstract class Operation {
      * If input is two vectors then it returns the dot product as a double.
      */
     public static Info dot( final Variable A , final Variable B , ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A,B) )
+            return OperationSparse.dense((inputs, m) -> dot(inputs.get(0), inputs.get(1), m), manager, A, B);
+
         Info ret = new Info();
         final VariableDouble output = manager.createDouble();
         ret.output = output;
@@ -1499,6 +1636,9 @@ public abstract class Operation {
      * If input is two vectors then it returns the dot product as a double.
      */
     public static Info solve( final Variable A , final Variable B , ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A,B) )
+            return OperationSparse.solve(A,B,manager);
+
         Info ret = new Info();
         final VariableMatrix output = manager.createMatrix();
         ret.output = output;
@@ -1506,14 +1646,20 @@ public abstract class Operation {
         if( A instanceof VariableMatrix && B instanceof VariableMatrix ) {
             ret.op = new Operation("solve-mm") {
                 @Nullable LinearSolverDense<DMatrixRMaj> solver;
+                boolean solverConcurrent;
                 @Override
                 public void process() {
 
                     DMatrixRMaj a = ((VariableMatrix)A).matrix;
                     DMatrixRMaj b = ((VariableMatrix)B).matrix;
 
-                    if( solver == null ) {
+                    boolean concurrent = manager.isConcurrent();
+                    if( solver == null || solverConcurrent != concurrent ) {
                         solver = LinearSolverFactory_DDRM.leastSquares(a.numRows,a.numCols);
+                        // same QR solver but the columns of b are solved for in parallel
+                        if( concurrent && solver instanceof LinearSolverQrHouseCol_DDRM )
+                            solver = new LinearSolverQrHouseCol_MT_DDRM();
+                        solverConcurrent = concurrent;
                     }
 
                     if( !solver.setA(a))
@@ -1531,6 +1677,9 @@ public abstract class Operation {
     }
 
     public static Info extract( final List<Variable> inputs, ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(inputs.get(0)) )
+            return OperationSparse.dense(Operation::extract, manager, inputs);
+
         Info ret = new Info();
         final VariableMatrix output = manager.createMatrix();
         ret.output = output;
@@ -1590,6 +1739,9 @@ public abstract class Operation {
     }
 
     public static Info sum_one( final Variable A , ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A) )
+            return OperationSparse.dense((inputs, m) -> sum_one(inputs.get(0), m), manager, A);
+
         Info ret = new Info();
         final VariableDouble output = manager.createDouble();
         ret.output = output;
@@ -1610,6 +1762,9 @@ public abstract class Operation {
     }
 
     public static Info sum_two( final Variable A , final Variable P , ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(A,P) )
+            return OperationSparse.dense((inputs, m) -> sum_two(inputs.get(0), inputs.get(1), m), manager, A, P);
+
         Info ret = new Info();
         final VariableMatrix output = manager.createMatrix();
         ret.output = output;
@@ -1644,6 +1799,9 @@ public abstract class Operation {
     }
 
     public static Info extractScalar( final List<Variable> inputs, ManagerTempVariables manager) {
+        if( OperationSparse.isSparse(inputs.get(0)) )
+            return OperationSparse.dense(Operation::extractScalar, manager, inputs);
+
         Info ret = new Info();
         final VariableDouble output = manager.createDouble();
         ret.output = output;
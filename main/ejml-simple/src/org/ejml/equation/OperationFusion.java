@@ -0,0 +1,749 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.equation;
+
+import org.ejml.MatrixDimensionException;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Optimizes a compiled {@link Sequence} by fusing operations together. Without fusion each operation writes
+ * its results into a temporary matrix, e.g. "x = a*b + c.*d - 2*e" makes four passes through memory and declares
+ * four temporary matrices. Two types of fusion are performed:
+ * </p>
+ *
+ * <ul>
+ *     <li>Matrix multiplication absorbs transposes of its inputs, scale factors, negation, and a single matrix
+ *     which is added or subtracted from it. "alpha*A'*B + beta*C" becomes a single call to
+ *     {@link CommonOps_DDRM#multAddTransA(double, org.ejml.data.DMatrix1Row, org.ejml.data.DMatrix1Row, org.ejml.data.DMatrix1Row)}
+ *     after C has been scaled.</li>
+ *     <li>Chains of element-wise operations (add, subtract, element-wise multiplication, division, and power,
+ *     scalar multiplication, negation, exp, and log) are merged into a single operation which computes each
+ *     element of the output in a single pass.</li>
+ * </ul>
+ *
+ * <p>
+ * Only temporary matrices which are read by exactly one operation are fused away. If it isn't known which
+ * variables an operation reads, e.g. it was added by hand, then the sequence is not modified.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class OperationFusion {
+
+    Sequence sequence;
+
+    // Operations in the sequence. Set to null when an operation has been absorbed by another one
+    @Nullable Operation[] ops;
+
+    // Number of operations which read each variable
+    Map<Variable, Integer> readCount = new IdentityHashMap<>();
+    // Index of the operation which writes to each variable
+    Map<Variable, Integer> producer = new IdentityHashMap<>();
+    // Element-wise expression which computes the output variable
+    Map<Variable, Node> expressions = new IdentityHashMap<>();
+
+    OperationFusion( Sequence sequence ) {
+        this.sequence = sequence;
+        this.ops = sequence.operations.toArray(new Operation[0]);
+    }
+
+    /**
+     * Fuses operations inside the sequence together
+     *
+     * @param sequence (Input) Sequence that was just compiled. (Output) Optimized sequence
+     */
+    public static void process( Sequence sequence ) {
+        OperationFusion alg = new OperationFusion(sequence);
+        if (!alg.initialize())
+            return;
+        alg.fuseMultiplication();
+        alg.fuseElementWise();
+        alg.updateSequence();
+    }
+
+    /**
+     * Counts how many times each variable is read and who writes to them.
+     *
+     * @return true if the sequence can be optimized
+     */
+    boolean initialize() {
+        for (int i = 0; i < ops.length; i++) {
+            Operation op = ops[i];
+            if (op == null || op.inputVariables == null)
+                return false;
+            for (Variable v : op.inputVariables) {
+                readCount.merge(v, 1, Integer::sum);
+            }
+            if (op.outputVariable != null) {
+                // a variable which is written to multiple times can't be safely reordered
+                if (producer.containsKey(op.outputVariable))
+                    return false;
+                producer.put(op.outputVariable, i);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Merges transposes, scale factors, and additions into matrix multiplications
+     */
+    void fuseMultiplication() {
+        for (int i = 0; i < ops.length; i++) {
+            Operation op = ops[i];
+            if (op == null)
+                continue;
+            List<Variable> inputs = inputs(op);
+
+            switch (kindOf(op)) {
+                case MULT_MM: {
+                    GemmOperation gemm = new GemmOperation((VariableMatrix)output(op));
+                    gemm.A = resolveGemmInput(gemm, (VariableMatrix)inputs.get(0), true, i);
+                    gemm.B = resolveGemmInput(gemm, (VariableMatrix)inputs.get(1), false, i);
+                    replace(i, gemm);
+                }
+                break;
+
+                case MULT_MS:
+                case NEG: {
+                    GemmOperation gemm = fusableGemm(matrixInput(op), i);
+                    if (gemm == null)
+                        break;
+                    if (kindOf(op) == Kind.NEG) {
+                        gemm.alphaSign = -gemm.alphaSign;
+                        if (gemm.C != null)
+                            gemm.betaSign = -gemm.betaSign;
+                    } else {
+                        VariableScalar s = scalarInput(op);
+                        gemm.alphaScalars.add(s);
+                        if (gemm.C != null)
+                            gemm.betaScalars.add(s);
+                    }
+                    gemm.result = (VariableMatrix)output(op);
+                    move(gemm, i);
+                }
+                break;
+
+                case ADD_MM:
+                case SUB_MM: {
+                    boolean left = true;
+                    GemmOperation gemm = fusableGemm(inputs.get(0), i);
+                    if (gemm == null || gemm.C != null) {
+                        left = false;
+                        gemm = fusableGemm(inputs.get(1), i);
+                    }
+                    if (gemm == null || gemm.C != null)
+                        break;
+
+                    VariableMatrix C = (VariableMatrix)inputs.get(left ? 1 : 0);
+
+                    // see if C is scaled
+                    Operation scale = fusableProducer(C, i);
+                    if (scale != null && kindOf(scale) == Kind.MULT_MS && canDelay(scale, i)) {
+                        gemm.betaScalars.add(scalarInput(scale));
+                        C = matrixInput(scale);
+                        remove(scale);
+                    }
+                    if (kindOf(op) == Kind.SUB_MM) {
+                        if (left)
+                            gemm.betaSign = -1;
+                        else
+                            gemm.alphaSign = -gemm.alphaSign;
+                    }
+                    gemm.C = C;
+                    gemm.result = (VariableMatrix)output(op);
+                    move(gemm, i);
+                }
+                break;
+
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Absorbs transposes and scale factors which are applied to an input of a matrix multiplication
+     */
+    VariableMatrix resolveGemmInput( GemmOperation gemm, VariableMatrix input, boolean left, int consumer ) {
+        while (true) {
+            Operation p = fusableProducer(input, consumer);
+            if (p == null || !canDelay(p, consumer))
+                return input;
+            Kind kind = kindOf(p);
+            if (kind == Kind.TRANSPOSE) {
+                if (left)
+                    gemm.transA = !gemm.transA;
+                else
+                    gemm.transB = !gemm.transB;
+                input = (VariableMatrix)inputs(p).get(0);
+            } else if (kind == Kind.MULT_MS) {
+                gemm.alphaScalars.add(scalarInput(p));
+                input = matrixInput(p);
+            } else {
+                return input;
+            }
+            remove(p);
+        }
+    }
+
+    /**
+     * Returns the matrix multiplication which computes the variable if it can be absorbed by the consumer
+     */
+    @Nullable GemmOperation fusableGemm( Variable v, int consumer ) {
+        Operation p = fusableProducer(v, consumer);
+        if (p instanceof GemmOperation && canDelay(p, consumer))
+            return (GemmOperation)p;
+        return null;
+    }
+
+    /**
+     * Merges chains of element-wise operations together
+     */
+    void fuseElementWise() {
+        for (int i = 0; i < ops.length; i++) {
+            Operation op = ops[i];
+            if (op == null || !kindOf(op).elementWise)
+                continue;
+
+            List<Variable> inputs = inputs(op);
+            List<Node> children = new ArrayList<>();
+            boolean absorbed = false;
+            for (Variable v : inputs) {
+                Operation p = fusableProducer(v, i);
+                Node child = p == null ? null : expressions.get(v);
+                if (child != null && canDelay(p, i)) {
+                    remove(p);
+                    absorbed = true;
+                } else if (v instanceof VariableMatrix) {
+                    child = new MatrixNode((VariableMatrix)v);
+                } else {
+                    child = new ScalarNode((VariableScalar)v);
+                }
+                children.add(child);
+            }
+
+            Node node = createNode(kindOf(op), children);
+            expressions.put(output(op), node);
+
+            if (absorbed) {
+                List<Variable> leaves = new ArrayList<>();
+                node.collectInputs(leaves);
+                replace(i, new ElementWiseOperation((VariableMatrix)output(op), node, leaves));
+            }
+        }
+    }
+
+    /**
+     * Removes absorbed operations from the sequence
+     */
+    void updateSequence() {
+        sequence.operations.clear();
+        for (Operation op : ops) {
+            if (op != null)
+                sequence.operations.add(op);
+        }
+    }
+
+    /**
+     * Returns the operation which computes 'v' if it's a temporary matrix that is only read by the consumer
+     */
+    @Nullable Operation fusableProducer( Variable v, int consumer ) {
+        if (!(v instanceof VariableMatrix) || !((VariableMatrix)v).isTemp() || v == sequence.output)
+            return null;
+        Integer count = readCount.get(v);
+        Integer index = producer.get(v);
+        if (count == null || count != 1 || index == null || index >= consumer)
+            return null;
+        return ops[index];
+    }
+
+    /**
+     * Checks to see if the operation can be delayed until the consumer is invoked. This is true if none of its
+     * inputs are modified between them.
+     */
+    boolean canDelay( Operation op, int consumer ) {
+        int index = producer.get(output(op));
+        List<Variable> inputs = inputs(op);
+        for (int i = index + 1; i < consumer; i++) {
+            Operation o = ops[i];
+            if (o != null && o.outputVariable != null && inputs.contains(o.outputVariable))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Replaces the operation at the specified index with a fused operation
+     */
+    void replace( int index, FusedOperation fused ) {
+        fused.updateMetadata();
+        ops[index] = fused;
+        producer.put(output(fused), index);
+    }
+
+    /**
+     * Moves a fused operation to the specified index, replacing the operation which is there
+     */
+    void move( FusedOperation fused, int index ) {
+        ops[producer.get(output(fused))] = null;
+        replace(index, fused);
+    }
+
+    void remove( Operation op ) {
+        ops[producer.get(output(op))] = null;
+    }
+
+    private static List<Variable> inputs( Operation op ) {
+        if (op.inputVariables == null)
+            throw new RuntimeException("BUG inputs should have been checked already");
+        return op.inputVariables;
+    }
+
+    private static Variable output( Operation op ) {
+        if (op.outputVariable == null)
+            throw new RuntimeException("BUG output variable should be known");
+        return op.outputVariable;
+    }
+
+    private static VariableMatrix matrixInput( Operation op ) {
+        List<Variable> inputs = inputs(op);
+        return (VariableMatrix)(inputs.get(0) instanceof VariableMatrix ? inputs.get(0) : inputs.get(1));
+    }
+
+    private static VariableScalar scalarInput( Operation op ) {
+        List<Variable> inputs = inputs(op);
+        return (VariableScalar)(inputs.get(0) instanceof VariableScalar ? inputs.get(0) : inputs.get(1));
+    }
+
+    /**
+     * Identifies the operation from its name and the number of inputs
+     */
+    static Kind kindOf( Operation op ) {
+        if (op instanceof GemmOperation)
+            return Kind.OTHER;
+        if (op instanceof ElementWiseOperation)
+            return Kind.FUSED;
+
+        List<Variable> inputs = op.inputVariables;
+        if (inputs == null || op.outputVariable == null)
+            return Kind.OTHER;
+
+        Kind kind;
+        switch (op.name()) {
+            // @formatter:off
+            case "multiply-mm":        kind = Kind.MULT_MM; break;
+            case "multiply-ms":        kind = Kind.MULT_MS; break;
+            case "transpose-m":        kind = Kind.TRANSPOSE; break;
+            case "neg-m":              kind = Kind.NEG; break;
+            case "exp-m":              kind = Kind.EXP; break;
+            case "log-m":              kind = Kind.LOG; break;
+            case "add-mm":             kind = Kind.ADD_MM; break;
+            case "add-ms":             kind = Kind.ADD_MS; break;
+            case "subtract-mm":        kind = Kind.SUB_MM; break;
+            case "subtract-ms":        kind = Kind.SUB_MS; break;
+            case "subtract-sm":        kind = Kind.SUB_SM; break;
+            case "elementMult-mm":     kind = Kind.ELEMENT_MULT; break;
+            case "elementDivision-mm": kind = Kind.ELEMENT_DIV; break;
+            case "elementPow-mm":      kind = Kind.POW_MM; break;
+            case "elementPow-ms":      kind = Kind.POW_MS; break;
+            case "elementPow-sm":      kind = Kind.POW_SM; break;
+            case "divide-ma":
+                if (inputs.size() != 2)
+                    return Kind.OTHER;
+                kind = inputs.get(0) instanceof VariableMatrix ? Kind.DIV_MS : Kind.DIV_SM; break;
+            default: return Kind.OTHER;
+            // @formatter:on
+        }
+        return inputs.size() == kind.numInputs ? kind : Kind.OTHER;
+    }
+
+    /**
+     * Creates a node in an element-wise expression. The children are in the same order as the operation's inputs.
+     */
+    static Node createNode( Kind kind, List<Node> children ) {
+        Node a = children.get(0);
+        Node b = children.size() > 1 ? children.get(1) : a;
+        switch (kind) {
+            case FUSED:
+                return a;
+            case NEG:
+                return new Neg(a);
+            case EXP:
+                return new Exp(a);
+            case LOG:
+                return new Log(a);
+            case MULT_MS:
+            case ELEMENT_MULT:
+                return new Mult(a, b);
+            case ADD_MM:
+            case ADD_MS:
+                return new Add(a, b);
+            case SUB_MM:
+            case SUB_MS:
+            case SUB_SM:
+                return new Subtract(a, b);
+            case ELEMENT_DIV:
+            case DIV_MS:
+            case DIV_SM:
+                return new Divide(a, b);
+            case POW_MM:
+            case POW_MS:
+            case POW_SM:
+                return new Pow(a, b);
+            default:
+                throw new RuntimeException("Not an element-wise operation " + kind);
+        }
+    }
+
+    enum Kind {
+        // @formatter:off
+        MULT_MM     (2, false),
+        TRANSPOSE   (1, false),
+        MULT_MS     (2, true),
+        NEG         (1, true),
+        EXP         (1, true),
+        LOG         (1, true),
+        ADD_MM      (2, true),
+        ADD_MS      (2, true),
+        SUB_MM      (2, true),
+        SUB_MS      (2, true),
+        SUB_SM      (2, true),
+        ELEMENT_MULT(2, true),
+        ELEMENT_DIV (2, true),
+        DIV_MS      (2, true),
+        DIV_SM      (2, true),
+        POW_MM      (2, true),
+        POW_MS      (2, true),
+        POW_SM      (2, true),
+        FUSED       (1, true),
+        OTHER       (0, false);
+        // @formatter:on
+
+        final int numInputs;
+        final boolean elementWise;
+
+        Kind( int numInputs, boolean elementWise ) {
+            this.numInputs = numInputs;
+            this.elementWise = elementWise;
+        }
+    }
+
+    /**
+     * Base class for operations created by fusing other operations together
+     */
+    public static abstract class FusedOperation extends Operation {
+        protected FusedOperation( String name ) {
+            super(name);
+        }
+
+        /**
+         * Updates the name and the list of variables which are read and written to
+         */
+        abstract void updateMetadata();
+    }
+
+    /**
+     * Matrix multiplication with optional transposes, scaling, and an added matrix.
+     * result = alpha*op(A)*op(B) + beta*C
+     */
+    @SuppressWarnings("NullAway.Init")
+    public static class GemmOperation extends FusedOperation {
+        VariableMatrix result;
+        VariableMatrix A, B;
+        boolean transA, transB;
+        // alpha is the product of the sign and all the scalars
+        double alphaSign = 1;
+        List<VariableScalar> alphaScalars = new ArrayList<>();
+
+        @Nullable VariableMatrix C;
+        double betaSign = 1;
+        List<VariableScalar> betaScalars = new ArrayList<>();
+
+        GemmOperation( VariableMatrix result ) {
+            super("gemm");
+            this.result = result;
+        }
+
+        @Override
+        void updateMetadata() {
+            String suffix = transA ? (transB ? "TransAB" : "TransA") : (transB ? "TransB" : "");
+            name = (C == null ? "mult" : "multAdd") + suffix + "-fused";
+
+            List<Variable> inputs = new ArrayList<>();
+            inputs.add(A);
+            inputs.add(B);
+            inputs.addAll(alphaScalars);
+            if (C != null) {
+                inputs.add(C);
+                inputs.addAll(betaScalars);
+            }
+            inputVariables = inputs;
+            outputVariable = result;
+        }
+
+        @Override
+        public void process() {
+            DMatrixRMaj a = A.matrix;
+            DMatrixRMaj b = B.matrix;
+            DMatrixRMaj out = result.matrix;
+
+            int innerA = transA ? a.numRows : a.numCols;
+            int innerB = transB ? b.numCols : b.numRows;
+            int rows = transA ? a.numCols : a.numRows;
+            int cols = transB ? b.numRows : b.numCols;
+
+            if (innerA != innerB) {
+                checkThrow1x1AgainstNxM(a, b, "multiply");
+                throw new MatrixDimensionException("Inner matrix dimensions don't match. " + innerA + " " + innerB);
+            }
+
+            double alpha = alphaSign;
+            for (int i = 0; i < alphaScalars.size(); i++) {
+                alpha *= alphaScalars.get(i).getDouble();
+            }
+
+            out.reshape(rows, cols);
+            if (C == null) {
+                if (transA) {
+                    if (transB) CommonOps_DDRM.multTransAB(alpha, a, b, out);
+                    else CommonOps_DDRM.multTransA(alpha, a, b, out);
+                } else {
+                    if (transB) CommonOps_DDRM.multTransB(alpha, a, b, out);
+                    else CommonOps_DDRM.mult(alpha, a, b, out);
+                }
+                return;
+            }
+
+            DMatrixRMaj c = C.matrix;
+            if (c.numRows != rows || c.numCols != cols) {
+                checkThrow1x1AgainstNxM(out, c, "add");
+                throw new MatrixDimensionException("Added matrix has an unexpected shape. " +
+                        c.numRows + "x" + c.numCols + " expected " + rows + "x" + cols);
+            }
+
+            double beta = betaSign;
+            for (int i = 0; i < betaScalars.size(); i++) {
+                beta *= betaScalars.get(i).getDouble();
+            }
+            CommonOps_DDRM.scale(beta, c, out);
+
+            if (transA) {
+                if (transB) CommonOps_DDRM.multAddTransAB(alpha, a, b, out);
+                else CommonOps_DDRM.multAddTransA(alpha, a, b, out);
+            } else {
+                if (transB) CommonOps_DDRM.multAddTransB(alpha, a, b, out);
+                else CommonOps_DDRM.multAdd(alpha, a, b, out);
+            }
+        }
+    }
+
+    /**
+     * Computes an element-wise expression in a single pass
+     */
+    public static class ElementWiseOperation extends FusedOperation {
+        VariableMatrix result;
+        Node expression;
+        List<VariableMatrix> matrices = new ArrayList<>();
+        List<Variable> leaves;
+
+        ElementWiseOperation( VariableMatrix result, Node expression, List<Variable> leaves ) {
+            super("elementwise-fused");
+            this.result = result;
+            this.expression = expression;
+            this.leaves = leaves;
+            for (Variable v : leaves) {
+                if (v instanceof VariableMatrix)
+                    matrices.add((VariableMatrix)v);
+            }
+        }
+
+        @Override
+        void updateMetadata() {
+            inputVariables = leaves;
+            outputVariable = result;
+        }
+
+        @Override
+        public void process() {
+            final int N = prepare();
+            final double[] data = result.matrix.data;
+            for (int i = 0; i < N; i++) {
+                data[i] = expression.compute(i);
+            }
+        }
+
+        /**
+         * Checks the shape of the input matrices, reshapes the output, and sets up the expression
+         *
+         * @return number of elements in the output
+         */
+        public int prepare() {
+            DMatrixRMaj first = matrices.get(0).matrix;
+            for (int i = 1; i < matrices.size(); i++) {
+                DMatrixRMaj m = matrices.get(i).matrix;
+                if (m.numRows != first.numRows || m.numCols != first.numCols) {
+                    checkThrow1x1AgainstNxM(first, m, "combine");
+                    throw new MatrixDimensionException("Element-wise operation on matrices with different shapes. " +
+                            first.numRows + "x" + first.numCols + " and " + m.numRows + "x" + m.numCols);
+                }
+            }
+
+            result.matrix.reshape(first.numRows, first.numCols);
+            expression.setup();
+            return first.getNumElements();
+        }
+
+        public Node getExpression() {
+            return expression;
+        }
+    }
+
+    /**
+     * Node in an element-wise expression tree
+     */
+    public static abstract class Node {
+        /**
+         * Called once before any elements are computed
+         */
+        public abstract void setup();
+
+        /**
+         * Computes the value of the expression at the specified element
+         */
+        public abstract double compute( int index );
+
+        /**
+         * Adds the variables at the leaves of this expression to the list
+         */
+        public abstract void collectInputs( List<Variable> inputs );
+    }
+
+    /** Element from a matrix */
+    public static class MatrixNode extends Node {
+        public final VariableMatrix variable;
+        double[] data = new double[0];
+
+        public MatrixNode( VariableMatrix variable ) { this.variable = variable; }
+
+        @Override public void setup() { data = variable.matrix.data; }
+
+        @Override public double compute( int index ) { return data[index]; }
+
+        @Override public void collectInputs( List<Variable> inputs ) {
+            if (!inputs.contains(variable))
+                inputs.add(variable);
+        }
+    }
+
+    /** Scalar which is applied to every element */
+    public static class ScalarNode extends Node {
+        public final VariableScalar variable;
+        double value;
+
+        public ScalarNode( VariableScalar variable ) { this.variable = variable; }
+
+        @Override public void setup() { value = variable.getDouble(); }
+
+        @Override public double compute( int index ) { return value; }
+
+        @Override public void collectInputs( List<Variable> inputs ) {
+            if (!inputs.contains(variable))
+                inputs.add(variable);
+        }
+    }
+
+    public static abstract class UnaryNode extends Node {
+        public final Node a;
+
+        protected UnaryNode( Node a ) { this.a = a; }
+
+        @Override public void setup() { a.setup(); }
+
+        @Override public void collectInputs( List<Variable> inputs ) { a.collectInputs(inputs); }
+    }
+
+    public static abstract class BinaryNode extends Node {
+        public final Node a, b;
+
+        protected BinaryNode( Node a, Node b ) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override public void setup() {
+            a.setup();
+            b.setup();
+        }
+
+        @Override public void collectInputs( List<Variable> inputs ) {
+            a.collectInputs(inputs);
+            b.collectInputs(inputs);
+        }
+    }
+
+    // @formatter:off
+    public static class Neg extends UnaryNode {
+        public Neg( Node a ) { super(a); }
+        @Override public double compute( int index ) { return -a.compute(index); }
+    }
+
+    public static class Exp extends UnaryNode {
+        public Exp( Node a ) { super(a); }
+        @Override public double compute( int index ) { return Math.exp(a.compute(index)); }
+    }
+
+    public static class Log extends UnaryNode {
+        public Log( Node a ) { super(a); }
+        @Override public double compute( int index ) { return Math.log(a.compute(index)); }
+    }
+
+    public static class Add extends BinaryNode {
+        public Add( Node a, Node b ) { super(a, b); }
+        @Override public double compute( int index ) { return a.compute(index) + b.compute(index); }
+    }
+
+    public static class Subtract extends BinaryNode {
+        public Subtract( Node a, Node b ) { super(a, b); }
+        @Override public double compute( int index ) { return a.compute(index) - b.compute(index); }
+    }
+
+    public static class Mult extends BinaryNode {
+        public Mult( Node a, Node b ) { super(a, b); }
+        @Override public double compute( int index ) { return a.compute(index)*b.compute(index); }
+    }
+
+    public static class Divide extends BinaryNode {
+        public Divide( Node a, Node b ) { super(a, b); }
+        @Override public double compute( int index ) { return a.compute(index)/b.compute(index); }
+    }
+
+    public static class Pow extends BinaryNode {
+        public Pow( Node a, Node b ) { super(a, b); }
+        @Override public double compute( int index ) { return Math.pow(a.compute(index), b.compute(index)); }
+    }
+    // @formatter:on
+}
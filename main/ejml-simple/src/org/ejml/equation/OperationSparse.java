@@ -0,0 +1,625 @@
+/*
+ * Copyright (c) 2009-2017, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.equation;
+
+import org.ejml.MatrixDimensionException;
+import org.ejml.UtilEjml;
+import org.ejml.data.DGrowArray;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.data.DMatrixSparseCSC;
+import org.ejml.data.IGrowArray;
+import org.ejml.dense.row.factory.LinearSolverFactory_DDRM;
+import org.ejml.interfaces.linsol.LinearSolverDense;
+import org.ejml.interfaces.linsol.LinearSolverSparse;
+import org.ejml.ops.ConvertDMatrixStruct;
+import org.ejml.sparse.FillReducing;
+import org.ejml.sparse.csc.CommonOps_DSCC;
+import org.ejml.sparse.csc.MatrixFeatures_DSCC;
+import org.ejml.sparse.csc.NormOps_DSCC;
+import org.ejml.sparse.csc.factory.LinearSolverFactory_DSCC;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.ejml.UtilEjml.stringShapes;
+
+/**
+ * <p>
+ * Implementations of {@link Operation operations} where at least one of the inputs is a
+ * {@link VariableSparseMatrix sparse matrix}. Functions in {@link Operation} call these when a sparse input is
+ * encountered. The results are sparse when every matrix input is sparse and the operation preserves sparsity,
+ * otherwise they are dense. A dense matrix is never created from a sparse input unless the result is dense.
+ * Operations without a sparse implementation convert their sparse inputs into dense matrices first, see
+ * {@link #dense(ManagerFunctions.InputN, ManagerTempVariables, List)}.
+ * </p>
+ *
+ * <p>
+ * Linear solvers are kept between calls to {@link Operation#process()}. If the non-zero structure of 'A' has
+ * not changed since the last call then the symbolic analysis, e.g. the fill reducing permutation and elimination
+ * tree, is reused and only the numerical factorization is recomputed.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class OperationSparse {
+
+    /**
+     * Returns true if any of the variables is a sparse matrix
+     */
+    public static boolean isSparse( Variable... variables ) {
+        for( Variable v : variables ) {
+            if( v instanceof VariableSparseMatrix )
+                return true;
+        }
+        return false;
+    }
+
+    public static Operation.Info multiply( final Variable A, final Variable B, ManagerTempVariables manager ) {
+        Operation.Info ret = new Operation.Info();
+
+        if( A instanceof VariableSparseMatrix && B instanceof VariableSparseMatrix ) {
+            final VariableSparseMatrix output = manager.createSparseMatrix();
+            ret.output = output;
+            ret.op = new Operation("multiply-sparse-mm") {
+                final IGrowArray gw = new IGrowArray();
+                final DGrowArray gx = new DGrowArray();
+                @Override
+                public void process() {
+                    CommonOps_DSCC.mult(sparse(A), sparse(B), output.matrix, gw, gx);
+                }
+            };
+        } else if( A instanceof VariableSparseMatrix && B instanceof VariableMatrix ) {
+            final VariableMatrix output = manager.createMatrix();
+            ret.output = output;
+            ret.op = new Operation("multiply-sparse-md") {
+                @Override
+                public void process() {
+                    CommonOps_DSCC.mult(sparse(A), dense(B), output.matrix);
+                }
+            };
+        } else if( A instanceof VariableMatrix && B instanceof VariableSparseMatrix ) {
+            final VariableMatrix output = manager.createMatrix();
+            ret.output = output;
+            ret.op = new Operation("multiply-sparse-dm") {
+                @Override
+                public void process() {
+                    multDenseSparse(dense(A), sparse(B), output.matrix);
+                }
+            };
+        } else if( A instanceof VariableScalar || B instanceof VariableScalar ) {
+            final VariableSparseMatrix m = (VariableSparseMatrix)(A instanceof VariableScalar ? B : A);
+            final VariableScalar s = (VariableScalar)(A instanceof VariableScalar ? A : B);
+            final VariableSparseMatrix output = manager.createSparseMatrix();
+            ret.output = output;
+            ret.op = new Operation("multiply-sparse-ms") {
+                @Override
+                public void process() {
+                    CommonOps_DSCC.scale(s.getDouble(), m.matrix, output.matrix);
+                }
+            };
+        } else {
+            throw unsupported("multiply", A, B);
+        }
+        return ret;
+    }
+
+    public static Operation.Info divide( final Variable A, final Variable B, ManagerTempVariables manager ) {
+        if( isMatrix(A) && isMatrix(B) ) {
+            return solve(B, A, manager);
+        } else if( A instanceof VariableSparseMatrix && B instanceof VariableScalar ) {
+            Operation.Info ret = new Operation.Info();
+            final VariableSparseMatrix output = manager.createSparseMatrix();
+            ret.output = output;
+            ret.op = new Operation("divide-sparse-ms") {
+                @Override
+                public void process() {
+                    CommonOps_DSCC.divide(sparse(A), ((VariableScalar)B).getDouble(), output.matrix);
+                }
+            };
+            return ret;
+        }
+        // dividing a scalar by a sparse matrix would fill in every zero element
+        return dense((inputs, m) -> Operation.divide(inputs.get(0), inputs.get(1), m), manager, A, B);
+    }
+
+    public static Operation.Info neg( final Variable A, ManagerTempVariables manager ) {
+        Operation.Info ret = new Operation.Info();
+        final VariableSparseMatrix output = manager.createSparseMatrix();
+        ret.output = output;
+        ret.op = new Operation("neg-sparse-m") {
+            @Override
+            public void process() {
+                CommonOps_DSCC.changeSign(sparse(A), output.matrix);
+            }
+        };
+        return ret;
+    }
+
+    public static Operation.Info add( final Variable A, final Variable B, ManagerTempVariables manager ) {
+        return add(A, B, 1.0, "add", manager);
+    }
+
+    public static Operation.Info subtract( final Variable A, final Variable B, ManagerTempVariables manager ) {
+        return add(A, B, -1.0, "subtract", manager);
+    }
+
+    /**
+     * output = A + beta*B
+     */
+    private static Operation.Info add( final Variable A, final Variable B, final double beta, String name,
+                                       ManagerTempVariables manager ) {
+        Operation.Info ret = new Operation.Info();
+
+        if( A instanceof VariableSparseMatrix && B instanceof VariableSparseMatrix ) {
+            final VariableSparseMatrix output = manager.createSparseMatrix();
+            ret.output = output;
+            ret.op = new Operation(name + "-sparse-mm") {
+                final IGrowArray gw = new IGrowArray();
+                final DGrowArray gx = new DGrowArray();
+                @Override
+                public void process() {
+                    CommonOps_DSCC.add(1.0, sparse(A), beta, sparse(B), output.matrix, gw, gx);
+                }
+            };
+        } else if( isMatrix(A) && isMatrix(B) ) {
+            // one is dense so the output will be dense
+            final VariableMatrix output = manager.createMatrix();
+            ret.output = output;
+            ret.op = new Operation(name + "-sparse-dm") {
+                @Override
+                public void process() {
+                    if( A instanceof VariableMatrix ) {
+                        output.matrix.set(dense(A));
+                        addSparse(beta, sparse(B), output.matrix);
+                    } else {
+                        DMatrixRMaj b = dense(B);
+                        output.matrix.reshape(b.numRows, b.numCols);
+                        for (int i = 0; i < b.getNumElements(); i++) {
+                            output.matrix.data[i] = beta*b.data[i];
+                        }
+                        addSparse(1.0, sparse(A), output.matrix);
+                    }
+                }
+            };
+        } else if( A instanceof VariableScalar || B instanceof VariableScalar ) {
+            // every element is modified so the output is dense
+            final boolean scalarFirst = A instanceof VariableScalar;
+            final VariableSparseMatrix m = (VariableSparseMatrix)(scalarFirst ? B : A);
+            final VariableScalar s = (VariableScalar)(scalarFirst ? A : B);
+            final VariableMatrix output = manager.createMatrix();
+            ret.output = output;
+            ret.op = new Operation(name + "-sparse-ms") {
+                @Override
+                public void process() {
+                    // A + beta*B
+                    double value = scalarFirst ? s.getDouble() : beta*s.getDouble();
+                    double scale = scalarFirst ? beta : 1.0;
+                    output.matrix.reshape(m.matrix.numRows, m.matrix.numCols);
+                    Arrays.fill(output.matrix.data, 0, output.matrix.getNumElements(), value);
+                    addSparse(scale, m.matrix, output.matrix);
+                }
+            };
+        } else {
+            throw unsupported(name, A, B);
+        }
+        return ret;
+    }
+
+    public static Operation.Info elementMult( final Variable A, final Variable B, ManagerTempVariables manager ) {
+        Operation.Info ret = new Operation.Info();
+
+        if( A instanceof VariableSparseMatrix && B instanceof VariableSparseMatrix ) {
+            final VariableSparseMatrix output = manager.createSparseMatrix();
+            ret.output = output;
+            ret.op = new Operation("elementMult-sparse-mm") {
+                final IGrowArray gw = new IGrowArray();
+                final DGrowArray gx = new DGrowArray();
+                @Override
+                public void process() {
+                    CommonOps_DSCC.elementMult(sparse(A), sparse(B), output.matrix, gw, gx);
+                }
+            };
+        } else if( isMatrix(A) && isMatrix(B) ) {
+            // the result can only be non-zero where the sparse matrix is non-zero
+            final VariableSparseMatrix output = manager.createSparseMatrix();
+            ret.output = output;
+            ret.op = new Operation("elementMult-sparse-dm") {
+                @Override
+                public void process() {
+                    DMatrixSparseCSC s = sparse(A instanceof VariableSparseMatrix ? A : B);
+                    DMatrixRMaj d = dense(A instanceof VariableSparseMatrix ? B : A);
+                    if( s.numRows != d.numRows || s.numCols != d.numCols )
+                        throw new MatrixDimensionException("All inputs must have the same number of rows and columns. "+stringShapes(s,d));
+                    DMatrixSparseCSC out = output.matrix;
+                    out.set(s);
+                    for (int col = 0; col < out.numCols; col++) {
+                        int idx1 = out.col_idx[col+1];
+                        for (int i = out.col_idx[col]; i < idx1; i++) {
+                            out.nz_values[i] *= d.data[out.nz_rows[i]*d.numCols + col];
+                        }
+                    }
+                }
+            };
+        } else {
+            throw unsupported("elementMult", A, B);
+        }
+        return ret;
+    }
+
+    public static Operation.Info transpose( final Variable A, ManagerTempVariables manager ) {
+        Operation.Info ret = new Operation.Info();
+        final VariableSparseMatrix output = manager.createSparseMatrix();
+        ret.output = output;
+        ret.op = new Operation("transpose-sparse-m") {
+            final IGrowArray gw = new IGrowArray();
+            @Override
+            public void process() {
+                CommonOps_DSCC.transpose(sparse(A), output.matrix, gw);
+            }
+        };
+        return ret;
+    }
+
+    /**
+     * Solves A*x = B. If 'A' is sparse then a sparse Cholesky (symmetric) or QR solver is used and is saved
+     * between calls, along with its symbolic analysis. The output is sparse only if 'B' is also sparse.
+     */
+    public static Operation.Info solve( final Variable A, final Variable B, ManagerTempVariables manager ) {
+        Operation.Info ret = new Operation.Info();
+        if( !isMatrix(A) || !isMatrix(B) )
+            throw unsupported("solve", A, B);
+
+        if( A instanceof VariableMatrix ) {
+            // dense system with a sparse right hand side. Only 'B' needs to be converted
+            final VariableMatrix output = manager.createMatrix();
+            ret.output = output;
+            ret.op = new Operation("solve-sparse-dm") {
+                @Nullable LinearSolverDense<DMatrixRMaj> solver;
+                final DMatrixRMaj b = new DMatrixRMaj(1,1);
+                @Override
+                public void process() {
+                    DMatrixRMaj a = dense(A);
+                    if( solver == null )
+                        solver = LinearSolverFactory_DDRM.leastSquares(a.numRows, a.numCols);
+                    if( solver.modifiesA() )
+                        a = a.copy();
+                    ConvertDMatrixStruct.convert(sparse(B), b);
+                    if( !solver.setA(a) )
+                        throw new RuntimeException("Solver failed!");
+                    output.matrix.reshape(a.numCols, b.numCols);
+                    solver.solve(b, output.matrix);
+                }
+            };
+            return ret;
+        }
+
+        final SparseSolver solver = new SparseSolver();
+        if( B instanceof VariableSparseMatrix ) {
+            final VariableSparseMatrix output = manager.createSparseMatrix();
+            ret.output = output;
+            ret.op = new Operation("solve-sparse-mm") {
+                @Override
+                public void process() {
+                    DMatrixSparseCSC b = sparse(B);
+                    LinearSolverSparse<DMatrixSparseCSC,DMatrixRMaj> alg = solver.setA(sparse(A));
+                    if( alg.modifiesB() )
+                        b = b.copy();
+                    output.matrix.reshape(sparse(A).numCols, b.numCols);
+                    alg.solveSparse(b, output.matrix);
+                }
+            };
+        } else {
+            final VariableMatrix output = manager.createMatrix();
+            ret.output = output;
+            ret.op = new Operation("solve-sparse-md") {
+                @Override
+                public void process() {
+                    DMatrixRMaj b = dense(B);
+                    LinearSolverSparse<DMatrixSparseCSC,DMatrixRMaj> alg = solver.setA(sparse(A));
+                    if( alg.modifiesB() )
+                        b = b.copy();
+                    output.matrix.reshape(sparse(A).numCols, b.numCols);
+                    alg.solve(b, output.matrix);
+                }
+            };
+        }
+        return ret;
+    }
+
+    public static Operation.Info det( final Variable A, ManagerTempVariables manager ) {
+        Operation.Info ret = new Operation.Info();
+        final VariableDouble output = manager.createDouble();
+        ret.output = output;
+        ret.op = new Operation("det-sparse-m") {
+            @Override
+            public void process() {
+                output.value = CommonOps_DSCC.det(sparse(A));
+            }
+        };
+        return ret;
+    }
+
+    public static Operation.Info trace( final Variable A, ManagerTempVariables manager ) {
+        Operation.Info ret = new Operation.Info();
+        final VariableDouble output = manager.createDouble();
+        ret.output = output;
+        ret.op = new Operation("trace-sparse-m") {
+            @Override
+            public void process() {
+                output.value = CommonOps_DSCC.trace(sparse(A));
+            }
+        };
+        return ret;
+    }
+
+    public static Operation.Info normF( final Variable A, ManagerTempVariables manager ) {
+        Operation.Info ret = new Operation.Info();
+        final VariableDouble output = manager.createDouble();
+        ret.output = output;
+        ret.op = new Operation("normF-sparse-m") {
+            @Override
+            public void process() {
+                output.value = NormOps_DSCC.normF(sparse(A));
+            }
+        };
+        return ret;
+    }
+
+    /**
+     * Copies a sparse matrix into another variable, or a dense matrix into a sparse variable. The matrix is
+     * converted when the source and destination types are different.
+     */
+    public static Operation copy( final Variable src, final Variable dst ) {
+        if( src instanceof VariableSparseMatrix && dst instanceof VariableSparseMatrix ) {
+            return new Operation("copy-sparse-mm") {
+                @Override
+                public void process() {
+                    ((VariableSparseMatrix)dst).matrix.set(sparse(src));
+                }
+            };
+        } else if( src instanceof VariableSparseMatrix && dst instanceof VariableMatrix ) {
+            return new Operation("copy-sparse-md") {
+                @Override
+                public void process() {
+                    ConvertDMatrixStruct.convert(sparse(src), dense(dst));
+                }
+            };
+        } else if( src instanceof VariableMatrix && dst instanceof VariableSparseMatrix ) {
+            return new Operation("copy-sparse-dm") {
+                @Override
+                public void process() {
+                    ConvertDMatrixStruct.convert(dense(src), sparse(dst), 0.0);
+                }
+            };
+        } else if( src instanceof VariableSparseMatrix && dst instanceof VariableDouble ) {
+            return new Operation("copy-sparse-ms") {
+                @Override
+                public void process() {
+                    DMatrixSparseCSC s = sparse(src);
+                    if( s.numRows != 1 || s.numCols != 1 ) {
+                        throw new RuntimeException("Attempting to assign a non 1x1 matrix to a double");
+                    }
+                    ((VariableDouble)dst).value = s.get(0, 0);
+                }
+            };
+        }
+        throw unsupported("copy", src, dst);
+    }
+
+    /**
+     * Copies into a sub-matrix of 'dst' where 'src' or 'dst' is sparse. There is no sparse implementation.
+     * Sparse matrices are converted into dense, the dense copy is performed, and then a sparse 'dst' is
+     * converted back.
+     */
+    public static Operation copy( final Variable src, final Variable dst, final List<Variable> range ) {
+        final Variable denseSrc = src instanceof VariableSparseMatrix ? VariableMatrix.createTemp() : src;
+        final Variable denseDst = dst instanceof VariableSparseMatrix ? VariableMatrix.createTemp() : dst;
+        final Operation op = Operation.copy(denseSrc, denseDst, range);
+        return new Operation(op.name() + "-dense") {
+            @Override
+            public void process() {
+                if( denseSrc != src )
+                    ConvertDMatrixStruct.convert(sparse(src), dense(denseSrc));
+                if( denseDst != dst )
+                    ConvertDMatrixStruct.convert(sparse(dst), dense(denseDst));
+                op.process();
+                if( denseDst != dst )
+                    ConvertDMatrixStruct.convert(dense(denseDst), sparse(dst), 0.0);
+            }
+        };
+    }
+
+    /**
+     * @see #dense(ManagerFunctions.InputN, ManagerTempVariables, List)
+     */
+    public static Operation.Info dense( ManagerFunctions.InputN factory, ManagerTempVariables manager,
+                                        Variable... inputs ) {
+        return dense(factory, manager, Arrays.asList(inputs));
+    }
+
+    /**
+     * Used by operations which don't have a sparse implementation. The dense operation is created with every
+     * sparse input replaced by a dense matrix, and the sparse inputs are converted into those matrices each
+     * time before the dense operation is performed.
+     *
+     * @param factory Creates the dense operation
+     * @param inputs Inputs to the operation. Sparse inputs are converted.
+     */
+    public static Operation.Info dense( ManagerFunctions.InputN factory, ManagerTempVariables manager,
+                                        List<Variable> inputs ) {
+        final List<VariableSparseMatrix> sparseInputs = new ArrayList<>();
+        final List<VariableMatrix> denseInputs = new ArrayList<>();
+        List<Variable> converted = new ArrayList<>();
+        for( Variable v : inputs ) {
+            if( v instanceof VariableSparseMatrix ) {
+                VariableMatrix d = manager.createMatrix();
+                sparseInputs.add((VariableSparseMatrix)v);
+                denseInputs.add(d);
+                converted.add(d);
+            } else {
+                converted.add(v);
+            }
+        }
+
+        final Operation.Info info = factory.create(converted, manager);
+        Operation.Info ret = new Operation.Info();
+        ret.output = info.output;
+        ret.op = new Operation(info.op.name() + "-dense") {
+            @Override
+            public void process() {
+                for (int i = 0; i < sparseInputs.size(); i++) {
+                    ConvertDMatrixStruct.convert(sparseInputs.get(i).matrix, denseInputs.get(i).matrix);
+                }
+                info.op.process();
+            }
+        };
+        return ret;
+    }
+
+    /**
+     * Linear solver which remembers the structure of the last matrix it was given. If a new matrix has the same
+     * structure then the structure is locked and the symbolic analysis is reused. LU can't be locked since its
+     * pivots depend on the numerical values, so symmetric matrices are solved using Cholesky and everything else
+     * using QR.
+     */
+    static class SparseSolver {
+        @Nullable LinearSolverSparse<DMatrixSparseCSC,DMatrixRMaj> solver;
+        boolean cholesky;
+        // true if Cholesky failed on a matrix with the current structure, e.g. symmetric but indefinite
+        boolean choleskyFailed;
+
+        // structure of the last decomposed matrix
+        int numRows = -1, numCols = -1;
+        int[] col_idx = new int[0];
+        int[] nz_rows = new int[0];
+        int nz_length;
+
+        LinearSolverSparse<DMatrixSparseCSC,DMatrixRMaj> setA( DMatrixSparseCSC A ) {
+            boolean sameStructure = isSameStructure(A);
+            if( !sameStructure )
+                choleskyFailed = false;
+
+            boolean useCholesky = !choleskyFailed && A.numRows == A.numCols &&
+                    MatrixFeatures_DSCC.isSymmetric(A, Math.sqrt(UtilEjml.EPS)*CommonOps_DSCC.elementMaxAbs(A));
+            if( solver == null || cholesky != useCholesky ) {
+                createSolver(useCholesky);
+                sameStructure = false;
+            }
+            solver.setStructureLocked(sameStructure);
+
+            if( !solver.setA(solver.modifiesA() ? A.copy() : A) ) {
+                if( !cholesky ) {
+                    numRows = -1;
+                    throw new RuntimeException("Solver failed!");
+                }
+                // not positive definite
+                choleskyFailed = true;
+                createSolver(false);
+                if( !solver.setA(solver.modifiesA() ? A.copy() : A) ) {
+                    numRows = -1;
+                    throw new RuntimeException("Solver failed!");
+                }
+            }
+            if( !solver.isStructureLocked() )
+                saveStructure(A);
+            return solver;
+        }
+
+        private void createSolver( boolean cholesky ) {
+            this.cholesky = cholesky;
+            solver = cholesky ? LinearSolverFactory_DSCC.cholesky(FillReducing.NONE) :
+                    LinearSolverFactory_DSCC.qr(FillReducing.NONE);
+        }
+
+        boolean isSameStructure( DMatrixSparseCSC A ) {
+            if( A.numRows != numRows || A.numCols != numCols || A.nz_length != nz_length )
+                return false;
+            for (int i = 0; i <= numCols; i++) {
+                if( A.col_idx[i] != col_idx[i] )
+                    return false;
+            }
+            for (int i = 0; i < nz_length; i++) {
+                if( A.nz_rows[i] != nz_rows[i] )
+                    return false;
+            }
+            return true;
+        }
+
+        void saveStructure( DMatrixSparseCSC A ) {
+            numRows = A.numRows;
+            numCols = A.numCols;
+            nz_length = A.nz_length;
+            col_idx = Arrays.copyOf(A.col_idx, A.numCols+1);
+            nz_rows = Arrays.copyOf(A.nz_rows, A.nz_length);
+        }
+    }
+
+    /**
+     * C = A*B where A is dense and B is sparse
+     */
+    static void multDenseSparse( DMatrixRMaj A, DMatrixSparseCSC B, DMatrixRMaj C ) {
+        if( A.numCols != B.numRows )
+            throw new MatrixDimensionException("Inconsistent matrix shapes. "+stringShapes(A,B));
+        C.reshape(A.numRows, B.numCols);
+        C.zero();
+        for (int col = 0; col < B.numCols; col++) {
+            int idx1 = B.col_idx[col+1];
+            for (int i = B.col_idx[col]; i < idx1; i++) {
+                int k = B.nz_rows[i];
+                double value = B.nz_values[i];
+                for (int row = 0; row < A.numRows; row++) {
+                    C.data[row*C.numCols + col] += A.data[row*A.numCols + k]*value;
+                }
+            }
+        }
+    }
+
+    /**
+     * C = C + alpha*A where A is sparse and C is dense
+     */
+    static void addSparse( double alpha, DMatrixSparseCSC A, DMatrixRMaj C ) {
+        if( A.numRows != C.numRows || A.numCols != C.numCols )
+            throw new MatrixDimensionException("Inconsistent matrix shapes. "+stringShapes(A,C));
+        for (int col = 0; col < A.numCols; col++) {
+            int idx1 = A.col_idx[col+1];
+            for (int i = A.col_idx[col]; i < idx1; i++) {
+                C.data[A.nz_rows[i]*C.numCols + col] += alpha*A.nz_values[i];
+            }
+        }
+    }
+
+    static boolean isMatrix( Variable v ) {
+        return v instanceof VariableMatrix || v instanceof VariableSparseMatrix;
+    }
+
+    static DMatrixSparseCSC sparse( Variable v ) {
+        return ((VariableSparseMatrix)v).matrix;
+    }
+
+    static DMatrixRMaj dense( Variable v ) {
+        return ((VariableMatrix)v).matrix;
+    }
+
+    private static RuntimeException unsupported( String operation, Variable A, Variable B ) {
+        return new RuntimeException("Unsupported input types for sparse " + operation + ". " +
+                A.getClass().getSimpleName() + " and " + B.getClass().getSimpleName());
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.equation;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Bounded cache of compiled sequences, or objects which contain compiled sequences, so that an equation which is
+ * processed repeatedly only needs to be parsed once. When full the least recently used entry is discarded.
+ * Statistics on how often a lookup succeeds are recorded. All functions are thread safe.
+ * </p>
+ *
+ * <p>
+ * Keys should contain the equation's text and anything else which would change how it's compiled, e.g.
+ * the type and shape of the variables it references.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class SequenceCache<T> {
+    // Maximum number of elements in the cache
+    final int maxSize;
+
+    // Iteration order is from least to most recently used
+    final LinkedHashMap<String, T> map;
+
+    long hits;
+    long misses;
+
+    public SequenceCache( int maxSize ) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("Size must be at least one");
+        this.maxSize = maxSize;
+        this.map = new LinkedHashMap<String, T>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, T> eldest ) {
+                return size() > SequenceCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the value associated with the key and marks it as the most recently used.
+     *
+     * @return The value or null if it's not in the cache
+     */
+    public synchronized @Nullable T get( String key ) {
+        return record(map.get(key));
+    }
+
+    /**
+     * Removes and returns the value associated with the key. Use this when the value can't be safely used by
+     * multiple threads at once and {@link #put} it back when finished.
+     *
+     * @return The value or null if it's not in the cache
+     */
+    public synchronized @Nullable T remove( String key ) {
+        return record(map.remove(key));
+    }
+
+    /**
+     * Adds the value to the cache. If the cache is full then the least recently used value is discarded.
+     */
+    public synchronized void put( String key, T value ) {
+        map.put(key, value);
+    }
+
+    private @Nullable T record( @Nullable T value ) {
+        if (value == null)
+            misses++;
+        else
+            hits++;
+        return value;
+    }
+
+    /**
+     * Removes everything from the cache. Statistics are not modified.
+     */
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    /**
+     * Sets the number of hits and misses to zero
+     */
+    public synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Number of lookups which found a value
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Number of lookups which failed to find a value
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
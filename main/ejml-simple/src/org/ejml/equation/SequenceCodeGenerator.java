@@ -0,0 +1,858 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.equation;
+
+import org.ejml.data.DMatrix1Row;
+import org.ejml.data.DMatrixD1;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.ejml.equation.OperationFusion.ElementWiseOperation;
+import org.ejml.equation.OperationFusion.GemmOperation;
+import org.ejml.equation.OperationFusion.Kind;
+import org.ejml.equation.OperationFusion.Node;
+import org.ejml.ops.ConvertDMatrixStruct;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.ejml.equation.ClassFileWriter.*;
+
+/**
+ * <p>
+ * Converts a compiled {@link Sequence} into a class whose {@link GeneratedSequence#perform()} method directly
+ * invokes the functions in {@link CommonOps_DDRM}. This removes the overhead of looping through operations,
+ * virtual calls, and type casts, which is significant when small matrices are processed many times.
+ * Byte code is written directly, no third party libraries are required.
+ * </p>
+ *
+ * <p>
+ * If every matrix in the sequence is either NxN or Nx1, with 2 &le; N &le; 6, then the generated code operates
+ * on fixed sized matrices, e.g. {@link org.ejml.data.DMatrix3x3}, and calls CommonOps_DDF2 to CommonOps_DDF6.
+ * Input matrices are converted into fixed sized matrices at the start and the results are copied back at the end.
+ * The shape of the temporary matrices is determined using the shape of the input matrices when this function
+ * is called. If an input matrix changes shape after that then an exception will be thrown and the sequence
+ * needs to be generated again.
+ * </p>
+ *
+ * <p>
+ * Operations which aren't explicitly supported are invoked through {@link Operation#process()}.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class SequenceCodeGenerator {
+    private static final AtomicInteger counter = new AtomicInteger();
+
+    // @formatter:off
+    private static final Method PROCESS       = method(Operation.class, "process");
+    private static final Method GET_DOUBLE    = method(VariableScalar.class, "getDouble");
+    private static final Method PREPARE       = method(ElementWiseOperation.class, "prepare");
+    private static final Method RESHAPE       = method(DMatrixD1.class, "reshape", int.class, int.class);
+    private static final Method SET_D1        = method(DMatrixD1.class, "set", DMatrixD1.class);
+    private static final Method MULT          = method(CommonOps_DDRM.class, "mult", DMatrix1Row.class, DMatrix1Row.class, DMatrix1Row.class);
+    private static final Method TRANSPOSE     = method(CommonOps_DDRM.class, "transpose", DMatrixRMaj.class, DMatrixRMaj.class);
+    private static final Method ADD           = method(CommonOps_DDRM.class, "add", DMatrixD1.class, DMatrixD1.class, DMatrixD1.class);
+    private static final Method ADD_MS        = method(CommonOps_DDRM.class, "add", DMatrixD1.class, double.class, DMatrixD1.class);
+    private static final Method SUBTRACT      = method(CommonOps_DDRM.class, "subtract", DMatrixD1.class, DMatrixD1.class, DMatrixD1.class);
+    private static final Method SUBTRACT_MS   = method(CommonOps_DDRM.class, "subtract", DMatrixD1.class, double.class, DMatrixD1.class);
+    private static final Method SUBTRACT_SM   = method(CommonOps_DDRM.class, "subtract", double.class, DMatrixD1.class, DMatrixD1.class);
+    private static final Method ELEMENT_MULT  = method(CommonOps_DDRM.class, "elementMult", DMatrixD1.class, DMatrixD1.class, DMatrixD1.class);
+    private static final Method ELEMENT_DIV   = method(CommonOps_DDRM.class, "elementDiv", DMatrixD1.class, DMatrixD1.class, DMatrixD1.class);
+    private static final Method SCALE         = method(CommonOps_DDRM.class, "scale", double.class, DMatrixD1.class, DMatrixD1.class);
+    private static final Method DIVIDE_MS     = method(CommonOps_DDRM.class, "divide", DMatrixD1.class, double.class, DMatrixD1.class);
+    private static final Method DIVIDE_SM     = method(CommonOps_DDRM.class, "divide", double.class, DMatrixD1.class, DMatrixD1.class);
+    private static final Method CHANGE_SIGN   = method(CommonOps_DDRM.class, "changeSign", DMatrixD1.class, DMatrixD1.class);
+    private static final Method EXP           = method(CommonOps_DDRM.class, "elementExp", DMatrixD1.class, DMatrixD1.class);
+    private static final Method LOG           = method(CommonOps_DDRM.class, "elementLog", DMatrixD1.class, DMatrixD1.class);
+    private static final Method POW_MM        = method(CommonOps_DDRM.class, "elementPower", DMatrixD1.class, DMatrixD1.class, DMatrixD1.class);
+    private static final Method POW_MS        = method(CommonOps_DDRM.class, "elementPower", DMatrixD1.class, double.class, DMatrixD1.class);
+    private static final Method POW_SM        = method(CommonOps_DDRM.class, "elementPower", double.class, DMatrixD1.class, DMatrixD1.class);
+    private static final Method MATH_EXP      = method(Math.class, "exp", double.class);
+    private static final Method MATH_LOG      = method(Math.class, "log", double.class);
+    private static final Method MATH_POW      = method(Math.class, "pow", double.class, double.class);
+    // @formatter:on
+
+    final Sequence sequence;
+    final String className;
+    final ClassFileWriter writer;
+    final ClassFileWriter.Code code;
+
+    // Values which are assigned to the fields of the generated class
+    final List<Object> fieldValues = new ArrayList<>();
+    final Map<Object, Integer> fieldLookup = new IdentityHashMap<>();
+    final List<Class<?>> fieldTypes = new ArrayList<>();
+
+    // index of the next unused local variable in perform()
+    int nextLocal = 1;
+
+    // Fixed sized matrix for each matrix variable. Only used when generating fixed sized code
+    final Map<Variable, Object> fixedMatrices = new IdentityHashMap<>();
+    // Input matrices which are read by the sequence
+    final Set<Variable> readVariables = Collections.newSetFromMap(new IdentityHashMap<>());
+    // Shape of each matrix in the sequence. Only used when generating fixed sized code
+    Map<Variable, int[]> shapes = new IdentityHashMap<>();
+    // Size of the fixed sized matrices
+    int fixedN;
+    @Nullable Class<?> opsFixed;
+
+    SequenceCodeGenerator( Sequence sequence ) {
+        this.sequence = sequence;
+        this.className = "org/ejml/equation/generated/Sequence" + counter.incrementAndGet();
+        this.writer = new ClassFileWriter(className, internalName(GeneratedSequence.class));
+        this.code = writer.new Code();
+    }
+
+    /**
+     * Converts the sequence into byte code. Fixed sized matrices are used if possible.
+     *
+     * @param sequence Compiled sequence. The operations in the sequence are referenced by the generated class.
+     * @return Generated sequence
+     */
+    public static GeneratedSequence generate( Sequence sequence ) {
+        return generate(sequence, true);
+    }
+
+    /**
+     * Converts the sequence into byte code.
+     *
+     * @param sequence Compiled sequence. The operations in the sequence are referenced by the generated class.
+     * @param fixedSize If true then it will attempt to use fixed sized matrices
+     * @return Generated sequence
+     */
+    public static GeneratedSequence generate( Sequence sequence, boolean fixedSize ) {
+        if (fixedSize) {
+            SequenceCodeGenerator alg = new SequenceCodeGenerator(sequence);
+            if (alg.generateFixed())
+                return alg.create(true);
+        }
+        SequenceCodeGenerator alg = new SequenceCodeGenerator(sequence);
+        alg.generateDense();
+        return alg.create(false);
+    }
+
+    //--------------------------------------------------------------------------------------------------------------
+    // Code generation for dense row-major matrices
+
+    void generateDense() {
+        for (Operation op : sequence.operations) {
+            if (op instanceof GemmOperation) {
+                denseGemm((GemmOperation)op);
+            } else if (op instanceof ElementWiseOperation) {
+                denseElementWise((ElementWiseOperation)op);
+            } else if (!denseOperation(op) && !scalarOperation(op)) {
+                fallback(op);
+            }
+        }
+    }
+
+    /**
+     * Invokes the matching function in CommonOps_DDRM
+     *
+     * @return true if the operation is supported
+     */
+    boolean denseOperation( Operation op ) {
+        List<Variable> in = op.inputVariables;
+        Variable out = op.outputVariable;
+        if (in == null || out == null)
+            return false;
+
+        if (op.name().equals("copy-mm") && out instanceof VariableMatrix) {
+            loadMatrix(out);
+            loadMatrix(in.get(0));
+            code.call(SET_D1);
+            return true;
+        }
+
+        Kind kind = OperationFusion.kindOf(op);
+        Method method;
+        switch (kind) {
+            // @formatter:off
+            case MULT_MM:      method = MULT; break;
+            case TRANSPOSE:    method = TRANSPOSE; break;
+            case ADD_MM:       method = ADD; break;
+            case SUB_MM:       method = SUBTRACT; break;
+            case ELEMENT_MULT: method = ELEMENT_MULT; break;
+            case ELEMENT_DIV:  method = ELEMENT_DIV; break;
+            case NEG:          method = CHANGE_SIGN; break;
+            case EXP:          method = EXP; break;
+            case LOG:          method = LOG; break;
+            case POW_MM:       method = POW_MM; break;
+            case POW_MS:       method = POW_MS; break;
+            case POW_SM:       method = POW_SM; break;
+            case SUB_MS:       method = SUBTRACT_MS; break;
+            case SUB_SM:       method = SUBTRACT_SM; break;
+            case DIV_MS:       method = DIVIDE_MS; break;
+            case DIV_SM:       method = DIVIDE_SM; break;
+            case MULT_MS:      method = SCALE; break;
+            case ADD_MS:       method = ADD_MS; break;
+            default: return false;
+            // @formatter:on
+        }
+
+        // scale and add are commutative so the order of the inputs needs to be adjusted
+        if (kind == Kind.MULT_MS) {
+            loadScalar(scalarInput(in));
+            loadMatrix(matrixInput(in));
+        } else if (kind == Kind.ADD_MS) {
+            loadMatrix(matrixInput(in));
+            loadScalar(scalarInput(in));
+        } else {
+            for (Variable v : in) {
+                if (v instanceof VariableMatrix)
+                    loadMatrix(v);
+                else
+                    loadScalar(v);
+            }
+        }
+        loadMatrix(out);
+        code.call(method);
+        return true;
+    }
+
+    void denseGemm( GemmOperation op ) {
+        String name = gemmFunctionName(op);
+        if (op.C != null) {
+            loadCoefficient(op.betaSign, op.betaScalars);
+            loadMatrix(op.C);
+            loadMatrix(op.result);
+            code.call(SCALE);
+        }
+        loadCoefficient(op.alphaSign, op.alphaScalars);
+        loadMatrix(op.A);
+        loadMatrix(op.B);
+        loadMatrix(op.result);
+        code.call(method(CommonOps_DDRM.class, name, double.class, DMatrix1Row.class, DMatrix1Row.class, DMatrix1Row.class));
+    }
+
+    /**
+     * Writes a loop which computes the element-wise expression without any function calls
+     */
+    void denseElementWise( ElementWiseOperation op ) {
+        int localN = allocateLocal(1);
+        int localI = allocateLocal(1);
+        int localOut = allocateLocal(1);
+
+        loadField(op, ElementWiseOperation.class);
+        code.invoke(PREPARE);
+        code.istore(localN);
+
+        loadMatrix(op.result);
+        code.getfield(internalName(DMatrixRMaj.class), "data", double[].class);
+        code.astore(localOut);
+
+        // load the arrays and scalars into local variables
+        Map<Variable, Integer> locals = new IdentityHashMap<>();
+        for (Variable v : op.leaves) {
+            if (v instanceof VariableMatrix) {
+                int local = allocateLocal(1);
+                loadMatrix(v);
+                code.getfield(internalName(DMatrixRMaj.class), "data", double[].class);
+                code.astore(local);
+                locals.put(v, local);
+            } else {
+                int local = allocateLocal(2);
+                loadScalar(v);
+                code.dstore(local);
+                locals.put(v, local);
+            }
+        }
+
+        int labelLoop = code.createLabel();
+        int labelEnd = code.createLabel();
+
+        code.iconst(0);
+        code.istore(localI);
+        code.mark(labelLoop);
+        code.iload(localI);
+        code.iload(localN);
+        code.jump(IF_ICMPGE, labelEnd, -2);
+        code.aload(localOut);
+        code.iload(localI);
+        writeExpression(op.expression, ( v, index ) -> {
+            code.aload(locals.get(v));
+            code.iload(localI);
+            code.op(DALOAD, 0);
+        }, locals, 0);
+        code.op(DASTORE, -4);
+        code.iinc(localI, 1);
+        code.jump(GOTO, labelLoop, 0);
+        code.mark(labelEnd);
+    }
+
+    //--------------------------------------------------------------------------------------------------------------
+    // Code generation for fixed sized matrices
+
+    /**
+     * Attempts to generate code using fixed sized matrices
+     *
+     * @return true if successful
+     */
+    boolean generateFixed() {
+        Map<Variable, int[]> found = inferShapes();
+        if (found == null)
+            return false;
+        shapes = found;
+
+        // every matrix must be NxN or an Nx1 vector
+        fixedN = -1;
+        for (int[] shape : shapes.values()) {
+            if (fixedN == -1)
+                fixedN = shape[0];
+            if (shape[0] != fixedN || (shape[1] != fixedN && shape[1] != 1))
+                return false;
+        }
+        if (fixedN < 2 || fixedN > 6)
+            return false;
+
+        try {
+            opsFixed = Class.forName("org.ejml.dense.fixed.CommonOps_DDF" + fixedN);
+            for (Map.Entry<Variable, int[]> e : shapes.entrySet()) {
+                fixedMatrices.put(e.getKey(), fixedType(e.getValue()[1] == 1).getConstructor().newInstance());
+            }
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+
+        // convert the input matrices into fixed sized matrices
+        for (Operation op : sequence.operations) {
+            for (Variable v : Objects.requireNonNull(op.inputVariables)) {
+                if (v instanceof VariableMatrix && !((VariableMatrix)v).isTemp() && readVariables.add(v)) {
+                    convertToFixed(v);
+                }
+            }
+        }
+
+        for (Operation op : sequence.operations) {
+            if (!fixedOperation(op))
+                return false;
+        }
+
+        // if the output is a temporary variable then it needs to be converted back
+        if (sequence.output instanceof VariableMatrix && ((VariableMatrix)sequence.output).isTemp() &&
+                fixedMatrices.containsKey(sequence.output)) {
+            convertFromFixed(sequence.output, sequence.output);
+        }
+        return true;
+    }
+
+    /**
+     * Determines the shape of each matrix in the sequence
+     *
+     * @return Shape of each matrix or null if an operation isn't supported
+     */
+    @Nullable Map<Variable, int[]> inferShapes() {
+        Map<Variable, int[]> found = new IdentityHashMap<>();
+
+        for (Operation op : sequence.operations) {
+            List<Variable> in = op.inputVariables;
+            Variable out = op.outputVariable;
+            if (in == null)
+                return null;
+
+            // shape of the input matrices
+            List<int[]> inputShapes = new ArrayList<>();
+            for (Variable v : in) {
+                if (!(v instanceof VariableMatrix))
+                    continue;
+                int[] shape = found.get(v);
+                if (shape == null) {
+                    VariableMatrix m = (VariableMatrix)v;
+                    if (m.isTemp())
+                        return null;
+                    shape = new int[]{m.matrix.numRows, m.matrix.numCols};
+                    found.put(v, shape);
+                }
+                inputShapes.add(shape);
+            }
+
+            if (!(out instanceof VariableMatrix)) {
+                // only operations on scalars are allowed to not output a matrix
+                if (!inputShapes.isEmpty() || out == null)
+                    return null;
+                continue;
+            }
+
+            int[] outShape;
+            if (op instanceof GemmOperation) {
+                GemmOperation g = (GemmOperation)op;
+                int[] a = found.get(g.A), b = found.get(g.B);
+                int innerA = g.transA ? a[0] : a[1];
+                int innerB = g.transB ? b[1] : b[0];
+                if (innerA != innerB)
+                    return null;
+                outShape = new int[]{g.transA ? a[1] : a[0], g.transB ? b[0] : b[1]};
+                if (g.C != null) {
+                    int[] c = found.get(g.C);
+                    if (c[0] != outShape[0] || c[1] != outShape[1])
+                        return null;
+                }
+            } else if (op.name().equals("copy-mm") || op.name().equals("inv-m") ||
+                    op instanceof ElementWiseOperation || OperationFusion.kindOf(op).elementWise) {
+                if (inputShapes.isEmpty())
+                    return null;
+                outShape = inputShapes.get(0);
+                for (int[] s : inputShapes) {
+                    if (s[0] != outShape[0] || s[1] != outShape[1])
+                        return null;
+                }
+            } else if (OperationFusion.kindOf(op) == Kind.MULT_MM) {
+                int[] a = inputShapes.get(0), b = inputShapes.get(1);
+                if (a[1] != b[0])
+                    return null;
+                outShape = new int[]{a[0], b[1]};
+            } else if (OperationFusion.kindOf(op) == Kind.TRANSPOSE) {
+                int[] a = inputShapes.get(0);
+                outShape = new int[]{a[1], a[0]};
+            } else {
+                return null;
+            }
+
+            // the output of a copy is a user's matrix and it will be reshaped
+            int[] previous = found.get(out);
+            if (previous != null && (previous[0] != outShape[0] || previous[1] != outShape[1]))
+                return null;
+            found.put(out, outShape.clone());
+        }
+        return found;
+    }
+
+    /**
+     * Generates code for the operation using fixed sized matrices
+     *
+     * @return true if the operation is supported
+     */
+    boolean fixedOperation( Operation op ) {
+        List<Variable> in = op.inputVariables;
+        Variable out = op.outputVariable;
+        if (in == null || out == null)
+            return false;
+
+        if (!(out instanceof VariableMatrix)) {
+            if (!scalarOperation(op))
+                fallback(op);
+            return true;
+        }
+
+        boolean vectorOut = shapes.get(out)[1] == 1;
+
+        if (op instanceof GemmOperation) {
+            return fixedGemm((GemmOperation)op, vectorOut);
+        } else if (op instanceof ElementWiseOperation) {
+            fixedElementWise(((ElementWiseOperation)op).expression, out, vectorOut);
+            return true;
+        }
+
+        switch (op.name()) {
+            case "copy-mm":
+                convertFromFixed(in.get(0), out);
+                // keep the fixed matrix up to date too in case it's read later on
+                if (readVariables.contains(out))
+                    convertToFixed(out);
+                return true;
+
+            case "inv-m": {
+                Method invert = fixedMethod("invert", false, false);
+                if (invert == null || vectorOut)
+                    return false;
+                int labelSuccess = code.createLabel();
+                loadFixed(in.get(0));
+                loadFixed(out);
+                code.invoke(invert);
+                code.jump(IFNE, labelSuccess, -1);
+                code.newObject(RuntimeException.class);
+                code.op(DUP, 1);
+                code.ldcString("Inverse failed!");
+                code.invokespecial(internalName(RuntimeException.class), "<init>", "(Ljava/lang/String;)V", 2, 0);
+                code.op(ATHROW, -1);
+                code.mark(labelSuccess);
+                return true;
+            }
+
+            default:
+                break;
+        }
+
+        Kind kind = OperationFusion.kindOf(op);
+        if (kind == Kind.MULT_MM) {
+            Method mult = fixedMethod("mult", false, vectorOut, vectorOut);
+            if (mult == null)
+                return false;
+            loadFixed(in.get(0));
+            loadFixed(in.get(1));
+            loadFixed(out);
+            code.call(mult);
+            return true;
+        } else if (kind == Kind.TRANSPOSE) {
+            Method transpose = fixedMethod("transpose", false, false);
+            if (transpose == null)
+                return false;
+            loadFixed(in.get(0));
+            loadFixed(out);
+            code.call(transpose);
+            return true;
+        } else if (kind.elementWise) {
+            List<Node> children = new ArrayList<>();
+            for (Variable v : in) {
+                if (v instanceof VariableMatrix)
+                    children.add(new OperationFusion.MatrixNode((VariableMatrix)v));
+                else
+                    children.add(new OperationFusion.ScalarNode((VariableScalar)v));
+            }
+            fixedElementWise(OperationFusion.createNode(kind, children), out, vectorOut);
+            return true;
+        }
+        return false;
+    }
+
+    boolean fixedGemm( GemmOperation op, boolean vectorOut ) {
+        String name = gemmFunctionName(op);
+        if (!vectorOut) {
+            Method scale = fixedMethod("scale", double.class, false, false);
+            Method mult = fixedMethod(name, double.class, false, false, false);
+            if (scale == null || mult == null)
+                return false;
+            if (op.C != null) {
+                loadCoefficient(op.betaSign, op.betaScalars);
+                loadFixed(op.C);
+                loadFixed(op.result);
+                code.call(scale);
+            }
+            loadCoefficient(op.alphaSign, op.alphaScalars);
+            loadFixed(op.A);
+            loadFixed(op.B);
+            loadFixed(op.result);
+            code.call(mult);
+            return true;
+        }
+
+        // There are fewer functions for matrix-vector multiplication
+        if (op.transA || op.transB)
+            return false;
+        if (op.C != null && !op.betaScalars.isEmpty())
+            return false;
+
+        Method mult = fixedMethod("mult", false, true, true);
+        Method scale = fixedMethod("scale", double.class, true);
+        Method addEquals = fixedMethod(op.betaSign > 0 ? "addEquals" : "subtractEquals", true, true);
+        if (mult == null || scale == null || addEquals == null)
+            return false;
+        loadFixed(op.A);
+        loadFixed(op.B);
+        loadFixed(op.result);
+        code.call(mult);
+        if (op.alphaSign != 1.0 || !op.alphaScalars.isEmpty()) {
+            loadCoefficient(op.alphaSign, op.alphaScalars);
+            loadFixed(op.result);
+            code.call(scale);
+        }
+        if (op.C != null) {
+            loadFixed(op.result);
+            loadFixed(op.C);
+            code.call(addEquals);
+        }
+        return true;
+    }
+
+    /**
+     * Computes the element-wise expression by unrolling the loop and reading the fields in the fixed sized matrices
+     */
+    void fixedElementWise( Node expression, Variable out, boolean vector ) {
+        Map<Variable, Integer> locals = new IdentityHashMap<>();
+        List<Variable> leaves = new ArrayList<>();
+        expression.collectInputs(leaves);
+        for (Variable v : leaves) {
+            if (v instanceof VariableScalar) {
+                int local = allocateLocal(2);
+                loadScalar(v);
+                code.dstore(local);
+                locals.put(v, local);
+            }
+        }
+
+        String owner = internalName(fixedType(vector));
+        int numElements = vector ? fixedN : fixedN*fixedN;
+        for (int element = 0; element < numElements; element++) {
+            loadFixed(out);
+            writeExpression(expression, ( v, index ) -> {
+                loadFixed(v);
+                code.getfield(owner, fixedElementName(vector, index), double.class);
+            }, locals, element);
+            code.putfield(owner, fixedElementName(vector, element), double.class);
+        }
+    }
+
+    void convertToFixed( Variable v ) {
+        Class<?> type = fixedMatrices.get(v).getClass();
+        loadMatrix(v);
+        loadFixed(v);
+        code.call(method(ConvertDMatrixStruct.class, "convert", DMatrixRMaj.class, type));
+    }
+
+    void convertFromFixed( Variable src, Variable dst ) {
+        Class<?> type = fixedMatrices.get(src).getClass();
+        int[] shape = shapes.get(src);
+        // the conversion only reshapes square matrices
+        loadMatrix(dst);
+        code.iconst(shape[0]);
+        code.iconst(shape[1]);
+        code.call(RESHAPE);
+        loadFixed(src);
+        loadMatrix(dst);
+        code.call(method(ConvertDMatrixStruct.class, "convert", type, DMatrixRMaj.class));
+    }
+
+    void loadFixed( Variable v ) {
+        Object fixed = fixedMatrices.get(v);
+        loadField(fixed, fixed.getClass());
+    }
+
+    Class<?> fixedType( boolean vector ) {
+        try {
+            return Class.forName("org.ejml.data.DMatrix" + fixedN + (vector ? "" : "x" + fixedN));
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Name of the field in a fixed sized matrix which stores the element at the specified index
+     */
+    String fixedElementName( boolean vector, int index ) {
+        if (vector)
+            return "a" + (index + 1);
+        return "a" + (index/fixedN + 1) + (index%fixedN + 1);
+    }
+
+    /**
+     * Looks up a function in CommonOps_DDF. Parameters are either a Class or a boolean which indicates
+     * if it's a vector (true) or a matrix (false).
+     */
+    @Nullable Method fixedMethod( String name, Object... parameters ) {
+        Class<?>[] types = new Class<?>[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            types[i] = parameters[i] instanceof Class ? (Class<?>)parameters[i] : fixedType((Boolean)parameters[i]);
+        }
+        try {
+            return opsFixed.getMethod(name, types);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    //--------------------------------------------------------------------------------------------------------------
+    // Code generation which is common to both approaches
+
+    /**
+     * Operations on two scalars are computed directly
+     *
+     * @return true if the operation is supported
+     */
+    boolean scalarOperation( Operation op ) {
+        List<Variable> in = op.inputVariables;
+        if (in == null || in.size() != 2 || !(op.outputVariable instanceof VariableDouble))
+            return false;
+        if (!(in.get(0) instanceof VariableScalar) || !(in.get(1) instanceof VariableScalar))
+            return false;
+
+        int opcode;
+        switch (op.name()) {
+            // @formatter:off
+            case "add-ss":      opcode = DADD; break;
+            case "subtract-ss": opcode = DSUB; break;
+            case "multiply-ss": opcode = DMUL; break;
+            case "divide-ss":   opcode = DDIV; break;
+            default: return false;
+            // @formatter:on
+        }
+        loadField(op.outputVariable, VariableDouble.class);
+        loadScalar(in.get(0));
+        loadScalar(in.get(1));
+        code.op(opcode, -2);
+        code.putfield(internalName(VariableDouble.class), "value", double.class);
+        return true;
+    }
+
+    /**
+     * Operations which aren't supported are invoked through the operation
+     */
+    void fallback( Operation op ) {
+        loadField(op, Operation.class);
+        code.call(PROCESS);
+    }
+
+    /**
+     * Writes the byte code which computes the value of an element-wise expression. The value is left on the stack.
+     */
+    void writeExpression( Node node, MatrixElementWriter matrix, Map<Variable, Integer> locals, int index ) {
+        if (node instanceof OperationFusion.MatrixNode) {
+            matrix.write(((OperationFusion.MatrixNode)node).variable, index);
+        } else if (node instanceof OperationFusion.ScalarNode) {
+            code.dload(locals.get(((OperationFusion.ScalarNode)node).variable));
+        } else if (node instanceof OperationFusion.UnaryNode) {
+            writeExpression(((OperationFusion.UnaryNode)node).a, matrix, locals, index);
+            if (node instanceof OperationFusion.Neg)
+                code.op(DNEG, 0);
+            else if (node instanceof OperationFusion.Exp)
+                code.invoke(MATH_EXP);
+            else if (node instanceof OperationFusion.Log)
+                code.invoke(MATH_LOG);
+            else
+                throw new RuntimeException("Unknown node " + node.getClass().getSimpleName());
+        } else if (node instanceof OperationFusion.BinaryNode) {
+            writeExpression(((OperationFusion.BinaryNode)node).a, matrix, locals, index);
+            writeExpression(((OperationFusion.BinaryNode)node).b, matrix, locals, index);
+            if (node instanceof OperationFusion.Add)
+                code.op(DADD, -2);
+            else if (node instanceof OperationFusion.Subtract)
+                code.op(DSUB, -2);
+            else if (node instanceof OperationFusion.Mult)
+                code.op(DMUL, -2);
+            else if (node instanceof OperationFusion.Divide)
+                code.op(DDIV, -2);
+            else if (node instanceof OperationFusion.Pow)
+                code.invoke(MATH_POW);
+            else
+                throw new RuntimeException("Unknown node " + node.getClass().getSimpleName());
+        } else {
+            throw new RuntimeException("Unknown node " + node.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Writes the code which reads an element from a matrix
+     */
+    interface MatrixElementWriter {
+        void write( VariableMatrix v, int index );
+    }
+
+    static String gemmFunctionName( GemmOperation op ) {
+        String suffix = op.transA ? (op.transB ? "TransAB" : "TransA") : (op.transB ? "TransB" : "");
+        return (op.C == null ? "mult" : "multAdd") + suffix;
+    }
+
+    /**
+     * Puts sign*scalar[0]*...*scalar[N-1] onto the stack
+     */
+    void loadCoefficient( double sign, List<VariableScalar> scalars ) {
+        code.dconst(sign);
+        for (VariableScalar s : scalars) {
+            loadScalar(s);
+            code.op(DMUL, -2);
+        }
+    }
+
+    void loadMatrix( Variable v ) {
+        loadField(v, VariableMatrix.class);
+        code.getfield(internalName(VariableMatrix.class), "matrix", DMatrixRMaj.class);
+    }
+
+    void loadScalar( Variable v ) {
+        loadField(v, VariableScalar.class);
+        code.invoke(GET_DOUBLE);
+    }
+
+    /**
+     * Puts the value of the field which references 'value' onto the stack. If no such field exists yet then
+     * one is created.
+     */
+    void loadField( Object value, Class<?> type ) {
+        Integer index = fieldLookup.get(value);
+        if (index == null) {
+            index = fieldValues.size();
+            fieldValues.add(value);
+            fieldLookup.put(value, index);
+            // variables are referenced by their actual type so that the same field can be used in all situations
+            if (value instanceof Variable && java.lang.reflect.Modifier.isPublic(value.getClass().getModifiers()))
+                type = value.getClass();
+            writer.addField("f" + index, type);
+            fieldTypes.add(type);
+        }
+        code.aload(0);
+        code.getfield(className, "f" + index, fieldTypes.get(index));
+    }
+
+    int allocateLocal( int slots ) {
+        int index = nextLocal;
+        nextLocal += slots;
+        return index;
+    }
+
+    private static VariableMatrix matrixInput( List<Variable> in ) {
+        return (VariableMatrix)(in.get(0) instanceof VariableMatrix ? in.get(0) : in.get(1));
+    }
+
+    private static VariableScalar scalarInput( List<Variable> in ) {
+        return (VariableScalar)(in.get(0) instanceof VariableScalar ? in.get(0) : in.get(1));
+    }
+
+    /**
+     * Finishes the class and creates an instance of it
+     */
+    GeneratedSequence create( boolean fixedSize ) {
+        code.op(RETURN, 0);
+        writer.addDefaultConstructor();
+        writer.addMethod("perform", "()V", code);
+
+        byte[] bytes = writer.toByteArray();
+        try {
+            Class<?> type = new Loader(GeneratedSequence.class.getClassLoader()).define(className.replace('/', '.'), bytes);
+            GeneratedSequence generated = (GeneratedSequence)type.getConstructor().newInstance();
+            for (int i = 0; i < fieldValues.size(); i++) {
+                type.getField("f" + i).set(generated, fieldValues.get(i));
+            }
+            generated.operations = sequence.operations;
+            generated.output = sequence.output;
+            generated.fixedSize = fixedSize;
+            return generated;
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static Method method( Class<?> owner, String name, Class<?>... parameters ) {
+        try {
+            return owner.getMethod(name, parameters);
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Each generated class has its own class loader so that it can be discarded when no longer used. A class
+     * defined with MethodHandles.Lookup.defineClass() would belong to the library's class loader and could
+     * never be unloaded, so every compiled sequence would leak a class.
+     */
+    private static class Loader extends ClassLoader {
+        Loader( ClassLoader parent ) {
+            super(parent);
+        }
+
+        Class<?> define( String name, byte[] bytes ) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
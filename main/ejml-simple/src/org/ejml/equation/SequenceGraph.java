@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.equation;
+
+import org.ejml.concurrency.EjmlConcurrency;
+import org.ejml.data.DMatrixRMaj;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Executes the operations in one or more compiled {@link Sequence sequences} using a data dependency graph
+ * instead of their original order. An operation depends on the operations which last wrote to the variables
+ * it reads and writes, and on the operations which read a variable before it is overwritten. Operations which
+ * don't depend on each other are run concurrently inside of {@link EjmlConcurrency}'s thread pool.
+ * </p>
+ *
+ * <p>
+ * Temporary matrices which are never in use at the same time are also changed so that they share the same
+ * storage. This modifies the original sequences, which can still be performed on their own afterwards.
+ * </p>
+ *
+ * <pre>
+ * Equation eq = new Equation();
+ * eq.alias(K,"K",P,"P",H,"H",S,"S",x,"x",y,"y");
+ * SequenceGraph graph = eq.compileGraph("K = P*H'*inv(S)", "x = x + K*y", "P = P - K*H*P");
+ * graph.perform();
+ * </pre>
+ *
+ * @author Peter Abeles
+ */
+public class SequenceGraph {
+    // Used in place of a variable by operations which use the shared random number generator
+    private static final Object RANDOM = new Object();
+
+    // Every operation in the order it was compiled in
+    final List<Node> nodes = new ArrayList<>();
+    // Operations which don't depend on any other operation
+    final List<Node> roots = new ArrayList<>();
+
+    // Number of temporary matrices before and after storage was shared
+    int numTemporaries;
+    int numTemporaryStorage;
+
+    public SequenceGraph( Sequence... sequences ) {
+        this(Arrays.asList(sequences));
+    }
+
+    public SequenceGraph( List<Sequence> sequences ) {
+        for (Sequence sequence : sequences) {
+            for (Operation op : sequence.operations) {
+                nodes.add(new Node(op, nodes.size()));
+            }
+        }
+        createEdges();
+        for (Node n : nodes) {
+            if (n.predecessors.isEmpty())
+                roots.add(n);
+        }
+        shareTemporaries(sequences);
+    }
+
+    /**
+     * Performs all the operations. If concurrency is turned off then they are performed in the original order.
+     */
+    public void perform() {
+        if (!EjmlConcurrency.isConcurrent() || nodes.size() <= 1) {
+            for (int i = 0; i < nodes.size(); i++) {
+                nodes.get(i).operation.process();
+            }
+            return;
+        }
+
+        for (int i = 0; i < nodes.size(); i++) {
+            Node n = nodes.get(i);
+            n.pending.set(n.predecessors.size());
+        }
+        EjmlConcurrency.run(() -> new RootTask().invoke());
+    }
+
+    /**
+     * Connects each operation to the operations it depends on
+     */
+    void createEdges() {
+        // the last operation to write to a variable
+        Map<Object, Node> lastWriter = new IdentityHashMap<>();
+        // operations which have read a variable since it was last written to
+        Map<Object, List<Node>> readers = new IdentityHashMap<>();
+
+        // Operations with unknown side effects are barriers. Everything before it must finish and everything
+        // after it must wait.
+        Node barrier = null;
+        List<Node> sinceBarrier = new ArrayList<>();
+
+        for (Node n : nodes) {
+            List<Object> reads = new ArrayList<>();
+            List<Object> writes = new ArrayList<>();
+
+            if (!accessedVariables(n.operation, reads, writes)) {
+                if (barrier != null)
+                    addEdge(barrier, n);
+                for (Node p : sinceBarrier) {
+                    addEdge(p, n);
+                }
+                lastWriter.clear();
+                readers.clear();
+                sinceBarrier.clear();
+                barrier = n;
+                continue;
+            }
+
+            if (barrier != null)
+                addEdge(barrier, n);
+
+            for (Object v : reads) {
+                Node writer = lastWriter.get(v);
+                if (writer != null)
+                    addEdge(writer, n);
+                readers.computeIfAbsent(v, k -> new ArrayList<>()).add(n);
+            }
+
+            for (Object v : writes) {
+                Node writer = lastWriter.get(v);
+                if (writer != null)
+                    addEdge(writer, n);
+                List<Node> list = readers.remove(v);
+                if (list != null) {
+                    for (Node reader : list) {
+                        addEdge(reader, n);
+                    }
+                }
+                lastWriter.put(v, n);
+            }
+            sinceBarrier.add(n);
+        }
+    }
+
+    /**
+     * Finds the variables which are read and written to by the operation
+     *
+     * @return false if they are unknown
+     */
+    private static boolean accessedVariables( Operation op, List<Object> reads, List<Object> writes ) {
+        boolean random = op.name().equals("rng") || op.name().startsWith("rand");
+        if (random) {
+            reads.add(RANDOM);
+            writes.add(RANDOM);
+        }
+
+        if (op.inputVariables == null)
+            return false;
+        if (op.outputVariable == null)
+            return random;
+        reads.addAll(op.inputVariables);
+        writes.add(op.outputVariable);
+        return true;
+    }
+
+    private static void addEdge( Node from, Node to ) {
+        if (from == to || from.successors.contains(to))
+            return;
+        from.successors.add(to);
+        to.predecessors.add(from);
+    }
+
+    /**
+     * Uses liveness analysis to find temporary matrices which can share the same storage. A temporary can reuse
+     * the storage of another if every operation which used the other one is guaranteed to have finished
+     * before it's written to, even when operations are run concurrently.
+     */
+    void shareTemporaries( List<Sequence> sequences ) {
+        // the output of a sequence is accessed after it's done
+        Set<Variable> excluded = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Sequence s : sequences) {
+            if (s.output != null)
+                excluded.add(s.output);
+        }
+
+        // find the operations which write to and use each temporary
+        Map<VariableMatrix, Node> writtenBy = new IdentityHashMap<>();
+        Map<VariableMatrix, BitSet> usedBy = new IdentityHashMap<>();
+        for (Node n : nodes) {
+            Operation op = n.operation;
+            if (op.inputVariables == null)
+                return;
+            for (Variable v : op.inputVariables) {
+                if (v instanceof VariableMatrix && ((VariableMatrix)v).isTemp())
+                    usedBy.computeIfAbsent((VariableMatrix)v, k -> new BitSet()).set(n.index);
+            }
+            if (op.outputVariable instanceof VariableMatrix && ((VariableMatrix)op.outputVariable).isTemp()) {
+                VariableMatrix out = (VariableMatrix)op.outputVariable;
+                usedBy.computeIfAbsent(out, k -> new BitSet()).set(n.index);
+                // temporaries which are written to more than once are left alone
+                if (writtenBy.containsKey(out))
+                    excluded.add(out);
+                writtenBy.put(out, n);
+            }
+        }
+        numTemporaries = usedBy.size();
+        numTemporaryStorage = numTemporaries;
+
+        // operations which are guaranteed to have finished before each operation starts
+        BitSet[] ancestors = new BitSet[nodes.size()];
+        for (Node n : nodes) {
+            BitSet a = new BitSet(nodes.size());
+            for (Node p : n.predecessors) {
+                a.or(ancestors[p.index]);
+                a.set(p.index);
+            }
+            ancestors[n.index] = a;
+        }
+
+        List<Storage> storage = new ArrayList<>();
+        int assigned = 0;
+        for (Node n : nodes) {
+            if (!(n.operation.outputVariable instanceof VariableMatrix))
+                continue;
+            VariableMatrix out = (VariableMatrix)n.operation.outputVariable;
+            if (!out.isTemp() || excluded.contains(out) || writtenBy.get(out) != n)
+                continue;
+
+            Storage selected = null;
+            for (Storage s : storage) {
+                BitSet notFinished = (BitSet)s.users.clone();
+                notFinished.andNot(ancestors[n.index]);
+                if (notFinished.isEmpty()) {
+                    selected = s;
+                    break;
+                }
+            }
+            if (selected == null) {
+                selected = new Storage(out.matrix);
+                storage.add(selected);
+            } else {
+                out.matrix = selected.matrix;
+            }
+            selected.users.or(usedBy.get(out));
+            assigned++;
+        }
+        numTemporaryStorage = numTemporaries - assigned + storage.size();
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Number of temporary matrices used by the sequences
+     */
+    public int getNumTemporaries() {
+        return numTemporaries;
+    }
+
+    /**
+     * Number of matrices which are used to store the temporaries after storage has been shared
+     */
+    public int getNumTemporaryStorage() {
+        return numTemporaryStorage;
+    }
+
+    /**
+     * An operation in the graph and the operations it depends on
+     */
+    public static class Node {
+        public final Operation operation;
+        // Index of the operation in the order it was compiled in
+        public final int index;
+        public final List<Node> predecessors = new ArrayList<>();
+        public final List<Node> successors = new ArrayList<>();
+
+        // Number of predecessors which have yet to finish while performing
+        final AtomicInteger pending = new AtomicInteger();
+
+        Node( Operation operation, int index ) {
+            this.operation = operation;
+            this.index = index;
+        }
+    }
+
+    private static class Storage {
+        final DMatrixRMaj matrix;
+        // operations which use the storage
+        final BitSet users = new BitSet();
+
+        Storage( DMatrixRMaj matrix ) {
+            this.matrix = matrix;
+        }
+    }
+
+    /**
+     * Launches all the operations which don't depend on anything and completes when every operation has finished
+     */
+    private class RootTask extends CountedCompleter<Void> {
+        @Override
+        public void compute() {
+            for (Node n : roots) {
+                addToPendingCount(1);
+                new NodeTask(this, n).fork();
+            }
+            tryComplete();
+        }
+    }
+
+    /**
+     * Performs an operation then launches the operations which were waiting on it
+     */
+    private static class NodeTask extends CountedCompleter<Void> {
+        final Node node;
+
+        NodeTask( CountedCompleter<?> parent, Node node ) {
+            super(parent);
+            this.node = node;
+        }
+
+        @Override
+        public void compute() {
+            node.operation.process();
+            for (Node s : node.successors) {
+                if (s.pending.decrementAndGet() == 0) {
+                    addToPendingCount(1);
+                    new NodeTask(this, s).fork();
+                }
+            }
+            tryComplete();
+        }
+    }
+}
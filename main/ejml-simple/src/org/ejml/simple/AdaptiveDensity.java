@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.simple;
+
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.data.FMatrixRMaj;
+import org.ejml.data.Matrix;
+import org.ejml.data.MatrixSparse;
+import org.ejml.data.MatrixType;
+import org.ejml.ops.ConvertMatrixType;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Global settings for automatically switching {@link SimpleBase} matrices between sparse and dense
+ * representations. When enabled, sparse results which have filled in are converted into dense matrices and
+ * dense results computed from sparse inputs which are mostly zero are converted back into sparse matrices.
+ * Before multiplying two sparse matrices a cost model is used to decide if a dense multiplication would be faster.
+ * </p>
+ *
+ * <p>
+ * Different thresholds are used when switching to and from dense to avoid repeatedly converting a matrix
+ * back and forth. The number of conversions is recorded.
+ * </p>
+ *
+ * @author Peter Abeles
+ */
+public class AdaptiveDensity {
+    // If true then matrices will be converted automatically
+    private static volatile boolean enabled = false;
+
+    // Sparse results with at least this fraction of non-zero elements are converted into dense matrices
+    private static volatile double denseThreshold = 0.2;
+    // Dense results with at most this fraction of non-zero elements are converted into sparse matrices
+    private static volatile double sparseThreshold = 0.05;
+    // Approximate cost of a multiply-add inside of a sparse kernel relative to a dense kernel
+    private static volatile double sparseOverhead = 8.0;
+
+    private static final AtomicLong convertedToDense = new AtomicLong();
+    private static final AtomicLong convertedToSparse = new AtomicLong();
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns automatic switching between sparse and dense on or off
+     */
+    public static void setEnabled( boolean enabled ) {
+        AdaptiveDensity.enabled = enabled;
+    }
+
+    public static double getDenseThreshold() {
+        return denseThreshold;
+    }
+
+    public static double getSparseThreshold() {
+        return sparseThreshold;
+    }
+
+    /**
+     * Specifies when a matrix should be converted.
+     *
+     * @param sparseThreshold Dense results with this fraction of non-zero elements or less become sparse.
+     * @param denseThreshold Sparse results with this fraction of non-zero elements or more become dense.
+     */
+    public static void setThresholds( double sparseThreshold, double denseThreshold ) {
+        if (sparseThreshold < 0 || denseThreshold > 1.0 || sparseThreshold >= denseThreshold)
+            throw new IllegalArgumentException("Must have 0 <= sparse < dense <= 1");
+        AdaptiveDensity.sparseThreshold = sparseThreshold;
+        AdaptiveDensity.denseThreshold = denseThreshold;
+    }
+
+    public static double getSparseOverhead() {
+        return sparseOverhead;
+    }
+
+    /**
+     * Relative cost of a multiply-add inside a sparse kernel compared to a dense kernel. Used by the cost model.
+     */
+    public static void setSparseOverhead( double sparseOverhead ) {
+        if (sparseOverhead <= 0)
+            throw new IllegalArgumentException("Must be positive");
+        AdaptiveDensity.sparseOverhead = sparseOverhead;
+    }
+
+    /**
+     * Number of times a sparse matrix has been converted into a dense matrix
+     */
+    public static long getConvertedToDense() {
+        return convertedToDense.get();
+    }
+
+    /**
+     * Number of times a dense matrix has been converted into a sparse matrix
+     */
+    public static long getConvertedToSparse() {
+        return convertedToSparse.get();
+    }
+
+    public static void resetCounters() {
+        convertedToDense.set(0);
+        convertedToSparse.set(0);
+    }
+
+    /**
+     * Fraction of elements which are non-zero. Complex matrices aren't supported and are assumed to be dense.
+     */
+    public static double density( Matrix m ) {
+        double N = (double)m.getNumRows()*m.getNumCols();
+        if (N == 0)
+            return 0.0;
+        if (m instanceof MatrixSparse)
+            return ((MatrixSparse)m).getNonZeroLength()/N;
+
+        int count = 0;
+        if (m instanceof DMatrixRMaj) {
+            DMatrixRMaj d = (DMatrixRMaj)m;
+            for (int i = 0; i < d.getNumElements(); i++) {
+                if (d.data[i] != 0.0)
+                    count++;
+            }
+        } else if (m instanceof FMatrixRMaj) {
+            FMatrixRMaj f = (FMatrixRMaj)m;
+            for (int i = 0; i < f.getNumElements(); i++) {
+                if (f.data[i] != 0.0f)
+                    count++;
+            }
+        } else {
+            return 1.0;
+        }
+        return count/N;
+    }
+
+    /**
+     * Estimates the fraction of non-zero elements in the product of two sparse matrices, assuming the non-zero
+     * elements are randomly distributed.
+     *
+     * @param inner Number of columns in A and rows in B
+     */
+    public static double estimateMultDensity( int inner, double densityA, double densityB ) {
+        return 1.0 - Math.pow(1.0 - densityA*densityB, inner);
+    }
+
+    /**
+     * Uses a cost model to decide if multiplying two sparse matrices would be faster if they were converted into
+     * dense matrices first. The dense cost includes converting the inputs.
+     */
+    public static boolean isDenseMultFaster( int rows, int inner, int cols, double densityA, double densityB ) {
+        double costDense = (double)rows*inner*cols + (double)rows*inner + (double)inner*cols;
+        double fill = estimateMultDensity(inner, densityA, densityB);
+        double costSparse = sparseOverhead*((double)rows*inner*cols*densityA*densityB + (double)rows*cols*fill);
+        return costDense < costSparse;
+    }
+
+    /**
+     * Converts a sparse matrix into dense if it has too many non-zero elements or a dense matrix into sparse
+     * if it has too few. Dense matrices are only considered if they were computed from a sparse input.
+     *
+     * @param m The matrix
+     * @param sparseInput true if any of the inputs used to compute the matrix were sparse
+     * @return The original matrix if it doesn't need to be changed or the converted matrix.
+     */
+    public static Matrix adapt( Matrix m, boolean sparseInput ) {
+        MatrixType type = m.getType();
+        if (!type.isReal() || type.isFixed())
+            return m;
+
+        if (!type.isDense()) {
+            if (density(m) < denseThreshold)
+                return m;
+            convertedToDense.incrementAndGet();
+            return convert(m, MatrixType.lookup(true, true, type.getBits()));
+        } else if (sparseInput) {
+            if (density(m) > sparseThreshold)
+                return m;
+            convertedToSparse.incrementAndGet();
+            return convert(m, MatrixType.lookup(false, true, type.getBits()));
+        }
+        return m;
+    }
+
+    /**
+     * Converts the matrix into a dense matrix and records the conversion
+     */
+    static Matrix toDense( Matrix m ) {
+        convertedToDense.incrementAndGet();
+        return convert(m, MatrixType.lookup(true, m.getType().isReal(), m.getType().getBits()));
+    }
+
+    private static Matrix convert( Matrix m, MatrixType type ) {
+        Matrix converted = ConvertMatrixType.convert(m, type);
+        if (converted == null)
+            throw new IllegalArgumentException("Conversion from " + m.getType() + " to " + type + " not possible");
+        return converted;
+    }
+}
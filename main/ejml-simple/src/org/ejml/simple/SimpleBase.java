@@ -23,6 +23,7 @@ import org.ejml.data.*;
 import org.ejml.dense.row.CommonOps_DDRM;
 import org.ejml.dense.row.NormOps_DDRM;
 import org.ejml.equation.Equation;
+import org.ejml.equation.SequenceCache;
 import org.ejml.ops.ConvertDMatrixStruct;
 import org.ejml.ops.ConvertFMatrixStruct;
 import org.ejml.ops.MatrixIO;
@@ -49,12 +50,21 @@ public abstract class SimpleBase <T extends SimpleBase<T>> implements Serializab
 
     static final long serialVersionUID = 2342556642L;
 
+    // Equations used by equation(). Each contains the sequences compiled for it
+    private static final SequenceCache<Equation> EQUATION_CACHE = new SequenceCache<>(20);
+
+    // Default concurrency setting for matrices created in each thread
+    private static final ThreadLocal<Boolean> THREAD_CONCURRENT = ThreadLocal.withInitial(() -> false);
+
     /**
      * Internal matrix which this is a wrapper around.
      */
     protected Matrix mat;
     protected SimpleOperations ops;
 
+    // If true then concurrent implementations of operations are used when available
+    protected boolean concurrent = THREAD_CONCURRENT.get();
+
     protected transient AutomaticSimpleMatrixConvert convertType = new AutomaticSimpleMatrixConvert();
 
     protected SimpleBase( int numRows , int numCols ) {
@@ -120,9 +130,13 @@ public abstract class SimpleBase <T extends SimpleBase<T>> implements Serializab
     }
 
     protected static SimpleOperations lookupOps( MatrixType type ) {
+        return lookupOps(type, false);
+    }
+
+    protected static SimpleOperations lookupOps( MatrixType type , boolean concurrent ) {
         switch( type ) {
-            case DDRM: return new SimpleOperations_DDRM();
-            case FDRM: return new SimpleOperations_FDRM();
+            case DDRM: return concurrent ? new SimpleOperations_MT_DDRM() : new SimpleOperations_DDRM();
+            case FDRM: return concurrent ? new SimpleOperations_MT_FDRM() : new SimpleOperations_FDRM();
             case ZDRM: return new SimpleOperations_ZDRM();
             case CDRM: return new SimpleOperations_CDRM();
             case DSCC: return new SimpleOperations_DSCC();
@@ -133,6 +147,20 @@ public abstract class SimpleBase <T extends SimpleBase<T>> implements Serializab
     }
 
 
+    /**
+     * Starts a lazily evaluated expression with this matrix. Operations on the returned expression are only
+     * computed when {@link SimpleExpression#eval()} is called, which avoids creating a new matrix for every operation.
+     *
+     * <pre>
+     * SimpleMatrix D = A.lazy().transpose().mult(B).plus(C).scale(2).eval();
+     * </pre>
+     *
+     * @return Expression which references this matrix.
+     */
+    public SimpleExpression<T> lazy() {
+        return new SimpleExpression<>((T)this);
+    }
+
     /**
      * <p>
      * Returns the transpose of this matrix.<br>
@@ -167,6 +195,13 @@ public abstract class SimpleBase <T extends SimpleBase<T>> implements Serializab
      * @return The results of this operation.
      */
     public T mult( T B ) {
+        if( AdaptiveDensity.isEnabled() && !getType().isDense() && !B.getType().isDense() &&
+                AdaptiveDensity.isDenseMultFaster(numRows(),numCols(),B.numCols(),
+                        AdaptiveDensity.density(mat),AdaptiveDensity.density(B.mat)) ) {
+            // the result is likely to be dense so it's faster to convert the inputs
+            return wrapMatrix(AdaptiveDensity.toDense(mat)).mult(B.wrapMatrix(AdaptiveDensity.toDense(B.mat)));
+        }
+
         convertType.specify(this,B);
 
         // Look to see if there is a special function for handling this case
@@ -187,7 +222,7 @@ public abstract class SimpleBase <T extends SimpleBase<T>> implements Serializab
 
         A.ops.mult(A.mat,B.mat,ret.mat);
 
-        return ret;
+        return adaptDensity(ret,this,B);
     }
 
     /**
@@ -238,7 +273,7 @@ public abstract class SimpleBase <T extends SimpleBase<T>> implements Serializab
 
         A.ops.plus(A.mat,B.mat,ret.mat);
 
-        return ret;
+        return adaptDensity(ret,this,B);
     }
 
     /**
@@ -263,7 +298,7 @@ public abstract class SimpleBase <T extends SimpleBase<T>> implements Serializab
         T ret = A.createLike();
 
         A.ops.minus(A.mat,B.mat,ret.mat);
-        return ret;
+        return adaptDensity(ret,this,B);
     }
 
     /**
@@ -330,7 +365,7 @@ public abstract class SimpleBase <T extends SimpleBase<T>> implements Serializab
 
         T ret = A.createLike();
         A.ops.plus(A.mat,beta,B.mat,ret.mat);
-        return ret;
+        return adaptDensity(ret,this,B);
     }
 
     /**
@@ -397,6 +432,269 @@ public abstract class SimpleBase <T extends SimpleBase<T>> implements Serializab
         return ret;
     }
 
+    /**
+     * <p>
+     * Computes the transpose and stores the results in 'output'.<br>
+     * output = a<sup>T</sup>
+     * </p>
+     *
+     * @param output Storage for the results. Reshaped and its type changed if needed. Can't be this matrix. Modified.
+     * @return The output matrix.
+     */
+    public T transposeInto( T output ) {
+        if( output == this )
+            throw new IllegalArgumentException("The output can't be the same as this matrix");
+        prepareOutput(output,mat.getNumCols(),mat.getNumRows());
+        ops.transpose(mat,output.mat);
+        return output;
+    }
+
+    /**
+     * <p>
+     * Computes matrix multiplication and stores the results in 'output'. No memory is declared if the output
+     * is the same type and has enough storage.<br>
+     * output = a * b
+     * </p>
+     *
+     * @param B A matrix that is n by bn. Not modified.
+     * @param output Storage for the results. Reshaped and its type changed if needed. Can't be this or B. Modified.
+     * @return The output matrix.
+     */
+    public T multInto( T B , T output ) {
+        if( mat.getType() != B.getType() ) {
+            output.set(mult(B));
+            return output;
+        }
+        if( output == this || output == B )
+            throw new IllegalArgumentException("The output can't be the same as an input matrix");
+        prepareOutput(output,mat.getNumRows(),B.mat.getNumCols());
+        ops.mult(mat,B.mat,output.mat);
+        return output;
+    }
+
+    /**
+     * <p>
+     * Computes matrix addition and stores the results in 'output'.<br>
+     * output = a + b
+     * </p>
+     *
+     * @param B m by n matrix. Not modified.
+     * @param output Storage for the results. Reshaped and its type changed if needed. Modified.
+     * @return The output matrix.
+     */
+    public T plusInto( T B , T output ) {
+        if( mat.getType() != B.getType() ) {
+            output.set(plus(B));
+            return output;
+        }
+        prepareOutput(output,mat.getNumRows(),mat.getNumCols());
+        ops.plus(mat,B.mat,output.mat);
+        return output;
+    }
+
+    /**
+     * <p>
+     * Computes matrix subtraction and stores the results in 'output'.<br>
+     * output = a - b
+     * </p>
+     *
+     * @param B m by n matrix. Not modified.
+     * @param output Storage for the results. Reshaped and its type changed if needed. Modified.
+     * @return The output matrix.
+     */
+    public T minusInto( T B , T output ) {
+        if( mat.getType() != B.getType() ) {
+            output.set(minus(B));
+            return output;
+        }
+        prepareOutput(output,mat.getNumRows(),mat.getNumCols());
+        ops.minus(mat,B.mat,output.mat);
+        return output;
+    }
+
+    /**
+     * <p>
+     * Scales each element and stores the results in 'output'.<br>
+     * output<sub>i,j</sub> = val*a<sub>i,j</sub>
+     * </p>
+     *
+     * @param val The multiplication factor.
+     * @param output Storage for the results. Reshaped and its type changed if needed. Modified.
+     * @return The output matrix.
+     */
+    public T scaleInto( double val , T output ) {
+        prepareOutput(output,mat.getNumRows(),mat.getNumCols());
+        ops.scale(mat,val,output.mat);
+        return output;
+    }
+
+    /**
+     * <p>
+     * Computes the element-wise product and stores the results in 'output'.<br>
+     * output<sub>i,j</sub> = a<sub>i,j</sub>*b<sub>i,j</sub>
+     * </p>
+     *
+     * @param B m by n matrix. Not modified.
+     * @param output Storage for the results. Reshaped and its type changed if needed. Modified.
+     * @return The output matrix.
+     */
+    public T elementMultInto( T B , T output ) {
+        if( mat.getType() != B.getType() ) {
+            output.set(elementMult(B));
+            return output;
+        }
+        prepareOutput(output,mat.getNumRows(),mat.getNumCols());
+        ops.elementMult(mat,B.mat,output.mat);
+        return output;
+    }
+
+    /**
+     * Adds B to this matrix in-place.<br>
+     * a = a + b
+     *
+     * @param B m by n matrix. Not modified.
+     * @return This matrix.
+     */
+    public T plusi( T B ) {
+        if( isInPlaceCompatible(B) )
+            ops.plus(mat,B.mat,mat);
+        else
+            setMatrix(plus(B).mat);
+        return (T)this;
+    }
+
+    /**
+     * Adds B scaled by beta to this matrix in-place.<br>
+     * a = a + &beta;*b
+     *
+     * @param B m by n matrix. Not modified.
+     * @return This matrix.
+     */
+    public T plusi( double beta , T B ) {
+        if( isInPlaceCompatible(B) )
+            ops.plus(mat,beta,B.mat,mat);
+        else
+            setMatrix(plus(beta,B).mat);
+        return (T)this;
+    }
+
+    /**
+     * Adds a scalar to each element in-place.<br>
+     * a<sub>i,j</sub> = a<sub>i,j</sub> + b
+     *
+     * @return This matrix.
+     */
+    public T plusi( double b ) {
+        if( mat.getType().isDense() )
+            ops.plus(mat,b,mat);
+        else
+            setMatrix(plus(b).mat);
+        return (T)this;
+    }
+
+    /**
+     * Subtracts B from this matrix in-place.<br>
+     * a = a - b
+     *
+     * @param B m by n matrix. Not modified.
+     * @return This matrix.
+     */
+    public T minusi( T B ) {
+        if( isInPlaceCompatible(B) )
+            ops.minus(mat,B.mat,mat);
+        else
+            setMatrix(minus(B).mat);
+        return (T)this;
+    }
+
+    /**
+     * Subtracts a scalar from each element in-place.<br>
+     * a<sub>i,j</sub> = a<sub>i,j</sub> - b
+     *
+     * @return This matrix.
+     */
+    public T minusi( double b ) {
+        if( mat.getType().isDense() )
+            ops.minus(mat,b,mat);
+        else
+            setMatrix(minus(b).mat);
+        return (T)this;
+    }
+
+    /**
+     * Scales each element in-place.<br>
+     * a<sub>i,j</sub> = val*a<sub>i,j</sub>
+     *
+     * @return This matrix.
+     */
+    public T scalei( double val ) {
+        if( mat.getType().isDense() )
+            ops.scale(mat,val,mat);
+        else
+            setMatrix(scale(val).mat);
+        return (T)this;
+    }
+
+    /**
+     * Divides each element in-place.<br>
+     * a<sub>i,j</sub> = a<sub>i,j</sub>/val
+     *
+     * @return This matrix.
+     */
+    public T dividei( double val ) {
+        if( mat.getType().isDense() )
+            ops.divide(mat,val,mat);
+        else
+            setMatrix(divide(val).mat);
+        return (T)this;
+    }
+
+    /**
+     * Element-wise multiplication in-place.<br>
+     * a<sub>i,j</sub> = a<sub>i,j</sub>*b<sub>i,j</sub>
+     *
+     * @param B m by n matrix. Not modified.
+     * @return This matrix.
+     */
+    public T elementMulti( T B ) {
+        if( isInPlaceCompatible(B) )
+            ops.elementMult(mat,B.mat,mat);
+        else
+            setMatrix(elementMult(B).mat);
+        return (T)this;
+    }
+
+    /**
+     * If {@link AdaptiveDensity} is enabled then the result might be converted between sparse and dense
+     */
+    private T adaptDensity( T result , SimpleBase<?> A , SimpleBase<?> B ) {
+        if( !AdaptiveDensity.isEnabled() )
+            return result;
+        boolean sparseInput = !A.getType().isDense() || !B.getType().isDense();
+        Matrix m = AdaptiveDensity.adapt(result.mat,sparseInput);
+        if( m != result.mat )
+            result.setMatrix(m);
+        return result;
+    }
+
+    /**
+     * Dense matrices of the same type can be modified in-place. Otherwise a new internal matrix is declared
+     */
+    private boolean isInPlaceCompatible( T B ) {
+        return mat.getType().isDense() && mat.getType() == B.getType();
+    }
+
+    /**
+     * Changes the output matrix so that it's the same type as this matrix and has the specified shape
+     */
+    private void prepareOutput( T output , int numRows , int numCols ) {
+        if( output.mat.getType() != mat.getType() ) {
+            output.setMatrix(mat.getType().create(numRows,numCols));
+        } else if( output.mat instanceof ReshapeMatrix ) {
+            ((ReshapeMatrix)output.mat).reshape(numRows,numCols);
+        }
+    }
+
     /**
      * <p>
      * Returns the inverse of this matrix.<br>
@@ -1077,7 +1375,7 @@ public abstract class SimpleBase <T extends SimpleBase<T>> implements Serializab
 
         T c = A.createLike();
         A.ops.elementMult(A.mat,b.mat,c.mat);
-        return c;
+        return adaptDensity(c,this,b);
     }
 
     /**
@@ -1208,8 +1506,6 @@ public abstract class SimpleBase <T extends SimpleBase<T>> implements Serializab
         if( !(mat instanceof DMatrixRMaj))
             return;
 
-        Equation eq = new Equation();
-
         String nameThis = "A";
         int offset = 0;
         if( variables.length > 0 && variables[0] instanceof String ) {
@@ -1222,12 +1518,40 @@ public abstract class SimpleBase <T extends SimpleBase<T>> implements Serializab
             if( variables.length%2 != 0 )
                 throw new IllegalArgumentException("Expected and even length for variables");
         }
-        eq.alias((DMatrixRMaj)mat,nameThis);
 
+        // The key describes everything which can change how the equation is compiled
+        StringBuilder key = new StringBuilder(equation).append('|').append(nameThis);
         for( int i = offset; i < variables.length; i += 2 ) {
             if( !(variables[i+1] instanceof String))
                 throw new IllegalArgumentException("String expected at variables index "+i);
             Object o = variables[i];
+            key.append('|').append((String)variables[i+1]).append(':');
+            if( SimpleBase.class.isAssignableFrom(o.getClass())) {
+                Matrix m = ((SimpleBase)o).getDDRM();
+                key.append(m.getNumRows()).append('x').append(m.getNumCols());
+            } else if( o instanceof DMatrixRMaj) {
+                key.append(((DMatrixRMaj)o).numRows).append('x').append(((DMatrixRMaj)o).numCols);
+            } else if( o instanceof Double ){
+                key.append('d');
+            } else if( o instanceof Integer ){
+                key.append('i');
+            } else {
+                String type = o == null ? "null" : o.getClass().getSimpleName();
+                throw new IllegalArgumentException("Variable type not supported by Equation! "+type);
+            }
+        }
+        String keyString = key.toString();
+
+        // An equation can only be used by one thread at a time so it's removed from the cache while in use
+        Equation eq = EQUATION_CACHE.remove(keyString);
+        if( eq == null )
+            eq = new Equation();
+        eq.setConcurrent(concurrent);
+
+        eq.alias((DMatrixRMaj)mat,nameThis);
+
+        for( int i = offset; i < variables.length; i += 2 ) {
+            Object o = variables[i];
             String name = (String)variables[i+1];
 
             if( SimpleBase.class.isAssignableFrom(o.getClass())) {
@@ -1236,11 +1560,8 @@ public abstract class SimpleBase <T extends SimpleBase<T>> implements Serializab
                 eq.alias((DMatrixRMaj)o, name);
             } else if( o instanceof Double ){
                 eq.alias((Double)o,name);
-            } else if( o instanceof Integer ){
-                eq.alias((Integer)o,name);
             } else {
-                String type = o == null ? "null" : o.getClass().getSimpleName();
-                throw new IllegalArgumentException("Variable type not supported by Equation! "+type);
+                eq.alias((Integer)o,name);
             }
         }
 
@@ -1250,6 +1571,21 @@ public abstract class SimpleBase <T extends SimpleBase<T>> implements Serializab
         }
 
         eq.process(equation);
+
+        // don't keep references to the user's matrices
+        eq.alias(new DMatrixRMaj(1,1),nameThis);
+        for( int i = offset; i < variables.length; i += 2 ) {
+            if( !(variables[i] instanceof Number) )
+                eq.alias(new DMatrixRMaj(1,1),(String)variables[i+1]);
+        }
+        EQUATION_CACHE.put(keyString,eq);
+    }
+
+    /**
+     * Returns the cache of compiled equations used by {@link #equation(String, Object...)}
+     */
+    public static SequenceCache<Equation> getEquationCache() {
+        return EQUATION_CACHE;
     }
 
     /**
@@ -1461,7 +1797,54 @@ public abstract class SimpleBase <T extends SimpleBase<T>> implements Serializab
 
     protected void setMatrix( Matrix mat ) {
         this.mat = mat;
-        this.ops = lookupOps(mat.getType());
+        this.ops = lookupOps(mat.getType(), concurrent);
+    }
+
+    /**
+     * <p>
+     * Specifies if operations on this matrix should use concurrent (multi-threaded) implementations. Currently
+     * this affects dense real matrices, for which multiplication, transpose, solve, invert, and element-wise
+     * operations will use {@link org.ejml.dense.row.CommonOps_MT_DDRM} or its 32-bit equivalent. Small matrices are still processed
+     * in a single thread. See {@link org.ejml.concurrency.EjmlConcurrency} to control the number of threads.
+     * </p>
+     *
+     * <p>
+     * Matrices returned by operations use the setting of the thread which created them,
+     * see {@link #setThreadConcurrent(boolean)}.
+     * </p>
+     *
+     * @param concurrent true to use concurrent implementations
+     */
+    public void setConcurrent( boolean concurrent ) {
+        if( this.concurrent == concurrent )
+            return;
+        this.concurrent = concurrent;
+        if( mat != null )
+            this.ops = lookupOps(mat.getType(), concurrent);
+    }
+
+    /**
+     * Returns true if operations on this matrix use concurrent implementations
+     */
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    /**
+     * Specifies if matrices created in the calling thread, including the results of operations, should use
+     * concurrent implementations. Matrices which already exist are not modified. By default this is false.
+     *
+     * @see #setConcurrent(boolean)
+     */
+    public static void setThreadConcurrent( boolean concurrent ) {
+        THREAD_CONCURRENT.set(concurrent);
+    }
+
+    /**
+     * Returns true if matrices created in the calling thread will use concurrent implementations
+     */
+    public static boolean isThreadConcurrent() {
+        return THREAD_CONCURRENT.get();
     }
 
 
@@ -0,0 +1,530 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.simple;
+
+import org.ejml.MatrixDimensionException;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Lazily evaluated expression of {@link SimpleBase} matrices. Operations are recorded in an expression tree and
+ * nothing is computed until {@link #eval()} is called. This allows the entire expression to be evaluated while
+ * only creating the final matrix and the intermediate results of matrix multiplications.
+ * </p>
+ *
+ * <p>
+ * When every matrix is a {@link DMatrixRMaj} the expression is converted into a sum of scaled terms.
+ * Transposes are folded into multTransA/multTransB, scale factors become the alpha of multAdd, and element-wise
+ * operations are all computed in a single pass. Other matrix types are evaluated one operation at a time.
+ * </p>
+ *
+ * <pre>
+ * SimpleMatrix D = A.lazy().transpose().mult(B).plus(C).scale(2).eval();
+ * </pre>
+ *
+ * @author Peter Abeles
+ */
+public class SimpleExpression<T extends SimpleBase<T>> {
+    // Matrix which is used to create the output
+    final T template;
+    final Node node;
+
+    public SimpleExpression( T matrix ) {
+        this(matrix, new Leaf(matrix, false));
+    }
+
+    SimpleExpression( T template, Node node ) {
+        this.template = template;
+        this.node = node;
+    }
+
+    public SimpleExpression<T> transpose() {
+        return create(new Transpose(node));
+    }
+
+    public SimpleExpression<T> mult( SimpleBase<?> B ) {
+        return mult(new Leaf(B, false));
+    }
+
+    public SimpleExpression<T> mult( SimpleExpression<?> B ) {
+        return mult(B.node);
+    }
+
+    private SimpleExpression<T> mult( Node B ) {
+        if (node.numCols != B.numRows)
+            throw new MatrixDimensionException("Inner dimensions don't match. " + shape(node) + " " + shape(B));
+        return create(new Mult(node, B));
+    }
+
+    public SimpleExpression<T> plus( SimpleBase<?> B ) {
+        return add(new Leaf(B, false), 1.0);
+    }
+
+    public SimpleExpression<T> plus( SimpleExpression<?> B ) {
+        return add(B.node, 1.0);
+    }
+
+    /**
+     * Adds B scaled by beta, i.e. this + beta*B
+     */
+    public SimpleExpression<T> plus( double beta, SimpleBase<?> B ) {
+        return add(new Leaf(B, false), beta);
+    }
+
+    public SimpleExpression<T> minus( SimpleBase<?> B ) {
+        return add(new Leaf(B, false), -1.0);
+    }
+
+    public SimpleExpression<T> minus( SimpleExpression<?> B ) {
+        return add(B.node, -1.0);
+    }
+
+    private SimpleExpression<T> add( Node B, double beta ) {
+        checkSameShape(node, B);
+        return create(new Add(node, B, beta));
+    }
+
+    /**
+     * Adds a scalar to every element
+     */
+    public SimpleExpression<T> plus( double value ) {
+        return create(new AddScalar(node, value));
+    }
+
+    /**
+     * Subtracts a scalar from every element
+     */
+    public SimpleExpression<T> minus( double value ) {
+        return create(new AddScalar(node, -value));
+    }
+
+    public SimpleExpression<T> scale( double alpha ) {
+        return create(new Scale(node, alpha));
+    }
+
+    public SimpleExpression<T> divide( double value ) {
+        return create(new Scale(node, 1.0/value));
+    }
+
+    public SimpleExpression<T> negative() {
+        return create(new Scale(node, -1.0));
+    }
+
+    public SimpleExpression<T> elementMult( SimpleBase<?> B ) {
+        return elementMult(new Leaf(B, false));
+    }
+
+    public SimpleExpression<T> elementMult( SimpleExpression<?> B ) {
+        return elementMult(B.node);
+    }
+
+    private SimpleExpression<T> elementMult( Node B ) {
+        checkSameShape(node, B);
+        return create(new ElementMult(node, B));
+    }
+
+    public int numRows() {
+        return node.numRows;
+    }
+
+    public int numCols() {
+        return node.numCols;
+    }
+
+    /**
+     * Computes the expression and returns the results in a new matrix
+     */
+    public T eval() {
+        if (isDenseReal(node))
+            return template.wrapMatrix(evaluate(node));
+        return evaluateEager(node);
+    }
+
+    private SimpleExpression<T> create( Node node ) {
+        return new SimpleExpression<>(template, node);
+    }
+
+    private static void checkSameShape( Node a, Node b ) {
+        if (a.numRows != b.numRows || a.numCols != b.numCols)
+            throw new MatrixDimensionException("Shapes don't match. " + shape(a) + " " + shape(b));
+    }
+
+    private static String shape( Node n ) {
+        return n.numRows + "x" + n.numCols;
+    }
+
+    /**
+     * Returns true if every matrix in the expression is a {@link DMatrixRMaj}
+     */
+    static boolean isDenseReal( Node n ) {
+        if (n instanceof Leaf)
+            return ((Leaf)n).matrix.getMatrix() instanceof DMatrixRMaj;
+        for (Node c : n.children()) {
+            if (!isDenseReal(c))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Evaluates the expression one operation at a time using the functions in {@link SimpleBase}
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    T evaluateEager( Node n ) {
+        if (n instanceof Leaf) {
+            return (T)((Leaf)n).matrix.copy();
+        } else if (n instanceof Transpose) {
+            return evaluateEager(((Transpose)n).child).transpose();
+        } else if (n instanceof Scale) {
+            return evaluateEager(((Scale)n).child).scale(((Scale)n).alpha);
+        } else if (n instanceof AddScalar) {
+            return evaluateEager(((AddScalar)n).child).plus(((AddScalar)n).value);
+        } else if (n instanceof Add) {
+            Add add = (Add)n;
+            return evaluateEager(add.a).plus(add.beta, evaluateEager(add.b));
+        } else if (n instanceof Mult) {
+            return evaluateEager(((Mult)n).a).mult(evaluateEager(((Mult)n).b));
+        } else {
+            ElementMult m = (ElementMult)n;
+            return evaluateEager(m.a).elementMult(evaluateEager(m.b));
+        }
+    }
+
+    //--------------------------------------------------------------------------------------------------------------
+    // Evaluation of expressions which only contain DMatrixRMaj
+
+    /**
+     * Evaluates the expression into a new matrix. The expression is converted into a sum of terms. Element-wise
+     * terms are computed in a single pass then each matrix multiplication is added using multAdd.
+     */
+    static DMatrixRMaj evaluate( Node n ) {
+        List<Term> terms = new ArrayList<>();
+        double constant = linearize(n, 1.0, false, terms);
+
+        List<Term> products = new ArrayList<>();
+        List<Term> elements = new ArrayList<>();
+        for (Term t : terms) {
+            if (t.node instanceof Mult)
+                products.add(t);
+            else
+                elements.add(t);
+        }
+
+        DMatrixRMaj out = new DMatrixRMaj(n.numRows, n.numCols);
+
+        // A transposed matrix on its own can use the faster transpose algorithm
+        if (products.isEmpty() && elements.size() == 1 && constant == 0.0 &&
+                elements.get(0).node instanceof Leaf && ((Leaf)elements.get(0).node).transposed) {
+            CommonOps_DDRM.transpose(((Leaf)elements.get(0).node).ddrm(), out);
+            if (elements.get(0).coef != 1.0)
+                CommonOps_DDRM.scale(elements.get(0).coef, out);
+            return out;
+        }
+
+        boolean initialized = false;
+        if (!elements.isEmpty() || constant != 0.0 || products.isEmpty()) {
+            elementWise(elements, constant, out);
+            initialized = true;
+        }
+
+        for (Term t : products) {
+            Mult m = (Mult)t.node;
+            Operand a = operand(m.a);
+            Operand b = operand(m.b);
+            double alpha = t.coef*a.factor*b.factor;
+            if (initialized) {
+                if (a.transposed) {
+                    if (b.transposed) CommonOps_DDRM.multAddTransAB(alpha, a.matrix, b.matrix, out);
+                    else CommonOps_DDRM.multAddTransA(alpha, a.matrix, b.matrix, out);
+                } else {
+                    if (b.transposed) CommonOps_DDRM.multAddTransB(alpha, a.matrix, b.matrix, out);
+                    else CommonOps_DDRM.multAdd(alpha, a.matrix, b.matrix, out);
+                }
+            } else {
+                if (a.transposed) {
+                    if (b.transposed) CommonOps_DDRM.multTransAB(alpha, a.matrix, b.matrix, out);
+                    else CommonOps_DDRM.multTransA(alpha, a.matrix, b.matrix, out);
+                } else {
+                    if (b.transposed) CommonOps_DDRM.multTransB(alpha, a.matrix, b.matrix, out);
+                    else CommonOps_DDRM.mult(alpha, a.matrix, b.matrix, out);
+                }
+                initialized = true;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Converts the expression into a sum of scaled terms plus a constant. Transposes are pushed down to the leaves
+     * and scale factors are moved into the coefficient of each term. Each term is a {@link Leaf},
+     * {@link Mult}, or {@link ElementMult}.
+     *
+     * @return The constant which is added to every element
+     */
+    static double linearize( Node n, double coef, boolean transposed, List<Term> terms ) {
+        if (n instanceof Leaf) {
+            Leaf leaf = (Leaf)n;
+            terms.add(new Term(coef, transposed ? new Leaf(leaf.matrix, !leaf.transposed) : leaf));
+            return 0.0;
+        } else if (n instanceof Transpose) {
+            return linearize(((Transpose)n).child, coef, !transposed, terms);
+        } else if (n instanceof Scale) {
+            return linearize(((Scale)n).child, coef*((Scale)n).alpha, transposed, terms);
+        } else if (n instanceof AddScalar) {
+            return linearize(((AddScalar)n).child, coef, transposed, terms) + coef*((AddScalar)n).value;
+        } else if (n instanceof Add) {
+            Add add = (Add)n;
+            return linearize(add.a, coef, transposed, terms) + linearize(add.b, coef*add.beta, transposed, terms);
+        } else if (n instanceof Mult) {
+            Mult m = (Mult)n;
+            // (A*B)' = B'*A'
+            terms.add(new Term(coef, transposed ? new Mult(new Transpose(m.b), new Transpose(m.a)) : m));
+            return 0.0;
+        } else {
+            ElementMult m = (ElementMult)n;
+            terms.add(new Term(coef, transposed ? new ElementMult(new Transpose(m.a), new Transpose(m.b)) : m));
+            return 0.0;
+        }
+    }
+
+    /**
+     * Finds the matrix which is an input into a matrix multiplication. If it isn't a matrix then it's evaluated.
+     */
+    static Operand operand( Node n ) {
+        Operand o = new Operand();
+        boolean transposed = false;
+        while (true) {
+            if (n instanceof Transpose) {
+                transposed = !transposed;
+                n = ((Transpose)n).child;
+            } else if (n instanceof Scale) {
+                o.factor *= ((Scale)n).alpha;
+                n = ((Scale)n).child;
+            } else {
+                break;
+            }
+        }
+
+        if (n instanceof Leaf) {
+            o.matrix = ((Leaf)n).ddrm();
+            o.transposed = transposed != ((Leaf)n).transposed;
+        } else {
+            o.matrix = evaluate(transposed ? new Transpose(n) : n);
+        }
+        return o;
+    }
+
+    /**
+     * Computes the sum of all the element-wise terms in a single pass
+     */
+    static void elementWise( List<Term> terms, double constant, DMatrixRMaj out ) {
+        int numTerms = terms.size();
+        Element[] elements = new Element[numTerms];
+        double[] coefs = new double[numTerms];
+        for (int i = 0; i < numTerms; i++) {
+            elements[i] = element(terms.get(i).node, false);
+            coefs[i] = terms.get(i).coef;
+        }
+
+        int index = 0;
+        for (int row = 0; row < out.numRows; row++) {
+            for (int col = 0; col < out.numCols; col++, index++) {
+                double sum = constant;
+                for (int i = 0; i < numTerms; i++) {
+                    sum += coefs[i]*elements[i].get(row, col, index);
+                }
+                out.data[index] = sum;
+            }
+        }
+    }
+
+    /**
+     * Converts the expression into one which can be evaluated one element at a time. Matrix multiplications
+     * are evaluated.
+     */
+    static Element element( Node n, boolean transposed ) {
+        if (n instanceof Leaf) {
+            Leaf leaf = (Leaf)n;
+            DMatrixRMaj m = leaf.ddrm();
+            if (transposed != leaf.transposed)
+                return ( row, col, index ) -> m.data[col*m.numCols + row];
+            return ( row, col, index ) -> m.data[index];
+        } else if (n instanceof Transpose) {
+            return element(((Transpose)n).child, !transposed);
+        } else if (n instanceof Scale) {
+            Element e = element(((Scale)n).child, transposed);
+            double alpha = ((Scale)n).alpha;
+            return ( row, col, index ) -> alpha*e.get(row, col, index);
+        } else if (n instanceof AddScalar) {
+            Element e = element(((AddScalar)n).child, transposed);
+            double value = ((AddScalar)n).value;
+            return ( row, col, index ) -> e.get(row, col, index) + value;
+        } else if (n instanceof Add) {
+            Element a = element(((Add)n).a, transposed);
+            Element b = element(((Add)n).b, transposed);
+            double beta = ((Add)n).beta;
+            return ( row, col, index ) -> a.get(row, col, index) + beta*b.get(row, col, index);
+        } else if (n instanceof ElementMult) {
+            Element a = element(((ElementMult)n).a, transposed);
+            Element b = element(((ElementMult)n).b, transposed);
+            return ( row, col, index ) -> a.get(row, col, index)*b.get(row, col, index);
+        } else {
+            DMatrixRMaj m = evaluate(transposed ? new Transpose(n) : n);
+            return ( row, col, index ) -> m.data[index];
+        }
+    }
+
+    /**
+     * Value of an element in an element-wise expression
+     */
+    interface Element {
+        double get( int row, int col, int index );
+    }
+
+    static class Term {
+        double coef;
+        Node node;
+
+        Term( double coef, Node node ) {
+            this.coef = coef;
+            this.node = node;
+        }
+    }
+
+    @SuppressWarnings("NullAway.Init")
+    static class Operand {
+        DMatrixRMaj matrix;
+        boolean transposed;
+        double factor = 1.0;
+    }
+
+    //--------------------------------------------------------------------------------------------------------------
+    // Expression tree
+
+    abstract static class Node {
+        int numRows;
+        int numCols;
+
+        Node( int numRows, int numCols ) {
+            this.numRows = numRows;
+            this.numCols = numCols;
+        }
+
+        abstract Node[] children();
+    }
+
+    static class Leaf extends Node {
+        SimpleBase<?> matrix;
+        boolean transposed;
+
+        Leaf( SimpleBase<?> matrix, boolean transposed ) {
+            super(transposed ? matrix.numCols() : matrix.numRows(), transposed ? matrix.numRows() : matrix.numCols());
+            this.matrix = matrix;
+            this.transposed = transposed;
+        }
+
+        DMatrixRMaj ddrm() {
+            return matrix.getDDRM();
+        }
+
+        @Override Node[] children() {return new Node[0];}
+    }
+
+    static class Transpose extends Node {
+        Node child;
+
+        Transpose( Node child ) {
+            super(child.numCols, child.numRows);
+            this.child = child;
+        }
+
+        @Override Node[] children() {return new Node[]{child};}
+    }
+
+    static class Scale extends Node {
+        Node child;
+        double alpha;
+
+        Scale( Node child, double alpha ) {
+            super(child.numRows, child.numCols);
+            this.child = child;
+            this.alpha = alpha;
+        }
+
+        @Override Node[] children() {return new Node[]{child};}
+    }
+
+    static class AddScalar extends Node {
+        Node child;
+        double value;
+
+        AddScalar( Node child, double value ) {
+            super(child.numRows, child.numCols);
+            this.child = child;
+            this.value = value;
+        }
+
+        @Override Node[] children() {return new Node[]{child};}
+    }
+
+    /**
+     * a + beta*b
+     */
+    static class Add extends Node {
+        Node a, b;
+        double beta;
+
+        Add( Node a, Node b, double beta ) {
+            super(a.numRows, a.numCols);
+            this.a = a;
+            this.b = b;
+            this.beta = beta;
+        }
+
+        @Override Node[] children() {return new Node[]{a, b};}
+    }
+
+    static class Mult extends Node {
+        Node a, b;
+
+        Mult( Node a, Node b ) {
+            super(a.numRows, b.numCols);
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override Node[] children() {return new Node[]{a, b};}
+    }
+
+    static class ElementMult extends Node {
+        Node a, b;
+
+        ElementMult( Node a, Node b ) {
+            super(a.numRows, a.numCols);
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override Node[] children() {return new Node[]{a, b};}
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.simple;
+
+import org.ejml.data.DMatrixD1;
+import org.ejml.data.FMatrixD1;
+import org.ejml.data.Matrix;
+import org.ejml.data.MatrixType;
+import org.ejml.data.ReshapeMatrix;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Pool of {@link SimpleMatrix} which can be borrowed as temporary storage and then recycled. Used together with
+ * the functions in {@link SimpleBase} which write to an output matrix or modify a matrix in-place, code can reach
+ * a steady state where no new memory is declared. Each thread has its own pool.
+ * </p>
+ *
+ * <pre>
+ * SimpleMatrixPool pool = SimpleMatrixPool.get();
+ * SimpleMatrix tmp = pool.borrow(A.numRows(), B.numCols());
+ * A.multInto(B, tmp).plusi(C);
+ * ...
+ * pool.recycle(tmp);
+ * </pre>
+ *
+ * @author Peter Abeles
+ */
+public class SimpleMatrixPool {
+    private static final ThreadLocal<SimpleMatrixPool> pools = ThreadLocal.withInitial(SimpleMatrixPool::new);
+
+    // Matrices which are available to be borrowed
+    final List<SimpleMatrix> available = new ArrayList<>();
+
+    // Maximum number of matrices it will store. Recycled matrices are discarded if full
+    int maxSize = 50;
+
+    /**
+     * Returns the pool which belongs to the current thread
+     */
+    public static SimpleMatrixPool get() {
+        return pools.get();
+    }
+
+    /**
+     * Borrows a {@link MatrixType#DDRM} matrix
+     *
+     * @see #borrow(int, int, MatrixType)
+     */
+    public SimpleMatrix borrow( int numRows, int numCols ) {
+        return borrow(numRows, numCols, MatrixType.DDRM);
+    }
+
+    /**
+     * Returns a matrix with the specified shape and type. A matrix from the pool is used if one of the same type
+     * is available, preferring one which won't need to grow its internal array. The value of each element is
+     * not defined.
+     *
+     * @return Matrix which should be passed to {@link #recycle} when no longer needed
+     */
+    public SimpleMatrix borrow( int numRows, int numCols, MatrixType type ) {
+        int best = -1;
+        for (int i = available.size() - 1; i >= 0; i--) {
+            Matrix m = available.get(i).getMatrix();
+            if (m.getType() != type)
+                continue;
+            if (m.getNumRows() == numRows && m.getNumCols() == numCols) {
+                best = i;
+                break;
+            }
+            if (!(m instanceof ReshapeMatrix))
+                continue;
+            if (best == -1 || capacity(m) >= numRows*numCols)
+                best = i;
+        }
+
+        if (best == -1)
+            return new SimpleMatrix(numRows, numCols, type);
+
+        SimpleMatrix selected = available.remove(best);
+        Matrix m = selected.getMatrix();
+        if (m.getNumRows() != numRows || m.getNumCols() != numCols)
+            ((ReshapeMatrix)m).reshape(numRows, numCols);
+        return selected;
+    }
+
+    /**
+     * Returns a matrix to the pool so that it can be borrowed again. It must not be used after this.
+     */
+    public void recycle( SimpleMatrix matrix ) {
+        if (available.size() >= maxSize)
+            return;
+        for (int i = 0; i < available.size(); i++) {
+            if (available.get(i) == matrix)
+                throw new IllegalArgumentException("Matrix has already been recycled");
+        }
+        available.add(matrix);
+    }
+
+    /**
+     * Returns several matrices to the pool
+     */
+    public void recycle( SimpleMatrix... matrices ) {
+        for (SimpleMatrix m : matrices) {
+            recycle(m);
+        }
+    }
+
+    /**
+     * Number of elements the matrix can store without declaring a new array
+     */
+    private static int capacity( Matrix m ) {
+        if (m instanceof DMatrixD1)
+            return ((DMatrixD1)m).data.length;
+        if (m instanceof FMatrixD1)
+            return ((FMatrixD1)m).data.length;
+        return m.getNumRows()*m.getNumCols();
+    }
+
+    /**
+     * Discards every matrix in the pool
+     */
+    public void clear() {
+        available.clear();
+    }
+
+    /**
+     * Number of matrices which are available to be borrowed
+     */
+    public int size() {
+        return available.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize( int maxSize ) {
+        this.maxSize = maxSize;
+    }
+}
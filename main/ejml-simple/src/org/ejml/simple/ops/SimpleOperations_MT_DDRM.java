@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.simple.ops;
+
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_MT_DDRM;
+
+/**
+ * Implementation of {@link org.ejml.simple.SimpleOperations} for {@link DMatrixRMaj} which uses the concurrent
+ * algorithms in {@link CommonOps_MT_DDRM} when available.
+ *
+ * @author Peter Abeles
+ */
+public class SimpleOperations_MT_DDRM extends SimpleOperations_DDRM {
+
+    @Override
+    public void transpose(DMatrixRMaj input, DMatrixRMaj output) {
+        CommonOps_MT_DDRM.transpose(input,output);
+    }
+
+    @Override
+    public void mult(DMatrixRMaj A, DMatrixRMaj B, DMatrixRMaj output) {
+        CommonOps_MT_DDRM.mult(A,B,output);
+    }
+
+    @Override
+    public void multTransA(DMatrixRMaj A, DMatrixRMaj B, DMatrixRMaj output) {
+        CommonOps_MT_DDRM.multTransA(A,B,output);
+    }
+
+    @Override
+    public void plus(DMatrixRMaj A, DMatrixRMaj B, DMatrixRMaj output) {
+        CommonOps_MT_DDRM.add(A,B,output);
+    }
+
+    @Override
+    public void minus(DMatrixRMaj A, DMatrixRMaj B, DMatrixRMaj output) {
+        CommonOps_MT_DDRM.subtract(A,B,output);
+    }
+
+    @Override
+    public void plus(DMatrixRMaj A, /**/double beta, DMatrixRMaj b, DMatrixRMaj output) {
+        CommonOps_MT_DDRM.add(A, (double)beta, b, output);
+    }
+
+    @Override
+    public void plus( /**/double alpha, DMatrixRMaj A, /**/double beta, DMatrixRMaj b, DMatrixRMaj output) {
+        CommonOps_MT_DDRM.add( (double)alpha, A, (double)beta, b, output);
+    }
+
+    @Override
+    public void scale(DMatrixRMaj A, /**/double val, DMatrixRMaj output) {
+        CommonOps_MT_DDRM.scale( (double)val, A, output);
+    }
+
+    @Override
+    public void divide(DMatrixRMaj A, /**/double val, DMatrixRMaj output) {
+        CommonOps_MT_DDRM.divide(A, (double)val, output);
+    }
+
+    @Override
+    public boolean invert(DMatrixRMaj A, DMatrixRMaj output) {
+        return CommonOps_MT_DDRM.invert(A,output);
+    }
+
+    @Override
+    public boolean solve(DMatrixRMaj A, DMatrixRMaj X, DMatrixRMaj B) {
+        return CommonOps_MT_DDRM.solve(A,B,X);
+    }
+
+    @Override
+    public void elementMult(DMatrixRMaj A, DMatrixRMaj B, DMatrixRMaj output) {
+        CommonOps_MT_DDRM.elementMult(A,B,output);
+    }
+
+    @Override
+    public void elementDiv(DMatrixRMaj A, DMatrixRMaj B, DMatrixRMaj output) {
+        CommonOps_MT_DDRM.elementDiv(A,B,output);
+    }
+}
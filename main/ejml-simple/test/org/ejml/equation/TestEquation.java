@@ -19,6 +19,7 @@
 package org.ejml.equation;
 
 import org.ejml.UtilEjml;
+import org.ejml.concurrency.EjmlConcurrency;
 import org.ejml.data.DMatrixRMaj;
 import org.ejml.dense.row.MatrixFeatures_DDRM;
 import org.ejml.simple.SimpleMatrix;
@@ -1117,6 +1118,73 @@ public class TestEquation {
         assertNull(t);
     }
 
+    /**
+     * Results should be the same when concurrent implementations are used
+     */
+    @Test
+    public void concurrent() {
+        int threshold = EjmlConcurrency.ELEMENT_THRESHOLD;
+        int maxThreads = EjmlConcurrency.getMaxThreads();
+        try {
+            EjmlConcurrency.ELEMENT_THRESHOLD = 0;
+            EjmlConcurrency.setMaxThreads(4);
+
+            SimpleMatrix A = SimpleMatrix.random_DDRM(20,20,-1,1,rand);
+            SimpleMatrix B = SimpleMatrix.random_DDRM(20,6,-1,1,rand);
+            SimpleMatrix C = new SimpleMatrix(1,1);
+
+            Equation eq = new Equation();
+            eq.alias(A,"A",B,"B",C,"C");
+            Sequence sequence = eq.compile("C = inv(A)*B + 2*(A\\B) - B.*B + A'*B");
+            sequence.perform();
+            SimpleMatrix expected = C.copy();
+
+            C.zero();
+            eq.setConcurrent(true);
+            assertTrue(eq.isConcurrent());
+            sequence.perform();
+            assertTrue(expected.isIdentical(C, UtilEjml.TEST_F64));
+        } finally {
+            EjmlConcurrency.ELEMENT_THRESHOLD = threshold;
+            EjmlConcurrency.setMaxThreads(maxThreads);
+        }
+    }
+
+    /**
+     * Concurrent solve of a square rank deficient system with multiple columns should use the same least squares
+     * solver as the single threaded path
+     */
+    @Test
+    public void concurrent_solveRankDeficient() {
+        int threshold = EjmlConcurrency.ELEMENT_THRESHOLD;
+        int maxThreads = EjmlConcurrency.getMaxThreads();
+        try {
+            EjmlConcurrency.ELEMENT_THRESHOLD = 0;
+            EjmlConcurrency.setMaxThreads(4);
+
+            SimpleMatrix A = SimpleMatrix.random_DDRM(20,20,-1,1,rand);
+            for (int col = 0; col < A.numCols(); col++) {
+                A.set(5,col,A.get(3,col));
+            }
+            SimpleMatrix B = SimpleMatrix.random_DDRM(20,6,-1,1,rand);
+            SimpleMatrix X = new SimpleMatrix(1,1);
+
+            Equation eq = new Equation();
+            eq.alias(A,"A",B,"B",X,"X");
+            Sequence sequence = eq.compile("X = solve(A,B)");
+            sequence.perform();
+            SimpleMatrix expected = X.copy();
+
+            X.zero();
+            eq.setConcurrent(true);
+            sequence.perform();
+            assertTrue(expected.isIdentical(X, 0));
+        } finally {
+            EjmlConcurrency.ELEMENT_THRESHOLD = threshold;
+            EjmlConcurrency.setMaxThreads(maxThreads);
+        }
+    }
+
     /**
      * Hard to test output for correctness. Basically just checsk to see if it crashes
      */
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.equation;
+
+import org.ejml.MatrixDimensionException;
+import org.ejml.UtilEjml;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.ejml.dense.row.MatrixFeatures_DDRM;
+import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestOperationFusion {
+
+    Random rand = new Random(234);
+
+    DMatrixRMaj A = RandomMatrices_DDRM.rectangle(5, 5, 0.1, 1, rand);
+    DMatrixRMaj B = RandomMatrices_DDRM.rectangle(5, 5, 0.1, 1, rand);
+    DMatrixRMaj C = RandomMatrices_DDRM.rectangle(5, 5, 0.1, 1, rand);
+    DMatrixRMaj D = RandomMatrices_DDRM.rectangle(5, 5, 0.1, 1, rand);
+    DMatrixRMaj E = RandomMatrices_DDRM.rectangle(5, 5, 0.1, 1, rand);
+
+    /**
+     * Compares the results of optimized and unoptimized sequences for a variety of equations
+     */
+    @Test
+    public void compareToUnoptimized() {
+        String[] equations = new String[]{
+                "x = A*B + C.*D - 2*E",
+                "x = A + B - C",
+                "x = exp(A) .* log(B) ./ C",
+                "x = -A + 2.5*B/3 - 1",
+                "x = 2 - A.^2 + B.^C",
+                "x = 1/A + (A - 2)",
+                "x = 2*A*B",
+                "x = A*B*alpha",
+                "x = A'*B",
+                "x = A*B'",
+                "x = A'*B'",
+                "x = alpha*A'*B + beta*C",
+                "x = beta*C + A*B",
+                "x = C - A*B*alpha",
+                "x = A*B - C",
+                "x = -(A*B) + C",
+                "x = A*B + C*D",
+                "x = A*B + A*B + C",
+                "x = (A + B)*(C - D)",
+                "x = A*(B + C)'",
+                "x = A + B; y = x.*C",
+                "x = [A, B + C]",
+                "x = A",
+        };
+
+        for (String text : equations) {
+            DMatrixRMaj expected = compute(text, false);
+            DMatrixRMaj found = compute(text, true);
+            assertTrue(MatrixFeatures_DDRM.isIdentical(expected, found, UtilEjml.TEST_F64), text);
+        }
+    }
+
+    private DMatrixRMaj compute( String text, boolean optimize ) {
+        Equation eq = new Equation();
+        eq.setOptimize(optimize);
+        eq.alias(A, "A", B, "B", C, "C", D, "D", E, "E", 0.75, "alpha", -1.5, "beta");
+        // the output is aliased to a matrix with the wrong shape to make sure it's resized
+        eq.alias(new DMatrixRMaj(1, 1), "x");
+        for (String s : text.split(";")) {
+            eq.process(s.trim());
+        }
+        return eq.lookupDDRM(text.contains("y =") ? "y" : "x");
+    }
+
+    /**
+     * Element-wise operations should be merged into a single operation
+     */
+    @Test
+    public void elementWise() {
+        List<String> names = operationNames("x = A + C.*D - 2*E");
+        assertEquals(2, names.size());
+        assertEquals("elementwise-fused", names.get(0));
+        assertEquals("copy-mm", names.get(1));
+
+        // there's nothing to fuse
+        names = operationNames("x = A + B");
+        assertEquals(2, names.size());
+        assertEquals("add-mm", names.get(0));
+    }
+
+    /**
+     * Makes sure the correct GEMM operation is selected
+     */
+    @Test
+    public void multiplication() {
+        assertEquals("mult-fused", operationNames("x = alpha*A*B*2").get(0));
+        assertEquals("multTransA-fused", operationNames("x = A'*B").get(0));
+        assertEquals("multTransB-fused", operationNames("x = A*B'").get(0));
+        assertEquals("multTransAB-fused", operationNames("x = A'*B'").get(0));
+        assertEquals("multAddTransA-fused", operationNames("x = alpha*A'*B + beta*C").get(0));
+        assertEquals("multAdd-fused", operationNames("x = C - A*B").get(0));
+
+        // A*B absorbs the addition and the scaling becomes part of the element-wise subtraction
+        List<String> names = operationNames("x = A*B + C.*D - 2*E");
+        assertEquals(4, names.size());
+        assertEquals("elementMult-mm", names.get(0));
+        assertEquals("multAdd-fused", names.get(1));
+        assertEquals("elementwise-fused", names.get(2));
+    }
+
+    /**
+     * Temporary variables which are read more than once can't be fused
+     */
+    @Test
+    public void temporaryReadTwice() {
+        Equation eq = new Equation();
+        eq.alias(A, "A");
+
+        // hand craft a sequence where the output of the first operation is read twice
+        Sequence manual = new Sequence();
+        Operation.Info tran = Operation.transpose(eq.lookupVariable("A"), eq.managerTemp);
+        Operation.Info mult = Operation.multiply(tran.output, tran.output, eq.managerTemp);
+        add(manual, tran, eq.lookupVariable("A"));
+        add(manual, mult, tran.output, tran.output);
+        OperationFusion.process(manual);
+        assertEquals(2, manual.operations.size());
+        assertEquals("transpose-m", manual.operations.get(0).name());
+        assertEquals("mult-fused", manual.operations.get(1).name());
+
+        manual.perform();
+        DMatrixRMaj expected = CommonOps_DDRM.mult(CommonOps_DDRM.transpose(A, null), CommonOps_DDRM.transpose(A, null), null);
+        DMatrixRMaj found = ((VariableMatrix)mult.output).matrix;
+        assertTrue(MatrixFeatures_DDRM.isIdentical(expected, found, UtilEjml.TEST_F64));
+    }
+
+    /**
+     * If the inputs of an operation are unknown nothing should be modified
+     */
+    @Test
+    public void unknownInputs() {
+        Equation eq = new Equation();
+        eq.alias(A, "A", B, "B");
+
+        Sequence sequence = new Sequence();
+        Operation.Info tran = Operation.transpose(eq.lookupVariable("A"), eq.managerTemp);
+        Operation.Info mult = Operation.multiply(tran.output, eq.lookupVariable("B"), eq.managerTemp);
+        sequence.addOperation(tran.op);
+        sequence.addOperation(mult.op);
+        OperationFusion.process(sequence);
+        assertEquals(2, sequence.operations.size());
+        assertSame(tran.op, sequence.operations.get(0));
+    }
+
+    /**
+     * Shapes are checked by fused operations
+     */
+    @Test
+    public void shapeMismatch() {
+        Equation eq = new Equation();
+        eq.alias(A, "A", new DMatrixRMaj(5, 4), "F", new DMatrixRMaj(1, 1), "G", new DMatrixRMaj(1, 1), "x");
+
+        assertThrows(MatrixDimensionException.class, () -> eq.process("x = A + 2*F"));
+        assertThrows(MatrixDimensionException.class, () -> eq.process("x = A*F + A"));
+        assertThrows(MatrixDimensionException.class, () -> eq.process("x = F*A"));
+        assertThrows(MatrixDimensionException.class, () -> eq.process("x = A + 2*G"));
+    }
+
+    private List<String> operationNames( String text ) {
+        Equation eq = new Equation();
+        eq.alias(A, "A", B, "B", C, "C", D, "D", E, "E", 0.75, "alpha", -1.5, "beta");
+        eq.alias(new DMatrixRMaj(1, 1), "x");
+        Sequence sequence = eq.compile(text);
+        List<String> names = new ArrayList<>();
+        for (Operation op : sequence.operations) {
+            names.add(op.name());
+        }
+        return names;
+    }
+
+    private static void add( Sequence sequence, Operation.Info info, Variable... inputs ) {
+        info.op.inputVariables = new ArrayList<>(Arrays.asList(inputs));
+        info.op.outputVariable = info.output;
+        sequence.addOperation(info.op);
+    }
+}
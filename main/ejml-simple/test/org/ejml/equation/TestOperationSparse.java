@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.equation;
+
+import org.ejml.EjmlUnitTests;
+import org.ejml.UtilEjml;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.data.DMatrixSparseCSC;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.ejml.ops.ConvertDMatrixStruct;
+import org.ejml.sparse.csc.CommonOps_DSCC;
+import org.ejml.sparse.csc.NormOps_DSCC;
+import org.ejml.sparse.csc.RandomMatrices_DSCC;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestOperationSparse {
+
+    Random rand = new Random(234);
+
+    DMatrixSparseCSC A = RandomMatrices_DSCC.rectangle(8, 8, 20, -1, 1, rand);
+    DMatrixSparseCSC B = RandomMatrices_DSCC.rectangle(8, 8, 20, -1, 1, rand);
+    DMatrixRMaj D = RandomMatrices_DDRM.rectangle(8, 8, -1, 1, rand);
+
+    private Equation createEquation() {
+        Equation eq = new Equation();
+        eq.alias(A, "A", B, "B", D, "D");
+        return eq;
+    }
+
+    private static DMatrixRMaj dense( DMatrixSparseCSC A ) {
+        return ConvertDMatrixStruct.convert(A, (DMatrixRMaj)null);
+    }
+
+    @Test
+    public void alias() {
+        Equation eq = createEquation();
+        assertTrue(eq.lookupVariable("A") instanceof VariableSparseMatrix);
+        assertSame(A, eq.lookupDSCC("A"));
+
+        DMatrixSparseCSC C = new DMatrixSparseCSC(2, 2, 0);
+        eq.alias(C, "A");
+        assertSame(C, eq.lookupDSCC("A"));
+    }
+
+    @Test
+    public void sparseOutputs() {
+        Equation eq = createEquation();
+
+        eq.process("C = A*B");
+        DMatrixSparseCSC found = eq.lookupDSCC("C");
+        EjmlUnitTests.assertEquals(CommonOps_DSCC.mult(A, B, null), found, UtilEjml.TEST_F64);
+
+        eq.process("C = A + 2*B'");
+        DMatrixSparseCSC expected = new DMatrixSparseCSC(1, 1);
+        CommonOps_DSCC.add(1.0, A, 2.0, CommonOps_DSCC.transpose(B, null, null), expected, null, null);
+        EjmlUnitTests.assertEquals(expected, eq.lookupDSCC("C"), UtilEjml.TEST_F64);
+
+        eq.process("C = -(A - B)/2");
+        CommonOps_DSCC.add(-0.5, A, 0.5, B, expected, null, null);
+        EjmlUnitTests.assertEquals(dense(expected), dense(eq.lookupDSCC("C")), UtilEjml.TEST_F64);
+
+        eq.process("C = A .* D");
+        assertTrue(eq.lookupVariable("C") instanceof VariableSparseMatrix);
+        DMatrixRMaj expectedDense = CommonOps_DDRM.elementMult(dense(A), D, null);
+        EjmlUnitTests.assertEquals(expectedDense, dense(eq.lookupDSCC("C")), UtilEjml.TEST_F64);
+
+        eq.process("x = trace(A) + normF(B)");
+        assertEquals(CommonOps_DSCC.trace(A) + NormOps_DSCC.normF(B), eq.lookupDouble("x"), UtilEjml.TEST_F64);
+    }
+
+    @Test
+    public void mixedOutputs() {
+        Equation eq = createEquation();
+
+        eq.process("E = A*D + D*B - D");
+        DMatrixRMaj expected = new DMatrixRMaj(1, 1);
+        CommonOps_DDRM.mult(dense(A), D, expected);
+        CommonOps_DDRM.multAdd(D, dense(B), expected);
+        CommonOps_DDRM.subtract(expected, D, expected);
+        EjmlUnitTests.assertEquals(expected, eq.lookupDDRM("E"), UtilEjml.TEST_F64);
+
+        eq.process("E = 1 - A");
+        DMatrixRMaj expected2 = CommonOps_DDRM.subtract(1.0, dense(A), null);
+        EjmlUnitTests.assertEquals(expected2, eq.lookupDDRM("E"), UtilEjml.TEST_F64);
+
+        // assigning a sparse result to a dense matrix converts it
+        DMatrixRMaj F = new DMatrixRMaj(1, 1);
+        eq.alias(F, "F");
+        eq.process("F = A'");
+        EjmlUnitTests.assertEquals(CommonOps_DDRM.transpose(dense(A), null), F, UtilEjml.TEST_F64);
+    }
+
+    @Test
+    public void solve() {
+        DMatrixSparseCSC A = RandomMatrices_DSCC.triangle(true, 10, 0.3, 0.6, rand);
+        for (int i = 0; i < 10; i++) {
+            A.set(i, i, 2.0 + i);
+        }
+        DMatrixRMaj b = RandomMatrices_DDRM.rectangle(10, 2, -1, 1, rand);
+        DMatrixSparseCSC bs = RandomMatrices_DSCC.rectangle(10, 2, 6, -1, 1, rand);
+
+        Equation eq = new Equation();
+        eq.alias(A, "A", b, "b", bs, "bs");
+        Sequence dense = eq.compile("x = A\\b");
+        Sequence sparse = eq.compile("y = A\\bs");
+
+        dense.perform();
+        DMatrixRMaj found = new DMatrixRMaj(1, 1);
+        CommonOps_DSCC.mult(A, eq.lookupDDRM("x"), found);
+        EjmlUnitTests.assertEquals(b, found, UtilEjml.TEST_F64);
+
+        sparse.perform();
+        assertTrue(eq.lookupVariable("y") instanceof VariableSparseMatrix);
+        CommonOps_DSCC.mult(A, dense(eq.lookupDSCC("y")), found);
+        EjmlUnitTests.assertEquals(dense(bs), found, UtilEjml.TEST_F64);
+
+        // the values change but the structure is the same. The structure should be locked and reused
+        for (int i = 0; i < A.nz_length; i++) {
+            A.nz_values[i] *= 1.5;
+        }
+        dense.perform();
+        CommonOps_DSCC.mult(A, eq.lookupDDRM("x"), found);
+        EjmlUnitTests.assertEquals(b, found, UtilEjml.TEST_F64);
+
+        // the structure changes
+        A.set(9, 0, 0.5);
+        dense.perform();
+        CommonOps_DSCC.mult(A, eq.lookupDDRM("x"), found);
+        EjmlUnitTests.assertEquals(b, found, UtilEjml.TEST_F64);
+    }
+
+    @Test
+    public void sparseSolverStructure() {
+        DMatrixSparseCSC A = RandomMatrices_DSCC.triangle(true, 10, 0.3, 0.6, rand);
+        OperationSparse.SparseSolver solver = new OperationSparse.SparseSolver();
+        solver.setA(A);
+        assertFalse(solver.solver.isStructureLocked());
+        solver.setA(A.copy());
+        assertTrue(solver.solver.isStructureLocked());
+        A.set(9, 0, 0.5);
+        solver.setA(A);
+        assertFalse(solver.solver.isStructureLocked());
+        assertFalse(solver.cholesky);
+
+        // symmetric positive definite matrices use Cholesky
+        DMatrixSparseCSC S = RandomMatrices_DSCC.symmetricPosDef(10, 0.3, rand);
+        solver.setA(S);
+        assertTrue(solver.cholesky);
+        assertFalse(solver.solver.isStructureLocked());
+        solver.setA(S);
+        assertTrue(solver.solver.isStructureLocked());
+
+        // symmetric but not positive definite
+        CommonOps_DSCC.scale(-1, S, S);
+        solver.setA(S);
+        assertFalse(solver.cholesky);
+        solver.setA(S);
+        assertFalse(solver.cholesky);
+        assertTrue(solver.solver.isStructureLocked());
+    }
+
+    /**
+     * Operations without a sparse implementation should convert to dense and produce the same results as if
+     * the inputs had been dense
+     */
+    @Test
+    public void denseFallback() {
+        DMatrixSparseCSC S = RandomMatrices_DSCC.rectangle(8, 8, 40, -1, 1, rand);
+        CommonOps_DSCC.add(1.0, S, 4.0, CommonOps_DSCC.identity(8), A, null, null);
+
+        String[] equations = {"C = inv(A)", "C = pinv(A)", "C = abs(A)", "c = max(A)", "c = min(A)",
+                "C = max(A,1)", "C = [A, B]", "C = [A ; D]", "C = A(0:1,0:2)", "c = A(2,3)", "C = A(2:,:)",
+                "C = A.^2", "C = A./D", "C = kron(A,B)", "C = 2/F", "c = sum(A)", "C = sum(A,0)", "C = diag(A)",
+                "C = eye(A)", "c = normP(A,1)", "C = exp(A)", "C = rref(A)", "c = dot(A(:,0),B(:,1))"};
+
+        for( String equation : equations ) {
+            Equation eqS = createEquation();
+            Equation eqD = createEquation();
+            eqD.alias(dense(A), "A", dense(B), "B");
+            // every element is non-zero
+            eqS.alias(ConvertDMatrixStruct.convert(D, (DMatrixSparseCSC)null, 0.0), "F");
+            eqD.alias(D, "F");
+
+            eqS.process(equation);
+            eqD.process(equation);
+
+            String name = equation.substring(0, 1);
+            Variable found = eqS.lookupVariable(name);
+            Variable expected = eqD.lookupVariable(name);
+            if( expected instanceof VariableMatrix ) {
+                DMatrixRMaj f = found instanceof VariableSparseMatrix ?
+                        dense(((VariableSparseMatrix)found).matrix) : ((VariableMatrix)found).matrix;
+                EjmlUnitTests.assertEquals(((VariableMatrix)expected).matrix, f, UtilEjml.TEST_F64);
+            } else {
+                assertEquals(((VariableScalar)expected).getDouble(), ((VariableScalar)found).getDouble(),
+                        UtilEjml.TEST_F64, equation);
+            }
+        }
+    }
+
+    @Test
+    public void assignSubmatrix() {
+        Equation eq = createEquation();
+        DMatrixRMaj expected = dense(A);
+
+        eq.process("A(0,1) = 5");
+        expected.set(0, 1, 5);
+        assertTrue(eq.lookupVariable("A") instanceof VariableSparseMatrix);
+        EjmlUnitTests.assertEquals(expected, dense(eq.lookupDSCC("A")), UtilEjml.TEST_F64);
+
+        eq.process("A(2:3,4:5) = D(0:1,0:1)");
+        CommonOps_DDRM.extract(D, 0, 2, 0, 2, expected, 2, 4);
+        EjmlUnitTests.assertEquals(expected, dense(eq.lookupDSCC("A")), UtilEjml.TEST_F64);
+
+        // sparse source and dense destination
+        DMatrixRMaj expectedD = D.copy();
+        eq.process("D(0:7,0:7) = B");
+        CommonOps_DDRM.extract(dense(B), 0, 8, 0, 8, expectedD, 0, 0);
+        EjmlUnitTests.assertEquals(expectedD, eq.lookupDDRM("D"), UtilEjml.TEST_F64);
+    }
+
+    /**
+     * Aliasing a matrix of a different type should replace the variable
+     */
+    @Test
+    public void aliasChangeType() {
+        Equation eq = createEquation();
+        // C is sparse from now on and dense results are converted into it
+        eq.process("C = A*2");
+
+        DMatrixRMaj M = RandomMatrices_DDRM.rectangle(8, 8, -1, 1, rand);
+        eq.alias(M, "A");
+        assertSame(M, eq.lookupDDRM("A"));
+        eq.process("C = A*2");
+        DMatrixRMaj expected = new DMatrixRMaj(1, 1);
+        CommonOps_DDRM.scale(2, M, expected);
+        EjmlUnitTests.assertEquals(expected, dense(eq.lookupDSCC("C")), UtilEjml.TEST_F64);
+
+        eq.alias(B, "A");
+        assertSame(B, eq.lookupDSCC("A"));
+
+        // a cached sequence must not reference the variable which was replaced
+        DMatrixRMaj N = RandomMatrices_DDRM.rectangle(8, 8, -1, 1, rand);
+        eq.alias(N, "A");
+        eq.process("C = A*2");
+        CommonOps_DDRM.scale(2, N, expected);
+        EjmlUnitTests.assertEquals(expected, dense(eq.lookupDSCC("C")), UtilEjml.TEST_F64);
+    }
+}
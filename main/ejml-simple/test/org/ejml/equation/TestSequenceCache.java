@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.equation;
+
+import org.ejml.UtilEjml;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.ejml.dense.row.MatrixFeatures_DDRM;
+import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestSequenceCache {
+
+    Random rand = new Random(234);
+
+    @Test
+    public void leastRecentlyUsed() {
+        SequenceCache<String> alg = new SequenceCache<>(2);
+        alg.put("a", "A");
+        alg.put("b", "B");
+        assertEquals("A", alg.get("a"));
+        // 'b' is now the least recently used
+        alg.put("c", "C");
+        assertEquals(2, alg.size());
+        assertNull(alg.get("b"));
+        assertEquals("A", alg.get("a"));
+        assertEquals("C", alg.get("c"));
+
+        assertEquals(3, alg.getHits());
+        assertEquals(1, alg.getMisses());
+        alg.resetStatistics();
+        assertEquals(0, alg.getHits());
+        assertEquals(0, alg.getMisses());
+    }
+
+    @Test
+    public void remove() {
+        SequenceCache<String> alg = new SequenceCache<>(5);
+        alg.put("a", "A");
+        assertEquals("A", alg.remove("a"));
+        assertNull(alg.remove("a"));
+        assertEquals(0, alg.size());
+        assertEquals(1, alg.getHits());
+        assertEquals(1, alg.getMisses());
+    }
+
+    @Test
+    public void threadSafe() throws InterruptedException {
+        SequenceCache<Integer> alg = new SequenceCache<>(10);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    String key = "" + (j%20);
+                    if (alg.get(key) == null)
+                        alg.put(key, j);
+                }
+            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(4000, alg.getHits() + alg.getMisses());
+        assertTrue(alg.size() <= 10);
+    }
+
+    /**
+     * Equation.process() should only compile an equation once
+     */
+    @Test
+    public void equationProcess() {
+        Equation eq = new Equation();
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(3, 3, rand);
+        DMatrixRMaj B = RandomMatrices_DDRM.rectangle(3, 3, rand);
+        eq.alias(A, "A", B, "B", 2.0, "c");
+        SequenceCache<Sequence> cache = eq.getCache();
+        assertNotNull(cache);
+
+        for (int i = 0; i < 4; i++) {
+            eq.alias((double)i, "c");
+            eq.process("x = c*A*B");
+            DMatrixRMaj expected = new DMatrixRMaj(3, 3);
+            CommonOps_DDRM.mult(i, A, B, expected);
+            assertTrue(MatrixFeatures_DDRM.isIdentical(expected, eq.lookupDDRM("x"), UtilEjml.TEST_F64));
+        }
+        // x didn't exist the first time, which changes the key
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.getHits());
+
+        // different shape
+        eq.alias(RandomMatrices_DDRM.rectangle(3, 2, rand), "B");
+        eq.process("x = c*A*B");
+        assertEquals(3, cache.getMisses());
+        assertEquals(2, eq.lookupDDRM("x").numCols);
+
+        // turning it off
+        eq.setCacheSize(0);
+        assertNull(eq.getCache());
+        eq.process("x = c*A*B");
+    }
+
+    /**
+     * Redefining a macro must not reuse sequences compiled with the old definition
+     */
+    @Test
+    public void equationRedefineMacro() {
+        Equation eq = new Equation();
+        DMatrixRMaj A = RandomMatrices_DDRM.rectangle(3, 3, rand);
+        eq.alias(A, "A");
+
+        eq.process("macro f(x) = x*2");
+        eq.process("B = f(A)");
+        eq.process("B = f(A)");
+        DMatrixRMaj expected = new DMatrixRMaj(3, 3);
+        CommonOps_DDRM.scale(2, A, expected);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(expected, eq.lookupDDRM("B"), UtilEjml.TEST_F64));
+
+        eq.process("macro f(x) = x*10");
+        eq.process("B = f(A)");
+        CommonOps_DDRM.scale(10, A, expected);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(expected, eq.lookupDDRM("B"), UtilEjml.TEST_F64));
+
+        // processing a cached definition again should also work
+        eq.process("macro f(x) = x*2");
+        eq.process("B = f(A)");
+        CommonOps_DDRM.scale(2, A, expected);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(expected, eq.lookupDDRM("B"), UtilEjml.TEST_F64));
+    }
+}
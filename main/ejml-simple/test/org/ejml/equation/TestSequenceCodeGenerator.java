@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.equation;
+
+import org.ejml.UtilEjml;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.MatrixFeatures_DDRM;
+import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestSequenceCodeGenerator {
+
+    Random rand = new Random(234);
+
+    String[] equations = new String[]{
+            "x = A*B + C.*D - 2*E",
+            "x = A + B - C",
+            "x = exp(A) .* log(B) ./ C",
+            "x = -A + 2.5*B/3 - 1",
+            "x = 2 - A.^2 + B.^C",
+            "x = 1/A + (A - 2)",
+            "x = alpha*A'*B + beta*C",
+            "x = A*B'*alpha - C",
+            "x = -(A'*B') + C",
+            "x = A*B*C",
+            "x = inv(A)*B + A'",
+            "x = A + (alpha + beta*2)*B",
+            "x = A",
+            "x = det(A)*B + trace(C)*D",
+    };
+
+    /**
+     * Compare against the interpreted sequence when the matrices are too large to be fixed size
+     */
+    @Test
+    public void compareDense() {
+        compare(7, false);
+    }
+
+    /**
+     * Compare against the interpreted sequence for fixed sized square matrices
+     */
+    @Test
+    public void compareFixed() {
+        for (int N = 2; N <= 6; N++) {
+            compare(N, N != 6);
+        }
+    }
+
+    private void compare( int N, boolean fixed ) {
+        for (String text : equations) {
+            for (boolean optimize : new boolean[]{true, false}) {
+                Equation eq = createEquation(N);
+                eq.setOptimize(optimize);
+                DMatrixRMaj x = eq.lookupDDRM("x");
+
+                Sequence sequence = eq.compile(text);
+                sequence.perform();
+                DMatrixRMaj expected = x.copy();
+                x.reshape(1, 1);
+
+                GeneratedSequence generated = SequenceCodeGenerator.generate(sequence);
+                // N=6 has no inverse so it can only be fixed if the equation doesn't have one
+                if (!text.contains("inv") && !text.contains("det") && !text.contains("trace"))
+                    assertEquals(fixed || N == 6, generated.isFixedSize(), text);
+                generated.perform();
+                assertTrue(MatrixFeatures_DDRM.isIdentical(expected, x, UtilEjml.TEST_F64), N + " " + text);
+
+                // results should be the same if called again
+                generated.perform();
+                assertTrue(MatrixFeatures_DDRM.isIdentical(expected, x, UtilEjml.TEST_F64), N + " " + text);
+
+                // dense generated code should always work
+                x.reshape(1, 1);
+                SequenceCodeGenerator.generate(sequence, false).perform();
+                assertTrue(MatrixFeatures_DDRM.isIdentical(expected, x, UtilEjml.TEST_F64), N + " " + text);
+            }
+        }
+    }
+
+    /**
+     * Kalman filter predict and update steps with vectors
+     */
+    @Test
+    public void kalman() {
+        for (boolean fixed : new boolean[]{true, false}) {
+            DMatrixRMaj F = RandomMatrices_DDRM.rectangle(4, 4, rand);
+            DMatrixRMaj Q = RandomMatrices_DDRM.symmetricPosDef(4, rand);
+            DMatrixRMaj P = RandomMatrices_DDRM.symmetricPosDef(4, rand);
+            DMatrixRMaj x = RandomMatrices_DDRM.rectangle(4, 1, rand);
+
+            Equation eq = new Equation();
+            eq.alias(x, "x", P, "P", Q, "Q", F, "F");
+            Sequence predictX = eq.compile("x = F*x");
+            Sequence predictP = eq.compile("P = F*P*F' + Q");
+
+            DMatrixRMaj expectedX = x.copy();
+            DMatrixRMaj expectedP = P.copy();
+            for (int i = 0; i < 3; i++) {
+                predictX.perform();
+                predictP.perform();
+            }
+            DMatrixRMaj foundX = x.copy(), foundP = P.copy();
+            x.set(expectedX);
+            P.set(expectedP);
+
+            GeneratedSequence genX = SequenceCodeGenerator.generate(predictX, fixed);
+            GeneratedSequence genP = SequenceCodeGenerator.generate(predictP, fixed);
+            assertEquals(fixed, genX.isFixedSize());
+            assertEquals(fixed, genP.isFixedSize());
+            for (int i = 0; i < 3; i++) {
+                genX.perform();
+                genP.perform();
+            }
+            assertTrue(MatrixFeatures_DDRM.isIdentical(foundX, x, UtilEjml.TEST_F64));
+            assertTrue(MatrixFeatures_DDRM.isIdentical(foundP, P, UtilEjml.TEST_F64));
+        }
+    }
+
+    /**
+     * Vector operations with fixed sized matrices
+     */
+    @Test
+    public void fixedVectors() {
+        Equation eq = createEquation(3);
+        eq.alias(RandomMatrices_DDRM.rectangle(3, 1, rand), "a");
+        eq.alias(RandomMatrices_DDRM.rectangle(3, 1, rand), "b");
+        DMatrixRMaj x = eq.lookupDDRM("x");
+
+        for (String text : new String[]{"x = A*a + b", "x = b - 2*A*a", "x = a.*b - 2*b/alpha", "x = (A + B)*a"}) {
+            Sequence sequence = eq.compile(text);
+            sequence.perform();
+            DMatrixRMaj expected = x.copy();
+            x.reshape(1, 1);
+
+            GeneratedSequence generated = SequenceCodeGenerator.generate(sequence);
+            assertTrue(generated.isFixedSize(), text);
+            generated.perform();
+            assertTrue(MatrixFeatures_DDRM.isIdentical(expected, x, UtilEjml.TEST_F64), text);
+        }
+    }
+
+    /**
+     * A sequence with no assignment. The output is a temporary variable
+     */
+    @Test
+    public void noAssignment() {
+        Equation eq = createEquation(3);
+        Sequence sequence = eq.compile("(A*B + C)", false, false);
+        sequence.perform();
+        DMatrixRMaj expected = ((VariableMatrix)sequence.output).matrix.copy();
+        ((VariableMatrix)sequence.output).matrix.zero();
+
+        for (boolean fixed : new boolean[]{true, false}) {
+            GeneratedSequence generated = SequenceCodeGenerator.generate(sequence, fixed);
+            generated.perform();
+            DMatrixRMaj found = ((VariableMatrix)generated.output).matrix;
+            assertTrue(MatrixFeatures_DDRM.isIdentical(expected, found, UtilEjml.TEST_F64));
+        }
+    }
+
+    @Test
+    public void inverseFails() {
+        Equation eq = createEquation(3);
+        eq.lookupDDRM("A").zero();
+        GeneratedSequence generated = SequenceCodeGenerator.generate(eq.compile("x = inv(A)"));
+        assertTrue(generated.isFixedSize());
+        assertThrows(RuntimeException.class, generated::perform);
+    }
+
+    /**
+     * Fixed sized code can't handle a change in shape
+     */
+    @Test
+    public void fixedShapeChanges() {
+        Equation eq = createEquation(3);
+        GeneratedSequence generated = SequenceCodeGenerator.generate(eq.compile("x = A*B"));
+        assertTrue(generated.isFixedSize());
+        generated.perform();
+        eq.lookupDDRM("A").reshape(4, 4);
+        eq.lookupDDRM("B").reshape(4, 4);
+        assertThrows(IllegalArgumentException.class, generated::perform);
+    }
+
+    @Test
+    public void equationGenerateCode() {
+        Equation eq = createEquation(3);
+        eq.setGenerateCode(true);
+        Sequence sequence = eq.compile("x = A*B + C");
+        assertTrue(sequence instanceof GeneratedSequence);
+
+        eq.process("x = 2*A");
+        DMatrixRMaj expected = eq.lookupDDRM("A").copy();
+        org.ejml.dense.row.CommonOps_DDRM.scale(2, expected);
+        assertTrue(MatrixFeatures_DDRM.isIdentical(expected, eq.lookupDDRM("x"), UtilEjml.TEST_F64));
+    }
+
+    private Equation createEquation( int N ) {
+        Equation eq = new Equation();
+        eq.alias(RandomMatrices_DDRM.rectangle(N, N, 0.5, 2, rand), "A");
+        eq.alias(RandomMatrices_DDRM.rectangle(N, N, 0.5, 2, rand), "B");
+        eq.alias(RandomMatrices_DDRM.rectangle(N, N, 0.5, 2, rand), "C");
+        eq.alias(RandomMatrices_DDRM.rectangle(N, N, 0.5, 2, rand), "D");
+        eq.alias(RandomMatrices_DDRM.rectangle(N, N, 0.5, 2, rand), "E");
+        eq.alias(0.75, "alpha", -1.5, "beta");
+        eq.alias(new DMatrixRMaj(1, 1), "x");
+        return eq;
+    }
+}
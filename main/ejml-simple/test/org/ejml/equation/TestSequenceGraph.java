@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.equation;
+
+import org.ejml.UtilEjml;
+import org.ejml.concurrency.EjmlConcurrency;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.MatrixFeatures_DDRM;
+import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestSequenceGraph {
+
+    Random rand = new Random(234);
+
+    String[] kalman = new String[]{"K = P*H'*inv(S)", "x = x + K*y", "P = P - K*H*P"};
+
+    /**
+     * Results should be the same as performing each sequence one after another
+     */
+    @Test
+    public void compareToSequential() {
+        int before = EjmlConcurrency.getMaxThreads();
+        EjmlConcurrency.setMaxThreads(4);
+        try {
+            for (boolean concurrent : new boolean[]{true, false}) {
+                EjmlConcurrency.setConcurrent(concurrent);
+                Equation expected = createKalman();
+                Equation found = createKalman();
+                SequenceGraph graph = found.compileGraph(kalman);
+                for (int trial = 0; trial < 20; trial++) {
+                    for (String text : kalman) {
+                        expected.process(text);
+                    }
+                    graph.perform();
+                    for (String name : new String[]{"K", "x", "P"}) {
+                        DMatrixRMaj a = expected.lookupDDRM(name);
+                        DMatrixRMaj b = found.lookupDDRM(name);
+                        assertTrue(MatrixFeatures_DDRM.isIdentical(a, b, UtilEjml.TEST_F64), name);
+                    }
+                }
+            }
+        } finally {
+            EjmlConcurrency.setConcurrent(true);
+            EjmlConcurrency.setMaxThreads(before);
+        }
+    }
+
+    @Test
+    public void dependencies() {
+        Equation eq = new Equation();
+        eq.alias(2.0, "a", 3.0, "b", 4.0, "c");
+        SequenceGraph graph = eq.compileGraph("a = b*2", "c = 3*c", "b = c + a");
+        List<SequenceGraph.Node> nodes = graph.getNodes();
+        // a = b*2 is multiply then copy
+        assertEquals(6, nodes.size());
+
+        // first two statements are independent
+        assertTrue(nodes.get(2).predecessors.isEmpty());
+        assertEquals(2, graph.roots.size());
+
+        // last statement reads 'a' and 'c', then writes to 'b' which was read by the first statement
+        SequenceGraph.Node add = nodes.get(4);
+        SequenceGraph.Node copy = nodes.get(5);
+        assertTrue(add.predecessors.contains(nodes.get(1)));
+        assertTrue(add.predecessors.contains(nodes.get(3)));
+        assertTrue(copy.predecessors.contains(add));
+        assertTrue(copy.predecessors.contains(nodes.get(0)));
+
+        graph.perform();
+        assertEquals(6.0, eq.lookupDouble("a"));
+        assertEquals(12.0, eq.lookupDouble("c"));
+        assertEquals(18.0, eq.lookupDouble("b"));
+    }
+
+    /**
+     * Operations without known inputs and outputs must be performed in order
+     */
+    @Test
+    public void unknownOperation() {
+        Equation eq = new Equation();
+        eq.alias(1.0, "a", 2.0, "b");
+        Sequence custom = new Sequence();
+        custom.addOperation(new Operation("custom") {
+            @Override
+            public void process() {}
+        });
+
+        SequenceGraph graph = new SequenceGraph(
+                eq.compile("a = 2*a"), eq.compile("b = 2*b"), custom, eq.compile("a = b + 1"));
+        List<SequenceGraph.Node> nodes = graph.getNodes();
+        SequenceGraph.Node barrier = nodes.get(4);
+        assertEquals("custom", barrier.operation.name());
+        for (SequenceGraph.Node n : nodes) {
+            if (n.index < barrier.index)
+                assertTrue(n.successors.contains(barrier));
+            else if (n.index > barrier.index)
+                assertTrue(n.predecessors.contains(barrier));
+        }
+    }
+
+    /**
+     * Operations which use the random number generator are performed in order so that the results are repeatable
+     */
+    @Test
+    public void random() {
+        Equation eq = new Equation();
+        eq.alias(new DMatrixRMaj(1, 1), "A", new DMatrixRMaj(1, 1), "B", new DMatrixRMaj(1, 1), "C");
+
+        SequenceGraph graph = eq.compileGraph("A = rand(3,3)", "B = 2*B", "rng(234)", "C = rand(3,3)");
+        List<SequenceGraph.Node> nodes = graph.getNodes();
+        SequenceGraph.Node randA = nodes.get(0);
+        SequenceGraph.Node rng = nodes.get(4);
+        SequenceGraph.Node randC = nodes.get(5);
+        assertEquals("rng", rng.operation.name());
+        assertTrue(rng.predecessors.contains(randA));
+        assertTrue(randC.predecessors.contains(rng));
+
+        graph.perform();
+        DMatrixRMaj expected = eq.lookupDDRM("C").copy();
+        graph.perform();
+        assertTrue(MatrixFeatures_DDRM.isIdentical(expected, eq.lookupDDRM("C"), 0.0));
+    }
+
+    @Test
+    public void shareTemporaries() {
+        Equation eq = new Equation();
+        eq.setOptimize(false);
+        for (String name : new String[]{"A", "B", "C", "D"}) {
+            eq.alias(RandomMatrices_DDRM.rectangle(4, 4, rand), name);
+        }
+        eq.alias(new DMatrixRMaj(1, 1), "x");
+        String text = "x = ((A*B)*C)*D + ((A + B)*(C - D))'";
+        eq.process(text);
+        DMatrixRMaj expected = eq.lookupDDRM("x").copy();
+
+        SequenceGraph graph = eq.compileGraph(text);
+        assertTrue(graph.getNumTemporaryStorage() < graph.getNumTemporaries());
+        eq.lookupDDRM("x").zero();
+        graph.perform();
+        assertTrue(MatrixFeatures_DDRM.isIdentical(expected, eq.lookupDDRM("x"), UtilEjml.TEST_F64));
+    }
+
+    @Test
+    public void exceptionPropagates() {
+        Equation eq = new Equation();
+        eq.alias(RandomMatrices_DDRM.rectangle(3, 4, rand), "A", RandomMatrices_DDRM.rectangle(3, 4, rand), "B");
+        eq.alias(new DMatrixRMaj(1, 1), "x", new DMatrixRMaj(1, 1), "y");
+        SequenceGraph graph = eq.compileGraph("x = A'", "y = A*B");
+        assertThrows(RuntimeException.class, graph::perform);
+    }
+
+    private Equation createKalman() {
+        Random rand = new Random(234);
+        Equation eq = new Equation();
+        eq.alias(RandomMatrices_DDRM.symmetricPosDef(4, rand), "P");
+        eq.alias(RandomMatrices_DDRM.rectangle(2, 4, rand), "H");
+        eq.alias(RandomMatrices_DDRM.symmetricPosDef(2, rand), "S");
+        eq.alias(RandomMatrices_DDRM.rectangle(4, 1, rand), "x");
+        eq.alias(RandomMatrices_DDRM.rectangle(2, 1, rand), "y");
+        eq.alias(new DMatrixRMaj(1, 1), "K");
+        return eq;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.simple;
+
+import org.ejml.UtilEjml;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.data.DMatrixSparseCSC;
+import org.ejml.data.MatrixType;
+import org.ejml.ops.ConvertDMatrixStruct;
+import org.ejml.sparse.csc.RandomMatrices_DSCC;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestAdaptiveDensity {
+
+    Random rand = new Random(234);
+
+    @Test
+    public void density() {
+        DMatrixRMaj A = new DMatrixRMaj(4, 5);
+        A.set(1, 2, 3);
+        A.set(3, 3, 3);
+        assertEquals(2.0/20.0, AdaptiveDensity.density(A), UtilEjml.TEST_F64);
+
+        DMatrixSparseCSC B = RandomMatrices_DSCC.rectangle(10, 10, 15, rand);
+        assertEquals(0.15, AdaptiveDensity.density(B), UtilEjml.TEST_F64);
+    }
+
+    @Test
+    public void isDenseMultFaster() {
+        assertTrue(AdaptiveDensity.isDenseMultFaster(100, 100, 100, 0.5, 0.5));
+        assertFalse(AdaptiveDensity.isDenseMultFaster(100, 100, 100, 0.01, 0.01));
+
+        assertEquals(0.0, AdaptiveDensity.estimateMultDensity(10, 0.0, 0.5), UtilEjml.TEST_F64);
+        assertEquals(1.0, AdaptiveDensity.estimateMultDensity(10, 1.0, 1.0), UtilEjml.TEST_F64);
+    }
+
+    @Test
+    public void multiplication() {
+        AdaptiveDensity.setEnabled(true);
+        AdaptiveDensity.resetCounters();
+        try {
+            // dense enough that it should be converted before multiplying
+            SimpleMatrix A = SimpleMatrix.wrap(RandomMatrices_DSCC.rectangle(30, 30, 500, rand));
+            SimpleMatrix B = SimpleMatrix.wrap(RandomMatrices_DSCC.rectangle(30, 30, 500, rand));
+            SimpleMatrix C = A.mult(B);
+            assertEquals(MatrixType.DDRM, C.getType());
+            assertEquals(2, AdaptiveDensity.getConvertedToDense());
+            assertTrue(expectedMult(A, B).isIdentical(dense(C), UtilEjml.TEST_F64));
+
+            // very sparse should stay sparse
+            AdaptiveDensity.resetCounters();
+            A = SimpleMatrix.wrap(RandomMatrices_DSCC.rectangle(30, 30, 10, rand));
+            B = SimpleMatrix.wrap(RandomMatrices_DSCC.rectangle(30, 30, 10, rand));
+            C = A.mult(B);
+            assertEquals(MatrixType.DSCC, C.getType());
+            assertEquals(0, AdaptiveDensity.getConvertedToDense());
+            assertTrue(expectedMult(A, B).isIdentical(dense(C), UtilEjml.TEST_F64));
+        } finally {
+            AdaptiveDensity.setEnabled(false);
+        }
+    }
+
+    /**
+     * Sparse results which fill in are converted into dense
+     */
+    @Test
+    public void addition() {
+        AdaptiveDensity.setEnabled(true);
+        AdaptiveDensity.resetCounters();
+        try {
+            SimpleMatrix A = SimpleMatrix.wrap(RandomMatrices_DSCC.rectangle(20, 20, 25, rand));
+            SimpleMatrix B = SimpleMatrix.wrap(RandomMatrices_DSCC.rectangle(20, 20, 25, rand));
+            SimpleMatrix C = A.plus(B);
+            assertEquals(MatrixType.DSCC, C.getType());
+
+            AdaptiveDensity.setThresholds(0.01, 0.05);
+            C = A.plus(B);
+            assertEquals(MatrixType.DDRM, C.getType());
+            assertEquals(1, AdaptiveDensity.getConvertedToDense());
+            SimpleMatrix expected = SimpleMatrix.wrap(A.getDSCC().copy()).plus(SimpleMatrix.wrap(B.getDSCC()));
+            assertTrue(dense(expected).isIdentical(C, UtilEjml.TEST_F64));
+        } finally {
+            AdaptiveDensity.setThresholds(0.05, 0.2);
+            AdaptiveDensity.setEnabled(false);
+        }
+    }
+
+    /**
+     * Dense results from sparse inputs which are mostly zero become sparse
+     */
+    @Test
+    public void denseToSparse() {
+        AdaptiveDensity.setEnabled(true);
+        AdaptiveDensity.resetCounters();
+        try {
+            SimpleMatrix A = SimpleMatrix.wrap(RandomMatrices_DSCC.rectangle(20, 20, 4, rand));
+            SimpleMatrix B = new SimpleMatrix(20, 20);
+            SimpleMatrix C = A.elementMult(B);
+            assertEquals(MatrixType.DSCC, C.getType());
+            assertEquals(1, AdaptiveDensity.getConvertedToSparse());
+
+            // dense inputs are never converted
+            C = B.plus(B);
+            assertEquals(MatrixType.DDRM, C.getType());
+            assertEquals(1, AdaptiveDensity.getConvertedToSparse());
+        } finally {
+            AdaptiveDensity.setEnabled(false);
+        }
+    }
+
+    @Test
+    public void disabled() {
+        AdaptiveDensity.resetCounters();
+        SimpleMatrix A = SimpleMatrix.wrap(RandomMatrices_DSCC.rectangle(30, 30, 800, rand));
+        SimpleMatrix C = A.mult(A).plus(A);
+        assertEquals(MatrixType.DSCC, C.getType());
+        assertEquals(0, AdaptiveDensity.getConvertedToDense());
+    }
+
+    private static SimpleMatrix dense( SimpleMatrix A ) {
+        if (A.getType() == MatrixType.DDRM)
+            return A;
+        DMatrixRMaj a = new DMatrixRMaj(A.numRows(), A.numCols());
+        ConvertDMatrixStruct.convert(A.getDSCC(), a);
+        return SimpleMatrix.wrap(a);
+    }
+
+    private static SimpleMatrix expectedMult( SimpleMatrix A, SimpleMatrix B ) {
+        return dense(A).mult(dense(B));
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.simple;
+
+import org.ejml.MatrixDimensionException;
+import org.ejml.UtilEjml;
+import org.ejml.data.FMatrixRMaj;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestSimpleExpression {
+
+    Random rand = new Random(234);
+
+    SimpleMatrix A = SimpleMatrix.random_DDRM(4, 3, -1, 1, rand);
+    SimpleMatrix B = SimpleMatrix.random_DDRM(4, 5, -1, 1, rand);
+    SimpleMatrix C = SimpleMatrix.random_DDRM(3, 5, -1, 1, rand);
+    SimpleMatrix D = SimpleMatrix.random_DDRM(3, 5, -1, 1, rand);
+    SimpleMatrix S = SimpleMatrix.random_DDRM(3, 3, -1, 1, rand);
+
+    @Test
+    public void multiplication() {
+        check(A.transpose().mult(B).plus(C).scale(2), A.lazy().transpose().mult(B).plus(C).scale(2));
+        check(A.transpose().mult(B), A.lazy().transpose().mult(B));
+        check(B.transpose().mult(A), B.lazy().transpose().mult(A));
+        check(C.mult(B.transpose()), C.lazy().mult(B.transpose()));
+        check(C.mult(B.transpose()), C.lazy().mult(B.lazy().transpose()));
+        check(B.mult(C.transpose()).transpose(), B.lazy().mult(C.lazy().transpose()).transpose());
+        check(A.mult(C).scale(-0.5), A.lazy().scale(0.5).mult(C).negative());
+        check(A.mult(S.plus(S)).mult(C), A.lazy().mult(S.lazy().plus(S)).mult(C));
+        check(C.minus(A.transpose().mult(B).scale(3)),
+                C.lazy().minus(A.lazy().transpose().mult(B).scale(3)));
+        check(C.plus(2, D).minus(S.mult(C).plus(1.5)),
+                C.lazy().plus(2, D).minus(S.lazy().mult(C).plus(1.5)));
+        check(S.mult(S).mult(S), S.lazy().mult(S).mult(S));
+    }
+
+    @Test
+    public void elementWise() {
+        check(C.elementMult(D).plus(C).minus(2), C.lazy().elementMult(D).plus(C).minus(2));
+        check(C.transpose().elementMult(D.transpose()).divide(3),
+                C.lazy().transpose().elementMult(D.lazy().transpose()).divide(3));
+        check(S.transpose().elementMult(S), S.lazy().transpose().elementMult(S));
+        check(C.elementMult(D).transpose(), C.lazy().elementMult(D).transpose());
+        check(A.transpose().scale(2), A.lazy().transpose().scale(2));
+        check(A.transpose(), A.lazy().transpose());
+        check(A.copy(), A.lazy());
+        check(C.elementMult(S.mult(D)).plus(1), C.lazy().elementMult(S.lazy().mult(D)).plus(1));
+        check(C.plus(D).elementMult(C.minus(D).transpose().transpose()),
+                C.lazy().plus(D).elementMult(C.lazy().minus(D).transpose().transpose()));
+    }
+
+    /**
+     * Matrices which aren't DDRM are evaluated one operation at a time
+     */
+    @Test
+    public void otherTypes() {
+        SimpleMatrix fA = new SimpleMatrix(new FMatrixRMaj(4, 3));
+        SimpleMatrix fB = new SimpleMatrix(new FMatrixRMaj(4, 5));
+        fA.getFDRM().setData(new float[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+        for (int i = 0; i < fB.getNumElements(); i++) {
+            fB.getFDRM().data[i] = i*0.5f;
+        }
+        SimpleMatrix expected = fA.transpose().mult(fB).plus(1).scale(2);
+        SimpleMatrix found = fA.lazy().transpose().mult(fB).plus(1).scale(2).eval();
+        assertTrue(found.getMatrix() instanceof FMatrixRMaj);
+        assertTrue(expected.isIdentical(found, UtilEjml.TEST_F32));
+    }
+
+    @Test
+    public void inputsNotModified() {
+        List<SimpleMatrix> inputs = new ArrayList<>();
+        for (SimpleMatrix m : new SimpleMatrix[]{A, B, C, D}) {
+            inputs.add(m.copy());
+        }
+        A.lazy().transpose().mult(B).plus(C).elementMult(D).scale(2).eval();
+        assertTrue(inputs.get(0).isIdentical(A, 0));
+        assertTrue(inputs.get(1).isIdentical(B, 0));
+        assertTrue(inputs.get(2).isIdentical(C, 0));
+        assertTrue(inputs.get(3).isIdentical(D, 0));
+    }
+
+    @Test
+    public void badShapes() {
+        assertThrows(MatrixDimensionException.class, () -> A.lazy().mult(B));
+        assertThrows(MatrixDimensionException.class, () -> A.lazy().plus(B));
+        assertThrows(MatrixDimensionException.class, () -> A.lazy().elementMult(C));
+        assertEquals(3, A.lazy().transpose().numRows());
+        assertEquals(4, A.lazy().transpose().numCols());
+    }
+
+    private void check( SimpleMatrix expected, SimpleExpression<SimpleMatrix> expression ) {
+        SimpleMatrix found = expression.eval();
+        assertEquals(expected.numRows(), found.numRows());
+        assertEquals(expected.numCols(), found.numCols());
+        assertTrue(expected.isIdentical(found, UtilEjml.TEST_F64));
+    }
+}
@@ -24,8 +24,12 @@ import org.ejml.data.*;
 import org.ejml.dense.row.CommonOps_DDRM;
 import org.ejml.dense.row.NormOps_DDRM;
 import org.ejml.dense.row.RandomMatrices_DDRM;
+import org.ejml.equation.Equation;
+import org.ejml.equation.SequenceCache;
 import org.ejml.ops.ConvertMatrixType;
+import org.ejml.simple.ops.SimpleOperations_DDRM;
 import org.ejml.simple.ops.SimpleOperations_DSCC;
+import org.ejml.simple.ops.SimpleOperations_MT_DDRM;
 import org.ejml.sparse.csc.RandomMatrices_DSCC;
 import org.junit.jupiter.api.Test;
 
@@ -828,6 +832,84 @@ public class TestSimpleMatrix {
         assertEquals(orig.get(0,0)*2,A.get(0,0), UtilEjml.TEST_F64);
     }
 
+    @Test
+    public void outputVariants() {
+        SimpleMatrix A = SimpleMatrix.random_DDRM(4,3,-1,1,rand);
+        SimpleMatrix B = SimpleMatrix.random_DDRM(3,5,-1,1,rand);
+        SimpleMatrix C = SimpleMatrix.random_DDRM(4,3,-1,1,rand);
+
+        SimpleMatrix out = new SimpleMatrix(1,1);
+        DMatrixRMaj storage = out.getDDRM();
+        assertTrue(A.mult(B).isIdentical(A.multInto(B,out), 0));
+        assertSame(storage, out.getDDRM());
+        assertTrue(A.transpose().isIdentical(A.transposeInto(out), 0));
+        assertTrue(A.plus(C).isIdentical(A.plusInto(C,out), 0));
+        assertTrue(A.minus(C).isIdentical(A.minusInto(C,out), 0));
+        assertTrue(A.scale(2.5).isIdentical(A.scaleInto(2.5,out), 0));
+        assertTrue(A.elementMult(C).isIdentical(A.elementMultInto(C,out), 0));
+        assertSame(storage, out.getDDRM());
+
+        assertThrows(IllegalArgumentException.class, () -> A.multInto(B,A));
+        assertThrows(IllegalArgumentException.class, () -> A.transposeInto(A));
+
+        // output is a different type
+        SimpleMatrix outF = new SimpleMatrix(2,2,MatrixType.FDRM);
+        A.multInto(B,outF);
+        assertEquals(MatrixType.DDRM, outF.getType());
+        assertTrue(A.mult(B).isIdentical(outF, 0));
+    }
+
+    @Test
+    public void inPlaceVariants() {
+        SimpleMatrix A = SimpleMatrix.random_DDRM(4,3,-1,1,rand);
+        SimpleMatrix C = SimpleMatrix.random_DDRM(4,3,-1,1,rand);
+
+        SimpleMatrix expected = A.plus(C).plus(2.0,C).minus(C).plus(1.5).minus(0.5).scale(3).divide(2).elementMult(C);
+        SimpleMatrix found = A.copy();
+        DMatrixRMaj storage = found.getDDRM();
+        SimpleMatrix ret = found.plusi(C).plusi(2.0,C).minusi(C).plusi(1.5).minusi(0.5).scalei(3).dividei(2).elementMulti(C);
+        assertSame(found, ret);
+        assertSame(storage, found.getDDRM());
+        assertTrue(expected.isIdentical(found, UtilEjml.TEST_F64));
+
+        // sparse matrices are supported but might declare a new matrix internally
+        SimpleMatrix sA = SimpleMatrix.wrap(RandomMatrices_DSCC.rectangle(4,3,6,-1,1,rand));
+        SimpleMatrix sC = SimpleMatrix.wrap(RandomMatrices_DSCC.rectangle(4,3,6,-1,1,rand));
+        SimpleMatrix sExpected = sA.plus(sC).scale(2);
+        sA.plusi(sC).scalei(2);
+        assertTrue(sExpected.isIdentical(sA, UtilEjml.TEST_F64));
+    }
+
+    /**
+     * Repeatedly processing the same equation should reuse the compiled equation
+     */
+    @Test
+    public void equation_cached() {
+        SimpleMatrix A = SimpleMatrix.random_DDRM(4,4,-1,1,rand);
+        SimpleMatrix B = SimpleMatrix.random_DDRM(4,4,-1,1,rand);
+
+        SequenceCache<Equation> cache = SimpleBase.getEquationCache();
+        cache.clear();
+        cache.resetStatistics();
+
+        for (int i = 0; i < 5; i++) {
+            SimpleMatrix expected = A.mult(B).plus(i);
+            A.equation("A = A*B + C",B,"B",(double)i,"C");
+            assertTrue(expected.isIdentical(A, UtilEjml.TEST_F64));
+        }
+        assertEquals(1,cache.getMisses());
+        assertEquals(4,cache.getHits());
+
+        // a change in shape or type requires a different equation
+        SimpleMatrix C = SimpleMatrix.random_DDRM(4,2,-1,1,rand);
+        A.equation("A = A*B + C",C,"B",1.0,"C");
+        assertEquals(2,A.numCols());
+        SimpleMatrix D = SimpleMatrix.random_DDRM(2,2,-1,1,rand);
+        A.equation("A = A*B + C",D,"B",1,"C");
+        assertEquals(2,A.numCols());
+        assertEquals(3,cache.getMisses());
+    }
+
     /**
      * More detailed test is done in the CommonOps functin
      */
@@ -972,6 +1054,38 @@ public class TestSimpleMatrix {
         assertTrue(ops.specalized);
     }
 
+    @Test
+    public void concurrent() {
+        SimpleMatrix A = SimpleMatrix.random_DDRM(20,20,-1,1,rand);
+        SimpleMatrix B = SimpleMatrix.random_DDRM(20,5,-1,1,rand);
+        assertFalse(A.isConcurrent());
+        assertTrue(A.ops instanceof SimpleOperations_DDRM);
+
+        SimpleMatrix expectedMult = A.mult(B);
+        SimpleMatrix expectedSolve = A.solve(B);
+        SimpleMatrix expectedInv = A.invert();
+
+        A.setConcurrent(true);
+        assertTrue(A.ops instanceof SimpleOperations_MT_DDRM);
+        assertTrue(expectedMult.isIdentical(A.mult(B),UtilEjml.TEST_F64));
+        assertTrue(expectedSolve.isIdentical(A.solve(B),UtilEjml.TEST_F64));
+        assertTrue(expectedInv.isIdentical(A.invert(),UtilEjml.TEST_F64));
+        A.setConcurrent(false);
+        assertTrue(A.ops instanceof SimpleOperations_DDRM);
+
+        // new matrices in this thread should use the thread's setting
+        try {
+            SimpleMatrix.setThreadConcurrent(true);
+            SimpleMatrix C = A.transpose();
+            assertTrue(C.isConcurrent());
+            assertTrue(C.ops instanceof SimpleOperations_MT_DDRM);
+            assertFalse(A.isConcurrent());
+        } finally {
+            SimpleMatrix.setThreadConcurrent(false);
+        }
+        assertFalse(A.transpose().isConcurrent());
+    }
+
     /**
      * Helper used to test to see if a specialized function was called
      */
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2009-2020, Peter Abeles. All Rights Reserved.
+ *
+ * This file is part of Efficient Java Matrix Library (EJML).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ejml.simple;
+
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.data.MatrixType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Peter Abeles
+ */
+public class TestSimpleMatrixPool {
+    @Test
+    public void borrowAndRecycle() {
+        SimpleMatrixPool pool = new SimpleMatrixPool();
+        SimpleMatrix a = pool.borrow(3, 4);
+        assertEquals(3, a.numRows());
+        assertEquals(4, a.numCols());
+        assertEquals(MatrixType.DDRM, a.getType());
+        pool.recycle(a);
+        assertEquals(1, pool.size());
+
+        // same matrix should be returned, reshaped
+        SimpleMatrix b = pool.borrow(2, 2);
+        assertSame(a, b);
+        assertEquals(2, b.numRows());
+        assertEquals(0, pool.size());
+
+        // different type
+        pool.recycle(b);
+        SimpleMatrix c = pool.borrow(2, 2, MatrixType.FDRM);
+        assertNotSame(b, c);
+        assertEquals(MatrixType.FDRM, c.getType());
+        assertEquals(1, pool.size());
+    }
+
+    /**
+     * Prefer a matrix which doesn't need to grow
+     */
+    @Test
+    public void borrow_capacity() {
+        SimpleMatrix small = new SimpleMatrix(2, 2);
+        SimpleMatrix large = new SimpleMatrix(10, 10);
+        SimpleMatrixPool pool = new SimpleMatrixPool();
+        pool.recycle(large, small);
+
+        SimpleMatrix found = pool.borrow(5, 6);
+        assertSame(large, found);
+        assertEquals(100, found.getDDRM().data.length);
+    }
+
+    @Test
+    public void recycle_twice() {
+        SimpleMatrixPool pool = new SimpleMatrixPool();
+        SimpleMatrix a = pool.borrow(3, 4);
+        pool.recycle(a);
+        assertThrows(IllegalArgumentException.class, () -> pool.recycle(a));
+    }
+
+    @Test
+    public void maxSize() {
+        SimpleMatrixPool pool = new SimpleMatrixPool();
+        pool.setMaxSize(2);
+        pool.recycle(new SimpleMatrix(1, 1), new SimpleMatrix(1, 1), new SimpleMatrix(1, 1));
+        assertEquals(2, pool.size());
+    }
+
+    @Test
+    public void perThread() throws InterruptedException {
+        SimpleMatrixPool local = SimpleMatrixPool.get();
+        assertSame(local, SimpleMatrixPool.get());
+        SimpleMatrixPool[] other = new SimpleMatrixPool[1];
+        Thread t = new Thread(() -> other[0] = SimpleMatrixPool.get());
+        t.start();
+        t.join();
+        assertNotNull(other[0]);
+        assertNotSame(local, other[0]);
+    }
+
+    /**
+     * Steady state shouldn't declare new memory
+     */
+    @Test
+    public void steadyState() {
+        SimpleMatrixPool pool = new SimpleMatrixPool();
+        SimpleMatrix A = SimpleMatrix.random_DDRM(4, 4, -1, 1, new java.util.Random(2));
+        SimpleMatrix tmp = pool.borrow(4, 4);
+        DMatrixRMaj storage = tmp.getDDRM();
+        double[] data = storage.data;
+        for (int i = 0; i < 3; i++) {
+            A.multInto(A, tmp).plusi(A).scalei(0.5);
+            pool.recycle(tmp);
+            tmp = pool.borrow(4, 4);
+        }
+        assertSame(storage, tmp.getDDRM());
+        assertSame(data, tmp.getDDRM().data);
+    }
+}